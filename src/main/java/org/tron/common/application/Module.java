@@ -22,7 +22,8 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import javax.inject.Named;
-import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.storage.DbSourceFactory;
+import org.tron.common.storage.DbSourceInter;
 import org.tron.core.config.args.Args;
 
 public class Module extends AbstractModule {
@@ -38,8 +39,8 @@ public class Module extends AbstractModule {
   @Provides
   @Singleton
   @Named("transaction")
-  public LevelDbDataSourceImpl buildTransactionDb() {
-    LevelDbDataSourceImpl db = new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectory(),
+  public DbSourceInter<byte[]> buildTransactionDb() {
+    DbSourceInter<byte[]> db = DbSourceFactory.create(Args.getInstance().getOutputDirectory(),
         TRANSACTION_DB_NAME);
     db.initDB();
     return db;
@@ -51,8 +52,8 @@ public class Module extends AbstractModule {
   @Provides
   @Singleton
   @Named("block")
-  public LevelDbDataSourceImpl buildBlockDb() {
-    LevelDbDataSourceImpl db = new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectory(),
+  public DbSourceInter<byte[]> buildBlockDb() {
+    DbSourceInter<byte[]> db = DbSourceFactory.create(Args.getInstance().getOutputDirectory(),
         BLOCK_DB_NAME);
     db.initDB();
     return db;
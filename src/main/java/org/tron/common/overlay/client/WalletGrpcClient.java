@@ -141,4 +141,32 @@ public class WalletGrpcClient {
     return walletBlockingStub.totalTransaction(EmptyMessage.newBuilder().build());
   }
 
+  public StoreStatsList getStoreStats() {
+    return walletBlockingStub.getStoreStats(EmptyMessage.newBuilder().build());
+  }
+
+  public CheckpointInfo createCheckpoint() {
+    return walletBlockingStub.createCheckpoint(EmptyMessage.newBuilder().build());
+  }
+
+  public StateSnapshotInfo exportStateSnapshot() {
+    return walletBlockingStub.exportStateSnapshot(EmptyMessage.newBuilder().build());
+  }
+
+  public StoreStats compactStore(CompactRequest request) {
+    return walletBlockingStub.compactStore(request);
+  }
+
+  public MetricList getMetrics() {
+    return walletBlockingStub.getMetrics(EmptyMessage.newBuilder().build());
+  }
+
+  public TransactionList getTransactionsFromThis(AccountPaginated request) {
+    return walletBlockingStub.getTransactionsFromThis(request);
+  }
+
+  public TransactionList getTransactionsToThis(AccountPaginated request) {
+    return walletBlockingStub.getTransactionsToThis(request);
+  }
+
 }
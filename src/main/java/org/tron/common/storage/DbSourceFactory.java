@@ -0,0 +1,35 @@
+package org.tron.common.storage;
+
+import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.storage.rocksdb.RocksDbDataSourceImpl;
+import org.tron.core.config.args.Args;
+import org.tron.core.config.args.DbProfile;
+import org.tron.core.config.args.Storage;
+
+public class DbSourceFactory {
+
+  private DbSourceFactory() {
+  }
+
+  /**
+   * Create a database under the storage directory with the engine configured for it.
+   */
+  public static DbSourceInter<byte[]> create(String parentName, String name) {
+    String engine = Args.getInstance().getStorage().getEngine(name);
+    if (Storage.ROCKSDB.equals(engine)) {
+      return new RocksDbDataSourceImpl(parentName, name);
+    }
+    return new LevelDbDataSourceImpl(parentName, name);
+  }
+
+  /**
+   * Create a database directly under parentName with the given engine and profile.
+   */
+  public static DbSourceInter<byte[]> create(String engine, String parentName, String name,
+      DbProfile profile) {
+    if (Storage.ROCKSDB.equals(Storage.checkEngine(engine))) {
+      return new RocksDbDataSourceImpl(parentName, name, profile);
+    }
+    return new LevelDbDataSourceImpl(parentName, name, profile);
+  }
+}
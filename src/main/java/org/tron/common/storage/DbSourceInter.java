@@ -17,10 +17,23 @@
  */
 package org.tron.common.storage;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.tron.core.db.common.iterator.DBIterator;
 
 
-public interface DbSourceInter<V> extends BatchSourceInter<byte[], V> {
+public interface DbSourceInter<V> extends BatchSourceInter<byte[], V>,
+    Iterable<Map.Entry<byte[], V>> {
 
 
   String getDBName();
@@ -35,10 +48,75 @@ public interface DbSourceInter<V> extends BatchSourceInter<byte[], V> {
 
   void closeDB();
 
+  void resetDb();
+
+  /**
+   * Keys of the database, in a set that compares them by content.
+   */
   Set<byte[]> allKeys() throws RuntimeException;
 
   Set<byte[]> allValues() throws RuntimeException;
 
   long getTotal() throws RuntimeException;
 
+  /**
+   * An empty set of keys that compares them by content, in key order.
+   */
+  static Set<byte[]> newKeySet() {
+    return new TreeSet<>(ScanOptions.COMPARATOR);
+  }
+
+  /**
+   * Values of many keys read in one pass, in the order of the keys and null where a key does not
+   * exist. Engines read them from one consistent view, sorted by key.
+   */
+  default List<V> getAll(Collection<byte[]> keys) {
+    return keys.stream().map(this::getData).collect(Collectors.toList());
+  }
+
+  /**
+   * Cursor over the entries selected by options. It holds native resources until it is exhausted
+   * or closed, so callers that may stop early must close it.
+   */
+  DBIterator iterator(ScanOptions options);
+
+  /**
+   * Read only view of the committed state at this moment. Writes held in memory by open sessions
+   * are not part of it. The caller closes it once done.
+   */
+  SnapshotSource getSnapshot();
+
+  /**
+   * Compact the keys from from to to, a null bound is open, and return when done.
+   */
+  void compactRange(byte[] from, byte[] to);
+
+  /**
+   * Hold back background compaction while throttled, e.g. while the node produces a block.
+   * Engines with a rate limit lower it to throttledRate bytes per second, the others suspend it.
+   */
+  void throttleCompactions(boolean throttled, long throttledRate);
+
+  /**
+   * Compaction statistics reported by the engine.
+   */
+  String getCompactionStats();
+
+  /**
+   * Stream over the entries selected by options. It splits into batches for parallel consumers
+   * and closing the stream closes the cursor.
+   */
+  default Stream<Map.Entry<byte[], byte[]>> stream(ScanOptions options) {
+    DBIterator iterator = iterator(options);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+        .onClose(() -> {
+          try {
+            iterator.close();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
 }
@@ -0,0 +1,117 @@
+package org.tron.common.storage;
+
+import com.google.common.primitives.UnsignedBytes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NavigableMap;
+import lombok.Getter;
+
+/**
+ * Which entries a cursor visits: the keys from {@code from} inclusive to {@code to} exclusive, in
+ * key order or reversed, skipping the first {@code offset} of them and stopping after
+ * {@code limit}. A null bound is open.
+ */
+@Getter
+public class ScanOptions {
+
+  public static final Comparator<byte[]> COMPARATOR = UnsignedBytes.lexicographicalComparator();
+
+  private final byte[] from;
+  private final byte[] to;
+  private boolean reverse = false;
+  private long offset = 0;
+  private long limit = Long.MAX_VALUE;
+
+  private ScanOptions(byte[] from, byte[] to) {
+    this.from = from;
+    this.to = to;
+  }
+
+  public static ScanOptions all() {
+    return new ScanOptions(null, null);
+  }
+
+  public static ScanOptions range(byte[] from, byte[] to) {
+    return new ScanOptions(from, to);
+  }
+
+  /**
+   * Every key that starts with prefix.
+   */
+  public static ScanOptions prefix(byte[] prefix) {
+    return new ScanOptions(prefix, successor(prefix));
+  }
+
+  /**
+   * The smallest key greater than every key starting with prefix, null when there is none.
+   */
+  static byte[] successor(byte[] prefix) {
+    for (int i = prefix.length - 1; i >= 0; i--) {
+      if (prefix[i] != (byte) 0xff) {
+        byte[] next = Arrays.copyOf(prefix, i + 1);
+        next[i]++;
+        return next;
+      }
+    }
+    return null;
+  }
+
+  public ScanOptions reverse() {
+    this.reverse = true;
+    return this;
+  }
+
+  /**
+   * Skip the first entries.
+   */
+  public ScanOptions offset(long offset) {
+    if (offset < 0) {
+      throw new IllegalArgumentException("offset(" + offset + ") must be >= 0");
+    }
+    this.offset = offset;
+    return this;
+  }
+
+  /**
+   * Visit at most limit entries.
+   */
+  public ScanOptions limit(long limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("limit(" + limit + ") must be >= 0");
+    }
+    this.limit = limit;
+    return this;
+  }
+
+  public boolean isPaged() {
+    return offset > 0 || limit != Long.MAX_VALUE;
+  }
+
+  /**
+   * Same range and direction without offset and limit, for layers that page after merging.
+   */
+  public ScanOptions unpaged() {
+    ScanOptions options = new ScanOptions(from, to);
+    options.reverse = reverse;
+    return options;
+  }
+
+  /**
+   * View of the selected part of a map sorted by {@link #COMPARATOR}, in scan order.
+   */
+  public <V> NavigableMap<byte[], V> select(NavigableMap<byte[], V> map) {
+    NavigableMap<byte[], V> view = map;
+    if (from != null) {
+      view = view.tailMap(from, true);
+    }
+    if (to != null) {
+      view = view.headMap(to, false);
+    }
+    return reverse ? view.descendingMap() : view;
+  }
+
+  public boolean contains(byte[] key) {
+    return (from == null || COMPARATOR.compare(key, from) >= 0)
+        && (to == null || COMPARATOR.compare(key, to) < 0);
+  }
+}
@@ -0,0 +1,167 @@
+package org.tron.common.storage;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.iq80.leveldb.WriteOptions;
+import org.tron.core.db.common.iterator.DBIterator;
+
+/**
+ * Read only view of a database as it was when the snapshot was taken, later writes are not
+ * visible. It pins engine resources until it is closed. Once the database is closed or reset its
+ * snapshots read nothing.
+ */
+public abstract class SnapshotSource implements DbSourceInter<byte[]> {
+
+  private final String name;
+
+  protected SnapshotSource(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Give the engine resources back, the snapshot reads nothing afterwards.
+   */
+  protected abstract void release();
+
+  protected static DBIterator emptyIterator() {
+    return new EmptyIterator();
+  }
+
+  @Override
+  public String getDBName() {
+    return name;
+  }
+
+  @Override
+  public void setDBName(String name) {
+    throw new UnsupportedOperationException("snapshot of " + this.name + " is read only");
+  }
+
+  @Override
+  public void initDB() {
+  }
+
+  @Override
+  public void closeDB() {
+    release();
+  }
+
+  @Override
+  public void resetDb() {
+    throw new UnsupportedOperationException("snapshot of " + name + " is read only");
+  }
+
+  @Override
+  public void putData(byte[] key, byte[] value) {
+    throw new UnsupportedOperationException("snapshot of " + name + " is read only");
+  }
+
+  @Override
+  public void putData(byte[] key, byte[] value, WriteOptions options) {
+    throw new UnsupportedOperationException("snapshot of " + name + " is read only");
+  }
+
+  @Override
+  public void deleteData(byte[] key) {
+    throw new UnsupportedOperationException("snapshot of " + name + " is read only");
+  }
+
+  @Override
+  public void deleteData(byte[] key, WriteOptions options) {
+    throw new UnsupportedOperationException("snapshot of " + name + " is read only");
+  }
+
+  @Override
+  public void updateByBatch(Map<byte[], byte[]> rows) {
+    throw new UnsupportedOperationException("snapshot of " + name + " is read only");
+  }
+
+  @Override
+  public void updateByBatch(Map<byte[], byte[]> rows, WriteOptions options) {
+    throw new UnsupportedOperationException("snapshot of " + name + " is read only");
+  }
+
+  @Override
+  public boolean flush() {
+    return false;
+  }
+
+  /**
+   * Compaction belongs to the database, a snapshot only reads it.
+   */
+  @Override
+  public void compactRange(byte[] from, byte[] to) {
+    throw new UnsupportedOperationException("snapshot of " + name + " is read only");
+  }
+
+  @Override
+  public void throttleCompactions(boolean throttled, long throttledRate) {
+    throw new UnsupportedOperationException("snapshot of " + name + " is read only");
+  }
+
+  @Override
+  public String getCompactionStats() {
+    return "";
+  }
+
+  /**
+   * A snapshot of a snapshot would be the same state, take a new one from the database instead.
+   */
+  @Override
+  public SnapshotSource getSnapshot() {
+    throw new UnsupportedOperationException("snapshot of " + name + " can not be snapshot again");
+  }
+
+  @Override
+  public Set<byte[]> allKeys() {
+    Set<byte[]> result = DbSourceInter.newKeySet();
+    iterator().forEachRemaining(entry -> result.add(entry.getKey()));
+    return result;
+  }
+
+  @Override
+  public Set<byte[]> allValues() {
+    Set<byte[]> result = new HashSet<>();
+    iterator().forEachRemaining(entry -> result.add(entry.getValue()));
+    return result;
+  }
+
+  @Override
+  public long getTotal() {
+    long total = 0;
+    try (DBIterator iterator = iterator()) {
+      for (; iterator.hasNext(); iterator.next()) {
+        total++;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return total;
+  }
+
+  @Override
+  public DBIterator iterator() {
+    return iterator(ScanOptions.all());
+  }
+
+  private static class EmptyIterator implements DBIterator {
+
+    @Override
+    public boolean hasNext() {
+      return false;
+    }
+
+    @Override
+    public Entry<byte[], byte[]> next() {
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
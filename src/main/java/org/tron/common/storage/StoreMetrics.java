@@ -0,0 +1,147 @@
+package org.tron.common.storage;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.tron.core.db.common.iterator.DBIterator;
+
+/**
+ * Latency and throughput of the operations on one store. The metrics of all stores are kept in
+ * one registry, named store.(name).(metric), so instances for the same name share them.
+ */
+public class StoreMetrics {
+
+  private static final MetricRegistry REGISTRY = new MetricRegistry();
+
+  public enum Operation {
+    GET, MULTI_GET, PUT, DELETE, BATCH, ITERATE;
+
+    private String metricName() {
+      return name().toLowerCase();
+    }
+  }
+
+  private final Map<Operation, Timer> timers = new EnumMap<>(Operation.class);
+  private final Histogram valueSizeRead;
+  private final Histogram valueSizeWritten;
+  private final Histogram batchSize;
+  private final Meter bytesRead;
+  private final Meter bytesWritten;
+
+  public StoreMetrics(String store) {
+    for (Operation operation : Operation.values()) {
+      timers.put(operation, REGISTRY.timer(name(store, operation.metricName())));
+    }
+    valueSizeRead = REGISTRY.histogram(name(store, "valueSizeRead"));
+    valueSizeWritten = REGISTRY.histogram(name(store, "valueSizeWritten"));
+    batchSize = REGISTRY.histogram(name(store, "batchSize"));
+    bytesRead = REGISTRY.meter(name(store, "bytesRead"));
+    bytesWritten = REGISTRY.meter(name(store, "bytesWritten"));
+  }
+
+  public static MetricRegistry getRegistry() {
+    return REGISTRY;
+  }
+
+  public static String name(String store, String metric) {
+    return MetricRegistry.name("store", store, metric);
+  }
+
+  /**
+   * Register a gauge, replacing the one of the same name, e.g. of a manager created before.
+   */
+  public static void gauge(String name, Gauge<?> gauge) {
+    REGISTRY.remove(name);
+    REGISTRY.register(name, gauge);
+  }
+
+  /**
+   * Start timing an operation, stopped by closing the context.
+   */
+  public Timer.Context time(Operation operation) {
+    return timers.get(operation).time();
+  }
+
+  /**
+   * Count a value read, null when the key is absent.
+   */
+  public void read(byte[] value) {
+    if (value != null) {
+      valueSizeRead.update(value.length);
+      bytesRead.mark(value.length);
+    }
+  }
+
+  /**
+   * Count the entries read by a scan.
+   */
+  public void scanned(long bytes) {
+    bytesRead.mark(bytes);
+  }
+
+  /**
+   * Count an entry written, a null value for a delete.
+   */
+  public void written(byte[] key, byte[] value) {
+    int size = key.length;
+    if (value != null) {
+      valueSizeWritten.update(value.length);
+      size += value.length;
+    }
+    bytesWritten.mark(size);
+  }
+
+  /**
+   * Count the entries written by a batch.
+   */
+  public void written(Map<byte[], byte[]> rows) {
+    batchSize.update(rows.size());
+    long size = 0;
+    for (Entry<byte[], byte[]> row : rows.entrySet()) {
+      size += row.getKey().length;
+      if (row.getValue() != null) {
+        valueSizeWritten.update(row.getValue().length);
+        size += row.getValue().length;
+      }
+    }
+    bytesWritten.mark(size);
+  }
+
+  /**
+   * Count the entries read through an iterator, timing the scan from now until it is closed.
+   */
+  public DBIterator scan(DBIterator iterator) {
+    Timer.Context context = time(Operation.ITERATE);
+    return new DBIterator() {
+
+      private boolean closed;
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public Entry<byte[], byte[]> next() {
+        Entry<byte[], byte[]> entry = iterator.next();
+        scanned(entry.getKey().length + entry.getValue().length);
+        return entry;
+      }
+
+      @Override
+      public void close() throws IOException {
+        if (!closed) {
+          closed = true;
+          context.stop();
+        }
+        iterator.close();
+      }
+    };
+  }
+}
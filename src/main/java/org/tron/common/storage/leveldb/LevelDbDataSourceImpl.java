@@ -17,17 +17,33 @@ package org.tron.common.storage.leveldb;
 
 import static org.fusesource.leveldbjni.JniDBFactory.factory;
 
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import lombok.NoArgsConstructor;
@@ -37,31 +53,84 @@ import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBException;
 import org.iq80.leveldb.DBIterator;
 import org.iq80.leveldb.Options;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.Snapshot;
 import org.iq80.leveldb.WriteBatch;
 import org.iq80.leveldb.WriteOptions;
 import org.tron.common.storage.DbSourceInter;
+import org.tron.common.storage.ScanOptions;
+import org.tron.common.storage.SnapshotSource;
+import org.tron.common.storage.StoreMetrics;
+import org.tron.common.storage.StoreMetrics.Operation;
 import org.tron.common.utils.FileUtil;
 import org.tron.core.config.args.Args;
+import org.tron.core.config.args.DbProfile;
 import org.tron.core.db.common.iterator.StoreIterator;
+import org.tron.core.db.common.iterator.StoreRangeIterator;
 
 @Slf4j
 @NoArgsConstructor
-public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
-    Iterable<Map.Entry<byte[], byte[]>> {
+public class LevelDbDataSourceImpl implements DbSourceInter<byte[]> {
+
+  private static final int PARALLEL_GET_SIZE = 64;
+
+  private static final int GET_THREADS = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Files in level 0 at which leveldb compacts them, more mean compaction is behind.
+   */
+  private static final int L0_COMPACTION_TRIGGER = 4;
+
+  /**
+   * Longest suspension of the background compaction, a write waiting for a memtable flush is
+   * released after it at the latest.
+   */
+  private static final long MAX_SUSPEND_MILLIS = 1000;
+
+  private static final ScheduledExecutorService resumer =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "leveldb-resume");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * Threads of the reads of large multi gets, apart from the common pool so a busy parallel
+   * stream elsewhere does not hold them back.
+   */
+  private static final ExecutorService getter =
+      Executors.newFixedThreadPool(GET_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "leveldb-get");
+        thread.setDaemon(true);
+        return thread;
+      });
 
   String dataBaseName;
   DB database;
   boolean alive;
   private String parentName;
+  private DbProfile profile;
   private ReadWriteLock resetDbLock = new ReentrantReadWriteLock();
+  private volatile boolean compactionsSuspended = false;
+  private long suspendedBytes = 0;
+  private ScheduledFuture<?> resumeTask;
+  private StoreMetrics metrics;
 
   /**
    * constructor.
    */
   public LevelDbDataSourceImpl(String parentName, String name) {
-    parentName += Args.getInstance().getStorage().getDirectory();
+    this(parentName + Args.getInstance().getStorage().getDirectory(), name,
+        Args.getInstance().getStorage().getProfile(name));
+  }
+
+  /**
+   * Open a database directly under parentName with the given profile.
+   */
+  public LevelDbDataSourceImpl(String parentName, String name, DbProfile profile) {
     this.parentName = parentName;
     this.dataBaseName = name;
+    this.profile = profile;
   }
 
   @Override
@@ -78,6 +147,7 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
         throw new NullPointerException("no name set to the dbStore");
       }
 
+      metrics = new StoreMetrics(dataBaseName);
       Options dbOptions = createDbOptions();
 
       try {
@@ -108,16 +178,26 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
     }
   }
 
+  /**
+   * Build the options from the storage profile of this database. The leveldbjni binding does not
+   * expose a filter policy, so bloomFilterBits only takes effect on engines that support it.
+   */
   private Options createDbOptions() {
+    if (profile == null) {
+      profile = Args.getInstance().getStorage().getProfile(dataBaseName);
+    }
+    logger.info("Open database {} with {}", dataBaseName, profile);
+
     Options dbOptions = new Options();
     dbOptions.createIfMissing(true);
-    dbOptions.compressionType(CompressionType.NONE);
-    dbOptions.blockSize(10 * 1024 * 1024);
-    dbOptions.writeBufferSize(10 * 1024 * 1024);
-    dbOptions.cacheSize(0);
+    dbOptions.compressionType(profile.isCompression() ? CompressionType.SNAPPY
+        : CompressionType.NONE);
+    dbOptions.blockSize(profile.getBlockSize());
+    dbOptions.writeBufferSize(profile.getWriteBufferSize());
+    dbOptions.cacheSize(profile.getCacheSize());
     dbOptions.paranoidChecks(true);
-    dbOptions.verifyChecksums(true);
-    dbOptions.maxOpenFiles(32);
+    dbOptions.verifyChecksums(profile.isVerifyChecksums());
+    dbOptions.maxOpenFiles(profile.getMaxOpenFiles());
     return dbOptions;
   }
 
@@ -128,6 +208,7 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
   /**
    * reset database.
    */
+  @Override
   public void resetDb() {
     closeDB();
     FileUtil.recursiveDelete(getDbPath().toString());
@@ -170,8 +251,10 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
   @Override
   public byte[] getData(byte[] key) {
     resetDbLock.readLock().lock();
-    try {
-      return database.get(key);
+    try (Timer.Context ignored = metrics.time(Operation.GET)) {
+      byte[] value = database.get(key);
+      metrics.read(value);
+      return value;
     } catch (DBException e) {
       logger.debug(e.getMessage(), e);
     } finally {
@@ -180,11 +263,88 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
     return null;
   }
 
+  /**
+   * Read the keys in key order from one snapshot, so neighbouring keys share the blocks read,
+   * larger sets split into key ranges read on several threads.
+   */
   @Override
-  public void putData(byte[] key, byte[] value) {
+  public List<byte[]> getAll(Collection<byte[]> keys) {
+    List<byte[]> list = new ArrayList<>(keys);
+    byte[][] values = new byte[list.size()][];
     resetDbLock.readLock().lock();
+    try (Timer.Context ignored = metrics.time(Operation.MULTI_GET);
+        Snapshot snapshot = database.getSnapshot()) {
+      ReadOptions options = new ReadOptions().snapshot(snapshot);
+      int[] order = IntStream.range(0, list.size()).boxed()
+          .sorted(Comparator.comparing(list::get, ScanOptions.COMPARATOR))
+          .mapToInt(Integer::intValue)
+          .toArray();
+      // contiguous ranges of the sorted keys, the calling thread reads the first one
+      int parts = Math.max(1, Math.min(GET_THREADS, order.length / PARALLEL_GET_SIZE));
+      List<Future<?>> futures = new ArrayList<>(parts - 1);
+      for (int part = 1; part < parts; part++) {
+        int from = order.length * part / parts;
+        int to = order.length * (part + 1) / parts;
+        futures.add(getter.submit(() -> get(list, order, from, to, values, options)));
+      }
+      try {
+        get(list, order, 0, order.length / parts, values, options);
+      } finally {
+        // the snapshot is released after the last read of it, even when a part failed
+        awaitAll(futures);
+      }
+    } catch (IOException e) {
+      logger.debug(e.getMessage(), e);
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+    return Arrays.asList(values);
+  }
+
+  /**
+   * Wait for every future, then throw the failure of the first one that failed.
+   */
+  private static void awaitAll(List<Future<?>> futures) {
+    Throwable failure = null;
+    for (Future<?> future : futures) {
+      try {
+        Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    if (failure != null) {
+      throw new UncheckedExecutionException(failure);
+    }
+  }
+
+  private void get(List<byte[]> keys, int[] order, int from, int to, byte[][] values,
+      ReadOptions options) {
+    for (int i = from; i < to; i++) {
+      values[order[i]] = get(keys.get(order[i]), options);
+    }
+  }
+
+  private byte[] get(byte[] key, ReadOptions options) {
     try {
+      byte[] value = database.get(key, options);
+      metrics.read(value);
+      return value;
+    } catch (DBException e) {
+      logger.debug(e.getMessage(), e);
+      return null;
+    }
+  }
+
+  @Override
+  public void putData(byte[] key, byte[] value) {
+    resetDbLock.readLock().lock();
+    try (Timer.Context ignored = metrics.time(Operation.PUT)) {
+      beforeWrite(key.length + value.length);
       database.put(key, value);
+      metrics.written(key, value);
     } finally {
       resetDbLock.readLock().unlock();
     }
@@ -193,8 +353,10 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
   @Override
   public void putData(byte[] key, byte[] value, WriteOptions options) {
     resetDbLock.readLock().lock();
-    try {
+    try (Timer.Context ignored = metrics.time(Operation.PUT)) {
+      beforeWrite(key.length + value.length);
       database.put(key, value, options);
+      metrics.written(key, value);
     } finally {
       resetDbLock.readLock().unlock();
     }
@@ -203,8 +365,10 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
   @Override
   public void deleteData(byte[] key) {
     resetDbLock.readLock().lock();
-    try {
+    try (Timer.Context ignored = metrics.time(Operation.DELETE)) {
+      beforeWrite(key.length);
       database.delete(key);
+      metrics.written(key, null);
     } finally {
       resetDbLock.readLock().unlock();
     }
@@ -213,8 +377,10 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
   @Override
   public void deleteData(byte[] key, WriteOptions options) {
     resetDbLock.readLock().lock();
-    try {
+    try (Timer.Context ignored = metrics.time(Operation.DELETE)) {
+      beforeWrite(key.length);
       database.delete(key, options);
+      metrics.written(key, null);
     } finally {
       resetDbLock.readLock().unlock();
     }
@@ -223,10 +389,13 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
   @Override
   public Set<byte[]> allKeys() {
     resetDbLock.readLock().lock();
-    try (DBIterator iterator = database.iterator()) {
-      Set<byte[]> result = new HashSet<>();
+    try (DBIterator iterator = database.iterator();
+        Timer.Context ignored = metrics.time(Operation.ITERATE)) {
+      Set<byte[]> result = DbSourceInter.newKeySet();
       for (iterator.seekToFirst(); iterator.hasNext(); iterator.next()) {
-        result.add(iterator.peekNext().getKey());
+        byte[] key = iterator.peekNext().getKey();
+        metrics.scanned(key.length);
+        result.add(key);
       }
       return result;
     } catch (IOException e) {
@@ -239,10 +408,13 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
   @Override
   public Set<byte[]> allValues() {
     resetDbLock.readLock().lock();
-    try (DBIterator iterator = database.iterator()) {
+    try (DBIterator iterator = database.iterator();
+        Timer.Context ignored = metrics.time(Operation.ITERATE)) {
       Set<byte[]> result = new HashSet<>();
       for (iterator.seekToFirst(); iterator.hasNext(); iterator.next()) {
-        result.add(iterator.peekNext().getValue());
+        byte[] value = iterator.peekNext().getValue();
+        metrics.scanned(value.length);
+        result.add(value);
       }
       return result;
     } catch (IOException e) {
@@ -255,7 +427,8 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
   @Override
   public long getTotal() throws RuntimeException {
     resetDbLock.readLock().lock();
-    try (DBIterator iterator = database.iterator()) {
+    try (DBIterator iterator = database.iterator();
+        Timer.Context ignored = metrics.time(Operation.ITERATE)) {
       long total = 0;
       for (iterator.seekToFirst(); iterator.hasNext(); iterator.next()) {
         total++;
@@ -268,7 +441,8 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
     }
   }
 
-  private void updateByBatchInner(Map<byte[], byte[]> rows) throws Exception {
+  private void updateByBatchInner(Map<byte[], byte[]> rows, WriteOptions options)
+      throws Exception {
     try (WriteBatch batch = database.createWriteBatch()) {
       rows.forEach((key, value) -> {
         if (value == null) {
@@ -277,18 +451,30 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
           batch.put(key, value);
         }
       });
-      database.write(batch);
+      database.write(batch, options);
     }
   }
 
   @Override
   public void updateByBatch(Map<byte[], byte[]> rows) {
+    updateByBatch(rows, new WriteOptions());
+  }
+
+  @Override
+  public void updateByBatch(Map<byte[], byte[]> rows, WriteOptions options) {
     resetDbLock.readLock().lock();
-    try {
-      updateByBatchInner(rows);
+    try (Timer.Context ignored = metrics.time(Operation.BATCH)) {
+      if (compactionsSuspended) {
+        beforeWrite(rows.entrySet().stream()
+            .mapToLong(row -> row.getKey().length
+                + (row.getValue() == null ? 0 : row.getValue().length))
+            .sum());
+      }
+      updateByBatchInner(rows, options);
+      metrics.written(rows);
     } catch (Exception e) {
       try {
-        updateByBatchInner(rows);
+        updateByBatchInner(rows, options);
       } catch (Exception e1) {
         throw new RuntimeException(e);
       }
@@ -302,6 +488,116 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
     return false;
   }
 
+  /**
+   * Compact the keys from from to to, inclusive at both ends in leveldb. A null bound is open.
+   */
+  @Override
+  public void compactRange(byte[] from, byte[] to) {
+    resetDbLock.readLock().lock();
+    try {
+      if (isAlive()) {
+        database.compactRange(from, to);
+      }
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Leveldb has no rate limit, throttling suspends the background compaction. Suspending waits
+   * for the running compaction step to end.
+   *
+   * <p>The same background thread flushes full memtables, a write that fills the memtable while
+   * the previous one is not flushed waits for it. So compaction is not suspended while level 0
+   * has a backlog, and it is resumed before a quarter of the write buffer was written meanwhile
+   * and after {@link #MAX_SUSPEND_MILLIS} at the latest.
+   */
+  @Override
+  public void throttleCompactions(boolean throttled, long throttledRate) {
+    resetDbLock.readLock().lock();
+    try {
+      if (!isAlive()) {
+        return;
+      }
+      if (throttled) {
+        suspendCompactions();
+      } else {
+        resumeCompactions();
+      }
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  private synchronized void suspendCompactions() {
+    if (compactionsSuspended) {
+      return;
+    }
+    int levelZeroFiles = getLevelZeroFiles();
+    if (levelZeroFiles >= L0_COMPACTION_TRIGGER) {
+      logger.debug("Compaction of {} is behind with {} files in level 0, not suspended",
+          dataBaseName, levelZeroFiles);
+      return;
+    }
+    try {
+      database.suspendCompactions();
+      compactionsSuspended = true;
+      suspendedBytes = 0;
+      resumeTask = resumer.schedule(this::resumeCompactions, MAX_SUSPEND_MILLIS,
+          TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private synchronized void resumeCompactions() {
+    if (compactionsSuspended) {
+      database.resumeCompactions();
+      compactionsSuspended = false;
+      resumeTask.cancel(false);
+    }
+  }
+
+  /**
+   * Resume a suspended compaction before the writes since could fill the memtable.
+   */
+  private void beforeWrite(long bytes) {
+    if (!compactionsSuspended) {
+      return;
+    }
+    synchronized (this) {
+      suspendedBytes += bytes;
+      if (suspendedBytes >= profile.getWriteBufferSize() / 4) {
+        logger.debug("Resume compaction of {} after {} bytes written", dataBaseName,
+            suspendedBytes);
+        resumeCompactions();
+      }
+    }
+  }
+
+  private int getLevelZeroFiles() {
+    String files = database.getProperty("leveldb.num-files-at-level0");
+    try {
+      return files == null ? 0 : Integer.parseInt(files.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  boolean isCompactionsSuspended() {
+    return compactionsSuspended;
+  }
+
+  @Override
+  public String getCompactionStats() {
+    resetDbLock.readLock().lock();
+    try {
+      return isAlive() ? database.getProperty("leveldb.stats") : "";
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
   @Override
   public void closeDB() {
     resetDbLock.writeLock().lock();
@@ -309,6 +605,8 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
       if (!isAlive()) {
         return;
       }
+      // a suspended background thread would never let the database close
+      resumeCompactions();
       database.close();
       alive = false;
     } catch (IOException e) {
@@ -320,7 +618,86 @@ public class LevelDbDataSourceImpl implements DbSourceInter<byte[]>,
 
   @Override
   public org.tron.core.db.common.iterator.DBIterator iterator() {
-    return new StoreIterator(database.iterator());
+    return metrics.scan(new StoreIterator(database.iterator()));
+  }
+
+  @Override
+  public org.tron.core.db.common.iterator.DBIterator iterator(ScanOptions options) {
+    return metrics.scan(new StoreRangeIterator(database.iterator(), options));
+  }
+
+  @Override
+  public SnapshotSource getSnapshot() {
+    resetDbLock.readLock().lock();
+    try {
+      return new LevelDbSnapshot();
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Snapshot of the database instance open when it was taken, a reset opens a new instance and
+   * leaves it empty.
+   */
+  private class LevelDbSnapshot extends SnapshotSource {
+
+    private final DB db = database;
+    private volatile Snapshot snapshot = database.getSnapshot();
+
+    LevelDbSnapshot() {
+      super(dataBaseName);
+    }
+
+    private ReadOptions readOptions() {
+      return new ReadOptions().snapshot(snapshot);
+    }
+
+    @Override
+    public boolean isAlive() {
+      return snapshot != null && alive && db == database;
+    }
+
+    @Override
+    public byte[] getData(byte[] key) {
+      resetDbLock.readLock().lock();
+      try {
+        return isAlive() ? db.get(key, readOptions()) : null;
+      } catch (DBException e) {
+        logger.debug(e.getMessage(), e);
+      } finally {
+        resetDbLock.readLock().unlock();
+      }
+      return null;
+    }
+
+    @Override
+    public org.tron.core.db.common.iterator.DBIterator iterator(ScanOptions options) {
+      resetDbLock.readLock().lock();
+      try {
+        return isAlive() ? new StoreRangeIterator(db.iterator(readOptions()), options)
+            : emptyIterator();
+      } finally {
+        resetDbLock.readLock().unlock();
+      }
+    }
+
+    @Override
+    protected void release() {
+      resetDbLock.readLock().lock();
+      try {
+        synchronized (this) {
+          if (isAlive()) {
+            snapshot.close();
+          }
+          snapshot = null;
+        }
+      } catch (IOException e) {
+        logger.debug(e.getMessage(), e);
+      } finally {
+        resetDbLock.readLock().unlock();
+      }
+    }
   }
 
   public Stream<Entry<byte[], byte[]>> stream() {
@@ -0,0 +1,523 @@
+package org.tron.common.storage.rocksdb;
+
+import com.codahale.metrics.Timer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.CompressionType;
+import org.rocksdb.Options;
+import org.rocksdb.RateLimiter;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.Snapshot;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.common.storage.ScanOptions;
+import org.tron.common.storage.SnapshotSource;
+import org.tron.common.storage.StoreMetrics;
+import org.tron.common.storage.StoreMetrics.Operation;
+import org.tron.common.utils.FileUtil;
+import org.tron.core.config.args.Args;
+import org.tron.core.config.args.DbProfile;
+import org.tron.core.db.common.iterator.RockStoreIterator;
+import org.tron.core.db.common.iterator.RockStoreRangeIterator;
+
+/**
+ * RocksDB backed database. Like the LevelDB one every database is its own instance in its own
+ * directory and uses only the default column family, so both engines share the same layout.
+ */
+@Slf4j
+@NoArgsConstructor
+public class RocksDbDataSourceImpl implements DbSourceInter<byte[]> {
+
+  static {
+    RocksDB.loadLibrary();
+  }
+
+  String dataBaseName;
+  RocksDB database;
+  boolean alive;
+  private static final long UNLIMITED_RATE = 1L << 40;
+
+  private String parentName;
+  private DbProfile profile;
+  private Options dbOptions;
+  private ReadOptions readOptions;
+  private WriteOptions writeOptions;
+  private WriteOptions syncWriteOptions;
+  private RateLimiter rateLimiter;
+  private BloomFilter bloomFilter;
+  private StoreMetrics metrics;
+  private ReadWriteLock resetDbLock = new ReentrantReadWriteLock();
+
+  /**
+   * constructor.
+   */
+  public RocksDbDataSourceImpl(String parentName, String name) {
+    this(parentName + Args.getInstance().getStorage().getDirectory(), name,
+        Args.getInstance().getStorage().getProfile(name));
+  }
+
+  /**
+   * Open a database directly under parentName with the given profile.
+   */
+  public RocksDbDataSourceImpl(String parentName, String name, DbProfile profile) {
+    this.parentName = parentName;
+    this.dataBaseName = name;
+    this.profile = profile;
+  }
+
+  @Override
+  public void initDB() {
+    resetDbLock.writeLock().lock();
+    try {
+      logger.debug("~> RocksDbDataSourceImpl.initDB(): " + dataBaseName);
+
+      if (isAlive()) {
+        return;
+      }
+
+      if (dataBaseName == null) {
+        throw new NullPointerException("no name set to the dbStore");
+      }
+
+      metrics = new StoreMetrics(dataBaseName);
+      try {
+        openDatabase();
+        alive = true;
+      } catch (IOException | RocksDBException e) {
+        throw new RuntimeException("Can't initialize database", e);
+      }
+    } finally {
+      resetDbLock.writeLock().unlock();
+    }
+  }
+
+  private void openDatabase() throws IOException, RocksDBException {
+    final Path dbPath = getDbPath();
+    if (!Files.isSymbolicLink(dbPath.getParent())) {
+      Files.createDirectories(dbPath.getParent());
+    }
+    if (profile == null) {
+      profile = Args.getInstance().getStorage().getProfile(dataBaseName);
+    }
+    logger.info("Open database {} with {}", dataBaseName, profile);
+
+    dbOptions = createDbOptions();
+    readOptions = new ReadOptions().setVerifyChecksums(profile.isVerifyChecksums());
+    writeOptions = new WriteOptions();
+    syncWriteOptions = new WriteOptions().setSync(true);
+    database = RocksDB.open(dbOptions, dbPath.toString());
+  }
+
+  /**
+   * Build the options from the storage profile of this database. Unlike leveldbjni, RocksDB
+   * supports a bloom filter per table and a rate limit on background flush and compaction IO. The
+   * limiter always exists, an unlimited database gets a rate it never reaches, so compactions can
+   * be throttled later. The filter and the limiter are native objects closed with the database,
+   * the table config is plain Java and its table factory belongs to the options.
+   */
+  private Options createDbOptions() {
+    BlockBasedTableConfig tableConfig = new BlockBasedTableConfig();
+    tableConfig.setBlockCacheSize(profile.getCacheSize());
+    tableConfig.setBlockSize(profile.getBlockSize());
+    if (profile.getBloomFilterBits() > 0) {
+      bloomFilter = new BloomFilter(profile.getBloomFilterBits(), false);
+      tableConfig.setFilter(bloomFilter);
+    }
+
+    Options options = new Options();
+    options.setCreateIfMissing(true);
+    options.setCompressionType(profile.isCompression() ? CompressionType.SNAPPY_COMPRESSION
+        : CompressionType.NO_COMPRESSION);
+    options.setWriteBufferSize(profile.getWriteBufferSize());
+    options.setMaxOpenFiles(profile.getMaxOpenFiles());
+    options.setParanoidChecks(true);
+    options.setTableFormatConfig(tableConfig);
+    rateLimiter = new RateLimiter(getCompactionRate());
+    options.setRateLimiter(rateLimiter);
+    return options;
+  }
+
+  private long getCompactionRate() {
+    return profile.getCompactionRateLimit() > 0 ? profile.getCompactionRateLimit()
+        : UNLIMITED_RATE;
+  }
+
+  private Path getDbPath() {
+    return Paths.get(parentName, dataBaseName);
+  }
+
+  private WriteOptions toWriteOptions(org.iq80.leveldb.WriteOptions options) {
+    return options != null && options.sync() ? syncWriteOptions : writeOptions;
+  }
+
+  /**
+   * reset database.
+   */
+  @Override
+  public void resetDb() {
+    closeDB();
+    FileUtil.recursiveDelete(getDbPath().toString());
+    initDB();
+  }
+
+  @Override
+  public boolean isAlive() {
+    return alive;
+  }
+
+  @Override
+  public String getDBName() {
+    return dataBaseName;
+  }
+
+  @Override
+  public void setDBName(String name) {
+    this.dataBaseName = name;
+  }
+
+  @Override
+  public byte[] getData(byte[] key) {
+    resetDbLock.readLock().lock();
+    try (Timer.Context ignored = metrics.time(Operation.GET)) {
+      byte[] value = database.get(readOptions, key);
+      metrics.read(value);
+      return value;
+    } catch (RocksDBException e) {
+      logger.debug(e.getMessage(), e);
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+    return null;
+  }
+
+  /**
+   * Read many keys with one native call, absent keys are left out of the result. The result is
+   * keyed by the very arrays passed in.
+   */
+  public Map<byte[], byte[]> multiGet(List<byte[]> keys) {
+    resetDbLock.readLock().lock();
+    try (Timer.Context ignored = metrics.time(Operation.MULTI_GET)) {
+      Map<byte[], byte[]> values = database.multiGet(readOptions, keys);
+      values.values().forEach(metrics::read);
+      return values;
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<byte[]> getAll(Collection<byte[]> keys) {
+    List<byte[]> list = new ArrayList<>(keys);
+    Map<byte[], byte[]> values = multiGet(list);
+    return list.stream().map(values::get).collect(Collectors.toList());
+  }
+
+  @Override
+  public void putData(byte[] key, byte[] value) {
+    putData(key, value, null);
+  }
+
+  @Override
+  public void putData(byte[] key, byte[] value, org.iq80.leveldb.WriteOptions options) {
+    resetDbLock.readLock().lock();
+    try (Timer.Context ignored = metrics.time(Operation.PUT)) {
+      database.put(toWriteOptions(options), key, value);
+      metrics.written(key, value);
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void deleteData(byte[] key) {
+    deleteData(key, null);
+  }
+
+  @Override
+  public void deleteData(byte[] key, org.iq80.leveldb.WriteOptions options) {
+    resetDbLock.readLock().lock();
+    try (Timer.Context ignored = metrics.time(Operation.DELETE)) {
+      database.delete(toWriteOptions(options), key);
+      metrics.written(key, null);
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Set<byte[]> allKeys() {
+    resetDbLock.readLock().lock();
+    try (RocksIterator iterator = database.newIterator(readOptions);
+        Timer.Context ignored = metrics.time(Operation.ITERATE)) {
+      Set<byte[]> result = DbSourceInter.newKeySet();
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        byte[] key = iterator.key();
+        metrics.scanned(key.length);
+        result.add(key);
+      }
+      return result;
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Set<byte[]> allValues() {
+    resetDbLock.readLock().lock();
+    try (RocksIterator iterator = database.newIterator(readOptions);
+        Timer.Context ignored = metrics.time(Operation.ITERATE)) {
+      Set<byte[]> result = new HashSet<>();
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        byte[] value = iterator.value();
+        metrics.scanned(value.length);
+        result.add(value);
+      }
+      return result;
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public long getTotal() throws RuntimeException {
+    resetDbLock.readLock().lock();
+    try (RocksIterator iterator = database.newIterator(readOptions);
+        Timer.Context ignored = metrics.time(Operation.ITERATE)) {
+      long total = 0;
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        total++;
+      }
+      return total;
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  private void updateByBatchInner(Map<byte[], byte[]> rows, WriteOptions options)
+      throws RocksDBException {
+    try (WriteBatch batch = new WriteBatch()) {
+      for (Entry<byte[], byte[]> entry : rows.entrySet()) {
+        if (entry.getValue() == null) {
+          batch.remove(entry.getKey());
+        } else {
+          batch.put(entry.getKey(), entry.getValue());
+        }
+      }
+      database.write(options, batch);
+    }
+  }
+
+  @Override
+  public void updateByBatch(Map<byte[], byte[]> rows) {
+    updateByBatch(rows, null);
+  }
+
+  @Override
+  public void updateByBatch(Map<byte[], byte[]> rows, org.iq80.leveldb.WriteOptions options) {
+    resetDbLock.readLock().lock();
+    try (Timer.Context ignored = metrics.time(Operation.BATCH)) {
+      updateByBatchInner(rows, toWriteOptions(options));
+      metrics.written(rows);
+    } catch (Exception e) {
+      try {
+        updateByBatchInner(rows, toWriteOptions(options));
+      } catch (Exception e1) {
+        throw new RuntimeException(e);
+      }
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean flush() {
+    return false;
+  }
+
+  @Override
+  public void compactRange(byte[] from, byte[] to) {
+    resetDbLock.readLock().lock();
+    try {
+      if (!isAlive()) {
+        return;
+      }
+      // the native side takes no open upper bound, compacting everything is a superset
+      if (to == null) {
+        database.compactRange();
+      } else {
+        database.compactRange(from == null ? new byte[0] : from, to);
+      }
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Lower the rate limit of flush and compaction IO, which keeps the writes going unlike pausing
+   * the background work.
+   */
+  @Override
+  public void throttleCompactions(boolean throttled, long throttledRate) {
+    resetDbLock.readLock().lock();
+    try {
+      if (isAlive()) {
+        rateLimiter.setBytesPerSecond(throttled ? Math.min(throttledRate, getCompactionRate())
+            : getCompactionRate());
+      }
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public String getCompactionStats() {
+    resetDbLock.readLock().lock();
+    try {
+      return isAlive() ? database.getProperty("rocksdb.stats") : "";
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void closeDB() {
+    resetDbLock.writeLock().lock();
+    try {
+      if (!isAlive()) {
+        return;
+      }
+      database.close();
+      readOptions.close();
+      writeOptions.close();
+      syncWriteOptions.close();
+      dbOptions.close();
+      rateLimiter.close();
+      if (bloomFilter != null) {
+        bloomFilter.close();
+        bloomFilter = null;
+      }
+      alive = false;
+    } finally {
+      resetDbLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public org.tron.core.db.common.iterator.DBIterator iterator() {
+    return metrics.scan(new RockStoreIterator(database.newIterator(readOptions)));
+  }
+
+  @Override
+  public org.tron.core.db.common.iterator.DBIterator iterator(ScanOptions options) {
+    return metrics.scan(new RockStoreRangeIterator(database.newIterator(readOptions), options));
+  }
+
+  @Override
+  public SnapshotSource getSnapshot() {
+    resetDbLock.readLock().lock();
+    try {
+      return new RocksDbSnapshot();
+    } finally {
+      resetDbLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Snapshot of the database instance open when it was taken, a reset opens a new instance and
+   * leaves it empty.
+   */
+  private class RocksDbSnapshot extends SnapshotSource {
+
+    private final RocksDB db = database;
+    private final Snapshot snapshot = database.getSnapshot();
+    private final ReadOptions snapshotOptions = new ReadOptions().setSnapshot(snapshot);
+    private volatile boolean released = false;
+
+    RocksDbSnapshot() {
+      super(dataBaseName);
+    }
+
+    @Override
+    public boolean isAlive() {
+      return !released && alive && db == database;
+    }
+
+    @Override
+    public byte[] getData(byte[] key) {
+      resetDbLock.readLock().lock();
+      try {
+        return isAlive() ? db.get(snapshotOptions, key) : null;
+      } catch (RocksDBException e) {
+        logger.debug(e.getMessage(), e);
+      } finally {
+        resetDbLock.readLock().unlock();
+      }
+      return null;
+    }
+
+    @Override
+    public org.tron.core.db.common.iterator.DBIterator iterator(ScanOptions options) {
+      resetDbLock.readLock().lock();
+      try {
+        return isAlive() ? new RockStoreRangeIterator(db.newIterator(snapshotOptions), options)
+            : emptyIterator();
+      } finally {
+        resetDbLock.readLock().unlock();
+      }
+    }
+
+    @Override
+    protected void release() {
+      resetDbLock.readLock().lock();
+      try {
+        synchronized (this) {
+          if (isAlive()) {
+            db.releaseSnapshot(snapshot);
+          }
+          if (!released) {
+            released = true;
+            snapshotOptions.close();
+          }
+        }
+      } finally {
+        resetDbLock.readLock().unlock();
+      }
+    }
+  }
+
+  public Stream<Entry<byte[], byte[]>> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+}
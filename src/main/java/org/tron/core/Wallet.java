@@ -18,20 +18,37 @@
 
 package org.tron.core;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.google.common.base.Strings;
 import com.google.protobuf.ByteString;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.tron.api.GrpcAPI.AccountList;
 import org.tron.api.GrpcAPI.AssetIssueList;
+import org.tron.api.GrpcAPI.CheckpointInfo;
+import org.tron.api.GrpcAPI.CompactRequest;
+import org.tron.api.GrpcAPI.Metric;
+import org.tron.api.GrpcAPI.MetricList;
 import org.tron.api.GrpcAPI.NumberMessage;
 import org.tron.api.GrpcAPI.NumberMessage.Builder;
+import org.tron.api.GrpcAPI.StateSnapshotInfo;
+import org.tron.api.GrpcAPI.StoreStats;
+import org.tron.api.GrpcAPI.StoreStatsList;
+import org.tron.api.GrpcAPI.TransactionList;
 import org.tron.api.GrpcAPI.WitnessList;
 import org.tron.common.crypto.ECKey;
 import org.tron.common.crypto.Hash;
 import org.tron.common.overlay.message.Message;
+import org.tron.common.storage.StoreMetrics;
 import org.tron.common.utils.Base58;
 import org.tron.common.utils.ByteArray;
 import org.tron.common.utils.Utils;
@@ -39,8 +56,15 @@ import org.tron.core.capsule.AccountCapsule;
 import org.tron.core.capsule.AssetIssueCapsule;
 import org.tron.core.capsule.TransactionCapsule;
 import org.tron.core.capsule.WitnessCapsule;
+import org.tron.core.config.args.Args;
 import org.tron.core.db.AccountStore;
+import org.tron.core.db.Checkpoint;
+import org.tron.core.db.CompactionManager;
 import org.tron.core.db.Manager;
+import org.tron.core.db.StateSnapshot;
+import org.tron.core.db.StatsSource;
+import org.tron.core.db.TransactionHistoryStore;
+import org.tron.core.db.TronStoreWithRevoking;
 import org.tron.core.exception.ContractExeException;
 import org.tron.core.exception.ContractValidateException;
 import org.tron.core.exception.DupTransactionException;
@@ -72,6 +96,7 @@ public class Wallet {
   private NodeImpl p2pNode;
   @Autowired
   private Manager dbManager;
+  private final AtomicBoolean checkpointing = new AtomicBoolean();
   private static String addressPreFixString = Constant.ADD_PRE_FIX_STRING_TESTNET;  //default testnet
   private static byte addressPreFixByte = Constant.ADD_PRE_FIX_BYTE_TESTNET;
 
@@ -334,4 +359,137 @@ public class Wallet {
         .setNum(dbManager.getTransactionStore().getTotalTransactions());
     return builder.build();
   }
+
+  /**
+   * Entry count, size, last modified block and compactions of every store.
+   */
+  public StoreStatsList getStoreStats() {
+    StoreStatsList.Builder builder = StoreStatsList.newBuilder();
+    dbManager.getStores().forEach(store -> builder.addStats(getStoreStats(store)));
+    return builder.build();
+  }
+
+  private StoreStats getStoreStats(TronStoreWithRevoking<?> store) {
+    StatsSource stats = store.getStatsSource();
+    CompactionManager.Stats compactions = dbManager.getCompactionManager()
+        .getStats(store.getName());
+    return StoreStats.newBuilder()
+        .setName(stats.getDBName())
+        .setCount(stats.getCount())
+        .setBytes(stats.getBytes())
+        .setLastModifiedBlock(stats.getLastModifiedBlock())
+        .setCompactions(compactions.getCompactions())
+        .setCompactionMillis(compactions.getMillis())
+        .setLastCompactionTime(compactions.getLastCompactionTime())
+        .setEngineStats(Strings.nullToEmpty(stats.getCompactionStats()))
+        .build();
+  }
+
+  /**
+   * Transactions of an address in any of roles, newest first, skipping the first offset of them
+   * and stopping after limit, 0 for the largest page. They are read through the history index.
+   */
+  public TransactionList getTransactionHistory(ByteString address, int roles, long offset,
+      long limit) {
+    TransactionList.Builder builder = TransactionList.newBuilder();
+    dbManager.getTransactionHistory(address.toByteArray(), roles, offset,
+        limit == 0 ? TransactionHistoryStore.MAX_PAGE_SIZE : limit)
+        .forEach(trx -> builder.addTransaction(trx.getInstance()));
+    return builder.build();
+  }
+
+  /**
+   * Store and revoking metrics, durations in milliseconds.
+   */
+  public MetricList getMetrics() {
+    MetricList.Builder builder = MetricList.newBuilder();
+    MetricRegistry registry = StoreMetrics.getRegistry();
+    registry.getGauges().forEach((name, gauge) -> builder.addMetrics(Metric.newBuilder()
+        .setName(name).setType("gauge").setValue(String.valueOf(gauge.getValue()))));
+    registry.getCounters().forEach((name, counter) -> builder.addMetrics(Metric.newBuilder()
+        .setName(name).setType("counter").setCount(counter.getCount())));
+    registry.getMeters().forEach((name, meter) -> builder.addMetrics(Metric.newBuilder()
+        .setName(name).setType("meter").setCount(meter.getCount())
+        .setMeanRate(meter.getMeanRate()).setOneMinuteRate(meter.getOneMinuteRate())));
+    registry.getHistograms().forEach((name, histogram) -> builder.addMetrics(
+        setSnapshot(Metric.newBuilder(), histogram.getSnapshot(), 1)
+            .setName(name).setType("histogram").setCount(histogram.getCount())));
+    double nanosPerMilli = TimeUnit.MILLISECONDS.toNanos(1);
+    registry.getTimers().forEach((name, timer) -> builder.addMetrics(
+        setSnapshot(Metric.newBuilder(), timer.getSnapshot(), nanosPerMilli)
+            .setName(name).setType("timer").setCount(timer.getCount())
+            .setMeanRate(timer.getMeanRate()).setOneMinuteRate(timer.getOneMinuteRate())));
+    return builder.build();
+  }
+
+  private static Metric.Builder setSnapshot(Metric.Builder builder, Snapshot snapshot,
+      double unit) {
+    return builder
+        .setMean(snapshot.getMean() / unit)
+        .setMedian(snapshot.getMedian() / unit)
+        .setP99(snapshot.get99thPercentile() / unit)
+        .setMax(snapshot.getMax() / unit);
+  }
+
+  /**
+   * Queue a compaction of a key range of a store, empty bounds are open. The future completes
+   * with the stats of the store after it.
+   *
+   * @throws IllegalStateException when a requested compaction is queued already
+   */
+  public CompletableFuture<StoreStats> compactStore(CompactRequest request) {
+    TronStoreWithRevoking<?> store = dbManager.getStores().stream()
+        .filter(s -> s.getName().equals(request.getName()))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException(
+            "store(" + request.getName() + ") does not exist"));
+    byte[] from = request.getFrom().isEmpty() ? null : request.getFrom().toByteArray();
+    byte[] to = request.getTo().isEmpty() ? null : request.getTo().toByteArray();
+    return dbManager.getCompactionManager().compact(request.getName(), from, to)
+        .thenApply(stats -> getStoreStats(store));
+  }
+
+  /**
+   * Write a checkpoint of the solidified block under the output directory, named after the block
+   * number. One checkpoint is written at a time.
+   *
+   * @throws IllegalStateException when another one is being written
+   */
+  public CheckpointInfo createCheckpoint() throws IOException, StoreException {
+    if (!checkpointing.compareAndSet(false, true)) {
+      throw new IllegalStateException("a checkpoint is being written");
+    }
+    try {
+      File parent = new File(Args.getInstance().getOutputDirectory() + "checkpoint");
+      Checkpoint checkpoint = dbManager.createCheckpoint(parent);
+      return CheckpointInfo.newBuilder()
+          .setDirectory(new File(parent, Long.toString(checkpoint.getHeadBlockNum()))
+              .getAbsolutePath())
+          .setHeadBlockNum(checkpoint.getHeadBlockNum())
+          .setHeadBlockHash(checkpoint.getHeadBlockHash())
+          .setSolidifiedBlockNum(checkpoint.getSolidifiedBlockNum())
+          .build();
+    } finally {
+      checkpointing.set(false);
+    }
+  }
+
+  /**
+   * Write a state snapshot of the last committed block under the output directory, named after
+   * the block number.
+   *
+   * @throws java.nio.file.FileAlreadyExistsException when there is a snapshot of the block
+   */
+  public StateSnapshotInfo exportStateSnapshot() throws IOException, StoreException {
+    File parent = new File(Args.getInstance().getOutputDirectory() + "snapshot");
+    StateSnapshot snapshot = dbManager.exportStateSnapshot(parent);
+    return StateSnapshotInfo.newBuilder()
+        .setDirectory(new File(parent, Long.toString(snapshot.getHeadBlockNum()))
+            .getAbsolutePath())
+        .setHeadBlockNum(snapshot.getHeadBlockNum())
+        .setHeadBlockHash(snapshot.getHeadBlockHash())
+        .setSolidifiedBlockNum(snapshot.getSolidifiedBlockNum())
+        .setStateHash(snapshot.getStateHash())
+        .build();
+  }
 }
@@ -11,7 +11,8 @@ import org.tron.api.GrpcAPI.AssetIssueList;
 import org.tron.api.GrpcAPI.NumberMessage;
 import org.tron.api.GrpcAPI.TransactionList;
 import org.tron.api.GrpcAPI.WitnessList;
-import org.tron.common.utils.ByteArray;
+import org.tron.core.db.Manager;
+import org.tron.core.db.TransactionHistoryStore;
 import org.tron.core.db.api.StoreAPI;
 import org.tron.core.exception.NonUniqueObjectException;
 import org.tron.protos.Contract.AssetIssueContract;
@@ -26,6 +27,8 @@ public class WalletSolidity {
 
   @Autowired
   private StoreAPI storeAPI;
+  @Autowired
+  private Manager dbManager;
 
   public Account getAccount(ByteString addressBs) {
     Account accountByAddress = null;
@@ -122,18 +125,23 @@ public class WalletSolidity {
   }
 
   public TransactionList getTransactionsFromThis(ByteString thisAddress) {
-    List<Transaction> transactionsFromThis = storeAPI
-        .getTransactionsFromThis(ByteArray.toHexString(thisAddress.toByteArray()));
-    TransactionList transactionList = TransactionList.newBuilder()
-        .addAllTransaction(transactionsFromThis).build();
-    return transactionList;
+    return getTransactionHistory(thisAddress, TransactionHistoryStore.ROLE_OWNER, 0, 0);
   }
 
   public TransactionList getTransactionsToThis(ByteString toAddress) {
-    List<Transaction> transactionsToThis = storeAPI
-        .getTransactionsToThis(ByteArray.toHexString(toAddress.toByteArray()));
-    TransactionList transactionList = TransactionList.newBuilder()
-        .addAllTransaction(transactionsToThis).build();
-    return transactionList;
+    return getTransactionHistory(toAddress, TransactionHistoryStore.ROLE_TO, 0, 0);
+  }
+
+  /**
+   * Transactions of an address in any of roles, newest first, skipping the first offset of them
+   * and stopping after limit, 0 for the largest page. They are read through the history index.
+   */
+  public TransactionList getTransactionHistory(ByteString address, int roles, long offset,
+      long limit) {
+    TransactionList.Builder builder = TransactionList.newBuilder();
+    dbManager.getTransactionHistory(address.toByteArray(), roles, offset,
+        limit == 0 ? TransactionHistoryStore.MAX_PAGE_SIZE : limit)
+        .forEach(trx -> builder.addTransaction(trx.getInstance()));
+    return builder.build();
   }
 }
@@ -282,6 +282,32 @@ public class TransactionCapsule implements ProtoCapsule<Transaction> {
     }
   }
 
+  /**
+   * Name of the asset a contract transfers, null for other contracts.
+   */
+  public static byte[] getAssetName(Transaction.Contract contract) {
+    ByteString assetName;
+    try {
+      Any contractParameter = contract.getParameter();
+      switch (contract.getType()) {
+        case TransferAssetContract:
+          assetName = contractParameter.unpack(TransferAssetContract.class).getAssetName();
+          break;
+        case ParticipateAssetIssueContract:
+          assetName = contractParameter.unpack(ParticipateAssetIssueContract.class)
+              .getAssetName();
+          break;
+
+        default:
+          return null;
+      }
+      return assetName.toByteArray();
+    } catch (InvalidProtocolBufferException e) {
+      logger.debug(e.getMessage(), e);
+      return null;
+    }
+  }
+
   public static String getBase64FromByteString(ByteString sign) {
     byte[] r = sign.substring(0, 32).toByteArray();
     byte[] s = sign.substring(32, 64).toByteArray();
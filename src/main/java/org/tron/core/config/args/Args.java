@@ -69,6 +69,14 @@ public class Args {
   @Parameter(names = {"--storage-directory"}, description = "Storage directory")
   private String storageDirectory = "";
 
+  @Getter
+  @Parameter(names = {"--checkpoint"}, description = "Checkpoint directory to start from")
+  private String checkpoint = "";
+
+  @Getter
+  @Parameter(names = {"--snapshot"}, description = "State snapshot directory to start from")
+  private String snapshot = "";
+
   @Getter
   private Storage storage;
 
@@ -162,10 +170,25 @@ public class Args {
   @Setter
   private int rpcPort;
 
+  /**
+   * Whether the maintenance calls of the RPC service that write to the disk are served.
+   */
+  @Getter
+  @Setter
+  private boolean rpcAdminEnable;
+
   @Getter
   @Setter
   private long maintenanceTimeInterval; // (ms)
 
+  @Getter
+  @Setter
+  private boolean metricsJmxEnable;
+
+  @Getter
+  @Setter
+  private int metricsLogInterval; // (s), 0 for none
+
   @Getter
   @Setter
   @Parameter(names = {"--trust-node"}, description = "Trust node addr")
@@ -178,6 +201,8 @@ public class Args {
     INSTANCE.seedNodes = new ArrayList<>();
     INSTANCE.privateKey = "";
     INSTANCE.storageDirectory = "";
+    INSTANCE.checkpoint = "";
+    INSTANCE.snapshot = "";
     INSTANCE.storage = null;
     INSTANCE.overlay = null;
     INSTANCE.seedNode = null;
@@ -200,6 +225,7 @@ public class Args {
     INSTANCE.syncNodeCount = 0;
     INSTANCE.nodeP2pVersion = 0;
     INSTANCE.rpcPort = 0;
+    INSTANCE.rpcAdminEnable = false;
     INSTANCE.maintenanceTimeInterval = 0;
     INSTANCE.p2pNodeId = "";
     INSTANCE.solidityNode = false;
@@ -235,6 +261,13 @@ public class Args {
     INSTANCE.storage.setDirectory(Optional.ofNullable(INSTANCE.storageDirectory)
         .filter(StringUtils::isNotEmpty)
         .orElse(config.getString("storage.directory")));
+    INSTANCE.storage.setEngineFromConfig(config);
+    INSTANCE.storage.setProfilesFromConfig(config);
+    INSTANCE.storage.setDurabilityFromConfig(config);
+    INSTANCE.storage.setCompactionFromConfig(config);
+    INSTANCE.storage.setPruningFromConfig(config);
+    INSTANCE.storage.setOverlayFromConfig(config);
+    INSTANCE.storage.setRevokingMemoryFromConfig(config);
     INSTANCE.seedNode = new SeedNode();
     INSTANCE.seedNode.setIpList(Optional.ofNullable(INSTANCE.seedNodes)
         .filter(seedNode -> 0 != seedNode.size())
@@ -312,6 +345,15 @@ public class Args {
     INSTANCE.rpcPort =
         config.hasPath("node.rpc.port") ? config.getInt("node.rpc.port") : 50051;
 
+    INSTANCE.rpcAdminEnable =
+        config.hasPath("node.rpc.admin") && config.getBoolean("node.rpc.admin");
+
+    INSTANCE.metricsJmxEnable =
+        !config.hasPath("node.metrics.jmx") || config.getBoolean("node.metrics.jmx");
+
+    INSTANCE.metricsLogInterval =
+        config.hasPath("node.metrics.logInterval") ? config.getInt("node.metrics.logInterval") : 0;
+
     INSTANCE.maintenanceTimeInterval =
         config.hasPath("block.maintenanceTimeInterval") ? config
             .getInt("block.maintenanceTimeInterval") : 21600000L;
@@ -0,0 +1,134 @@
+package org.tron.core.config.args;
+
+import com.typesafe.config.Config;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * When the stores are compacted on purpose, and how hard background compaction is held back while
+ * this node produces a block.
+ */
+@ToString
+public class Compaction {
+
+  private static final String AFTER_MAINTENANCE_CONFIG_KEY = "afterMaintenance";
+  private static final String IDLE_WINDOWS_CONFIG_KEY = "idleWindows";
+  private static final String STORES_CONFIG_KEY = "stores";
+  private static final String THROTTLE_CONFIG_KEY = "throttle";
+  private static final String THROTTLE_RATE_CONFIG_KEY = "throttleRate";
+
+  /**
+   * Compact the stores right after a maintenance period was processed.
+   */
+  @Getter
+  private boolean afterMaintenance = true;
+
+  /**
+   * Daily local times at which the stores are compacted once.
+   */
+  @Getter
+  private List<Window> idleWindows = Collections.emptyList();
+
+  /**
+   * Stores compacted after maintenance and in idle windows, empty for all of them.
+   */
+  @Getter
+  private List<String> stores = Collections.emptyList();
+
+  /**
+   * Hold back background compaction while the next slot is one of this node's witnesses.
+   */
+  @Getter
+  private boolean throttle = true;
+
+  /**
+   * Bytes per second of compaction IO while held back, for engines with a rate limit.
+   */
+  @Getter
+  private long throttleRate = 4L * 1024 * 1024;
+
+  /**
+   * Read storage.compaction, fields that are not set keep their default.
+   */
+  public static Compaction fromConfig(Config config) {
+    Compaction compaction = new Compaction();
+    if (config.hasPath(AFTER_MAINTENANCE_CONFIG_KEY)) {
+      compaction.afterMaintenance = config.getBoolean(AFTER_MAINTENANCE_CONFIG_KEY);
+    }
+    if (config.hasPath(IDLE_WINDOWS_CONFIG_KEY)) {
+      List<Window> windows = new ArrayList<>();
+      config.getStringList(IDLE_WINDOWS_CONFIG_KEY).forEach(w -> windows.add(Window.parse(w)));
+      compaction.idleWindows = windows;
+    }
+    if (config.hasPath(STORES_CONFIG_KEY)) {
+      compaction.stores = config.getStringList(STORES_CONFIG_KEY);
+    }
+    if (config.hasPath(THROTTLE_CONFIG_KEY)) {
+      compaction.throttle = config.getBoolean(THROTTLE_CONFIG_KEY);
+    }
+    if (config.hasPath(THROTTLE_RATE_CONFIG_KEY)) {
+      compaction.setThrottleRate(config.getLong(THROTTLE_RATE_CONFIG_KEY));
+    }
+    return compaction;
+  }
+
+  public void setThrottleRate(long throttleRate) {
+    if (throttleRate <= 0) {
+      throw new IllegalArgumentException("throttleRate(" + throttleRate + ") must be > 0");
+    }
+    this.throttleRate = throttleRate;
+  }
+
+  /**
+   * Daily time range such as "02:00-04:30", it may wrap around midnight.
+   */
+  @Getter
+  @ToString
+  public static class Window {
+
+    private final LocalTime start;
+    private final LocalTime end;
+
+    public Window(LocalTime start, LocalTime end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    /**
+     * Parse "HH:mm-HH:mm".
+     */
+    public static Window parse(String window) {
+      String[] times = window.split("-");
+      try {
+        if (times.length == 2) {
+          return new Window(LocalTime.parse(times[0].trim()), LocalTime.parse(times[1].trim()));
+        }
+      } catch (DateTimeParseException e) {
+        // reported below
+      }
+      throw new IllegalArgumentException("idle window(" + window + ") must be HH:mm-HH:mm");
+    }
+
+    /**
+     * Day on which the occurrence of this window containing time started, null when time is
+     * outside of it.
+     */
+    public LocalDate occurrence(LocalDateTime time) {
+      LocalTime t = time.toLocalTime();
+      if (!start.isAfter(end)) {
+        return !t.isBefore(start) && t.isBefore(end) ? time.toLocalDate() : null;
+      }
+      if (!t.isBefore(start)) {
+        return time.toLocalDate();
+      }
+      return t.isBefore(end) ? time.toLocalDate().minusDays(1) : null;
+    }
+  }
+}
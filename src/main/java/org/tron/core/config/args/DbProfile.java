@@ -0,0 +1,221 @@
+package org.tron.core.config.args;
+
+import com.typesafe.config.Config;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Tuning options for one database under the storage directory.
+ */
+@ToString
+public class DbProfile {
+
+  private static final String NAME_CONFIG_KEY = "name";
+  private static final String CACHE_SIZE_CONFIG_KEY = "cacheSize";
+  private static final String BLOCK_SIZE_CONFIG_KEY = "blockSize";
+  private static final String WRITE_BUFFER_SIZE_CONFIG_KEY = "writeBufferSize";
+  private static final String BLOOM_FILTER_BITS_CONFIG_KEY = "bloomFilterBits";
+  private static final String COMPRESSION_CONFIG_KEY = "compression";
+  private static final String MAX_OPEN_FILES_CONFIG_KEY = "maxOpenFiles";
+  private static final String VERIFY_CHECKSUMS_CONFIG_KEY = "verifyChecksums";
+  private static final String ENGINE_CONFIG_KEY = "engine";
+  private static final String COMPACTION_RATE_LIMIT_CONFIG_KEY = "compactionRateLimit";
+  private static final String OBJECT_CACHE_SIZE_CONFIG_KEY = "objectCacheSize";
+
+  private static final long MB = 1024L * 1024L;
+  private static final int KB = 1024;
+
+  @Getter
+  private String name;
+
+  @Getter
+  private long cacheSize = 8 * MB;
+
+  @Getter
+  private int blockSize = 4 * KB;
+
+  @Getter
+  private int writeBufferSize = (int) (16 * MB);
+
+  @Getter
+  private int bloomFilterBits = 10;
+
+  @Getter
+  private boolean compression = true;
+
+  @Getter
+  private int maxOpenFiles = 100;
+
+  @Getter
+  private boolean verifyChecksums = false;
+
+  /**
+   * Storage engine of this database, null to use storage.engine.
+   */
+  @Getter
+  private String engine;
+
+  /**
+   * Bytes per second the engine may spend on flush and compaction IO, 0 for unlimited.
+   */
+  @Getter
+  private long compactionRateLimit = 0;
+
+  /**
+   * Bytes of parsed objects the store keeps in memory, 0 disables the cache.
+   */
+  @Getter
+  private long objectCacheSize = 0;
+
+  public DbProfile(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Built-in profile for a database, chosen by its access pattern: point-read stores get a large
+   * block cache and small blocks, append-heavy stores get large write buffers and blocks.
+   */
+  public static DbProfile defaultProfile(String name) {
+    DbProfile profile = new DbProfile(name);
+    switch (name) {
+      case "account":
+        profile.setCacheSize(64 * MB);
+        profile.setObjectCacheSize(32 * MB);
+        break;
+      case "asset-issue":
+        profile.setCacheSize(4 * MB);
+        profile.setObjectCacheSize(4 * MB);
+        break;
+      case "properties":
+        profile.setCacheSize(4 * MB);
+        profile.setObjectCacheSize(MB);
+        break;
+      case "witness":
+      case "witness_schedule":
+        profile.setCacheSize(4 * MB);
+        break;
+      case "block":
+        profile.setCacheSize(16 * MB);
+        profile.setBlockSize(64 * KB);
+        profile.setWriteBufferSize((int) (64 * MB));
+        profile.setObjectCacheSize(32 * MB);
+        break;
+      case "trans":
+        profile.setCacheSize(16 * MB);
+        profile.setBlockSize(16 * KB);
+        profile.setWriteBufferSize((int) (64 * MB));
+        profile.setObjectCacheSize(16 * MB);
+        break;
+      case "block-index":
+        profile.setBlockSize(16 * KB);
+        profile.setBloomFilterBits(0);
+        break;
+      default:
+        break;
+    }
+    return profile;
+  }
+
+  /**
+   * Overlay the fields present in a storage.properties entry on the built-in profile.
+   */
+  public static DbProfile fromConfig(Config config) {
+    DbProfile profile = defaultProfile(config.getString(NAME_CONFIG_KEY));
+    if (config.hasPath(CACHE_SIZE_CONFIG_KEY)) {
+      profile.setCacheSize(config.getLong(CACHE_SIZE_CONFIG_KEY));
+    }
+    if (config.hasPath(BLOCK_SIZE_CONFIG_KEY)) {
+      profile.setBlockSize(config.getInt(BLOCK_SIZE_CONFIG_KEY));
+    }
+    if (config.hasPath(WRITE_BUFFER_SIZE_CONFIG_KEY)) {
+      profile.setWriteBufferSize(config.getInt(WRITE_BUFFER_SIZE_CONFIG_KEY));
+    }
+    if (config.hasPath(BLOOM_FILTER_BITS_CONFIG_KEY)) {
+      profile.setBloomFilterBits(config.getInt(BLOOM_FILTER_BITS_CONFIG_KEY));
+    }
+    if (config.hasPath(COMPRESSION_CONFIG_KEY)) {
+      profile.setCompression(config.getBoolean(COMPRESSION_CONFIG_KEY));
+    }
+    if (config.hasPath(MAX_OPEN_FILES_CONFIG_KEY)) {
+      profile.setMaxOpenFiles(config.getInt(MAX_OPEN_FILES_CONFIG_KEY));
+    }
+    if (config.hasPath(VERIFY_CHECKSUMS_CONFIG_KEY)) {
+      profile.setVerifyChecksums(config.getBoolean(VERIFY_CHECKSUMS_CONFIG_KEY));
+    }
+    if (config.hasPath(ENGINE_CONFIG_KEY)) {
+      profile.setEngine(config.getString(ENGINE_CONFIG_KEY));
+    }
+    if (config.hasPath(COMPACTION_RATE_LIMIT_CONFIG_KEY)) {
+      profile.setCompactionRateLimit(config.getLong(COMPACTION_RATE_LIMIT_CONFIG_KEY));
+    }
+    if (config.hasPath(OBJECT_CACHE_SIZE_CONFIG_KEY)) {
+      profile.setObjectCacheSize(config.getLong(OBJECT_CACHE_SIZE_CONFIG_KEY));
+    }
+    return profile;
+  }
+
+  public void setCacheSize(long cacheSize) {
+    if (cacheSize < 0) {
+      throw new IllegalArgumentException("cacheSize(" + cacheSize + ") must be >= 0");
+    }
+    this.cacheSize = cacheSize;
+  }
+
+  public void setBlockSize(int blockSize) {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("blockSize(" + blockSize + ") must be > 0");
+    }
+    this.blockSize = blockSize;
+  }
+
+  public void setWriteBufferSize(int writeBufferSize) {
+    if (writeBufferSize <= 0) {
+      throw new IllegalArgumentException(
+          "writeBufferSize(" + writeBufferSize + ") must be > 0");
+    }
+    this.writeBufferSize = writeBufferSize;
+  }
+
+  public void setBloomFilterBits(int bloomFilterBits) {
+    if (bloomFilterBits < 0) {
+      throw new IllegalArgumentException(
+          "bloomFilterBits(" + bloomFilterBits + ") must be >= 0");
+    }
+    this.bloomFilterBits = bloomFilterBits;
+  }
+
+  public void setCompression(boolean compression) {
+    this.compression = compression;
+  }
+
+  public void setMaxOpenFiles(int maxOpenFiles) {
+    if (maxOpenFiles <= 0) {
+      throw new IllegalArgumentException("maxOpenFiles(" + maxOpenFiles + ") must be > 0");
+    }
+    this.maxOpenFiles = maxOpenFiles;
+  }
+
+  public void setVerifyChecksums(boolean verifyChecksums) {
+    this.verifyChecksums = verifyChecksums;
+  }
+
+  public void setEngine(String engine) {
+    this.engine = Storage.checkEngine(engine);
+  }
+
+  public void setCompactionRateLimit(long compactionRateLimit) {
+    if (compactionRateLimit < 0) {
+      throw new IllegalArgumentException(
+          "compactionRateLimit(" + compactionRateLimit + ") must be >= 0");
+    }
+    this.compactionRateLimit = compactionRateLimit;
+  }
+
+  public void setObjectCacheSize(long objectCacheSize) {
+    if (objectCacheSize < 0) {
+      throw new IllegalArgumentException(
+          "objectCacheSize(" + objectCacheSize + ") must be >= 0");
+    }
+    this.objectCacheSize = objectCacheSize;
+  }
+}
@@ -0,0 +1,99 @@
+package org.tron.core.config.args;
+
+import com.typesafe.config.Config;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * When the writes of a commit, i.e. of a block or a popped block, reach the disk.
+ */
+@ToString
+public class Durability {
+
+  private static final String MODE_CONFIG_KEY = "mode";
+  private static final String GROUP_BLOCKS_CONFIG_KEY = "groupBlocks";
+  private static final String GROUP_MILLIS_CONFIG_KEY = "groupMillis";
+
+  public enum Mode {
+    /**
+     * Every commit waits for the disk.
+     */
+    SYNC,
+    /**
+     * Every groupBlocks-th commit, or the first one groupMillis after the last synced one, waits
+     * for the disk together with the commits before it.
+     */
+    GROUP,
+    /**
+     * Commits never wait, a background thread writes them out every groupMillis.
+     */
+    ASYNC
+  }
+
+  @Getter
+  private Mode mode = Mode.SYNC;
+
+  @Getter
+  private int groupBlocks = 16;
+
+  @Getter
+  private long groupMillis = 1000;
+
+  public static Durability sync() {
+    return new Durability();
+  }
+
+  /**
+   * Read storage.durability, fields that are not set keep their default.
+   */
+  public static Durability fromConfig(Config config) {
+    Durability durability = new Durability();
+    if (config.hasPath(MODE_CONFIG_KEY)) {
+      durability.setMode(config.getString(MODE_CONFIG_KEY));
+    }
+    if (config.hasPath(GROUP_BLOCKS_CONFIG_KEY)) {
+      durability.setGroupBlocks(config.getInt(GROUP_BLOCKS_CONFIG_KEY));
+    }
+    if (config.hasPath(GROUP_MILLIS_CONFIG_KEY)) {
+      durability.setGroupMillis(config.getLong(GROUP_MILLIS_CONFIG_KEY));
+    }
+    return durability;
+  }
+
+  public void setMode(String mode) {
+    try {
+      this.mode = Mode.valueOf(mode.toUpperCase());
+    } catch (IllegalArgumentException | NullPointerException e) {
+      throw new IllegalArgumentException("mode(" + mode + ") must be SYNC, GROUP or ASYNC");
+    }
+  }
+
+  public void setGroupBlocks(int groupBlocks) {
+    if (groupBlocks <= 0) {
+      throw new IllegalArgumentException("groupBlocks(" + groupBlocks + ") must be > 0");
+    }
+    this.groupBlocks = groupBlocks;
+  }
+
+  public void setGroupMillis(long groupMillis) {
+    if (groupMillis <= 0) {
+      throw new IllegalArgumentException("groupMillis(" + groupMillis + ") must be > 0");
+    }
+    this.groupMillis = groupMillis;
+  }
+
+  /**
+   * Whether a commit has to wait for the disk, given the commits and the time since the last one
+   * that did, this one included.
+   */
+  public boolean isDue(int unsyncedCommits, long unsyncedMillis) {
+    switch (mode) {
+      case SYNC:
+        return true;
+      case GROUP:
+        return unsyncedCommits >= groupBlocks || unsyncedMillis >= groupMillis;
+      default:
+        return false;
+    }
+  }
+}
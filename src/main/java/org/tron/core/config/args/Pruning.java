@@ -0,0 +1,111 @@
+package org.tron.core.config.args;
+
+import com.typesafe.config.Config;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Which solidified blocks keep their transactions. Older blocks are cut down to their headers and
+ * their transactions are deleted, a pruned node syncs and serves only the blocks it kept.
+ */
+@ToString
+public class Pruning {
+
+  private static final String ENABLE_CONFIG_KEY = "enable";
+  private static final String RETAIN_BLOCKS_CONFIG_KEY = "retainBlocks";
+  private static final String RETAIN_TIME_CONFIG_KEY = "retainTime";
+  private static final String BATCH_BLOCKS_CONFIG_KEY = "batchBlocks";
+  private static final String BATCH_INTERVAL_CONFIG_KEY = "batchInterval";
+
+  @Getter
+  @Setter
+  private boolean enable = false;
+
+  /**
+   * Solidified blocks below the latest one that are kept whole.
+   */
+  @Getter
+  private long retainBlocks = 864000;
+
+  /**
+   * Blocks produced within this many milliseconds are kept whole, 0 for no time limit.
+   */
+  @Getter
+  private long retainMillis = 0;
+
+  /**
+   * Blocks whose transactions are deleted in one batch.
+   */
+  @Getter
+  private int batchBlocks = 1000;
+
+  /**
+   * Pause between two batches, milliseconds.
+   */
+  @Getter
+  private long batchIntervalMillis = 100;
+
+  /**
+   * Read storage.pruning, fields that are not set keep their default. Times are durations such as
+   * "30d" or milliseconds.
+   */
+  public static Pruning fromConfig(Config config) {
+    Pruning pruning = new Pruning();
+    if (config.hasPath(ENABLE_CONFIG_KEY)) {
+      pruning.enable = config.getBoolean(ENABLE_CONFIG_KEY);
+    }
+    if (config.hasPath(RETAIN_BLOCKS_CONFIG_KEY)) {
+      pruning.setRetainBlocks(config.getLong(RETAIN_BLOCKS_CONFIG_KEY));
+    }
+    if (config.hasPath(RETAIN_TIME_CONFIG_KEY)) {
+      pruning.setRetainMillis(config.getDuration(RETAIN_TIME_CONFIG_KEY, TimeUnit.MILLISECONDS));
+    }
+    if (config.hasPath(BATCH_BLOCKS_CONFIG_KEY)) {
+      pruning.setBatchBlocks(config.getInt(BATCH_BLOCKS_CONFIG_KEY));
+    }
+    if (config.hasPath(BATCH_INTERVAL_CONFIG_KEY)) {
+      pruning.setBatchIntervalMillis(
+          config.getDuration(BATCH_INTERVAL_CONFIG_KEY, TimeUnit.MILLISECONDS));
+    }
+    return pruning;
+  }
+
+  public void setRetainBlocks(long retainBlocks) {
+    if (retainBlocks < 0) {
+      throw new IllegalArgumentException("retainBlocks(" + retainBlocks + ") must be >= 0");
+    }
+    this.retainBlocks = retainBlocks;
+  }
+
+  public void setRetainMillis(long retainMillis) {
+    if (retainMillis < 0) {
+      throw new IllegalArgumentException("retainTime(" + retainMillis + " ms) must be >= 0");
+    }
+    this.retainMillis = retainMillis;
+  }
+
+  public void setBatchBlocks(int batchBlocks) {
+    if (batchBlocks <= 0) {
+      throw new IllegalArgumentException("batchBlocks(" + batchBlocks + ") must be > 0");
+    }
+    this.batchBlocks = batchBlocks;
+  }
+
+  public void setBatchIntervalMillis(long batchIntervalMillis) {
+    if (batchIntervalMillis < 0) {
+      throw new IllegalArgumentException(
+          "batchInterval(" + batchIntervalMillis + " ms) must be >= 0");
+    }
+    this.batchIntervalMillis = batchIntervalMillis;
+  }
+
+  /**
+   * Whether a block, which is solidified, may lose its transactions.
+   */
+  public boolean canPrune(long num, long timestamp, long latestSolidifiedNum, long now) {
+    return num + retainBlocks <= latestSolidifiedNum
+        && (retainMillis == 0 || timestamp + retainMillis <= now);
+  }
+}
@@ -1,11 +1,145 @@
 package org.tron.core.config.args;
 
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigObject;
+import java.util.HashMap;
+import java.util.Map;
 import lombok.Getter;
 import lombok.Setter;
 
 public class Storage {
 
+  public static final String LEVELDB = "LEVELDB";
+  public static final String ROCKSDB = "ROCKSDB";
+
+  private static final String ENGINE_CONFIG_KEY = "storage.engine";
+  private static final String PROPERTIES_CONFIG_KEY = "storage.properties";
+  private static final String DURABILITY_CONFIG_KEY = "storage.durability";
+  private static final String COMPACTION_CONFIG_KEY = "storage.compaction";
+  private static final String PRUNING_CONFIG_KEY = "storage.pruning";
+  private static final String OVERLAY_CONFIG_KEY = "storage.overlay";
+  private static final String REVOKING_MEMORY_CONFIG_KEY = "storage.revokingMemory";
+
   @Getter
   @Setter
   private String directory;
+
+  @Getter
+  private String engine = LEVELDB;
+
+  private Map<String, DbProfile> profiles = new HashMap<>();
+
+  @Getter
+  private Durability durability = Durability.sync();
+
+  @Getter
+  private Compaction compaction = new Compaction();
+
+  @Getter
+  private Pruning pruning = new Pruning();
+
+  @Getter
+  @Setter
+  private boolean overlay = false;
+
+  @Getter
+  @Setter
+  private long revokingMemory = 0;
+
+  /**
+   * Normalize an engine name, rejecting the ones without an implementation.
+   */
+  public static String checkEngine(final String engine) {
+    String name = engine == null ? "" : engine.toUpperCase();
+    if (!LEVELDB.equals(name) && !ROCKSDB.equals(name)) {
+      throw new IllegalArgumentException("engine(" + engine + ") must be LEVELDB or ROCKSDB");
+    }
+    return name;
+  }
+
+  public void setEngine(final String engine) {
+    this.engine = checkEngine(engine);
+  }
+
+  /**
+   * Read the default engine of all databases, LEVELDB when it is not configured.
+   */
+  public void setEngineFromConfig(final Config config) {
+    setEngine(config.hasPath(ENGINE_CONFIG_KEY) ? config.getString(ENGINE_CONFIG_KEY) : LEVELDB);
+  }
+
+  /**
+   * Read the per-database entries of storage.properties, keyed by database name.
+   */
+  public void setProfilesFromConfig(final Config config) {
+    profiles = new HashMap<>();
+    if (!config.hasPath(PROPERTIES_CONFIG_KEY)) {
+      return;
+    }
+
+    for (ConfigObject object : config.getObjectList(PROPERTIES_CONFIG_KEY)) {
+      DbProfile profile = DbProfile.fromConfig(object.toConfig());
+      profiles.put(profile.getName(), profile);
+    }
+  }
+
+  /**
+   * Read storage.durability, every commit waits for the disk when it is not configured.
+   */
+  public void setDurabilityFromConfig(final Config config) {
+    durability = config.hasPath(DURABILITY_CONFIG_KEY)
+        ? Durability.fromConfig(config.getConfig(DURABILITY_CONFIG_KEY)) : Durability.sync();
+  }
+
+  /**
+   * Read storage.compaction, the defaults when it is not configured.
+   */
+  public void setCompactionFromConfig(final Config config) {
+    compaction = config.hasPath(COMPACTION_CONFIG_KEY)
+        ? Compaction.fromConfig(config.getConfig(COMPACTION_CONFIG_KEY)) : new Compaction();
+  }
+
+  /**
+   * Read storage.pruning, every block is kept when it is not configured.
+   */
+  public void setPruningFromConfig(final Config config) {
+    pruning = config.hasPath(PRUNING_CONFIG_KEY)
+        ? Pruning.fromConfig(config.getConfig(PRUNING_CONFIG_KEY)) : new Pruning();
+  }
+
+  /**
+   * Read storage.overlay, blocks are written to the stores as they are applied when it is not
+   * configured.
+   */
+  public void setOverlayFromConfig(final Config config) {
+    overlay = config.hasPath(OVERLAY_CONFIG_KEY) && config.getBoolean(OVERLAY_CONFIG_KEY);
+  }
+
+  /**
+   * Read storage.revokingMemory, every undo state is kept in memory when it is not configured.
+   */
+  public void setRevokingMemoryFromConfig(final Config config) {
+    revokingMemory = config.hasPath(REVOKING_MEMORY_CONFIG_KEY)
+        ? config.getLong(REVOKING_MEMORY_CONFIG_KEY) : 0;
+    if (revokingMemory < 0) {
+      throw new IllegalArgumentException(
+          REVOKING_MEMORY_CONFIG_KEY + " must not be negative: " + revokingMemory);
+    }
+  }
+
+  /**
+   * Get the effective profile of a database, the built-in one when it is not configured.
+   */
+  public DbProfile getProfile(String dbName) {
+    DbProfile profile = profiles.get(dbName);
+    return profile != null ? profile : DbProfile.defaultProfile(dbName);
+  }
+
+  /**
+   * Get the engine of a database, its own one when configured, otherwise storage.engine.
+   */
+  public String getEngine(String dbName) {
+    DbProfile profile = profiles.get(dbName);
+    return profile != null && profile.getEngine() != null ? profile.getEngine() : engine;
+  }
 }
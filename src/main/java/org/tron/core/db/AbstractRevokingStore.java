@@ -1,13 +1,26 @@
 package org.tron.core.db;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
@@ -15,8 +28,9 @@ import lombok.Getter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.iq80.leveldb.WriteOptions;
-import org.tron.common.storage.SourceInter;
-import org.tron.common.utils.Utils;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.core.config.args.Durability;
+import org.tron.core.config.args.Durability.Mode;
 import org.tron.core.exception.RevokingStoreIllegalStateException;
 
 @Slf4j
@@ -29,7 +43,30 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
   private boolean disabled = true;
   private int activeDialog = 0;
   private AtomicInteger maxSize = new AtomicInteger(DEFAULT_STACK_MAX_SIZE);
-  private WriteOptions writeOptions = new WriteOptions().sync(true);
+  private Set<WriteSession> sessions = new LinkedHashSet<>();
+  private boolean popping = false;
+  private boolean committing = false;
+  private Runnable commitListener;
+  private Durability durability = Durability.sync();
+  private Set<WriteSession> unsynced = new LinkedHashSet<>();
+  private int unsyncedCommits = 0;
+  private long lastSyncTime = System.currentTimeMillis();
+  private Runnable syncListener;
+  private ScheduledExecutorService syncTimer;
+  private RevokingJournal journal;
+  private int journalSize = 0;
+  private int journaled = 0;
+  private int journalTrimmed = 0;
+  private boolean overlay = false;
+  private Set<WriteSession> overlaid = new LinkedHashSet<>();
+  private List<RevokingState> flushable = new ArrayList<>();
+  private List<RevokingState> dropped = new ArrayList<>();
+  private List<Change> changes = new ArrayList<>();
+  private Map<RevokingTuple, Integer> lastChanges = new HashMap<>();
+  private int[] savepoints = new int[16];
+  private int savepointCount = 0;
+  private long memoryBudget = 0;
+  private RevokingSpill spill = new RevokingSpill();
 
   @Override
   public Dialog buildDialog() {
@@ -46,16 +83,138 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
     if (forceEnable) {
       disabled = false;
     }
+    if (savepointCount > 0) {
+      // a state above a savepoint could not be split from it, nest as a savepoint instead
+      openSavepoint();
+      return new Dialog(this, disableOnExit);
+    }
+    if (activeDialog == 0 && !sessions.isEmpty()) {
+      // writes held outside of a dialog belong to the state below this one
+      commitSession();
+    }
 
     while (stack.size() > maxSize.get()) {
-      stack.poll();
+      RevokingState trimmed = stack.poll();
+      if (trimmed.isSpilled()) {
+        spill.forget(trimmed);
+      }
+      if (trimmed.overlaid) {
+        flushable.add(trimmed);
+      }
+      if (journalSize > 0) {
+        journalSize--;
+        journaled = Math.max(journaled - 1, 0);
+        journalTrimmed++;
+      }
+    }
+    if (memoryBudget > 0) {
+      spillOver();
     }
 
-    stack.add(new RevokingState());
+    RevokingState state = new RevokingState();
+    state.overlaid = overlay;
+    stack.add(state);
     ++activeDialog;
     return new Dialog(this, disableOnExit);
   }
 
+  /**
+   * Open a savepoint in the state on top, e.g. for one transaction of a block. Unlike a nested
+   * dialog it pushes no state: the writes under it are appended to a change log and the savepoint
+   * is the log size at opening. A merge drops the mark and leaves the writes in the state, a
+   * revoke undoes the log down to the mark. A commit keeps the writes like a merge. Without an
+   * open dialog this is a plain dialog.
+   */
+  @Override
+  public synchronized Dialog buildSavepoint() {
+    if (disabled || activeDialog == 0 || stack.isEmpty()) {
+      return buildDialog();
+    }
+
+    openSavepoint();
+    return new Dialog(this);
+  }
+
+  private void openSavepoint() {
+    if (savepointCount == savepoints.length) {
+      savepoints = Arrays.copyOf(savepoints, savepointCount * 2);
+    }
+    savepoints[savepointCount++] = changes.size();
+    ++activeDialog;
+  }
+
+  /**
+   * The innermost savepoint ends and its writes stay in the state on top.
+   */
+  private void releaseSavepoint() {
+    if (--savepointCount == 0) {
+      changes.clear();
+      lastChanges.clear();
+    }
+    --activeDialog;
+  }
+
+  /**
+   * Undo the writes of the innermost savepoint in reverse, on the stores and in the state on top.
+   */
+  private void rollBackSavepoint() {
+    int mark = savepoints[--savepointCount];
+    RevokingState state = top();
+    disabled = true;
+    try {
+      for (int i = changes.size() - 1; i >= mark; i--) {
+        Change change = changes.get(i);
+        RevokingTuple tuple = change.tuple;
+        if (change.created) {
+          tuple.database.deleteData(tuple.key);
+        } else {
+          tuple.database.putData(tuple.key, change.value);
+        }
+        change.restore(state);
+        if (change.previous == null) {
+          lastChanges.remove(tuple);
+        } else {
+          lastChanges.put(tuple, change.previous);
+        }
+      }
+      touch(stack.size() - 1);
+    } finally {
+      disabled = false;
+      changes.subList(mark, changes.size()).clear();
+    }
+    --activeDialog;
+  }
+
+  private void clearSavepoints() {
+    changes.clear();
+    lastChanges.clear();
+    savepointCount = 0;
+  }
+
+  /**
+   * Log a write under a savepoint, before the state on top records it.
+   */
+  private void logChange(RevokingState state, RevokingTuple tuple, byte[] value,
+      boolean created) {
+    if (savepointCount > 0) {
+      Change change = new Change(state, tuple, value, created);
+      change.previous = lastChanges.put(tuple, changes.size());
+      changes.add(change);
+    }
+  }
+
+  /**
+   * Whether the innermost savepoint has a change of the tuple already. Rolling back restores the
+   * first one last, the value of a later one is never needed.
+   */
+  private boolean changedInSavepoint(RevokingTuple tuple) {
+    if (savepointCount == 0) {
+      return false;
+    }
+    Integer last = lastChanges.get(tuple);
+    return last != null && last >= savepoints[savepointCount - 1];
+  }
+
   @Override
   public synchronized void onCreate(RevokingTuple tuple, byte[] value) {
     if (disabled) {
@@ -63,8 +222,26 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
     }
 
     addIfEmtpy();
-    RevokingState state = stack.peekLast();
-    state.newIds.add(tuple);
+    touch(stack.size() - 1);
+    RevokingState state = top();
+    logChange(state, tuple, value, true);
+    state.addNewId(tuple);
+  }
+
+  /**
+   * The old value of a key is only recorded by its first write in the state on top, or in the
+   * innermost savepoint.
+   */
+  @Override
+  public synchronized boolean recordsModify(RevokingTuple tuple) {
+    if (disabled) {
+      return false;
+    }
+    if (stack.isEmpty() || savepointCount > 0 && !changedInSavepoint(tuple)) {
+      return true;
+    }
+    RevokingState state = top();
+    return !state.newIds.contains(tuple) && !state.oldValues.containsKey(tuple);
   }
 
   @Override
@@ -74,12 +251,17 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
     }
 
     addIfEmtpy();
-    RevokingState state = stack.peekLast();
+    RevokingState state = top();
+    if (!changedInSavepoint(tuple)) {
+      logChange(state, tuple, value, false);
+    }
     if (state.newIds.contains(tuple) || state.oldValues.containsKey(tuple)) {
       return;
     }
 
-    state.oldValues.put(tuple, Utils.clone(value));
+    touch(stack.size() - 1);
+    // a value read from a store is never changed in place, it needs no copy
+    state.putOldValue(tuple, value);
   }
 
   @Override
@@ -89,15 +271,17 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
     }
 
     addIfEmtpy();
-    RevokingState state = stack.peekLast();
+    touch(stack.size() - 1);
+    RevokingState state = top();
+    logChange(state, tuple, value, false);
     if (state.newIds.contains(tuple)) {
-      state.newIds.remove(tuple);
+      state.removeNewId(tuple);
       return;
     }
 
     if (state.oldValues.containsKey(tuple)) {
-      state.removed.put(tuple, state.oldValues.get(tuple));
-      state.oldValues.remove(tuple);
+      state.putRemoved(tuple, state.oldValues.get(tuple));
+      state.removeOldValue(tuple);
       return;
     }
 
@@ -105,7 +289,7 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
       return;
     }
 
-    state.removed.put(tuple, Utils.clone(value));
+    state.putRemoved(tuple, value);
   }
 
   @Override
@@ -114,9 +298,16 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
       throw new RevokingStoreIllegalStateException("activeDialog has to be greater than 0");
     }
 
+    if (savepointCount > 0) {
+      releaseSavepoint();
+      return;
+    }
+
     if (activeDialog == 1 && stack.size() == 1) {
       stack.pollLast();
+      touch(stack.size());
       --activeDialog;
+      commitSession();
       return;
     }
 
@@ -124,23 +315,24 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
       return;
     }
 
-    RevokingState state = stack.peekLast();
+    RevokingState state = top();
     @SuppressWarnings("unchecked")
     List<RevokingState> list = (List<RevokingState>) stack;
-    RevokingState prevState = list.get(stack.size() - 2);
+    RevokingState prevState = loaded(list.get(stack.size() - 2));
+    touch(stack.size() - 2);
 
     state.oldValues.entrySet().stream()
         .filter(e -> !prevState.newIds.contains(e.getKey()))
         .filter(e -> !prevState.oldValues.containsKey(e.getKey()))
-        .forEach(e -> prevState.oldValues.put(e.getKey(), e.getValue()));
+        .forEach(e -> prevState.putOldValue(e.getKey(), e.getValue()));
 
-    prevState.newIds.addAll(state.newIds);
+    state.newIds.forEach(prevState::addNewId);
 
     state.removed.entrySet().stream()
         .filter(e -> {
           boolean has = prevState.newIds.contains(e.getKey());
           if (has) {
-            prevState.newIds.remove(e.getKey());
+            prevState.removeNewId(e.getKey());
           }
 
           return !has;
@@ -148,16 +340,17 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
         .filter(e -> {
           boolean has = prevState.oldValues.containsKey(e.getKey());
           if (has) {
-            prevState.removed.put(e.getKey(), e.getValue());
-            prevState.oldValues.remove(e.getKey());
+            prevState.putRemoved(e.getKey(), e.getValue());
+            prevState.removeOldValue(e.getKey());
           }
 
           return !has;
         })
-        .forEach(e -> prevState.removed.put(e.getKey(), e.getValue()));
+        .forEach(e -> prevState.putRemoved(e.getKey(), e.getValue()));
 
     stack.pollLast();
     --activeDialog;
+    commitSession();
   }
 
   @Override
@@ -170,22 +363,32 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
       throw new RevokingStoreIllegalStateException("activeDialog has to be greater than 0");
     }
 
+    if (savepointCount > 0) {
+      rollBackSavepoint();
+      return;
+    }
+
     disabled = true;
 
     try {
-      RevokingState state = stack.peekLast();
-      if (Objects.isNull(state)) {
+      if (stack.isEmpty()) {
         return;
       }
+      RevokingState state = top();
 
       state.oldValues.forEach((k, v) -> k.database.putData(k.key, v));
       state.newIds.forEach(e -> e.database.deleteData(e.key));
       state.removed.forEach((k, v) -> k.database.putData(k.key, v));
       stack.pollLast();
+      touch(stack.size());
+      if (state.overlaid && activeDialog == 1) {
+        dropped.add(state);
+      }
     } finally {
       disabled = false;
     }
     --activeDialog;
+    commitSession();
   }
 
   @Override
@@ -194,7 +397,13 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
       throw new RevokingStoreIllegalStateException("activeDialog has to be greater than 0");
     }
 
+    if (savepointCount > 0) {
+      releaseSavepoint();
+      return;
+    }
+
     --activeDialog;
+    commitSession();
   }
 
   @Override
@@ -206,17 +415,393 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
     if (stack.isEmpty()) {
       throw new RevokingStoreIllegalStateException("stack is empty");
     }
+    if (!sessions.isEmpty()) {
+      commitSession();
+    }
 
     disabled = true;
+    popping = true;
 
     try {
-      RevokingState state = stack.peekLast();
-      state.oldValues.forEach((k, v) -> k.database.putData(k.key, v, writeOptions));
-      state.newIds.forEach(e -> e.database.deleteData(e.key, writeOptions));
-      state.removed.forEach((k, v) -> k.database.putData(k.key, v, writeOptions));
+      RevokingState state = top();
+      state.oldValues.forEach((k, v) -> k.database.putData(k.key, v));
+      state.newIds.forEach(e -> e.database.deleteData(e.key));
+      state.removed.forEach((k, v) -> k.database.putData(k.key, v));
       stack.pollLast();
+      touch(stack.size());
+      if (state.overlaid) {
+        dropped.add(state);
+      }
     } finally {
       disabled = false;
+      popping = false;
+    }
+    commitSession();
+  }
+
+  /**
+   * The writes that undo the count newest states no open dialog holds, by database name: the
+   * value of each key before them, null for a key they created. Holding the lock of this store
+   * meanwhile keeps them matching a read view pinned with it, no commit can happen in between.
+   */
+  @Override
+  public synchronized Map<String, Map<ByteArrayWrapper, byte[]>> getUndoWrites(int count) {
+    List<RevokingState> states = new ArrayList<>(stack);
+    int committed = states.size() - (activeDialog - savepointCount);
+    if (count > committed) {
+      throw new IllegalStateException("only " + committed + " committed undo states, not " + count);
+    }
+    List<RevokingState> newestFirst = readable(states.subList(committed - count, committed));
+    Collections.reverse(newestFirst);
+    Map<String, Map<ByteArrayWrapper, byte[]>> writes = new LinkedHashMap<>();
+    for (RevokingState state : newestFirst) {
+      state.oldValues.forEach((k, v) -> writes.computeIfAbsent(k.database.getDBName(),
+          name -> new HashMap<>()).put(new ByteArrayWrapper(k.key), v));
+      state.newIds.forEach(k -> writes.computeIfAbsent(k.database.getDBName(),
+          name -> new HashMap<>()).put(new ByteArrayWrapper(k.key), null));
+      state.removed.forEach((k, v) -> writes.computeIfAbsent(k.database.getDBName(),
+          name -> new HashMap<>()).put(new ByteArrayWrapper(k.key), v));
+    }
+    return writes;
+  }
+
+  /**
+   * Pop the newest states until size are left. Popping a state writes the values from before it,
+   * so it also brings a store that never received the writes of the state to the same point.
+   */
+  @Override
+  public synchronized void popTo(int size) throws RevokingStoreIllegalStateException {
+    boolean wasDisabled = disabled;
+    try {
+      while (stack.size() > size) {
+        pop();
+      }
+    } finally {
+      disabled = wasDisabled;
+    }
+  }
+
+  @Override
+  public synchronized boolean hasSession() {
+    return activeDialog > 0 || popping || committing;
+  }
+
+  @Override
+  public synchronized void enlist(WriteSession session) {
+    sessions.add(session);
+  }
+
+  /**
+   * When the outermost dialog has ended, write the held changes of every store, one batch per
+   * database. The durability decides whether the batches wait for the disk; when they do, the
+   * stores written by earlier commits that did not are synced as well. With a journal the changes
+   * of the undo stack are appended and forced first, whatever the durability, so the journal can
+   * always undo what reached a store; they are marked as committed after the batches.
+   *
+   * <p>With overlays the held changes are sealed as an overlay of the state on top instead, and
+   * only the overlays of states trimmed from the bottom are written. After a revoke or pop of an
+   * overlaid state the held changes only undid it, they are discarded with its overlays.
+   */
+  private void commitSession() {
+    if (hasSession()) {
+      return;
+    }
+
+    boolean sync = durability.isDue(unsyncedCommits + 1,
+        System.currentTimeMillis() - lastSyncTime);
+    boolean journalChanged = appendJournal();
+    if (sessions.isEmpty() && flushable.isEmpty() && dropped.isEmpty()) {
+      if (journalChanged) {
+        commitJournal();
+      }
+      return;
+    }
+
+    WriteOptions options = new WriteOptions().sync(sync);
+    Set<WriteSession> written = new LinkedHashSet<>();
+    try {
+      committing = true;
+      try {
+        new ArrayList<>(sessions).forEach(WriteSession::prepare);
+      } finally {
+        committing = false;
+      }
+      if (!flushable.isEmpty()) {
+        for (WriteSession session : overlaid) {
+          if (session.flushOverlays(flushable, options)) {
+            written.add(session);
+          }
+        }
+      }
+      RevokingState top = stack.peekLast();
+      if (!dropped.isEmpty()) {
+        sessions.forEach(WriteSession::discard);
+        overlaid.forEach(session -> session.dropOverlays(dropped));
+      } else if (top != null && top.overlaid) {
+        sessions.forEach(session -> session.seal(top));
+        sessions.stream().filter(WriteSession::hasOverlays).forEach(overlaid::add);
+      } else {
+        sessions.forEach(session -> session.commit(options));
+        written.addAll(sessions);
+      }
+      overlaid.removeIf(session -> !session.hasOverlays());
+      if (sync) {
+        unsynced.removeAll(written);
+      } else if (!written.isEmpty()) {
+        unsynced.addAll(written);
+        unsyncedCommits++;
+      }
+    } finally {
+      sessions.clear();
+      flushable.clear();
+      dropped.clear();
+    }
+    if (journalChanged) {
+      commitJournal();
+    }
+
+    if (commitListener != null) {
+      try {
+        commitListener.run();
+      } catch (RuntimeException e) {
+        logger.error("Commit listener failed", e);
+      }
+    }
+    if (sync) {
+      sync();
+    }
+  }
+
+  /**
+   * A journaled state at index changes, it is taken from the journal with the states above it and
+   * written again with the next frame.
+   */
+  private void touch(int index) {
+    journaled = Math.min(journaled, Math.max(index, 0));
+  }
+
+  /**
+   * Append a frame with the changes of the stack since the last one and wait for the disk, true
+   * when there were any.
+   */
+  private boolean appendJournal() {
+    if (journal == null) {
+      return false;
+    }
+
+    int popped = journalSize - journaled;
+    List<RevokingState> pushed = readable(
+        new ArrayList<>(stack).subList(journaled, stack.size()));
+    if (journalTrimmed == 0 && popped == 0 && pushed.isEmpty()) {
+      return false;
+    }
+    journal.append(journalTrimmed, popped, pushed);
+    journal.force();
+    journalTrimmed = 0;
+    journalSize = stack.size();
+    journaled = journalSize;
+    return true;
+  }
+
+  private void commitJournal() {
+    journal.commit();
+    if (journal.needsCompaction()) {
+      journal.rewrite(readable(stack));
+    }
+  }
+
+  /**
+   * Keep the undo states in a journal file from now on and rebuild the stack from the states it
+   * holds, in place of any states in memory. The stores must be open. A frame that was journaled
+   * but not marked as committed may have reached some stores only; it is rolled back together with
+   * the states it replaced, which leaves the stores at the commit before it.
+   *
+   * @param databases the sources of the revoking stores by database name
+   */
+  @Override
+  public synchronized void openJournal(File file, Map<String, DbSourceInter<byte[]>> databases)
+      throws IOException {
+    if (activeDialog > 0 || !sessions.isEmpty()) {
+      logger.warn("Drop {} open dialogs of the stores before the journal", activeDialog);
+      activeDialog = 0;
+      sessions.clear();
+    }
+    clearSavepoints();
+    closeJournal();
+
+    RevokingJournal opened = new RevokingJournal(file);
+    LinkedList<RevokingState> replayed = new LinkedList<>();
+    List<RevokingState> rolledBack = new ArrayList<>();
+    for (RevokingJournal.Frame frame : opened.open(databases::get)) {
+      for (int i = 0; i < frame.trimmed && !replayed.isEmpty(); i++) {
+        replayed.pollFirst();
+      }
+      List<RevokingState> popped = new ArrayList<>();
+      for (int i = 0; i < frame.popped && !replayed.isEmpty(); i++) {
+        popped.add(replayed.pollLast());
+      }
+      if (frame.committed) {
+        replayed.addAll(frame.pushed);
+      } else {
+        for (int i = frame.pushed.size() - 1; i >= 0; i--) {
+          rolledBack.add(frame.pushed.get(i));
+        }
+        rolledBack.addAll(popped);
+      }
+    }
+    if (!rolledBack.isEmpty()) {
+      rollBack(rolledBack);
+      logger.warn("Rolled back {} undo states of a commit that did not finish", rolledBack.size());
+    }
+
+    stack.clear();
+    spill.clear();
+    stack.addAll(replayed);
+    if (overlay) {
+      // overlaid states are never on the disk, revert the journaled ones and stop journaling
+      opened.close();
+      popAll();
+      Files.deleteIfExists(file.toPath());
+      logger.info("Reverted {} journaled undo states for overlays", replayed.size());
+      return;
+    }
+    journal = opened;
+    journal.rewrite(stack);
+    journalSize = stack.size();
+    journaled = journalSize;
+    journalTrimmed = 0;
+    logger.info("Rebuilt {} undo states from {}", stack.size(), file);
+  }
+
+  /**
+   * Revoke the states in order, top first, writing each database once with one synced batch.
+   */
+  private static void rollBack(List<RevokingState> states) {
+    Map<DbSourceInter<byte[]>, Map<ByteArrayWrapper, byte[]>> writes = new LinkedHashMap<>();
+    for (RevokingState state : states) {
+      state.oldValues.forEach((k, v) -> writes.computeIfAbsent(k.database,
+          database -> new LinkedHashMap<>()).put(new ByteArrayWrapper(k.key), v));
+      state.newIds.forEach(k -> writes.computeIfAbsent(k.database,
+          database -> new LinkedHashMap<>()).put(new ByteArrayWrapper(k.key), null));
+      state.removed.forEach((k, v) -> writes.computeIfAbsent(k.database,
+          database -> new LinkedHashMap<>()).put(new ByteArrayWrapper(k.key), v));
+    }
+    writes.forEach((database, values) -> {
+      Map<byte[], byte[]> rows = new HashMap<>(values.size());
+      values.forEach((key, value) -> rows.put(key.getData(), value));
+      database.updateByBatch(rows, new WriteOptions().sync(true));
+    });
+  }
+
+  private void popAll() {
+    boolean wasDisabled = disabled;
+    try {
+      while (!stack.isEmpty()) {
+        pop();
+      }
+    } catch (RevokingStoreIllegalStateException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      disabled = wasDisabled;
+    }
+  }
+
+  /**
+   * Hold the changes of new states in memory as overlays of the stores, see {@link
+   * BufferedSource}, instead of writing them when the outermost dialog ends.
+   */
+  @Override
+  public synchronized void setOverlay(boolean overlay) {
+    this.overlay = overlay;
+  }
+
+  /**
+   * Number of states whose changes are held in memory, they are not on the disk.
+   */
+  @Override
+  public synchronized int overlaidSize() {
+    return (int) stack.stream().filter(state -> state.overlaid).count() + flushable.size();
+  }
+
+  private void closeJournal() {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.force();
+      journal.close();
+    } catch (IOException | UncheckedIOException e) {
+      logger.error("Can't close the revoking journal", e);
+    }
+    journal = null;
+  }
+
+  @Override
+  public synchronized void setCommitListener(Runnable listener) {
+    this.commitListener = listener;
+  }
+
+  /**
+   * Sync the stores written by commits that did not wait for the disk, then tell the listener,
+   * which records that the stores are durable up to here.
+   */
+  @Override
+  public synchronized void sync() {
+    if (journal != null) {
+      journal.force();
+    }
+    unsynced.forEach(WriteSession::sync);
+    unsynced.clear();
+    unsyncedCommits = 0;
+    lastSyncTime = System.currentTimeMillis();
+    if (syncListener != null) {
+      try {
+        syncListener.run();
+      } catch (RuntimeException e) {
+        logger.error("Sync listener failed", e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void setSyncListener(Runnable listener) {
+    this.syncListener = listener;
+  }
+
+  /**
+   * Set when commits wait for the disk. With GROUP and ASYNC a timer syncs the stores every
+   * groupMillis, so no commit stays in memory of the operating system longer.
+   */
+  @Override
+  public synchronized void setDurability(Durability durability) {
+    this.durability = durability;
+    if (syncTimer != null) {
+      syncTimer.shutdown();
+      syncTimer = null;
+    }
+    if (durability.getMode() != Mode.SYNC) {
+      syncTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "store-sync");
+        thread.setDaemon(true);
+        return thread;
+      });
+      syncTimer.scheduleWithFixedDelay(this::syncIfDue, durability.getGroupMillis(),
+          durability.getGroupMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public synchronized Durability getDurability() {
+    return durability;
+  }
+
+  private synchronized void syncIfDue() {
+    if (!unsynced.isEmpty()
+        && System.currentTimeMillis() - lastSyncTime >= durability.getGroupMillis()) {
+      try {
+        sync();
+      } catch (RuntimeException e) {
+        logger.error("Can't sync the stores", e);
+      }
     }
   }
 
@@ -226,7 +811,7 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
       return null;
     }
 
-    return stack.peekLast();
+    return top();
   }
 
   @Override
@@ -245,11 +830,85 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
     }
   }
 
+  /**
+   * The state on top, read back when it was spilled.
+   */
+  private RevokingState top() {
+    return loaded(stack.peekLast());
+  }
+
+  private RevokingState loaded(RevokingState state) {
+    if (state.isSpilled()) {
+      spill.read(state);
+    }
+    return state;
+  }
+
+  /**
+   * The states with their changes, spilled ones as copies read from the spill file.
+   */
+  private List<RevokingState> readable(Collection<RevokingState> states) {
+    List<RevokingState> readable = new ArrayList<>(states.size());
+    for (RevokingState state : states) {
+      readable.add(state.isSpilled() ? spill.peek(state) : state);
+    }
+    return readable;
+  }
+
+  /**
+   * Spill the oldest states until the ones in memory fit the budget. The state on top is kept, it
+   * is the one most likely to be revoked or changed.
+   */
+  private void spillOver() {
+    long held = heldBytes();
+    Iterator<RevokingState> states = stack.iterator();
+    for (int i = 0; held > memoryBudget && i < stack.size() - 1; i++) {
+      RevokingState state = states.next();
+      if (!state.isSpilled()) {
+        held -= state.bytes;
+        spill.write(state);
+      }
+    }
+  }
+
+  /**
+   * Keep at most this many bytes of keys and old values in memory, the oldest states beyond it
+   * are spilled to a temporary file. 0 keeps every state in memory.
+   */
+  @Override
+  public synchronized void setMemoryBudget(long memoryBudget) {
+    this.memoryBudget = memoryBudget;
+  }
+
+  private void closeSpill() {
+    try {
+      spill.close();
+    } catch (IOException e) {
+      logger.warn("Can't delete the spill file", e);
+    }
+  }
+
+  @Override
+  public synchronized long spilledBytes() {
+    return spill.getBytes();
+  }
+
   @Override
   public synchronized int size() {
     return stack.size();
   }
 
+  @Override
+  public synchronized long heldBytes() {
+    long bytes = 0;
+    for (RevokingState state : stack) {
+      if (!state.isSpilled()) {
+        bytes += state.bytes;
+      }
+    }
+    return bytes;
+  }
+
   public void setMaxSize(int maxSize) {
     this.maxSize.set(maxSize);
   }
@@ -258,7 +917,32 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
     return maxSize.get();
   }
 
+  /**
+   * With a journal the undo states are already on the disk: drop the open dialogs, e.g. of pending
+   * transactions, sync and close. Without one pop every state, so the stores are left at a state
+   * that needs no revoking after a restart.
+   */
   public synchronized void shutdown() {
+    if (journal != null) {
+      logger.info("Close the revoking journal, revoke {} open dialogs", activeDialog);
+      try {
+        disabled = false;
+        while (activeDialog > 0 && !stack.isEmpty()) {
+          revoke();
+        }
+        activeDialog = 0;
+        clearSavepoints();
+        sync();
+      } catch (Exception e) {
+        logger.error("Failed to revoke the open dialogs", e);
+      } finally {
+        closeJournal();
+        closeSpill();
+        logger.info("Closed the revoking journal with {} undo states", stack.size());
+      }
+      return;
+    }
+
     System.err.println("******** begin to pop revokingDb ********");
     System.err.println("******** before revokingDb size:" + RevokingStore.getInstance().size());
     try {
@@ -279,6 +963,8 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
           break;
         }
       }
+      sync();
+      closeSpill();
     } catch (Exception e) {
       System.err.println("******** faild to pop revokingStore. " + e);
     } finally {
@@ -377,9 +1063,93 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
   @Getter // only for unit test
   static class RevokingState {
 
+    boolean overlaid;
     Map<RevokingTuple, byte[]> oldValues = new HashMap<>();
     Set<RevokingTuple> newIds = new HashSet<>();
     Map<RevokingTuple, byte[]> removed = new HashMap<>();
+    /** Bytes of the keys and old values, kept while the state is spilled. */
+    long bytes;
+    long spilledAt = -1;
+    int spilledLength;
+
+    boolean isSpilled() {
+      return spilledAt >= 0;
+    }
+
+    void putOldValue(RevokingTuple tuple, byte[] value) {
+      bytes += size(tuple, value) - size(tuple, oldValues.put(tuple, value));
+    }
+
+    void removeOldValue(RevokingTuple tuple) {
+      bytes -= size(tuple, oldValues.remove(tuple));
+    }
+
+    void addNewId(RevokingTuple tuple) {
+      if (newIds.add(tuple)) {
+        bytes += tuple.key.length;
+      }
+    }
+
+    void removeNewId(RevokingTuple tuple) {
+      if (newIds.remove(tuple)) {
+        bytes -= tuple.key.length;
+      }
+    }
+
+    void putRemoved(RevokingTuple tuple, byte[] value) {
+      bytes += size(tuple, value) - size(tuple, removed.put(tuple, value));
+    }
+
+    void removeRemoved(RevokingTuple tuple) {
+      bytes -= size(tuple, removed.remove(tuple));
+    }
+
+    private static long size(RevokingTuple tuple, byte[] value) {
+      return value == null ? 0 : tuple.key.length + value.length;
+    }
+  }
+
+  /**
+   * A write under a savepoint: the value of the key before it and what the state on top held for
+   * the key, so both can be put back.
+   */
+  static class Change {
+
+    final RevokingTuple tuple;
+    final boolean created;
+    final byte[] value;
+    final boolean wasNew;
+    final byte[] oldValue;
+    final byte[] removed;
+    /** Index of the change of the tuple before this one, null when there is none. */
+    Integer previous;
+
+    Change(RevokingState state, RevokingTuple tuple, byte[] value, boolean created) {
+      this.tuple = tuple;
+      this.created = created;
+      this.value = value;
+      this.wasNew = state.newIds.contains(tuple);
+      this.oldValue = state.oldValues.get(tuple);
+      this.removed = state.removed.get(tuple);
+    }
+
+    void restore(RevokingState state) {
+      if (wasNew) {
+        state.addNewId(tuple);
+      } else {
+        state.removeNewId(tuple);
+      }
+      if (oldValue != null) {
+        state.putOldValue(tuple, oldValue);
+      } else {
+        state.removeOldValue(tuple);
+      }
+      if (removed != null) {
+        state.putRemoved(tuple, removed);
+      } else {
+        state.removeRemoved(tuple);
+      }
+    }
   }
 
   @AllArgsConstructor
@@ -388,7 +1158,7 @@ public abstract class AbstractRevokingStore implements RevokingDatabase {
   @ToString
   public static class RevokingTuple {
 
-    private SourceInter<byte[], byte[]> database;
+    private DbSourceInter<byte[]> database;
     private byte[] key;
   }
 
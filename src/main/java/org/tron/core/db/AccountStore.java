@@ -1,19 +1,25 @@
 package org.tron.core.db;
 
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.typesafe.config.ConfigObject;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.ArrayUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import org.tron.common.storage.ScanOptions;
 import org.tron.core.Wallet;
 import org.tron.core.capsule.AccountCapsule;
+import org.tron.core.config.args.Args;
 import org.tron.core.db.common.iterator.AccountIterator;
+import org.tron.protos.Protocol.Account;
 
 @Slf4j
 @Component
@@ -23,9 +29,24 @@ public class AccountStore extends TronStoreWithRevoking<AccountCapsule> {
       new HashMap<String, byte[]>(); // key = name , value = address
   private static AccountStore instance;
 
+  private CachedSource<Account> accountCache;
+
   @Autowired
   private AccountStore(@Qualifier("account") String dbName) {
     super(dbName);
+    accountCache = new CachedSource<>(dbSource, getRevokingDatabase(), AccountStore::parse,
+        Account::toByteArray, Account::getSerializedSize,
+        Args.getInstance().getStorage().getProfile(dbName).getObjectCacheSize());
+    dbSource = accountCache;
+  }
+
+  private static Account parse(byte[] data) {
+    try {
+      return Account.parseFrom(data);
+    } catch (InvalidProtocolBufferException e) {
+      logger.debug(e.getMessage());
+      return null;
+    }
   }
 
   public static void destroy() {
@@ -48,10 +69,30 @@ public class AccountStore extends TronStoreWithRevoking<AccountCapsule> {
     return instance;
   }
 
+  /**
+   * Get an account, the capsule wraps the cached immutable Account.
+   */
   @Override
   public AccountCapsule get(byte[] key) {
-    byte[] value = dbSource.getData(key);
-    return ArrayUtils.isEmpty(value) ? null : new AccountCapsule(value);
+    Account account = accountCache.getObject(key);
+    return account == null || account.getSerializedSize() == 0 ? null
+        : new AccountCapsule(account);
+  }
+
+  @Override
+  protected AccountCapsule parseItem(byte[] value) {
+    return new AccountCapsule(value);
+  }
+
+  /**
+   * Get many accounts in one read, the ones not in memory are kept there after.
+   */
+  @Override
+  public List<AccountCapsule> getAll(Collection<byte[]> keys) {
+    return accountCache.getObjects(keys).stream()
+        .map(account -> account == null || account.getSerializedSize() == 0 ? null
+            : new AccountCapsule(account))
+        .collect(Collectors.toList());
   }
 
   /**
@@ -61,8 +102,7 @@ public class AccountStore extends TronStoreWithRevoking<AccountCapsule> {
    */
   @Override
   public boolean has(byte[] key) {
-    byte[] account = dbSource.getData(key);
-    return null != account;
+    return null != accountCache.getObject(key);
   }
 
   @Override
@@ -73,34 +113,37 @@ public class AccountStore extends TronStoreWithRevoking<AccountCapsule> {
     super.put(key, item);
   }
 
+  @Override
+  protected void putValue(byte[] key, AccountCapsule item) {
+    accountCache.putObject(key, item.getInstance());
+  }
+
+  public CachedSource<Account> getAccountCache() {
+    return accountCache;
+  }
+
   /** get all accounts. */
   public List<AccountCapsule> getAllAccounts() {
-    return dbSource
-        .allValues()
-        .stream()
-        .map(bytes -> new AccountCapsule(bytes))
-        .collect(Collectors.toList());
+    try (Stream<Entry<byte[], byte[]>> entries = dbSource.stream(ScanOptions.all())) {
+      return entries
+          .map(entry -> new AccountCapsule(entry.getValue()))
+          .collect(Collectors.toList());
+    }
   }
 
   /** Max TRX account. */
   public AccountCapsule getSun() {
-    byte[] data = dbSource.getData(assertsAddress.get("Sun"));
-    AccountCapsule accountCapsule = new AccountCapsule(data);
-    return accountCapsule;
+    return new AccountCapsule(accountCache.getObject(assertsAddress.get("Sun")));
   }
 
   /** Min TRX account. */
   public AccountCapsule getBlackhole() {
-    byte[] data = dbSource.getData(assertsAddress.get("Blackhole"));
-    AccountCapsule accountCapsule = new AccountCapsule(data);
-    return accountCapsule;
+    return new AccountCapsule(accountCache.getObject(assertsAddress.get("Blackhole")));
   }
 
   /** Get foundation account info. */
   public AccountCapsule getZion() {
-    byte[] data = dbSource.getData(assertsAddress.get("Zion"));
-    AccountCapsule accountCapsule = new AccountCapsule(data);
-    return accountCapsule;
+    return new AccountCapsule(accountCache.getObject(assertsAddress.get("Zion")));
   }
 
   public static void setAccount(com.typesafe.config.Config config) {
@@ -1,15 +1,21 @@
 package org.tron.core.db;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.ArrayUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import org.tron.common.storage.ScanOptions;
 import org.tron.core.capsule.AssetIssueCapsule;
+import org.tron.core.config.args.Args;
 import org.tron.core.db.common.iterator.AssetIssueIterator;
+import org.tron.protos.Contract.AssetIssueContract;
 
 @Slf4j
 @Component
@@ -17,9 +23,24 @@ public class AssetIssueStore extends TronStoreWithRevoking<AssetIssueCapsule> {
 
   private static AssetIssueStore instance;
 
+  private CachedSource<AssetIssueContract> assetIssueCache;
+
   @Autowired
   private AssetIssueStore(@Qualifier("asset-issue") String dbName) {
     super(dbName);
+    assetIssueCache = new CachedSource<>(dbSource, getRevokingDatabase(), AssetIssueStore::parse,
+        AssetIssueContract::toByteArray, AssetIssueContract::getSerializedSize,
+        Args.getInstance().getStorage().getProfile(dbName).getObjectCacheSize());
+    dbSource = assetIssueCache;
+  }
+
+  private static AssetIssueContract parse(byte[] data) {
+    try {
+      return AssetIssueContract.parseFrom(data);
+    } catch (InvalidProtocolBufferException e) {
+      logger.debug(e.getMessage());
+      return null;
+    }
   }
 
   public static void destroy() {
@@ -42,10 +63,30 @@ public class AssetIssueStore extends TronStoreWithRevoking<AssetIssueCapsule> {
     return instance;
   }
 
+  /**
+   * Get an asset issue, the capsule wraps the cached immutable contract.
+   */
   @Override
   public AssetIssueCapsule get(byte[] key) {
-    byte[] value = dbSource.getData(key);
-    return ArrayUtils.isEmpty(value) ? null : new AssetIssueCapsule(value);
+    AssetIssueContract assetIssue = assetIssueCache.getObject(key);
+    return assetIssue == null || assetIssue.getSerializedSize() == 0 ? null
+        : new AssetIssueCapsule(assetIssue);
+  }
+
+  @Override
+  protected AssetIssueCapsule parseItem(byte[] value) {
+    return new AssetIssueCapsule(value);
+  }
+
+  /**
+   * Get many asset issues in one read, the ones not in memory are kept there after.
+   */
+  @Override
+  public List<AssetIssueCapsule> getAll(Collection<byte[]> keys) {
+    return assetIssueCache.getObjects(keys).stream()
+        .map(assetIssue -> assetIssue == null || assetIssue.getSerializedSize() == 0 ? null
+            : new AssetIssueCapsule(assetIssue))
+        .collect(Collectors.toList());
   }
 
   /**
@@ -55,7 +96,7 @@ public class AssetIssueStore extends TronStoreWithRevoking<AssetIssueCapsule> {
    */
   @Override
   public boolean has(byte[] key) {
-    byte[] assetIssue = dbSource.getData(key);
+    AssetIssueContract assetIssue = assetIssueCache.getObject(key);
     logger.info("name is {}, asset issue is {}", key, assetIssue);
     return null != assetIssue;
   }
@@ -68,13 +109,20 @@ public class AssetIssueStore extends TronStoreWithRevoking<AssetIssueCapsule> {
     super.put(key, item);
   }
 
+  @Override
+  protected void putValue(byte[] key, AssetIssueCapsule item) {
+    assetIssueCache.putObject(key, item.getInstance());
+  }
+
   /**
    * get all asset issues.
    */
   public List<AssetIssueCapsule> getAllAssetIssues() {
-    return dbSource.allKeys().stream()
-        .map(this::get)
-        .collect(Collectors.toList());
+    try (Stream<Entry<byte[], byte[]>> entries = dbSource.stream(ScanOptions.all())) {
+      return entries
+          .map(entry -> new AssetIssueCapsule(entry.getValue()))
+          .collect(Collectors.toList());
+    }
   }
 
   @Override
@@ -0,0 +1,613 @@
+package org.tron.core.db;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.function.UnaryOperator;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.common.utils.FileUtil;
+
+/**
+ * Append only archive of solidified blocks in segment files. Every block is written once as its
+ * id, its length and its bytes, and an index file holds the segment and offset of each block
+ * number in order, so the archive covers the numbers 0 to {@link #getCount()} - 1. A full segment
+ * is sealed and never changes again; sealed segments are read through memory maps.
+ *
+ * <p>The index entry of a block is written after the block. Opening the archive cuts off a block
+ * without index entry, callers flush before they drop their own copy of the archived blocks.
+ *
+ * <p>An archive may start at a base number instead of 0, for a node started from a state snapshot,
+ * the blocks below it are not held.
+ *
+ * <p>Sealed segments can be pruned in order, from the first one on: the segment is rewritten with
+ * shorter records and replaces the old one, then the index entries of its blocks are updated. A
+ * journal holding the new entries is written before the replacement, so opening the archive
+ * either drops an unfinished rewrite or completes the index update.
+ */
+@Slf4j
+public class BlockArchive implements Closeable {
+
+  public static final long DEFAULT_SEGMENT_SIZE = 256L * 1024 * 1024;
+
+  private static final String INDEX = "index.idx";
+  private static final String PRUNED = "pruned";
+  private static final String BASE = "base";
+  private static final String PRUNING_JOURNAL = "pruning.journal";
+  private static final String PRUNING_SUFFIX = ".pruning";
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".blk";
+  private static final int ENTRY_SIZE = Integer.BYTES + Long.BYTES;
+  private static final int ID_SIZE = 32;
+  private static final int HEADER_SIZE = ID_SIZE + Integer.BYTES;
+
+  private final File directory;
+  private final long segmentSize;
+  private final List<Segment> segments = new ArrayList<>();
+  private FileChannel index;
+  private long base;
+  private long count;
+  private long prunedCount;
+
+  public BlockArchive(File directory, long segmentSize) {
+    if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("segmentSize(" + segmentSize + ") must be > 0 and "
+          + "fit a memory map");
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    try {
+      open();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't open block archive " + directory, e);
+    }
+  }
+
+  /**
+   * Directory of the archive of a database in a storage directory.
+   */
+  public static File directoryOf(String storageDirectory, String dbName) {
+    return new File(storageDirectory, dbName + "-archive");
+  }
+
+  private static String segmentName(int number) {
+    return String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+  }
+
+  private synchronized void open() throws IOException {
+    Files.createDirectories(directory.toPath());
+    index = FileChannel.open(new File(directory, INDEX).toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    base = readLong(BASE);
+    count = base + index.size() / ENTRY_SIZE;
+    recoverPruning();
+    prunedCount = Math.max(readLong(PRUNED), base);
+
+    for (int i = 0; new File(directory, segmentName(i)).exists(); i++) {
+      segments.add(new Segment(new File(directory, segmentName(i))));
+    }
+
+    // drop index entries whose block did not reach the disk, then cut off what was appended
+    // after the last complete block
+    int lastSegment = -1;
+    long end = 0;
+    while (count > base && lastSegment < 0) {
+      ByteBuffer entry = readEntry(count - 1);
+      int segment = entry.getInt();
+      long offset = entry.getLong();
+      if (segment < segments.size() && offset + HEADER_SIZE <= segments.get(segment).size) {
+        int length = segments.get(segment).read(offset + ID_SIZE, Integer.BYTES).getInt();
+        long recordEnd = offset + HEADER_SIZE + length;
+        if (length >= 0 && recordEnd <= segments.get(segment).size) {
+          lastSegment = segment;
+          end = recordEnd;
+          continue;
+        }
+      }
+      count--;
+    }
+    index.truncate(position(count));
+    while (segments.size() > lastSegment + 1) {
+      Segment segment = segments.remove(segments.size() - 1);
+      segment.close();
+      Files.delete(segment.file.toPath());
+    }
+    if (lastSegment >= 0) {
+      segments.get(lastSegment).truncate(end);
+      for (int i = 0; i < lastSegment; i++) {
+        segments.get(i).seal();
+      }
+    }
+    logger.info("Open block archive {} with {} blocks in {} segments, {} pruned", directory,
+        count, segments.size(), prunedCount);
+  }
+
+  /**
+   * Position of the index entry of a block.
+   */
+  private long position(long num) {
+    return (num - base) * ENTRY_SIZE;
+  }
+
+  private ByteBuffer readEntry(long num) throws IOException {
+    ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+    while (entry.hasRemaining()) {
+      if (index.read(entry, position(num) + entry.position()) < 0) {
+        throw new IOException("index of " + directory + " ends before block " + num);
+      }
+    }
+    entry.flip();
+    return entry;
+  }
+
+  /**
+   * Number of archived blocks, the next block to append has this number.
+   */
+  public synchronized long getCount() {
+    return count;
+  }
+
+  /**
+   * Number of the first block of the archive, the blocks below are not held.
+   */
+  public synchronized long getBase() {
+    return base;
+  }
+
+  /**
+   * Number of pruned blocks, they are the blocks 0 to this number - 1.
+   */
+  public synchronized long getPrunedCount() {
+    return prunedCount;
+  }
+
+  /**
+   * Number after the last block of the segment holding a block, -1 when the segment is not sealed
+   * and can't be pruned yet.
+   */
+  public synchronized long getSegmentEnd(long num) {
+    if (num < base || num >= count) {
+      return -1;
+    }
+    try {
+      int segment = readEntry(num).getInt();
+      if (segments.get(segment).mapped == null) {
+        return -1;
+      }
+      // the segments of the blocks never decrease, find the first block of a later one
+      long low = num + 1;
+      long high = count;
+      while (low < high) {
+        long middle = (low + high) >>> 1;
+        if (readEntry(middle).getInt() == segment) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't read the index of " + directory, e);
+    }
+  }
+
+  /**
+   * Rewrite the sealed segment holding the blocks {@link #getPrunedCount()} to end - 1 with the
+   * bytes that prune returns for each block. Readers see the old blocks until it is replaced.
+   */
+  public synchronized void prune(long end, UnaryOperator<byte[]> prune) {
+    if (getSegmentEnd(prunedCount) != end) {
+      throw new IllegalArgumentException("blocks " + prunedCount + " to " + end
+          + " are not a sealed segment");
+    }
+    long from = prunedCount;
+    try {
+      int number = readEntry(from).getInt();
+      Segment segment = segments.get(number);
+      File rewritten = new File(directory, segmentName(number) + PRUNING_SUFFIX);
+      ByteBuffer journal = ByteBuffer.allocate(Integer.BYTES + 2 * Long.BYTES
+          + (int) (end - from) * Long.BYTES)
+          .putInt(number)
+          .putLong(from)
+          .putLong(end);
+      try (FileChannel channel = FileChannel.open(rewritten.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        long size = 0;
+        for (long num = from; num < end; num++) {
+          Entry<byte[], byte[]> block = get(num);
+          byte[] data = prune.apply(block.getValue());
+          ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + data.length)
+              .put(block.getKey()).putInt(data.length).put(data);
+          record.flip();
+          journal.putLong(size);
+          while (record.hasRemaining()) {
+            size += channel.write(record, size);
+          }
+        }
+        channel.force(false);
+      }
+      journal.flip();
+      writeFile(PRUNING_JOURNAL, journal);
+
+      segment.close();
+      Files.move(rewritten.toPath(), segment.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      Segment replaced = new Segment(segment.file);
+      replaced.seal();
+      segments.set(number, replaced);
+
+      completePruning();
+      logger.info("Pruned blocks {} to {} of {}", from, end - 1, directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't prune blocks " + from + " to " + (end - 1) + " of "
+          + directory, e);
+    }
+  }
+
+  /**
+   * Drop a rewritten segment that did not replace the old one, or finish the index update of one
+   * that did.
+   */
+  private void recoverPruning() throws IOException {
+    File journal = new File(directory, PRUNING_JOURNAL);
+    if (!journal.exists()) {
+      return;
+    }
+    ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(journal.toPath()));
+    int number = header.remaining() >= Integer.BYTES ? header.getInt(0) : -1;
+    File rewritten = new File(directory, segmentName(number) + PRUNING_SUFFIX);
+    if (number < 0 || rewritten.exists()) {
+      Files.deleteIfExists(rewritten.toPath());
+      Files.delete(journal.toPath());
+      logger.warn("Dropped an unfinished pruning of {}", directory);
+      return;
+    }
+    completePruning();
+    logger.info("Completed the pruning of segment {} of {}", number, directory);
+  }
+
+  /**
+   * Point the index entries at the rewritten segment, then move the pruned count past it.
+   */
+  private void completePruning() throws IOException {
+    File file = new File(directory, PRUNING_JOURNAL);
+    ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    int number = journal.getInt();
+    long from = journal.getLong();
+    long end = journal.getLong();
+    for (long num = from; num < end; num++) {
+      ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE)
+          .putInt(number)
+          .putLong(journal.getLong());
+      entry.flip();
+      while (entry.hasRemaining()) {
+        index.write(entry, position(num) + entry.position());
+      }
+    }
+    index.force(false);
+    writeFile(PRUNED, (ByteBuffer) ByteBuffer.allocate(Long.BYTES).putLong(end).flip());
+    prunedCount = end;
+    Files.delete(file.toPath());
+  }
+
+  private long readLong(String name) throws IOException {
+    File file = new File(directory, name);
+    return file.exists() ? ByteBuffer.wrap(Files.readAllBytes(file.toPath())).getLong() : 0;
+  }
+
+  /**
+   * Replace a small file with the content of a buffer, written through to the disk.
+   */
+  private void writeFile(String name, ByteBuffer content) throws IOException {
+    Path target = directory.toPath().resolve(name);
+    Path temporary = directory.toPath().resolve(name + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (content.hasRemaining()) {
+        channel.write(content);
+      }
+      channel.force(false);
+    }
+    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Append the block of number {@link #getCount()}.
+   */
+  public synchronized void append(long num, byte[] id, byte[] data) {
+    if (num != count) {
+      throw new IllegalArgumentException("block " + num + " is not next, expected " + count);
+    }
+    if (id.length != ID_SIZE) {
+      throw new IllegalArgumentException("block id has " + id.length + " bytes");
+    }
+    try {
+      int recordSize = HEADER_SIZE + data.length;
+      Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+      if (segment == null || segment.size > 0 && segment.size + recordSize > segmentSize) {
+        if (segment != null) {
+          segment.force();
+          segment.seal();
+        }
+        segment = new Segment(new File(directory, segmentName(segments.size())));
+        segments.add(segment);
+      }
+
+      long offset = segment.size;
+      segment.write(ByteBuffer.allocate(recordSize).put(id).putInt(data.length).put(data));
+      ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE)
+          .putInt(segments.size() - 1)
+          .putLong(offset);
+      entry.flip();
+      while (entry.hasRemaining()) {
+        index.write(entry, position(count) + entry.position());
+      }
+      count++;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't append block " + num + " to " + directory, e);
+    }
+  }
+
+  /**
+   * Write the appended blocks through to the disk, blocks before index entries.
+   */
+  public synchronized void flush() {
+    try {
+      if (!segments.isEmpty()) {
+        segments.get(segments.size() - 1).force();
+      }
+      index.force(false);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't flush block archive " + directory, e);
+    }
+  }
+
+  /**
+   * Bytes of an archived block, null when the number is not archived or has another id.
+   */
+  public byte[] get(long num, byte[] id) {
+    Entry<byte[], byte[]> block = get(num);
+    return block != null && Arrays.equals(id, block.getKey()) ? block.getValue() : null;
+  }
+
+  /**
+   * Id and bytes of an archived block, null when the number is not archived.
+   */
+  public synchronized Entry<byte[], byte[]> get(long num) {
+    if (num < base || num >= count) {
+      return null;
+    }
+    try {
+      ByteBuffer entry = readEntry(num);
+      Segment segment = segments.get(entry.getInt());
+      long offset = entry.getLong();
+      ByteBuffer header = segment.read(offset, HEADER_SIZE);
+      byte[] id = new byte[ID_SIZE];
+      header.get(id);
+      byte[] data = new byte[header.getInt()];
+      segment.read(offset + HEADER_SIZE, data.length).get(data);
+      return new SimpleImmutableEntry<>(id, data);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't read block " + num + " from " + directory, e);
+    }
+  }
+
+  /**
+   * Ids and bytes of the blocks archived now, in number order from start.
+   */
+  public Iterator<Entry<byte[], byte[]>> iterator(long start) {
+    long end = getCount();
+    long first = getBase();
+    return new Iterator<Entry<byte[], byte[]>>() {
+      private long num = Math.max(start, first);
+
+      @Override
+      public boolean hasNext() {
+        return num < end;
+      }
+
+      @Override
+      public Entry<byte[], byte[]> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return get(num++);
+      }
+    };
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Put a consistent copy of the archive into an empty directory, sealed segments are linked.
+   * Returns the number of copied blocks.
+   */
+  public synchronized long checkpoint(File target) throws IOException {
+    flush();
+    Files.createDirectories(target.toPath());
+    for (int i = 0; i < segments.size(); i++) {
+      Segment segment = segments.get(i);
+      Path copy = target.toPath().resolve(segment.file.getName());
+      if (segment.mapped != null) {
+        link(segment.file.toPath(), copy);
+      } else {
+        copyPrefix(segment.file.toPath(), copy, segment.size);
+      }
+    }
+    copyPrefix(new File(directory, INDEX).toPath(), target.toPath().resolve(INDEX),
+        position(count));
+    for (String name : new String[]{BASE, PRUNED}) {
+      if (new File(directory, name).exists()) {
+        Files.copy(new File(directory, name).toPath(), target.toPath().resolve(name));
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Put the archive of a checkpoint into an empty directory. All segments but the last one are
+   * sealed and linked, the last one and the index are copied since they are appended to.
+   */
+  public static void restore(File source, File target) throws IOException {
+    Files.createDirectories(target.toPath());
+    int segments = 0;
+    while (new File(source, segmentName(segments)).exists()) {
+      segments++;
+    }
+    for (int i = 0; i < segments; i++) {
+      Path file = new File(source, segmentName(i)).toPath();
+      Path copy = target.toPath().resolve(file.getFileName());
+      if (i < segments - 1) {
+        link(file, copy);
+      } else {
+        Files.copy(file, copy);
+      }
+    }
+    Files.copy(new File(source, INDEX).toPath(), target.toPath().resolve(INDEX));
+    for (String name : new String[]{BASE, PRUNED}) {
+      if (new File(source, name).exists()) {
+        Files.copy(new File(source, name).toPath(), target.toPath().resolve(name));
+      }
+    }
+  }
+
+  /**
+   * Create an empty archive in a new directory whose first block will be base.
+   */
+  public static void create(File directory, long base) throws IOException {
+    String[] existing = directory.list();
+    if (existing != null && existing.length > 0) {
+      throw new IllegalStateException("block archive " + directory + " already exists");
+    }
+    Files.createDirectories(directory.toPath());
+    Files.write(directory.toPath().resolve(BASE),
+        ByteBuffer.allocate(Long.BYTES).putLong(base).array());
+  }
+
+  private static void link(Path file, Path link) throws IOException {
+    try {
+      Files.createLink(link, file);
+    } catch (IOException | UnsupportedOperationException e) {
+      // another file system, fall back to a copy
+      logger.debug("Can not link {}: {}", file, e.getMessage());
+      Files.copy(file, link, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static void copyPrefix(Path file, Path copy, long size) throws IOException {
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+        FileChannel out = FileChannel.open(copy, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE)) {
+      long position = 0;
+      while (position < size) {
+        position += in.transferTo(position, size - position, out);
+      }
+    }
+  }
+
+  /**
+   * Remove every archived block.
+   */
+  public synchronized void reset() {
+    close();
+    FileUtil.recursiveDelete(directory.getPath());
+    try {
+      open();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't open block archive " + directory, e);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      for (Segment segment : segments) {
+        segment.close();
+      }
+      segments.clear();
+      if (index != null) {
+        index.close();
+        index = null;
+      }
+    } catch (IOException e) {
+      logger.error("Can't close block archive {}: {}", directory, e.getMessage());
+    }
+  }
+
+  private static class Segment {
+
+    private final File file;
+    private final FileChannel channel;
+    private long size;
+    private MappedByteBuffer mapped;
+
+    Segment(File file) throws IOException {
+      this.file = file;
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.size = channel.size();
+    }
+
+    void write(ByteBuffer record) throws IOException {
+      record.flip();
+      while (record.hasRemaining()) {
+        size += channel.write(record, size);
+      }
+    }
+
+    void truncate(long end) throws IOException {
+      channel.truncate(end);
+      size = end;
+    }
+
+    void force() throws IOException {
+      channel.force(false);
+    }
+
+    /**
+     * Map the segment for reads, it does not change anymore.
+     */
+    void seal() throws IOException {
+      mapped = channel.map(MapMode.READ_ONLY, 0, size);
+    }
+
+    ByteBuffer read(long offset, int length) throws IOException {
+      if (mapped != null) {
+        ByteBuffer view = mapped.duplicate();
+        view.position((int) offset).limit((int) offset + length);
+        return view.slice();
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, offset + buffer.position()) < 0) {
+          throw new IOException(file + " ends before " + (offset + length));
+        }
+      }
+      buffer.flip();
+      return buffer;
+    }
+
+    void close() throws IOException {
+      mapped = null;
+      channel.close();
+    }
+  }
+}
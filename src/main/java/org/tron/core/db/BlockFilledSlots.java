@@ -1,35 +1,127 @@
 package org.tron.core.db;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.stream.IntStream;
 
-@Deprecated
+/**
+ * Ring of the last {@link #SLOT_NUMBER} block slots, a set bit for each slot a witness filled,
+ * with a running count of the filled ones. It is stored as a few bytes: the bits, the index of
+ * the next slot and the count.
+ */
 public class BlockFilledSlots {
 
   public static int SLOT_NUMBER = 128;
 
-  private int[] block_filled_slots = new int[SLOT_NUMBER];
-  private int index = 0;
+  private static final int WORDS = (SLOT_NUMBER + Long.SIZE - 1) / Long.SIZE;
+  private static final int ENCODED_SIZE = WORDS * Long.BYTES + 2 * Integer.BYTES;
 
+  private final long[] bits;
+  private int index;
+  private int count;
+
+  /**
+   * A ring with all slots filled.
+   */
   public BlockFilledSlots() {
-    init();
+    this(new long[WORDS], 0, 0);
+    for (int i = 0; i < SLOT_NUMBER; i++) {
+      set(i, true);
+    }
+    count = SLOT_NUMBER;
+  }
+
+  private BlockFilledSlots(long[] bits, int index, int count) {
+    this.bits = bits;
+    this.index = index;
+    this.count = count;
+  }
+
+  /**
+   * Ring of the slots as one digit each, 1 for filled, and the index of the next slot.
+   */
+  public static BlockFilledSlots of(int[] slots, int index) {
+    if (slots.length != SLOT_NUMBER || index < 0 || index >= SLOT_NUMBER) {
+      throw new IllegalArgumentException(
+          "expected " + SLOT_NUMBER + " slots, got " + slots.length + " at index " + index);
+    }
+    BlockFilledSlots ring = new BlockFilledSlots(new long[WORDS], index, 0);
+    for (int i = 0; i < SLOT_NUMBER; i++) {
+      ring.set(i, slots[i] != 0);
+      ring.count += slots[i] != 0 ? 1 : 0;
+    }
+    return ring;
+  }
+
+  public static BlockFilledSlots fromByteArray(byte[] data) {
+    if (data == null || data.length != ENCODED_SIZE) {
+      throw new IllegalArgumentException("not a block filled slots ring");
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    long[] bits = new long[WORDS];
+    for (int i = 0; i < WORDS; i++) {
+      bits[i] = buffer.getLong();
+    }
+    return new BlockFilledSlots(bits, buffer.getInt(), buffer.getInt());
+  }
+
+  public byte[] toByteArray() {
+    ByteBuffer buffer = ByteBuffer.allocate(ENCODED_SIZE);
+    for (long word : bits) {
+      buffer.putLong(word);
+    }
+    return buffer.putInt(index).putInt(count).array();
+  }
+
+  private boolean get(int slot) {
+    return (bits[slot / Long.SIZE] & (1L << (slot % Long.SIZE))) != 0;
   }
 
-  private void init() {
-    Arrays.fill(block_filled_slots, 1);
+  private void set(int slot, boolean filled) {
+    if (filled) {
+      bits[slot / Long.SIZE] |= 1L << (slot % Long.SIZE);
+    } else {
+      bits[slot / Long.SIZE] &= ~(1L << (slot % Long.SIZE));
+    }
   }
 
   public void applyBlock(boolean fillBlock) {
-    block_filled_slots[index] = fillBlock ? 1 : 0;
+    if (get(index) != fillBlock) {
+      set(index, fillBlock);
+      count += fillBlock ? 1 : -1;
+    }
     index = (index + 1) % SLOT_NUMBER;
   }
 
   public int calculateFilledSlotsCount() {
-    return IntStream.of(block_filled_slots).sum();
+    return count;
+  }
+
+  public int getIndex() {
+    return index;
   }
 
   public int[] getBlockFilledSlots() {
-    return block_filled_slots;
+    int[] slots = new int[SLOT_NUMBER];
+    for (int i = 0; i < SLOT_NUMBER; i++) {
+      slots[i] = get(i) ? 1 : 0;
+    }
+    return slots;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    BlockFilledSlots that = (BlockFilledSlots) o;
+    return index == that.index && count == that.count && Arrays.equals(bits, that.bits);
   }
 
+  @Override
+  public int hashCode() {
+    return 31 * (31 * Arrays.hashCode(bits) + index) + count;
+  }
 }
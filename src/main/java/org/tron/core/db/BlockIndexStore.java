@@ -1,10 +1,16 @@
 package org.tron.core.db;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
 import org.apache.commons.lang3.ArrayUtils;
+import org.tron.common.storage.ScanOptions;
 import org.tron.common.utils.ByteArray;
 import org.tron.common.utils.Sha256Hash;
 import org.tron.core.capsule.BlockCapsule.BlockId;
 import org.tron.core.capsule.BytesCapsule;
+import org.tron.core.db.common.iterator.DBIterator;
 import org.tron.core.exception.ItemNotFoundException;
 
 public class BlockIndexStore extends TronStoreWithRevoking<BytesCapsule> {
@@ -47,6 +53,30 @@ public class BlockIndexStore extends TronStoreWithRevoking<BytesCapsule> {
         num);
   }
 
+  /**
+   * Ids of the blocks numbered from inclusive to to exclusive that are indexed, in number order.
+   * The keys are the numbers in big-endian order, so this is one scan of the database.
+   */
+  public List<BlockId> getRange(long from, long to) {
+    if (from < 0 || to < from) {
+      throw new IllegalArgumentException("range [" + from + ", " + to + ") is not valid");
+    }
+    List<BlockId> ids = new ArrayList<>((int) Math.min(to - from, 1024));
+    try (DBIterator iterator = dbSource.iterator(
+        ScanOptions.range(ByteArray.fromLong(from), ByteArray.fromLong(to)))) {
+      while (iterator.hasNext()) {
+        Entry<byte[], byte[]> entry = iterator.next();
+        if (ArrayUtils.isNotEmpty(entry.getValue())) {
+          ids.add(new BlockId(Sha256Hash.wrap(entry.getValue()),
+              ByteArray.toLong(entry.getKey())));
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return ids;
+  }
+
   @Override
   public BytesCapsule get(byte[] key)
       throws ItemNotFoundException {
@@ -57,6 +87,11 @@ public class BlockIndexStore extends TronStoreWithRevoking<BytesCapsule> {
     return new BytesCapsule(value);
   }
 
+  @Override
+  protected BytesCapsule parseItem(byte[] value) {
+    return new BytesCapsule(value);
+  }
+
 
   @Override
   public boolean has(byte[] key) {
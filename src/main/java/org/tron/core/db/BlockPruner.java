@@ -0,0 +1,93 @@
+package org.tron.core.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.config.args.Pruning;
+import org.tron.core.exception.BadItemException;
+
+/**
+ * Cuts solidified blocks down to their headers on a background thread, a sealed segment of the
+ * block archive at a time once its last block may be pruned. The transactions of the segment are
+ * cut down to their ids first, in batches with a pause in between, then the segment is rewritten
+ * without them. The block index and the headers stay, they are all a node needs for sync
+ * summaries, and so do the transaction ids, which reject the transactions as duplicates.
+ */
+@Slf4j
+public class BlockPruner {
+
+  private static final long CHECK_MILLIS = 60_000;
+
+  private final Manager manager;
+  private final Pruning config;
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      runnable -> {
+        Thread thread = new Thread(runnable, "block-pruner");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  public BlockPruner(Manager manager, Pruning config) {
+    this.manager = manager;
+    this.config = config;
+    executor.scheduleWithFixedDelay(this::pruneSegments, CHECK_MILLIS, CHECK_MILLIS,
+        TimeUnit.MILLISECONDS);
+  }
+
+  private void pruneSegments() {
+    try {
+      while (!Thread.currentThread().isInterrupted() && pruneNextSegment()) {
+        logger.info("Pruned blocks below {}", manager.getBlockStore().getPrunedCount());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException | BadItemException e) {
+      logger.error("Can't prune blocks", e);
+    }
+  }
+
+  /**
+   * Prune the next sealed segment when all of its blocks may be pruned, false when there is none.
+   */
+  boolean pruneNextSegment() throws InterruptedException, BadItemException {
+    BlockStore blockStore = manager.getBlockStore();
+    long from = blockStore.getPrunedCount();
+    long end = blockStore.getPrunableEnd();
+    if (end < 0) {
+      return false;
+    }
+    BlockCapsule last = blockStore.getArchivedBlock(end - 1);
+    if (!config.canPrune(end - 1, last.getTimeStamp(),
+        manager.getDynamicPropertiesStore().getLatestSolidifiedBlockNum(),
+        System.currentTimeMillis())) {
+      return false;
+    }
+
+    for (long num = from; num < end; num += config.getBatchBlocks()) {
+      List<BlockCapsule> blocks = new ArrayList<>();
+      for (long i = num; i < Math.min(end, num + config.getBatchBlocks()); i++) {
+        blocks.add(blockStore.getArchivedBlock(i));
+      }
+      manager.pruneTransactions(blocks);
+      Thread.sleep(config.getBatchIntervalMillis());
+    }
+    blockStore.prune(end);
+    return true;
+  }
+
+  /**
+   * Stop pruning, before the stores are closed. A segment left half done is pruned again.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
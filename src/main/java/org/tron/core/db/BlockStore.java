@@ -15,15 +15,32 @@
 
 package org.tron.core.db;
 
+import com.google.common.collect.Iterators;
+import com.google.common.primitives.Longs;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.googlecode.cqengine.IndexedCollection;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import org.tron.common.storage.ScanOptions;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.Sha256Hash;
 import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.capsule.BlockCapsule.BlockId;
+import org.tron.core.config.args.Args;
 import org.tron.core.db.common.iterator.BlockIterator;
+import org.tron.core.db.common.iterator.DBIterator;
 import org.tron.core.exception.BadItemException;
 import org.tron.core.exception.ItemNotFoundException;
 import org.tron.protos.Protocol.Block;
@@ -34,10 +51,28 @@ public class BlockStore extends TronStoreWithRevoking<BlockCapsule> {
 
   private BlockCapsule head;
   private IndexedCollection<Block> blockIndex;
+  private CachedSource<Block> blockCache;
+  private BlockArchive archive;
 
   @Autowired
   private BlockStore(@Qualifier("block") String dbName) {
     super(dbName);
+    blockCache = new CachedSource<>(dbSource, getRevokingDatabase(), BlockStore::parse,
+        Block::toByteArray, Block::getSerializedSize,
+        Args.getInstance().getStorage().getProfile(dbName).getObjectCacheSize());
+    dbSource = blockCache;
+    archive = new BlockArchive(BlockArchive.directoryOf(Args.getInstance().getOutputDirectory()
+        + Args.getInstance().getStorage().getDirectory(), dbName),
+        BlockArchive.DEFAULT_SEGMENT_SIZE);
+  }
+
+  private static Block parse(byte[] data) {
+    try {
+      return Block.parseFrom(data);
+    } catch (InvalidProtocolBufferException e) {
+      logger.debug(e.getMessage());
+      return null;
+    }
   }
 
   private static BlockStore instance;
@@ -70,6 +105,16 @@ public class BlockStore extends TronStoreWithRevoking<BlockCapsule> {
 
   @Override
   public BlockCapsule get(byte[] key) throws ItemNotFoundException, BadItemException {
+    Block block = blockCache.getObject(key);
+    if (block != null && block.getSerializedSize() != 0) {
+      return new BlockCapsule(block);
+    }
+
+    byte[] archived = getArchived(key);
+    if (archived != null) {
+      return new BlockCapsule(archived);
+    }
+
     byte[] value = dbSource.getData(key);
     if (ArrayUtils.isEmpty(value)) {
       throw new ItemNotFoundException();
@@ -77,15 +122,188 @@ public class BlockStore extends TronStoreWithRevoking<BlockCapsule> {
     return new BlockCapsule(value);
   }
 
+  @Override
+  protected BlockCapsule parseItem(byte[] value) {
+    try {
+      return new BlockCapsule(value);
+    } catch (BadItemException e) {
+      logger.debug(e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Get many blocks in one read, the ones deleted here after archiving are read from the archive.
+   */
+  @Override
+  public List<BlockCapsule> getAll(Collection<byte[]> keys) {
+    List<BlockCapsule> blocks = new ArrayList<>(keys.size());
+    Iterator<byte[]> key = keys.iterator();
+    for (Block block : blockCache.getObjects(keys)) {
+      byte[] id = key.next();
+      if (block != null && block.getSerializedSize() != 0) {
+        blocks.add(new BlockCapsule(block));
+      } else {
+        byte[] archived = getArchived(id);
+        blocks.add(archived == null ? null : parseItem(archived));
+      }
+    }
+    return blocks;
+  }
+
+  @Override
+  protected void putValue(byte[] key, BlockCapsule item) {
+    blockCache.putObject(key, item.getInstance());
+  }
+
+  public CachedSource<Block> getBlockCache() {
+    return blockCache;
+  }
+
+  private byte[] getArchived(byte[] key) {
+    if (key.length != Sha256Hash.LENGTH) {
+      return null;
+    }
+    return archive.get(Longs.fromByteArray(key), key);
+  }
+
+  /**
+   * Number of blocks in the archive, they are the blocks 0 to this number - 1.
+   */
+  public long getArchivedCount() {
+    return archive.getCount();
+  }
+
+  /**
+   * Move solidified blocks to the archive, numbered on from {@link #getArchivedCount()}. They
+   * are written through to the disk before they are deleted here, in one batch straight to the
+   * database since no block can revert them.
+   */
+  public void archive(List<BlockCapsule> blocks) {
+    if (blocks.isEmpty()) {
+      return;
+    }
+    blocks.forEach(block -> archive.append(block.getNum(), block.getBlockId().getBytes(),
+        block.getData()));
+    archive.flush();
+    Map<byte[], byte[]> rows = new HashMap<>(blocks.size());
+    blocks.forEach(block -> rows.put(block.getBlockId().getBytes(), null));
+    writeThrough(rows);
+    blockCache.evict(rows.keySet());
+  }
+
+  /**
+   * Bytes of the blocks with the given ids, which are sorted by number, null for a block that is
+   * not stored. Archived blocks are read in order from the segments, the others in one ordered scan
+   * of the database, whose keys start with the block number, skipping the blocks of other forks.
+   */
+  public List<byte[]> getRange(List<BlockId> ids) {
+    List<byte[]> result = new ArrayList<>(Collections.nCopies(ids.size(), null));
+    Map<Sha256Hash, Integer> pending = new HashMap<>();
+    long archived = archive.getCount();
+    long from = Long.MAX_VALUE;
+    for (int i = 0; i < ids.size(); i++) {
+      BlockId id = ids.get(i);
+      if (id.getNum() < archived) {
+        result.set(i, archive.get(id.getNum(), id.getBytes()));
+      }
+      if (result.get(i) == null) {
+        pending.put(Sha256Hash.wrap(id.getBytes()), i);
+        from = Math.min(from, id.getNum());
+      }
+    }
+    if (pending.isEmpty()) {
+      return result;
+    }
+
+    long to = ids.get(ids.size() - 1).getNum() + 1;
+    try (DBIterator iterator = dbSource.iterator(
+        ScanOptions.range(ByteArray.fromLong(from), ByteArray.fromLong(to)))) {
+      while (iterator.hasNext() && !pending.isEmpty()) {
+        Entry<byte[], byte[]> entry = iterator.next();
+        Integer i = entry.getKey().length == Sha256Hash.LENGTH
+            ? pending.remove(Sha256Hash.wrap(entry.getKey())) : null;
+        if (i != null) {
+          result.set(i, entry.getValue());
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+
+    // archived meanwhile
+    pending.forEach((id, i) -> result.set(i, getArchived(id.getBytes())));
+    return result;
+  }
+
+  public BlockArchive getArchive() {
+    return archive;
+  }
+
+  /**
+   * An archived block by number, null when it is not archived.
+   */
+  public BlockCapsule getArchivedBlock(long num) throws BadItemException {
+    Entry<byte[], byte[]> block = archive.get(num);
+    return block == null ? null : new BlockCapsule(block.getValue());
+  }
+
+  /**
+   * Number of pruned blocks, the blocks 0 to this number - 1 are kept as headers only.
+   */
+  public long getPrunedCount() {
+    return archive.getPrunedCount();
+  }
+
+  public boolean isPruned(long num) {
+    return num < archive.getPrunedCount();
+  }
+
+  /**
+   * Number after the last block that {@link #prune(long)} can cut down next, -1 when the blocks
+   * after the pruned ones are not in a sealed segment of the archive yet.
+   */
+  public long getPrunableEnd() {
+    return archive.getSegmentEnd(archive.getPrunedCount());
+  }
+
+  /**
+   * Cut the archived blocks {@link #getPrunedCount()} to end - 1 down to their headers.
+   */
+  public void prune(long end) {
+    archive.prune(end, BlockStore::withoutTransactions);
+  }
+
+  private static byte[] withoutTransactions(byte[] data) {
+    Block block = parse(data);
+    return block == null ? data : block.toBuilder().clearTransactions().build().toByteArray();
+  }
+
   @Override
   public boolean has(byte[] key) {
     byte[] block = dbSource.getData(key);
     logger.info("address is {}, block is {}", key, block);
-    return null != block;
+    return null != block || getArchived(key) != null;
   }
 
+  /**
+   * Archived blocks first, then the ones kept here; a block in both places is returned once.
+   */
   @Override
   public Iterator<BlockCapsule> iterator() {
-    return new BlockIterator(dbSource.iterator());
+    return new BlockIterator(Iterators.concat(archive.iterator(0),
+        Iterators.filter(dbSource.iterator(), entry -> getArchived(entry.getKey()) == null)));
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    archive.reset();
+  }
+
+  @Override
+  public void close() {
+    super.close();
+    archive.close();
   }
 }
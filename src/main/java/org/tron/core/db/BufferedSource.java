@@ -0,0 +1,455 @@
+package org.tron.core.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.iq80.leveldb.WriteOptions;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.common.storage.ScanOptions;
+import org.tron.common.storage.SnapshotSource;
+import org.tron.core.db.common.iterator.DBIterator;
+
+/**
+ * Write session of one store. While the revoking database has a dialog open, puts and deletes are
+ * kept in memory, readable through this source, and written to the underlying database as one
+ * batch when the outermost dialog ends. Outside of a dialog writes go straight through.
+ *
+ * <p>With overlays the revoking database seals the held changes of a block instead, they stay in
+ * memory as an overlay until the block is solidified and are then flushed. Reads go through the
+ * held changes and the overlays, newest first, to the database. Dropping an overlay reverts its
+ * block without a write. While overlays are held, writes outside of a dialog are held as well.
+ */
+@Slf4j
+public class BufferedSource implements DbSourceInter<byte[]>, WriteSession {
+
+  /**
+   * Marks a buffered delete, compared by identity.
+   */
+  private static final byte[] DELETED = new byte[0];
+
+  private final DbSourceInter<byte[]> backing;
+  private final RevokingDatabase revokingDatabase;
+  private volatile NavigableMap<byte[], byte[]> buffer = newBuffer();
+  private volatile List<Overlay> overlays = Collections.emptyList();
+
+  public BufferedSource(DbSourceInter<byte[]> backing, RevokingDatabase revokingDatabase) {
+    this.backing = backing;
+    this.revokingDatabase = revokingDatabase;
+  }
+
+  private static NavigableMap<byte[], byte[]> newBuffer() {
+    return new ConcurrentSkipListMap<>(MergedIterator.COMPARATOR);
+  }
+
+  public DbSourceInter<byte[]> getBacking() {
+    return backing;
+  }
+
+  /**
+   * Number of buffered puts and deletes.
+   */
+  public int getBufferedSize() {
+    return buffer.size();
+  }
+
+  /**
+   * Number of sealed overlays not flushed yet.
+   */
+  public int getOverlayCount() {
+    return overlays.size();
+  }
+
+  private boolean isHolding() {
+    return revokingDatabase.hasSession() || !overlays.isEmpty();
+  }
+
+  /**
+   * Write the buffered puts and deletes to the underlying database as one batch.
+   */
+  @Override
+  public void commit(WriteOptions options) {
+    if (buffer.isEmpty()) {
+      return;
+    }
+
+    Map<byte[], byte[]> rows = new HashMap<>(buffer.size());
+    buffer.forEach((key, value) -> rows.put(key, value == DELETED ? null : value));
+    backing.updateByBatch(rows, options);
+    buffer.clear();
+  }
+
+  @Override
+  public synchronized void seal(Object owner) {
+    if (buffer.isEmpty()) {
+      return;
+    }
+    List<Overlay> sealed = new ArrayList<>(overlays);
+    sealed.add(new Overlay(owner, buffer));
+    overlays = Collections.unmodifiableList(sealed);
+    buffer = newBuffer();
+  }
+
+  @Override
+  public void discard() {
+    buffer = newBuffer();
+  }
+
+  /**
+   * Write the overlays of the owners, merged oldest first, before they are removed, so a read
+   * finds their changes in one place or the other.
+   */
+  @Override
+  public synchronized boolean flushOverlays(Collection<?> owners, WriteOptions options) {
+    List<Overlay> kept = new ArrayList<>();
+    NavigableMap<byte[], byte[]> rows = new TreeMap<>(MergedIterator.COMPARATOR);
+    for (Overlay overlay : overlays) {
+      if (owners.contains(overlay.owner)) {
+        overlay.values.forEach((key, value) -> rows.put(key, value == DELETED ? null : value));
+      } else {
+        kept.add(overlay);
+      }
+    }
+    if (kept.size() == overlays.size()) {
+      return false;
+    }
+
+    backing.updateByBatch(rows, options);
+    overlays = Collections.unmodifiableList(kept);
+    return true;
+  }
+
+  @Override
+  public synchronized void dropOverlays(Collection<?> owners) {
+    overlays = Collections.unmodifiableList(overlays.stream()
+        .filter(overlay -> !owners.contains(overlay.owner))
+        .collect(Collectors.toList()));
+  }
+
+  @Override
+  public boolean hasOverlays() {
+    return !overlays.isEmpty();
+  }
+
+  /**
+   * Write an empty batch that waits for the disk, the engine syncs its log with everything
+   * written before.
+   */
+  @Override
+  public void sync() {
+    if (backing.isAlive()) {
+      backing.updateByBatch(new HashMap<>(), new WriteOptions().sync(true));
+    }
+  }
+
+  private void write(byte[] key, byte[] value) {
+    buffer.put(key, value);
+    revokingDatabase.enlist(this);
+  }
+
+  /**
+   * Latest change of a key in the overlays, null when none of them has one.
+   */
+  private static byte[] find(List<Overlay> overlays, byte[] key) {
+    for (int i = overlays.size() - 1; i >= 0; i--) {
+      byte[] value = overlays.get(i).values.get(key);
+      if (value != null) {
+        return value;
+      }
+    }
+    return null;
+  }
+
+  private byte[] getHeld(byte[] key) {
+    byte[] value = buffer.get(key);
+    return value != null ? value : find(overlays, key);
+  }
+
+  @Override
+  public byte[] getData(byte[] key) {
+    byte[] value = getHeld(key);
+    if (value != null) {
+      return value == DELETED ? null : value;
+    }
+    return backing.getData(key);
+  }
+
+  /**
+   * Answer the buffered keys from memory and read the others below in one pass.
+   */
+  @Override
+  public List<byte[]> getAll(Collection<byte[]> keys) {
+    List<byte[]> values = new ArrayList<>(keys.size());
+    List<Integer> missed = new ArrayList<>();
+    List<byte[]> misses = new ArrayList<>();
+    for (byte[] key : keys) {
+      byte[] value = getHeld(key);
+      if (value == null) {
+        missed.add(values.size());
+        misses.add(key);
+      }
+      values.add(value == DELETED ? null : value);
+    }
+    if (misses.isEmpty()) {
+      return values;
+    }
+
+    List<byte[]> loaded = backing.getAll(misses);
+    for (int i = 0; i < missed.size(); i++) {
+      values.set(missed.get(i), loaded.get(i));
+    }
+    return values;
+  }
+
+  @Override
+  public void putData(byte[] key, byte[] value) {
+    if (isHolding()) {
+      write(key, value);
+    } else {
+      backing.putData(key, value);
+    }
+  }
+
+  @Override
+  public void putData(byte[] key, byte[] value, WriteOptions options) {
+    if (isHolding()) {
+      write(key, value);
+    } else {
+      backing.putData(key, value, options);
+    }
+  }
+
+  @Override
+  public void deleteData(byte[] key) {
+    if (isHolding()) {
+      write(key, DELETED);
+    } else {
+      backing.deleteData(key);
+    }
+  }
+
+  @Override
+  public void deleteData(byte[] key, WriteOptions options) {
+    if (isHolding()) {
+      write(key, DELETED);
+    } else {
+      backing.deleteData(key, options);
+    }
+  }
+
+  @Override
+  public void updateByBatch(Map<byte[], byte[]> rows) {
+    updateByBatch(rows, new WriteOptions());
+  }
+
+  @Override
+  public void updateByBatch(Map<byte[], byte[]> rows, WriteOptions options) {
+    if (isHolding()) {
+      rows.forEach((key, value) -> write(key, value == null ? DELETED : value));
+    } else {
+      backing.updateByBatch(rows, options);
+    }
+  }
+
+  @Override
+  public boolean flush() {
+    return backing.flush();
+  }
+
+  @Override
+  public void compactRange(byte[] from, byte[] to) {
+    backing.compactRange(from, to);
+  }
+
+  @Override
+  public void throttleCompactions(boolean throttled, long throttledRate) {
+    backing.throttleCompactions(throttled, throttledRate);
+  }
+
+  @Override
+  public String getCompactionStats() {
+    return backing.getCompactionStats();
+  }
+
+  @Override
+  public String getDBName() {
+    return backing.getDBName();
+  }
+
+  @Override
+  public void setDBName(String name) {
+    backing.setDBName(name);
+  }
+
+  @Override
+  public void initDB() {
+    backing.initDB();
+  }
+
+  @Override
+  public boolean isAlive() {
+    return backing.isAlive();
+  }
+
+  @Override
+  public void closeDB() {
+    if (!buffer.isEmpty() || !overlays.isEmpty()) {
+      logger.warn("Drop {} uncommitted writes and {} overlays of {}", buffer.size(),
+          overlays.size(), getDBName());
+      buffer = newBuffer();
+      overlays = Collections.emptyList();
+    }
+    backing.closeDB();
+  }
+
+  @Override
+  public void resetDb() {
+    buffer = newBuffer();
+    overlays = Collections.emptyList();
+    backing.resetDb();
+  }
+
+  boolean hasChanges() {
+    return !buffer.isEmpty() || !overlays.isEmpty();
+  }
+
+  @Override
+  public Set<byte[]> allKeys() {
+    if (!hasChanges()) {
+      return backing.allKeys();
+    }
+
+    Set<byte[]> result = DbSourceInter.newKeySet();
+    iterator().forEachRemaining(entry -> result.add(entry.getKey()));
+    return result;
+  }
+
+  @Override
+  public Set<byte[]> allValues() {
+    if (!hasChanges()) {
+      return backing.allValues();
+    }
+
+    Set<byte[]> result = new HashSet<>();
+    iterator().forEachRemaining(entry -> result.add(entry.getValue()));
+    return result;
+  }
+
+  @Override
+  public long getTotal() {
+    if (!hasChanges()) {
+      return backing.getTotal();
+    }
+
+    long total = 0;
+    for (Iterator<Entry<byte[], byte[]>> iterator = iterator(); iterator.hasNext(); ) {
+      iterator.next();
+      total++;
+    }
+    return total;
+  }
+
+  @Override
+  public DBIterator iterator() {
+    return iterator(ScanOptions.all());
+  }
+
+  /**
+   * Snapshot of the backing source with the sealed overlays, held writes are not committed yet.
+   * The overlays are taken first, one flushed meanwhile is then found in both.
+   */
+  @Override
+  public SnapshotSource getSnapshot() {
+    List<Overlay> current = overlays;
+    SnapshotSource snapshot = backing.getSnapshot();
+    return current.isEmpty() ? snapshot : new OverlaySnapshot(snapshot, current);
+  }
+
+  @Override
+  public DBIterator iterator(ScanOptions options) {
+    NavigableMap<byte[], byte[]> held = buffer;
+    List<Overlay> current = overlays;
+    if (held.isEmpty() && current.isEmpty()) {
+      return backing.iterator(options);
+    }
+    return merge(backing, current, held, options);
+  }
+
+  private static DBIterator merge(DbSourceInter<byte[]> source, List<Overlay> overlays,
+      NavigableMap<byte[], byte[]> held, ScanOptions options) {
+    NavigableMap<byte[], byte[]> changes = held;
+    if (!overlays.isEmpty()) {
+      changes = new TreeMap<>(MergedIterator.COMPARATOR);
+      for (Overlay overlay : overlays) {
+        changes.putAll(options.select(overlay.values));
+      }
+      changes.putAll(options.select(held));
+    }
+    return PagedIterator.page(new MergedIterator(source.iterator(options.unpaged()),
+        options.select(changes).entrySet().iterator(), DELETED, options.isReverse()), options);
+  }
+
+  /**
+   * Changes of one block sealed by the revoking database, never modified afterwards.
+   */
+  private static class Overlay {
+
+    private final Object owner;
+    private final NavigableMap<byte[], byte[]> values;
+
+    Overlay(Object owner, NavigableMap<byte[], byte[]> values) {
+      this.owner = owner;
+      this.values = values;
+    }
+  }
+
+  private static class OverlaySnapshot extends SnapshotSource {
+
+    private static final NavigableMap<byte[], byte[]> NONE = new TreeMap<>(
+        MergedIterator.COMPARATOR);
+
+    private final SnapshotSource snapshot;
+    private final List<Overlay> overlays;
+
+    OverlaySnapshot(SnapshotSource snapshot, List<Overlay> overlays) {
+      super(snapshot.getDBName());
+      this.snapshot = snapshot;
+      this.overlays = overlays;
+    }
+
+    @Override
+    public boolean isAlive() {
+      return snapshot.isAlive();
+    }
+
+    @Override
+    public byte[] getData(byte[] key) {
+      byte[] value = find(overlays, key);
+      if (value != null) {
+        return value == DELETED ? null : value;
+      }
+      return snapshot.getData(key);
+    }
+
+    @Override
+    public DBIterator iterator(ScanOptions options) {
+      return merge(snapshot, overlays, NONE, options);
+    }
+
+    @Override
+    protected void release() {
+      snapshot.closeDB();
+    }
+  }
+}
@@ -0,0 +1,574 @@
+package org.tron.core.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.iq80.leveldb.WriteOptions;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.common.storage.ScanOptions;
+import org.tron.common.storage.SnapshotSource;
+import org.tron.core.db.common.iterator.DBIterator;
+
+/**
+ * Keeps parsed objects of a store in memory. Objects must be immutable, a store hands out new
+ * capsules around them. Inside a write session a put only marks the entry dirty, it is serialized
+ * and written down when the session commits; outside of one writes go straight through. Clean
+ * entries are evicted least recently used first once their weight exceeds the limit.
+ *
+ * <p>The revoking database restores old values through the byte level methods of this source, so
+ * the cache always agrees with what a revoke or pop put back.
+ */
+@Slf4j
+public class CachedSource<T> implements DbSourceInter<byte[]>, WriteSession {
+
+  private static final byte[] DELETED = new byte[0];
+
+  private final DbSourceInter<byte[]> below;
+  private final RevokingDatabase revokingDatabase;
+  private final Function<byte[], T> parser;
+  private final Function<T, byte[]> serializer;
+  private final ToIntFunction<T> weigher;
+  private final long maxWeight;
+  private final LinkedHashMap<ByteArrayWrapper, CachedEntry<T>> cache =
+      new LinkedHashMap<>(16, 0.75f, true);
+  @Getter
+  private long weight = 0;
+  private int dirtyCount = 0;
+  private long hitCount = 0;
+  private long missCount = 0;
+  private long evictionCount = 0;
+
+  /**
+   * constructor.
+   *
+   * @param weigher serialized size of an object, 0 for an empty one
+   * @param maxWeight weight of the clean entries kept in memory
+   */
+  public CachedSource(DbSourceInter<byte[]> below, RevokingDatabase revokingDatabase,
+      Function<byte[], T> parser, Function<T, byte[]> serializer, ToIntFunction<T> weigher,
+      long maxWeight) {
+    this.below = below;
+    this.revokingDatabase = revokingDatabase;
+    this.parser = parser;
+    this.serializer = serializer;
+    this.weigher = weigher;
+    this.maxWeight = maxWeight;
+  }
+
+  public DbSourceInter<byte[]> getBelow() {
+    return below;
+  }
+
+  public synchronized int size() {
+    return cache.size();
+  }
+
+  public synchronized int getDirtyCount() {
+    return dirtyCount;
+  }
+
+  /**
+   * Number of object reads answered from memory.
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Number of object reads that went to the source below.
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Number of clean entries dropped to stay under the weight limit.
+   */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Whether a key has a non empty value. An object in memory answers it by its weight, a dirty one
+   * is not serialized to tell.
+   */
+  public boolean hasValue(byte[] key) {
+    if (ReadView.pinned(getDBName()) == null) {
+      synchronized (this) {
+        CachedEntry<T> entry = cache.get(new ByteArrayWrapper(key));
+        if (entry != null) {
+          return !entry.deleted
+              && (entry.bytes != null ? entry.bytes.length > 0 : entry.weight > 0);
+        }
+      }
+    }
+    byte[] value = getData(key);
+    return value != null && value.length > 0;
+  }
+
+  /**
+   * Get the parsed object of a key, null when it does not exist or can not be parsed. A thread
+   * with a pinned read view parses from the view and leaves the cache alone.
+   */
+  public T getObject(byte[] key) {
+    DbSourceInter<byte[]> view = ReadView.pinned(getDBName());
+    if (view != null) {
+      byte[] bytes = view.getData(key);
+      return bytes == null ? null : parser.apply(bytes);
+    }
+    return getCachedObject(key);
+  }
+
+  private synchronized T getCachedObject(byte[] key) {
+    ByteArrayWrapper wrapper = new ByteArrayWrapper(key);
+    CachedEntry<T> entry = cache.get(wrapper);
+    if (entry != null) {
+      hitCount++;
+      if (entry.object == null && entry.bytes != null) {
+        entry.object = parser.apply(entry.bytes);
+      }
+      return entry.object;
+    }
+
+    missCount++;
+    byte[] bytes = below.getData(key);
+    if (bytes == null) {
+      return null;
+    }
+    T object = parser.apply(bytes);
+    if (object == null) {
+      return null;
+    }
+    store(wrapper, new CachedEntry<>(object, bytes, false, weigher.applyAsInt(object)));
+    return object;
+  }
+
+  /**
+   * Get the parsed objects of many keys, in the order of the keys and null where one does not
+   * exist. The keys not in memory are read below in one pass and kept, so it also prefetches the
+   * objects a caller is about to work on.
+   */
+  public List<T> getObjects(Collection<byte[]> keys) {
+    DbSourceInter<byte[]> view = ReadView.pinned(getDBName());
+    if (view != null) {
+      return view.getAll(keys).stream()
+          .map(bytes -> bytes == null ? null : parser.apply(bytes))
+          .collect(Collectors.toList());
+    }
+    return getCachedObjects(keys);
+  }
+
+  private synchronized List<T> getCachedObjects(Collection<byte[]> keys) {
+    List<T> objects = new ArrayList<>(keys.size());
+    List<Integer> missed = new ArrayList<>();
+    List<byte[]> misses = new ArrayList<>();
+    for (byte[] key : keys) {
+      CachedEntry<T> entry = cache.get(new ByteArrayWrapper(key));
+      if (entry == null) {
+        missed.add(objects.size());
+        misses.add(key);
+        objects.add(null);
+        continue;
+      }
+      hitCount++;
+      if (entry.object == null && entry.bytes != null) {
+        entry.object = parser.apply(entry.bytes);
+      }
+      objects.add(entry.object);
+    }
+    if (misses.isEmpty()) {
+      return objects;
+    }
+
+    missCount += misses.size();
+    List<byte[]> loaded = below.getAll(misses);
+    for (int i = 0; i < misses.size(); i++) {
+      byte[] bytes = loaded.get(i);
+      T object = bytes == null ? null : parser.apply(bytes);
+      if (object != null) {
+        store(new ByteArrayWrapper(misses.get(i)),
+            new CachedEntry<>(object, bytes, false, weigher.applyAsInt(object)));
+        objects.set(missed.get(i), object);
+      }
+    }
+    return objects;
+  }
+
+  /**
+   * Put a parsed object, serialized only when it is written down.
+   */
+  public void putObject(byte[] key, T object) {
+    if (!revokingDatabase.hasSession()) {
+      byte[] bytes = serializer.apply(object);
+      synchronized (this) {
+        below.putData(key, bytes);
+        store(new ByteArrayWrapper(key),
+            new CachedEntry<>(object, bytes, false, weigher.applyAsInt(object)));
+      }
+      return;
+    }
+
+    synchronized (this) {
+      store(new ByteArrayWrapper(key),
+          new CachedEntry<>(object, null, true, weigher.applyAsInt(object)));
+    }
+    revokingDatabase.enlist(this);
+  }
+
+  private void store(ByteArrayWrapper key, CachedEntry<T> entry) {
+    CachedEntry<T> old = cache.put(key, entry);
+    if (old != null) {
+      weight -= old.weight;
+      dirtyCount -= old.dirty ? 1 : 0;
+    }
+    weight += entry.weight;
+    dirtyCount += entry.dirty ? 1 : 0;
+    evict();
+  }
+
+  private void evict() {
+    if (weight <= maxWeight) {
+      return;
+    }
+
+    Iterator<CachedEntry<T>> iterator = cache.values().iterator();
+    while (weight > maxWeight && iterator.hasNext()) {
+      CachedEntry<T> entry = iterator.next();
+      if (!entry.dirty) {
+        weight -= entry.weight;
+        evictionCount++;
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Serialize the dirty entries and write them to the source below.
+   */
+  @Override
+  public synchronized void prepare() {
+    if (dirtyCount == 0) {
+      return;
+    }
+
+    for (Entry<ByteArrayWrapper, CachedEntry<T>> e : cache.entrySet()) {
+      CachedEntry<T> entry = e.getValue();
+      if (!entry.dirty) {
+        continue;
+      }
+
+      if (entry.deleted) {
+        below.deleteData(e.getKey().getData());
+      } else {
+        below.putData(e.getKey().getData(), entry.getBytes(serializer));
+      }
+      entry.dirty = false;
+    }
+    dirtyCount = 0;
+    cache.values().removeIf(entry -> entry.deleted);
+    evict();
+  }
+
+  @Override
+  public void commit(WriteOptions options) {
+  }
+
+  @Override
+  public void sync() {
+  }
+
+  @Override
+  public byte[] getData(byte[] key) {
+    DbSourceInter<byte[]> view = ReadView.pinned(getDBName());
+    return view != null ? view.getData(key) : getCachedData(key);
+  }
+
+  @Override
+  public List<byte[]> getAll(Collection<byte[]> keys) {
+    DbSourceInter<byte[]> view = ReadView.pinned(getDBName());
+    return view != null ? view.getAll(keys) : getCachedAll(keys);
+  }
+
+  private synchronized List<byte[]> getCachedAll(Collection<byte[]> keys) {
+    List<byte[]> values = new ArrayList<>(keys.size());
+    List<Integer> missed = new ArrayList<>();
+    List<byte[]> misses = new ArrayList<>();
+    for (byte[] key : keys) {
+      CachedEntry<T> entry = cache.get(new ByteArrayWrapper(key));
+      if (entry == null) {
+        missed.add(values.size());
+        misses.add(key);
+      }
+      values.add(entry == null || entry.deleted ? null : entry.getBytes(serializer));
+    }
+    if (!misses.isEmpty()) {
+      List<byte[]> loaded = below.getAll(misses);
+      for (int i = 0; i < missed.size(); i++) {
+        values.set(missed.get(i), loaded.get(i));
+      }
+    }
+    return values;
+  }
+
+  private synchronized byte[] getCachedData(byte[] key) {
+    CachedEntry<T> entry = cache.get(new ByteArrayWrapper(key));
+    if (entry != null) {
+      return entry.deleted ? null : entry.getBytes(serializer);
+    }
+    return below.getData(key);
+  }
+
+  @Override
+  public void putData(byte[] key, byte[] value) {
+    putData(key, value, null);
+  }
+
+  @Override
+  public synchronized void putData(byte[] key, byte[] value, WriteOptions options) {
+    if (!revokingDatabase.hasSession()) {
+      invalidate(key);
+      if (options == null) {
+        below.putData(key, value);
+      } else {
+        below.putData(key, value, options);
+      }
+      return;
+    }
+
+    store(new ByteArrayWrapper(key), new CachedEntry<>(null, value, true, value.length));
+    revokingDatabase.enlist(this);
+  }
+
+  @Override
+  public void deleteData(byte[] key) {
+    deleteData(key, null);
+  }
+
+  @Override
+  public synchronized void deleteData(byte[] key, WriteOptions options) {
+    if (!revokingDatabase.hasSession()) {
+      invalidate(key);
+      if (options == null) {
+        below.deleteData(key);
+      } else {
+        below.deleteData(key, options);
+      }
+      return;
+    }
+
+    CachedEntry<T> entry = new CachedEntry<>(null, null, true, 0);
+    entry.deleted = true;
+    store(new ByteArrayWrapper(key), entry);
+    revokingDatabase.enlist(this);
+  }
+
+  /**
+   * Drop the clean entries of keys that were written below this source.
+   */
+  public synchronized void evict(Collection<byte[]> keys) {
+    for (byte[] key : keys) {
+      CachedEntry<T> entry = cache.get(new ByteArrayWrapper(key));
+      if (entry != null && !entry.dirty) {
+        invalidate(key);
+      }
+    }
+  }
+
+  private void invalidate(byte[] key) {
+    CachedEntry<T> old = cache.remove(new ByteArrayWrapper(key));
+    if (old != null) {
+      weight -= old.weight;
+      dirtyCount -= old.dirty ? 1 : 0;
+    }
+  }
+
+  @Override
+  public void updateByBatch(Map<byte[], byte[]> rows) {
+    updateByBatch(rows, new WriteOptions());
+  }
+
+  @Override
+  public synchronized void updateByBatch(Map<byte[], byte[]> rows, WriteOptions options) {
+    prepare();
+    rows.keySet().forEach(this::invalidate);
+    below.updateByBatch(rows, options);
+  }
+
+  @Override
+  public boolean flush() {
+    return below.flush();
+  }
+
+  @Override
+  public void compactRange(byte[] from, byte[] to) {
+    below.compactRange(from, to);
+  }
+
+  @Override
+  public void throttleCompactions(boolean throttled, long throttledRate) {
+    below.throttleCompactions(throttled, throttledRate);
+  }
+
+  @Override
+  public String getCompactionStats() {
+    return below.getCompactionStats();
+  }
+
+  @Override
+  public String getDBName() {
+    return below.getDBName();
+  }
+
+  @Override
+  public void setDBName(String name) {
+    below.setDBName(name);
+  }
+
+  @Override
+  public void initDB() {
+    below.initDB();
+  }
+
+  @Override
+  public boolean isAlive() {
+    return below.isAlive();
+  }
+
+  @Override
+  public synchronized void closeDB() {
+    clear();
+    below.closeDB();
+  }
+
+  @Override
+  public synchronized void resetDb() {
+    clear();
+    below.resetDb();
+  }
+
+  private void clear() {
+    if (dirtyCount > 0) {
+      logger.warn("Drop {} uncommitted objects of {}", dirtyCount, getDBName());
+    }
+    cache.clear();
+    weight = 0;
+    dirtyCount = 0;
+  }
+
+  /**
+   * Snapshot of the source below, dirty entries are not committed yet.
+   */
+  @Override
+  public SnapshotSource getSnapshot() {
+    return below.getSnapshot();
+  }
+
+  // bulk reads merge the dirty entries into the source below without writing them down
+
+  @Override
+  public Set<byte[]> allKeys() {
+    synchronized (this) {
+      if (dirtyCount == 0) {
+        return below.allKeys();
+      }
+    }
+
+    Set<byte[]> result = DbSourceInter.newKeySet();
+    iterator().forEachRemaining(entry -> result.add(entry.getKey()));
+    return result;
+  }
+
+  @Override
+  public Set<byte[]> allValues() {
+    synchronized (this) {
+      if (dirtyCount == 0) {
+        return below.allValues();
+      }
+    }
+
+    Set<byte[]> result = new HashSet<>();
+    iterator().forEachRemaining(entry -> result.add(entry.getValue()));
+    return result;
+  }
+
+  @Override
+  public long getTotal() {
+    DbSourceInter<byte[]> view = ReadView.pinned(getDBName());
+    if (view != null) {
+      return view.getTotal();
+    }
+    synchronized (this) {
+      if (dirtyCount == 0) {
+        return below.getTotal();
+      }
+    }
+
+    long total = 0;
+    for (Iterator<Entry<byte[], byte[]>> iterator = iterator(); iterator.hasNext(); ) {
+      iterator.next();
+      total++;
+    }
+    return total;
+  }
+
+  @Override
+  public DBIterator iterator() {
+    return iterator(ScanOptions.all());
+  }
+
+  @Override
+  public DBIterator iterator(ScanOptions options) {
+    DbSourceInter<byte[]> view = ReadView.pinned(getDBName());
+    return view != null ? view.iterator(options) : cachedIterator(options);
+  }
+
+  private synchronized DBIterator cachedIterator(ScanOptions options) {
+    if (dirtyCount == 0) {
+      return below.iterator(options);
+    }
+
+    TreeMap<byte[], byte[]> changes = new TreeMap<>(MergedIterator.COMPARATOR);
+    cache.forEach((key, entry) -> {
+      if (entry.dirty && options.contains(key.getData())) {
+        changes.put(key.getData(), entry.deleted ? DELETED : entry.getBytes(serializer));
+      }
+    });
+    return PagedIterator.page(new MergedIterator(below.iterator(options.unpaged()),
+        options.select(changes).entrySet().iterator(), DELETED, options.isReverse()), options);
+  }
+
+  private static class CachedEntry<T> {
+
+    private T object;
+    private byte[] bytes;
+    private boolean dirty;
+    private boolean deleted;
+    private final int weight;
+
+    CachedEntry(T object, byte[] bytes, boolean dirty, int weight) {
+      this.object = object;
+      this.bytes = bytes;
+      this.dirty = dirty;
+      this.weight = weight;
+    }
+
+    byte[] getBytes(Function<T, byte[]> serializer) {
+      if (bytes == null) {
+        bytes = serializer.apply(object);
+      }
+      return bytes;
+    }
+  }
+}
@@ -0,0 +1,246 @@
+package org.tron.core.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.common.storage.DbSourceFactory;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.common.storage.ScanOptions;
+import org.tron.core.config.args.Args;
+import org.tron.core.config.args.Storage;
+import org.tron.core.db.common.iterator.DBIterator;
+
+/**
+ * Consistent copy of the chain stores at a committed block, from which a new node starts instead
+ * of syncing from genesis. A checkpoint directory holds one database per store and a manifest with
+ * the block numbers. The manifest is written last, a directory without it is incomplete.
+ *
+ * <p>Restoring links the table files of the checkpoint into the storage directory, the engines
+ * never modify them, and copies the other files. One checkpoint can seed several nodes. The store
+ * statistics are not part of it, the restored stores are counted when they are first opened.
+ */
+@Slf4j
+@Getter
+public class Checkpoint {
+
+  public static final String MANIFEST = "checkpoint.properties";
+
+  private static final int BATCH_SIZE = 10_000;
+
+  private final long headBlockNum;
+  private final String headBlockHash;
+  private final long solidifiedBlockNum;
+  private final Map<String, Long> counts;
+  private final Map<String, Long> archives;
+
+  public Checkpoint(long headBlockNum, String headBlockHash, long solidifiedBlockNum,
+      Map<String, Long> counts, Map<String, Long> archives) {
+    this.headBlockNum = headBlockNum;
+    this.headBlockHash = headBlockHash;
+    this.solidifiedBlockNum = solidifiedBlockNum;
+    this.counts = counts;
+    this.archives = archives;
+  }
+
+  /**
+   * Copy every source into a new database under directory, with the engine and profile configured
+   * for it, then the block archives, then write the manifest. The sources must not change
+   * meanwhile, e.g. be read through a pinned {@link ReadView}. Archives only grow, they are
+   * copied after the sources so no block moved to them meanwhile is lost.
+   */
+  public static Checkpoint write(File directory, long headBlockNum, String headBlockHash,
+      long solidifiedBlockNum, Collection<DbSourceInter<byte[]>> sources,
+      Collection<BlockArchive> archives) throws IOException {
+    return write(directory, headBlockNum, headBlockHash, solidifiedBlockNum, sources, archives,
+        Collections.emptyMap());
+  }
+
+  /**
+   * Like {@link #write(File, long, String, long, Collection, Collection)}, the copy of each source
+   * takes the undo writes of its database on the way, e.g. to take the stores back from the
+   * committed head to the solidified block.
+   *
+   * @param undo the value of each key to write instead of the one of the source, by database
+   *     name, null to leave the key out
+   */
+  public static Checkpoint write(File directory, long headBlockNum, String headBlockHash,
+      long solidifiedBlockNum, Collection<DbSourceInter<byte[]>> sources,
+      Collection<BlockArchive> archives, Map<String, Map<ByteArrayWrapper, byte[]>> undo)
+      throws IOException {
+    String[] existing = directory.list();
+    if (existing != null && existing.length > 0) {
+      throw new IllegalArgumentException("checkpoint directory " + directory + " is not empty");
+    }
+    Files.createDirectories(directory.toPath());
+
+    long start = System.currentTimeMillis();
+    Map<String, Long> counts = new LinkedHashMap<>();
+    for (DbSourceInter<byte[]> source : sources) {
+      counts.put(source.getDBName(), copy(source, directory.getPath(),
+          undo.getOrDefault(source.getDBName(), Collections.emptyMap())));
+    }
+    Map<String, Long> archiveCounts = new LinkedHashMap<>();
+    for (BlockArchive archive : archives) {
+      String name = archive.getDirectory().getName();
+      archiveCounts.put(name, archive.checkpoint(new File(directory, name)));
+    }
+    Checkpoint checkpoint = new Checkpoint(headBlockNum, headBlockHash, solidifiedBlockNum,
+        counts, archiveCounts);
+    checkpoint.save(new File(directory, MANIFEST));
+    logger.info("Wrote {} to {} in {} ms", checkpoint, directory,
+        System.currentTimeMillis() - start);
+    return checkpoint;
+  }
+
+  private static long copy(DbSourceInter<byte[]> source, String parent,
+      Map<ByteArrayWrapper, byte[]> undo) throws IOException {
+    String name = source.getDBName();
+    Storage storage = Args.getInstance().getStorage();
+    DbSourceInter<byte[]> target = DbSourceFactory.create(storage.getEngine(name), parent, name,
+        storage.getProfile(name));
+    target.initDB();
+    Map<ByteArrayWrapper, byte[]> pending = new HashMap<>(undo);
+    try (DBIterator iterator = source.iterator(ScanOptions.all())) {
+      long count = 0;
+      Map<byte[], byte[]> batch = new HashMap<>();
+      while (iterator.hasNext()) {
+        Entry<byte[], byte[]> entry = iterator.next();
+        ByteArrayWrapper key = new ByteArrayWrapper(entry.getKey());
+        if (!pending.containsKey(key)) {
+          batch.put(entry.getKey(), entry.getValue());
+        } else if (pending.get(key) != null) {
+          batch.put(entry.getKey(), pending.remove(key));
+        } else {
+          pending.remove(key);
+        }
+        if (batch.size() >= BATCH_SIZE) {
+          target.updateByBatch(batch);
+          count += batch.size();
+          batch.clear();
+        }
+      }
+      // keys the undone writes removed
+      pending.forEach((key, value) -> {
+        if (value != null) {
+          batch.put(key.getData(), value);
+        }
+      });
+      target.updateByBatch(batch);
+      return count + batch.size();
+    } finally {
+      target.closeDB();
+    }
+  }
+
+  private void save(File file) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("head.num", Long.toString(headBlockNum));
+    properties.setProperty("head.hash", headBlockHash);
+    properties.setProperty("solidified.num", Long.toString(solidifiedBlockNum));
+    counts.forEach((name, count) -> properties.setProperty("store." + name, Long.toString(count)));
+    archives.forEach((name, count) ->
+        properties.setProperty("archive." + name, Long.toString(count)));
+    try (OutputStream out = Files.newOutputStream(file.toPath())) {
+      properties.store(out, "checkpoint");
+    }
+  }
+
+  /**
+   * Read the manifest of a checkpoint directory.
+   */
+  public static Checkpoint load(File directory) throws IOException {
+    File file = new File(directory, MANIFEST);
+    if (!file.isFile()) {
+      throw new IllegalArgumentException(directory + " is not a complete checkpoint");
+    }
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file.toPath())) {
+      properties.load(in);
+    }
+    return new Checkpoint(Long.parseLong(properties.getProperty("head.num")),
+        properties.getProperty("head.hash"),
+        Long.parseLong(properties.getProperty("solidified.num")),
+        withPrefix(properties, "store."), withPrefix(properties, "archive."));
+  }
+
+  private static Map<String, Long> withPrefix(Properties properties, String prefix) {
+    Map<String, Long> result = new LinkedHashMap<>();
+    properties.stringPropertyNames().stream()
+        .filter(key -> key.startsWith(prefix))
+        .sorted()
+        .forEach(key -> result.put(key.substring(prefix.length()),
+            Long.parseLong(properties.getProperty(key))));
+    return result;
+  }
+
+  /**
+   * Put the databases of a checkpoint into a storage directory that does not hold them yet.
+   */
+  public static Checkpoint restore(File directory, File storageDirectory) throws IOException {
+    Checkpoint checkpoint = load(directory);
+    List<String> names = new ArrayList<>(checkpoint.counts.keySet());
+    names.addAll(checkpoint.archives.keySet());
+    for (String name : names) {
+      String[] existing = new File(storageDirectory, name).list();
+      if (existing != null && existing.length > 0) {
+        throw new IllegalStateException("database " + name + " already exists in "
+            + storageDirectory + ", a checkpoint is only restored into an empty directory");
+      }
+    }
+
+    long start = System.currentTimeMillis();
+    for (String name : checkpoint.counts.keySet()) {
+      Path target = new File(storageDirectory, name).toPath();
+      Files.createDirectories(target);
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(new File(directory, name)
+          .toPath())) {
+        for (Path file : files) {
+          place(file, target.resolve(file.getFileName()));
+        }
+      }
+    }
+    for (String name : checkpoint.archives.keySet()) {
+      BlockArchive.restore(new File(directory, name), new File(storageDirectory, name));
+    }
+    // the undo states of an earlier chain do not apply to the restored stores
+    Files.deleteIfExists(new File(storageDirectory, RevokingJournal.FILE_NAME).toPath());
+    logger.info("Restored {} from {} in {} ms", checkpoint, directory,
+        System.currentTimeMillis() - start);
+    return checkpoint;
+  }
+
+  private static void place(Path file, Path target) throws IOException {
+    String name = file.getFileName().toString();
+    if (name.endsWith(".ldb") || name.endsWith(".sst")) {
+      try {
+        Files.createLink(target, file);
+        return;
+      } catch (IOException | UnsupportedOperationException e) {
+        // another file system, fall back to a copy
+        logger.debug("Can not link {}: {}", file, e.getMessage());
+      }
+    }
+    Files.copy(file, target);
+  }
+
+  @Override
+  public String toString() {
+    return "checkpoint{head=" + headBlockNum + ", solidified=" + solidifiedBlockNum
+        + ", stores=" + counts + ", archives=" + archives + "}";
+  }
+}
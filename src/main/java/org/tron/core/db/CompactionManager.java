@@ -0,0 +1,236 @@
+package org.tron.core.db;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.core.config.Parameter.ChainConstant;
+import org.tron.core.config.args.Compaction;
+import org.tron.core.config.args.Compaction.Window;
+
+/**
+ * Compacts the stores on purpose instead of leaving every compaction to the engines: all of them
+ * after a maintenance period and in the configured idle windows, a key range of one on request.
+ * Compactions run one at a time on a background thread and wait while background compaction is
+ * held back, which it is while the next slot is one of this node's witnesses.
+ */
+@Slf4j
+public class CompactionManager {
+
+  private static final long IDLE_CHECK_MILLIS = 60_000;
+  private static final long THROTTLE_CHECK_MILLIS = 500;
+
+  /**
+   * A throttle not renewed for this long ends, a stopped witness loop must not keep compaction
+   * held back.
+   */
+  private static final long THROTTLE_MILLIS = 2L * ChainConstant.BLOCK_PRODUCED_INTERVAL;
+
+  private final Supplier<List<TronStoreWithRevoking<?>>> stores;
+  private final Compaction config;
+  private final ExecutorService compactor = Executors.newSingleThreadExecutor(
+      daemon("compaction"));
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+      daemon("compaction-scheduler"));
+  private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+  private final Map<Window, LocalDate> idleRuns = new ConcurrentHashMap<>();
+  private final AtomicBoolean fullCompactionQueued = new AtomicBoolean();
+  private final AtomicBoolean requestQueued = new AtomicBoolean();
+  private volatile long throttledUntil = 0;
+  private boolean throttleApplied = false;
+
+  public CompactionManager(Supplier<List<TronStoreWithRevoking<?>>> stores, Compaction config) {
+    this.stores = stores;
+    this.config = config;
+    scheduler.scheduleWithFixedDelay(this::applyThrottle, THROTTLE_CHECK_MILLIS,
+        THROTTLE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    if (!config.getIdleWindows().isEmpty()) {
+      scheduler.scheduleWithFixedDelay(this::checkIdleWindows, 0, IDLE_CHECK_MILLIS,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private static ThreadFactory daemon(String name) {
+    return runnable -> {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Queue a compaction of a key range of a store, a null bound is open, after the compactions
+   * queued before. The future completes with the stats of the store once it ran.
+   *
+   * @throws IllegalStateException when a requested compaction is queued already
+   */
+  public CompletableFuture<Stats> compact(String name, byte[] from, byte[] to) {
+    TronStoreWithRevoking<?> store = stores.get().stream()
+        .filter(s -> s.getName().equals(name))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("store(" + name + ") does not exist"));
+    if (!requestQueued.compareAndSet(false, true)) {
+      throw new IllegalStateException("a requested compaction is queued already");
+    }
+    CompletableFuture<Stats> result = new CompletableFuture<>();
+    try {
+      compactor.execute(() -> {
+        requestQueued.set(false);
+        try {
+          compact(store, from, to, "request");
+          result.complete(getStats(name));
+        } catch (RuntimeException e) {
+          result.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      requestQueued.set(false);
+      throw e;
+    }
+    return result;
+  }
+
+  /**
+   * Called after a maintenance period was processed, when the vote and witness updates are done.
+   */
+  public void onMaintenance() {
+    if (config.isAfterMaintenance()) {
+      compactAll("maintenance");
+    }
+  }
+
+  /**
+   * Queue a compaction of all configured stores, unless one is queued already.
+   */
+  public void compactAll(String reason) {
+    if (!fullCompactionQueued.compareAndSet(false, true)) {
+      return;
+    }
+    compactor.execute(() -> {
+      fullCompactionQueued.set(false);
+      for (TronStoreWithRevoking<?> store : selectedStores()) {
+        try {
+          compact(store, null, null, reason);
+        } catch (RuntimeException e) {
+          logger.error("Compaction of {} failed", store.getName(), e);
+        }
+      }
+    });
+  }
+
+  private List<TronStoreWithRevoking<?>> selectedStores() {
+    return stores.get().stream()
+        .filter(store -> config.getStores().isEmpty()
+            || config.getStores().contains(store.getName()))
+        .collect(Collectors.toList());
+  }
+
+  private void compact(TronStoreWithRevoking<?> store, byte[] from, byte[] to, String reason) {
+    while (isThrottled()) {
+      try {
+        Thread.sleep(THROTTLE_CHECK_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+    long start = System.currentTimeMillis();
+    store.getDbSource().compactRange(from, to);
+    long millis = System.currentTimeMillis() - start;
+    stats.computeIfAbsent(store.getName(), name -> new Stats()).record(start, millis);
+    logger.info("Compacted {} after {} in {} ms", store.getName(), reason, millis);
+  }
+
+  private void checkIdleWindows() {
+    LocalDateTime now = LocalDateTime.now();
+    for (Window window : config.getIdleWindows()) {
+      LocalDate occurrence = window.occurrence(now);
+      if (occurrence != null && !occurrence.equals(idleRuns.put(window, occurrence))) {
+        compactAll("idle window " + window.getStart() + "-" + window.getEnd());
+      }
+    }
+  }
+
+  /**
+   * Hold back background compaction of all stores for a while, renewed by every call with true.
+   */
+  public void setThrottled(boolean throttled) {
+    if (!config.isThrottle()) {
+      return;
+    }
+    throttledUntil = throttled ? System.currentTimeMillis() + THROTTLE_MILLIS : 0;
+    scheduler.execute(this::applyThrottle);
+  }
+
+  public boolean isThrottled() {
+    return System.currentTimeMillis() < throttledUntil;
+  }
+
+  private synchronized void applyThrottle() {
+    boolean throttled = isThrottled();
+    if (throttled == throttleApplied) {
+      return;
+    }
+    for (TronStoreWithRevoking<?> store : stores.get()) {
+      try {
+        store.getDbSource().throttleCompactions(throttled, config.getThrottleRate());
+      } catch (RuntimeException e) {
+        logger.warn("Can't throttle compaction of {}: {}", store.getName(), e.getMessage());
+      }
+    }
+    throttleApplied = throttled;
+    logger.debug("Compaction {}", throttled ? "throttled" : "resumed");
+  }
+
+  /**
+   * Compactions done on purpose in a store, the engine compactions are in its own statistics.
+   */
+  public Stats getStats(String name) {
+    return stats.getOrDefault(name, new Stats()).copy();
+  }
+
+  /**
+   * Stop scheduling compactions and release held back ones, before the stores are closed.
+   */
+  public void shutdown() {
+    scheduler.shutdownNow();
+    compactor.shutdownNow();
+    throttledUntil = 0;
+    applyThrottle();
+  }
+
+  @Getter
+  public static class Stats {
+
+    private long compactions;
+    private long millis;
+    private long lastCompactionTime;
+
+    synchronized void record(long time, long duration) {
+      compactions++;
+      millis += duration;
+      lastCompactionTime = time;
+    }
+
+    synchronized Stats copy() {
+      Stats copy = new Stats();
+      copy.compactions = compactions;
+      copy.millis = millis;
+      copy.lastCompactionTime = lastCompactionTime;
+      return copy;
+    }
+  }
+}
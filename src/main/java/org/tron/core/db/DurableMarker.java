@@ -0,0 +1,70 @@
+package org.tron.core.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File in the storage directory holding the number of the last block whose writes are known to be
+ * on the disk in every store. It is replaced after the stores were synced, so a head above it means
+ * the node stopped while writes of later blocks may have reached only some of the stores. Other
+ * block numbers that must survive a crash are kept the same way in files of other names.
+ */
+public class DurableMarker {
+
+  public static final String FILE_NAME = "DURABLE";
+
+  private final File file;
+
+  public DurableMarker(File storageDirectory) {
+    this(storageDirectory, FILE_NAME);
+  }
+
+  public DurableMarker(File storageDirectory, String fileName) {
+    this.file = new File(storageDirectory, fileName);
+  }
+
+  /**
+   * The recorded block number, -1 when there is none.
+   */
+  public long read() {
+    if (!file.isFile()) {
+      return -1;
+    }
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+      return buffer.remaining() == Long.BYTES ? buffer.getLong() : -1;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't read " + file, e);
+    }
+  }
+
+  /**
+   * Record a block number, replacing the file at once so a crash leaves the old or the new one.
+   */
+  public void write(long blockNum) {
+    Path temp = new File(file.getParentFile(), file.getName() + ".tmp").toPath();
+    try {
+      Files.createDirectories(temp.getParent());
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(blockNum);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        channel.force(true);
+      }
+      Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't write " + file, e);
+    }
+  }
+}
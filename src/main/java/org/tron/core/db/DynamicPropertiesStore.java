@@ -1,9 +1,7 @@
 package org.tron.core.db;
 
 import com.google.protobuf.ByteString;
-import java.util.Arrays;
 import java.util.Optional;
-import java.util.stream.IntStream;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,7 +27,7 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
   private static final byte[] LATEST_BLOCK_HEADER_HASH = "latest_block_header_hash".getBytes();
   private static final byte[] STATE_FLAG = "state_flag"
       .getBytes(); // 1 : is maintenance, 0 : is not maintenance
-  private static final byte[] LATEST_SOLIDIFIED_BLOCK_NUM = "LATEST_SOLIDIFIED_BLOCK_NUM"
+  public static final byte[] LATEST_SOLIDIFIED_BLOCK_NUM = "LATEST_SOLIDIFIED_BLOCK_NUM"
       .getBytes();
 
   private static final byte[] BLOCK_FILLED_SLOTS = "BLOCK_FILLED_SLOTS".getBytes();
@@ -43,9 +41,15 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
   public static final int MAX_VOTE_NUMBER = 30;
 
 
+  private CachedSource<byte[]> propertiesCache;
+
   @Autowired
   private DynamicPropertiesStore(@Qualifier("properties") String dbName) {
     super(dbName);
+    propertiesCache = new CachedSource<>(dbSource, getRevokingDatabase(), value -> value,
+        value -> value, value -> value.length,
+        Args.getInstance().getStorage().getProfile(dbName).getObjectCacheSize());
+    dbSource = propertiesCache;
     try {
       this.getLatestBlockHeaderTimestamp();
     } catch (IllegalArgumentException e) {
@@ -76,18 +80,15 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
       this.saveLatestSolidifiedBlockNum(0);
     }
 
-    try {
-      this.getBlockFilledSlotsIndex();
-    } catch (IllegalArgumentException e) {
-      this.saveBlockFilledSlotsIndex(0);
-    }
-
-    try {
-      this.getBlockFilledSlots();
-    } catch (IllegalArgumentException e) {
-      int[] blockFilledSlots = new int[BLOCK_FILLED_SLOTS_NUMBER];
-      Arrays.fill(blockFilledSlots, 1);
-      this.saveBlockFilledSlots(blockFilledSlots);
+    byte[] blockFilledSlots = getValue(BLOCK_FILLED_SLOTS);
+    if (blockFilledSlots == null) {
+      this.saveBlockFilledSlots(new BlockFilledSlots());
+    } else if (blockFilledSlots.length == BLOCK_FILLED_SLOTS_NUMBER) {
+      byte[] index = getValue(BLOCK_FILLED_SLOTS_INDEX);
+      this.saveBlockFilledSlots(BlockFilledSlots.of(
+          stringToIntArray(ByteArray.toStr(blockFilledSlots)),
+          index == null ? 0 : ByteArray.toInt(index)));
+      this.delete(BLOCK_FILLED_SLOTS_INDEX);
     }
 
     try {
@@ -104,6 +105,11 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
     return null;
   }
 
+  @Override
+  protected BytesCapsule parseItem(byte[] value) {
+    return new BytesCapsule(value);
+  }
+
   @Override
   public boolean has(byte[] key) {
     return false;
@@ -132,15 +138,17 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
     return instance;
   }
 
-  public String intArrayToString(int[] a) {
-    StringBuilder sb = new StringBuilder();
-    for (int i : a) {
-      sb.append(i);
-    }
-    return sb.toString();
+  /**
+   * Value of a property, kept in memory once read.
+   */
+  private byte[] getValue(byte[] key) {
+    return propertiesCache.getObject(key);
   }
 
-  public int[] stringToIntArray(String s) {
+  /**
+   * Parse the filled slots ring of a version that stored one decimal digit per slot.
+   */
+  private static int[] stringToIntArray(String s) {
     int length = s.length();
     int[] result = new int[length];
     for (int i = 0; i < length; ++i) {
@@ -149,44 +157,32 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
     return result;
   }
 
-  public void saveBlockFilledSlotsIndex(int blockFilledSlotsIndex) {
-    logger.debug("blockFilledSlotsIndex:" + blockFilledSlotsIndex);
-    this.put(BLOCK_FILLED_SLOTS_INDEX,
-        new BytesCapsule(ByteArray.fromInt(blockFilledSlotsIndex)));
+  private void saveBlockFilledSlots(BlockFilledSlots blockFilledSlots) {
+    this.put(BLOCK_FILLED_SLOTS, new BytesCapsule(blockFilledSlots.toByteArray()));
   }
 
-  public int getBlockFilledSlotsIndex() {
-    return Optional.ofNullable(this.dbSource.getData(BLOCK_FILLED_SLOTS_INDEX))
-        .map(ByteArray::toInt)
-        .orElseThrow(
-            () -> new IllegalArgumentException("not found BLOCK_FILLED_SLOTS_INDEX"));
+  private BlockFilledSlots getFilledSlots() {
+    return Optional.ofNullable(getValue(BLOCK_FILLED_SLOTS))
+        .map(BlockFilledSlots::fromByteArray)
+        .orElseThrow(() -> new IllegalArgumentException("not found BLOCK_FILLED_SLOTS"));
   }
 
-  public void saveBlockFilledSlots(int[] blockFilledSlots) {
-    logger.debug("blockFilledSlots:" + intArrayToString(blockFilledSlots));
-    this.put(BLOCK_FILLED_SLOTS,
-        new BytesCapsule(ByteArray.fromString(intArrayToString(blockFilledSlots))));
+  public int getBlockFilledSlotsIndex() {
+    return getFilledSlots().getIndex();
   }
 
   public int[] getBlockFilledSlots() {
-    return Optional.ofNullable(this.dbSource.getData(BLOCK_FILLED_SLOTS))
-        .map(ByteArray::toStr)
-        .map(this::stringToIntArray)
-        .orElseThrow(
-            () -> new IllegalArgumentException("not found latest SOLIDIFIED_BLOCK_NUM timestamp"));
+    return getFilledSlots().getBlockFilledSlots();
   }
 
   public void applyBlock(boolean fillBlock) {
-    int[] blockFilledSlots = getBlockFilledSlots();
-    int blockFilledSlotsIndex = getBlockFilledSlotsIndex();
-    blockFilledSlots[blockFilledSlotsIndex] = fillBlock ? 1 : 0;
-    saveBlockFilledSlotsIndex((blockFilledSlotsIndex + 1) % BLOCK_FILLED_SLOTS_NUMBER);
+    BlockFilledSlots blockFilledSlots = getFilledSlots();
+    blockFilledSlots.applyBlock(fillBlock);
     saveBlockFilledSlots(blockFilledSlots);
   }
 
   public int calculateFilledSlotsCount() {
-    int[] blockFilledSlots = getBlockFilledSlots();
-    return 100 * IntStream.of(blockFilledSlots).sum() / BLOCK_FILLED_SLOTS_NUMBER;
+    return 100 * getFilledSlots().calculateFilledSlotsCount() / BLOCK_FILLED_SLOTS_NUMBER;
   }
 
   public void saveLatestSolidifiedBlockNum(long number) {
@@ -195,18 +191,17 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
 
 
   public long getLatestSolidifiedBlockNum() {
-    return Optional.ofNullable(this.dbSource.getData(LATEST_SOLIDIFIED_BLOCK_NUM))
+    return Optional.ofNullable(getValue(LATEST_SOLIDIFIED_BLOCK_NUM))
         .map(ByteArray::toLong)
         .orElseThrow(
             () -> new IllegalArgumentException("not found latest SOLIDIFIED_BLOCK_NUM timestamp"));
-    //return ByteArray.toLong(this.dbSource.getData(this.SOLIDIFIED_THRESHOLD));
   }
 
   /**
    * get timestamp of creating global latest block.
    */
   public long getLatestBlockHeaderTimestamp() {
-    return Optional.ofNullable(this.dbSource.getData(LATEST_BLOCK_HEADER_TIMESTAMP))
+    return Optional.ofNullable(getValue(LATEST_BLOCK_HEADER_TIMESTAMP))
         .map(ByteArray::toLong)
         .orElseThrow(() -> new IllegalArgumentException("not found latest block header timestamp"));
   }
@@ -215,13 +210,13 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
    * get number of global latest block.
    */
   public long getLatestBlockHeaderNumber() {
-    return Optional.ofNullable(this.dbSource.getData(LATEST_BLOCK_HEADER_NUMBER))
+    return Optional.ofNullable(getValue(LATEST_BLOCK_HEADER_NUMBER))
         .map(ByteArray::toLong)
         .orElseThrow(() -> new IllegalArgumentException("not found latest block header number"));
   }
 
   public int getStateFlag() {
-    return Optional.ofNullable(this.dbSource.getData(STATE_FLAG))
+    return Optional.ofNullable(getValue(STATE_FLAG))
         .map(ByteArray::toInt)
         .orElseThrow(() -> new IllegalArgumentException("not found maintenance flag"));
   }
@@ -232,7 +227,7 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
 
   public Sha256Hash getLatestBlockHeaderHash() {
 
-    byte[] blockHash = Optional.ofNullable(this.dbSource.getData(LATEST_BLOCK_HEADER_HASH))
+    byte[] blockHash = Optional.ofNullable(getValue(LATEST_BLOCK_HEADER_HASH))
         .orElseThrow(() -> new IllegalArgumentException("not found block hash"));
     return Sha256Hash.wrap(blockHash);
   }
@@ -268,7 +263,7 @@ public class DynamicPropertiesStore extends TronStoreWithRevoking<BytesCapsule>
 
 
   public long getNextMaintenanceTime() {
-    return Optional.ofNullable(this.dbSource.getData(NEXT_MAINTENANCE_TIME))
+    return Optional.ofNullable(getValue(NEXT_MAINTENANCE_TIME))
         .map(ByteArray::toLong)
         .orElseThrow(
             () -> new IllegalArgumentException("not found NEXT_MAINTENANCE_TIME"));
@@ -0,0 +1,294 @@
+package org.tron.core.db;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.util.concurrent.Futures;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.common.storage.SnapshotSource;
+import org.tron.core.db.common.iterator.DBIterator;
+
+/**
+ * Bloom filter over the keys of a store, it tells a key is absent without reading the database.
+ * Deleted keys stay in the filter, that only costs a read on the next lookup of them.
+ *
+ * <p>The filter grows with the store: once the newest stage holds as many keys as it was sized
+ * for, a stage twice as large with half the false positive rate is added, so the rate of all
+ * stages together stays below twice the one of the first.
+ *
+ * <p>The filter is saved when the store closes and the file is removed as soon as it is loaded,
+ * so after a crash the filter is rebuilt from the keys on disk instead of trusting a stale copy.
+ * The rebuild scans a snapshot taken at open on a background thread, keys put meanwhile go into
+ * the filter as usual; until it finishes every key might be contained.
+ */
+@Slf4j
+public class KeyFilter {
+
+  private static final double FPP = 0.01;
+  private static final long MIN_EXPECTED_INSERTIONS = 1L << 22;
+  private static final int FORMAT = 0x4b460002;
+
+  private static final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "key-filter-rebuild");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final File file;
+  private final DbSourceInter<byte[]> source;
+  private final long minExpectedInsertions;
+  private volatile List<Stage> stages;
+  private volatile boolean ready = true;
+  private volatile boolean stopRebuild = false;
+  private Future<?> rebuild;
+
+  /**
+   * One bloom filter of the chain, sized for capacity keys.
+   */
+  private static class Stage {
+
+    final BloomFilter<byte[]> filter;
+    final long capacity;
+    final double fpp;
+    long inserted;
+
+    Stage(BloomFilter<byte[]> filter, long capacity, double fpp, long inserted) {
+      this.filter = filter;
+      this.capacity = capacity;
+      this.fpp = fpp;
+      this.inserted = inserted;
+    }
+
+    Stage(long capacity, double fpp) {
+      this(BloomFilter.create(Funnels.byteArrayFunnel(), capacity, fpp), capacity, fpp, 0);
+    }
+
+    boolean isFull() {
+      return inserted >= capacity;
+    }
+  }
+
+  /**
+   * Load the filter saved in file, or build it from the keys of source.
+   */
+  public KeyFilter(File file, DbSourceInter<byte[]> source) {
+    this(file, source, MIN_EXPECTED_INSERTIONS);
+  }
+
+  KeyFilter(File file, DbSourceInter<byte[]> source, long minExpectedInsertions) {
+    this.file = file;
+    this.source = source;
+    this.minExpectedInsertions = minExpectedInsertions;
+    this.stages = load();
+  }
+
+  private List<Stage> create(long expectedInsertions) {
+    return Collections.singletonList(
+        new Stage(Math.max(minExpectedInsertions, expectedInsertions), FPP));
+  }
+
+  private List<Stage> load() {
+    if (file.exists()) {
+      try (DataInputStream in = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(file)))) {
+        List<Stage> loaded = read(in);
+        if (expectedFpp(loaded) <= 2 * FPP) {
+          return loaded;
+        }
+        logger.info("Key filter of {} is full, rebuild it", source.getDBName());
+      } catch (IOException | RuntimeException e) {
+        logger.warn("Can't load key filter of " + source.getDBName() + ", rebuild it", e);
+      } finally {
+        if (!file.delete()) {
+          logger.warn("Can't delete {}", file);
+        }
+      }
+    }
+    return rebuild();
+  }
+
+  private static List<Stage> read(DataInputStream in) throws IOException {
+    if (in.readInt() != FORMAT) {
+      throw new IOException("unknown key filter format");
+    }
+    int count = in.readInt();
+    List<Stage> loaded = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      long capacity = in.readLong();
+      double fpp = in.readDouble();
+      BloomFilter<byte[]> filter = BloomFilter.readFrom(in, Funnels.byteArrayFunnel());
+      loaded.add(new Stage(filter, capacity, fpp, filter.approximateElementCount()));
+    }
+    if (loaded.isEmpty()) {
+      throw new IOException("key filter without stages");
+    }
+    return loaded;
+  }
+
+  /**
+   * An empty filter sized for the store, filled from a snapshot of it in the background.
+   */
+  private List<Stage> rebuild() {
+    List<Stage> rebuilt = create(2 * source.getTotal());
+    SnapshotSource snapshot = source.getSnapshot();
+    stages = rebuilt;
+    ready = false;
+    rebuild = rebuilder.submit(() -> fill(snapshot));
+    return rebuilt;
+  }
+
+  private void fill(SnapshotSource snapshot) {
+    long start = System.currentTimeMillis();
+    long keys = 0;
+    try (DBIterator iterator = snapshot.iterator()) {
+      while (iterator.hasNext()) {
+        if (stopRebuild) {
+          return;
+        }
+        put(iterator.next().getKey());
+        keys++;
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.error("Can't build key filter of " + source.getDBName()
+          + ", every key is looked up", e);
+      return;
+    } finally {
+      snapshot.closeDB();
+    }
+    ready = true;
+    logger.info("Build key filter of {} with {} keys in {} ms", source.getDBName(), keys,
+        System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Wait until the filter is rebuilt.
+   */
+  void awaitRebuild() {
+    Future<?> task;
+    synchronized (this) {
+      task = rebuild;
+    }
+    if (task != null) {
+      Futures.getUnchecked(task);
+    }
+  }
+
+  /**
+   * Stop a rebuild before the store closes below the snapshot, the filter is not ready.
+   */
+  private void stopRebuild() {
+    Future<?> task;
+    synchronized (this) {
+      task = rebuild;
+      rebuild = null;
+    }
+    if (task != null) {
+      stopRebuild = true;
+      Futures.getUnchecked(task);
+      stopRebuild = false;
+    }
+  }
+
+  /**
+   * False when the key is certainly not in the store.
+   */
+  public boolean mightContain(byte[] key) {
+    if (!ready) {
+      return true;
+    }
+    for (Stage stage : stages) {
+      if (stage.filter.mightContain(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public synchronized void put(byte[] key) {
+    Stage last = stages.get(stages.size() - 1);
+    if (last.isFull()) {
+      List<Stage> grown = new ArrayList<>(stages);
+      last = new Stage(2 * last.capacity, last.fpp / 2);
+      grown.add(last);
+      stages = grown;
+      logger.info("Grow key filter of {} to {} keys", source.getDBName(), last.capacity);
+    }
+    if (last.filter.put(key)) {
+      last.inserted++;
+    }
+  }
+
+  public double expectedFpp() {
+    return expectedFpp(stages);
+  }
+
+  private static double expectedFpp(List<Stage> stages) {
+    double absent = 1;
+    for (Stage stage : stages) {
+      absent *= 1 - stage.filter.expectedFpp();
+    }
+    return 1 - absent;
+  }
+
+  int getStageCount() {
+    return stages.size();
+  }
+
+  /**
+   * Forget every key, for a store that was emptied.
+   */
+  public void reset() {
+    stopRebuild();
+    synchronized (this) {
+      stages = create(0);
+      ready = true;
+    }
+  }
+
+  /**
+   * Save the filter so the next start does not need to scan the store, unless it is not rebuilt
+   * yet; the rebuild is stopped, the store is about to close.
+   */
+  public void save() {
+    stopRebuild();
+    if (!ready) {
+      logger.info("Key filter of {} is not built yet, not saved", source.getDBName());
+      return;
+    }
+    synchronized (this) {
+      write();
+    }
+  }
+
+  private void write() {
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(FORMAT);
+      out.writeInt(stages.size());
+      for (Stage stage : stages) {
+        out.writeLong(stage.capacity);
+        out.writeDouble(stage.fpp);
+        stage.filter.writeTo(out);
+      }
+    } catch (IOException e) {
+      logger.warn("Can't save key filter of " + source.getDBName(), e);
+      if (file.exists() && !file.delete()) {
+        logger.warn("Can't delete {}", file);
+      }
+    }
+  }
+}
@@ -1,12 +1,15 @@
 package org.tron.core.db;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.stream.Stream;
 import javafx.util.Pair;
 import lombok.Getter;
@@ -94,7 +97,10 @@ public class KhaosDatabase extends TronDatabase {
         // parentHash = block.getParentHash();
         ArrayList<KhaosBlock> listBlk = numKblkMap.get(num);
         if (listBlk != null) {
-          listBlk.removeIf(b -> b.id == hash);
+          listBlk.removeIf(b -> b.id.equals(hash));
+          if (listBlk.isEmpty()) {
+            numKblkMap.remove(num);
+          }
         }
         this.hashKblkMap.remove(hash);
         return true;
@@ -121,9 +127,23 @@ public class KhaosDatabase extends TronDatabase {
 
   @Getter private KhaosStore miniUnlinkedStore = new KhaosStore();
 
+  /** Blocks of the unlinked store by the hash of their parent, and by number. */
+  private Map<Sha256Hash, List<KhaosBlock>> orphansByParent = new HashMap<>();
+
+  private TreeMap<Long, List<KhaosBlock>> orphansByNum = new TreeMap<>();
+
+  private long orphanBytes = 0;
+
+  /** How far above the head an unlinked block is kept. */
+  private static final long MAX_ORPHAN_DISTANCE = 1024;
+
+  private static final long MAX_ORPHAN_BYTES = 64L * 1024 * 1024;
+
   @Autowired
   protected KhaosDatabase(@Qualifier("block_KDB") String dbName) {
     super(dbName);
+    // the orphans expire by their own bounds
+    miniUnlinkedStore.setMaxCapcity(Integer.MAX_VALUE);
   }
 
   @Override
@@ -137,6 +157,11 @@ public class KhaosDatabase extends TronDatabase {
     return null;
   }
 
+  @Override
+  protected Object parseItem(byte[] value) {
+    return value;
+  }
+
   @Override
   public boolean has(byte[] key) {
     return false;
@@ -153,7 +178,10 @@ public class KhaosDatabase extends TronDatabase {
 
   void removeBlk(Sha256Hash hash) {
     if (!miniStore.remove(hash)) {
-      miniUnlinkedStore.remove(hash);
+      KhaosBlock orphan = miniUnlinkedStore.getByHash(hash);
+      if (orphan != null) {
+        removeOrphan(orphan);
+      }
     }
   }
 
@@ -171,7 +199,11 @@ public class KhaosDatabase extends TronDatabase {
         .orElse(null);
   }
 
-  /** Push the block in the KhoasDB. */
+  /**
+   * Push the block in the KhoasDB. A block whose parent is unknown is kept as an orphan until the
+   * parent arrives. The orphans waiting for a linked block are linked with it, and theirs in turn,
+   * so the returned head may be one of them.
+   */
   public BlockCapsule push(BlockCapsule blk) throws UnLinkedBlockException {
     KhaosBlock block = new KhaosBlock(blk);
     if (head != null && block.getParentHash() != Sha256Hash.ZERO_HASH) {
@@ -179,19 +211,79 @@ public class KhaosDatabase extends TronDatabase {
       if (kblock != null) {
         block.parent = kblock;
       } else {
-        miniUnlinkedStore.insert(block);
+        addOrphan(block);
         throw new UnLinkedBlockException();
       }
     }
 
-    miniStore.insert(block);
-
-    if (head == null || block.num > head.num) {
-      head = block;
+    Deque<KhaosBlock> linking = new ArrayDeque<>();
+    linking.add(block);
+    while (!linking.isEmpty()) {
+      KhaosBlock linked = linking.poll();
+      miniStore.insert(linked);
+      if (head == null || linked.num > head.num) {
+        head = linked;
+      }
+      List<KhaosBlock> children = orphansByParent.get(linked.id);
+      if (children != null) {
+        for (KhaosBlock child : new ArrayList<>(children)) {
+          removeOrphan(child);
+          child.parent = linked;
+          linking.add(child);
+        }
+      }
     }
+    expireOrphans();
     return head.blk;
   }
 
+  /**
+   * Hold a block whose parent is not linked. Blocks too far above or below the head are not kept.
+   */
+  private void addOrphan(KhaosBlock block) {
+    if (miniUnlinkedStore.getByHash(block.id) != null
+        || block.num > head.num + MAX_ORPHAN_DISTANCE) {
+      return;
+    }
+    miniUnlinkedStore.insert(block);
+    orphansByParent.computeIfAbsent(block.getParentHash(), hash -> new ArrayList<>()).add(block);
+    orphansByNum.computeIfAbsent(block.num, num -> new ArrayList<>()).add(block);
+    orphanBytes += block.blk.getInstance().getSerializedSize();
+    expireOrphans();
+  }
+
+  private void removeOrphan(KhaosBlock block) {
+    miniUnlinkedStore.remove(block.id);
+    removeFrom(orphansByParent, block.getParentHash(), block);
+    removeFrom(orphansByNum, block.num, block);
+    orphanBytes -= block.blk.getInstance().getSerializedSize();
+  }
+
+  private static <K> void removeFrom(Map<K, List<KhaosBlock>> index, K key, KhaosBlock block) {
+    List<KhaosBlock> blocks = index.get(key);
+    if (blocks != null) {
+      blocks.remove(block);
+      if (blocks.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Drop the orphans that fell below the blocks kept for linking, then the highest ones while the
+   * pool holds more than its bytes, they are the least likely to be linked soon.
+   */
+  private void expireOrphans() {
+    long lowest = head.num - miniStore.maxCapcity;
+    while (!orphansByNum.isEmpty() && orphansByNum.firstKey() <= lowest) {
+      removeOrphan(orphansByNum.firstEntry().getValue().get(0));
+    }
+    while (orphanBytes > MAX_ORPHAN_BYTES && !orphansByNum.isEmpty()) {
+      List<KhaosBlock> highest = orphansByNum.lastEntry().getValue();
+      removeOrphan(highest.get(highest.size() - 1));
+    }
+  }
+
   public BlockCapsule getHead() {
     return head.blk;
   }
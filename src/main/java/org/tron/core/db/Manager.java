@@ -6,14 +6,32 @@ import static org.tron.protos.Protocol.Transaction.Contract.ContractType.Transfe
 import static org.tron.protos.Protocol.Transaction.Contract.ContractType.TransferContract;
 
 import com.carrotsearch.sizeof.RamUsageEstimator;
+import com.codahale.metrics.Gauge;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.protobuf.ByteString;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import javafx.util.Pair;
 import javax.annotation.PostConstruct;
 import lombok.Getter;
@@ -24,8 +42,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.tron.common.crypto.ECKey;
 import org.tron.common.overlay.discover.Node;
-import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.common.storage.ScanOptions;
+import org.tron.common.storage.StoreMetrics;
+import org.tron.common.utils.ByteArray;
 import org.tron.common.utils.DialogOptional;
+import org.tron.common.utils.FileUtil;
 import org.tron.common.utils.Sha256Hash;
 import org.tron.common.utils.StringUtil;
 import org.tron.common.utils.Time;
@@ -42,6 +64,7 @@ import org.tron.core.config.Parameter.ChainConstant;
 import org.tron.core.config.args.Args;
 import org.tron.core.config.args.GenesisBlock;
 import org.tron.core.db.AbstractRevokingStore.Dialog;
+import org.tron.core.db.common.iterator.DBIterator;
 import org.tron.core.exception.BadItemException;
 import org.tron.core.exception.BalanceInsufficientException;
 import org.tron.core.exception.ContractExeException;
@@ -51,6 +74,7 @@ import org.tron.core.exception.HeaderNotFound;
 import org.tron.core.exception.HighFreqException;
 import org.tron.core.exception.ItemNotFoundException;
 import org.tron.core.exception.RevokingStoreIllegalStateException;
+import org.tron.core.exception.StoreException;
 import org.tron.core.exception.UnLinkedBlockException;
 import org.tron.core.exception.ValidateScheduleException;
 import org.tron.core.exception.ValidateSignatureException;
@@ -62,6 +86,10 @@ import org.tron.protos.Protocol.Transaction;
 @Component
 public class Manager {
 
+  private static final int ARCHIVE_BATCH = 1000;
+  private static final int HISTORY_BACKFILL_BLOCKS = 1000;
+  private static final String HISTORY_BACKFILL_FILE = "HISTORY_BACKFILL";
+
   // db store
   @Autowired
   private AccountStore accountStore;
@@ -79,15 +107,26 @@ public class Manager {
   private DynamicPropertiesStore dynamicPropertiesStore;
   private BlockIndexStore blockIndexStore;
   private WitnessScheduleStore witnessScheduleStore;
+  @Getter
+  private TransactionHistoryStore transactionHistoryStore;
 
   @Autowired
   private PeersStore peersStore;
   private BlockCapsule genesisBlock;
 
-  private LevelDbDataSourceImpl numHashCache;
   @Autowired
   private KhaosDatabase khaosDb;
   private RevokingDatabase revokingStore;
+  private final AtomicReference<ReadView> readView = new AtomicReference<>();
+
+  private DurableMarker durableMarker;
+
+  private volatile long committedHeadNum;
+
+  @Getter
+  private CompactionManager compactionManager;
+
+  private BlockPruner blockPruner;
 
   @Getter
   private DialogOptional dialog = DialogOptional.instance();
@@ -220,19 +259,66 @@ public class Manager {
     DynamicPropertiesStore.destroy();
     WitnessScheduleStore.destroy();
     BlockIndexStore.destroy();
+    TransactionHistoryStore.destroy();
+  }
+
+  /**
+   * Rebuild the undo states of the blocks that are not solidified from the journal in the storage
+   * directory, so a restart can still switch to a fork below the head.
+   */
+  private void openRevokingJournal() {
+    Map<String, DbSourceInter<byte[]>> databases = new HashMap<>();
+    getStores().forEach(store -> databases.put(store.getDbSource().getDBName(),
+        store.getDbSource()));
+    File file = new File(Args.getInstance().getOutputDirectory()
+        + Args.getInstance().getStorage().getDirectory(), RevokingJournal.FILE_NAME);
+    try {
+      revokingStore.openJournal(file, databases);
+    } catch (IOException | RuntimeException e) {
+      logger.error("Can't open the revoking journal {}", file, e);
+      logger.error(
+          "Please delete database directory({}) and restart",
+          Args.getInstance().getOutputDirectory());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Start the khaos database at the lowest block that can still be revoked and push the blocks up
+   * to the head.
+   */
+  private void startKhaosDb() throws ItemNotFoundException, BadItemException {
+    BlockCapsule head = getBlockById(getDynamicPropertiesStore().getLatestBlockHeaderHash());
+    long num = Math.max(head.getNum() - revokingStore.size(), 0);
+    try {
+      khaosDb.start(getBlockByNum(num));
+      for (num++; num <= head.getNum(); num++) {
+        khaosDb.push(getBlockByNum(num));
+      }
+    } catch (ItemNotFoundException | BadItemException | UnLinkedBlockException e) {
+      logger.warn("Can't load the revocable blocks into the khaos database, start at the head", e);
+      khaosDb.start(head);
+    }
   }
 
   @PostConstruct
   public void initOther() {
     revokingStore = RevokingStore.getInstance();
     revokingStore.disable();
+    revokingStore.setOverlay(Args.getInstance().getStorage().isOverlay());
+    revokingStore.setMemoryBudget(Args.getInstance().getStorage().getRevokingMemory());
     this.setWitnessScheduleStore(WitnessScheduleStore.create("witness_schedule"));
     this.setWitnessController(WitnessController.createInstance(this));
     this.setBlockIndexStore(BlockIndexStore.create("block-index"));
+    this.transactionHistoryStore = TransactionHistoryStore.create("transaction-history");
     this.pendingTransactions = Collections.synchronizedList(Lists.newArrayList());
+    openRevokingJournal();
     this.initGenesis();
+    this.durableMarker = new DurableMarker(new File(Args.getInstance().getOutputDirectory()
+        + Args.getInstance().getStorage().getDirectory()));
+    checkDurability();
     try {
-      this.khaosDb.start(getBlockById(getDynamicPropertiesStore().getLatestBlockHeaderHash()));
+      startKhaosDb();
     } catch (ItemNotFoundException e) {
       logger.error(
           "Can not find Dynamic highest block from DB! \nnumber={} \nhash={}",
@@ -250,7 +336,159 @@ public class Manager {
           Args.getInstance().getOutputDirectory());
       System.exit(1);
     }
+    backfillTransactionHistory();
+    logStoreStats();
+    onCommit();
+    revokingStore.setCommitListener(this::onCommit);
+    revokingStore.setSyncListener(() -> {
+      synchronized (durableMarker) {
+        durableMarker.write(committedHeadNum);
+      }
+    });
+    revokingStore.setDurability(Args.getInstance().getStorage().getDurability());
     revokingStore.enable();
+    StoreMetrics.gauge("revoking.depth", (Gauge<Integer>) revokingStore::size);
+    StoreMetrics.gauge("revoking.heldBytes", (Gauge<Long>) revokingStore::heldBytes);
+    StoreMetrics.gauge("revoking.spilledBytes", (Gauge<Long>) revokingStore::spilledBytes);
+    compactionManager = new CompactionManager(this::getStores,
+        Args.getInstance().getStorage().getCompaction());
+    if (Args.getInstance().getStorage().getPruning().isEnable()) {
+      blockPruner = new BlockPruner(this, Args.getInstance().getStorage().getPruning());
+    }
+  }
+
+  /**
+   * A crash between the batches of a commit, or before commits that did not wait for the disk
+   * were synced, may leave each store at another block between the last durable block and the
+   * head, ahead of or behind the head in the properties. Pop the undo states of the blocks above
+   * the durable one: the journal is forced before the stores are written, and undoing a block
+   * writes the values from before it, which also brings a store that never received the block
+   * there. The blocks are synced again from the peers. Refuse to start when the journal does not
+   * reach down to the durable block, or the block index does not match the head afterwards.
+   */
+  private void checkDurability() {
+    long head = getDynamicPropertiesStore().getLatestBlockHeaderNumber();
+    long durable = durableMarker.read();
+    if (durable == head) {
+      return;
+    }
+    if (durable < 0) {
+      durableMarker.write(head);
+      return;
+    }
+    if (durable > head) {
+      logger.warn("Head block {} is below the last durable block {}", head, durable);
+      durableMarker.write(head);
+      return;
+    }
+
+    List<String> problems = new LinkedList<>();
+    int undone = (int) (head - durable);
+    if (revokingStore.size() < undone) {
+      problems.add("the journal undoes " + revokingStore.size() + " blocks only");
+    } else {
+      try {
+        revokingStore.popTo(revokingStore.size() - undone);
+      } catch (RevokingStoreIllegalStateException e) {
+        problems.add("can't pop to block " + durable + ": " + e.getMessage());
+      }
+      revokingStore.sync();
+      head = getDynamicPropertiesStore().getLatestBlockHeaderNumber();
+      if (head != durable) {
+        problems.add("popping left head block " + head);
+      }
+    }
+    Sha256Hash headHash = getDynamicPropertiesStore().getLatestBlockHeaderHash();
+    try {
+      if (!getBlockIdByNum(head).equals(headHash)) {
+        problems.add("block-index has another block " + head);
+      }
+    } catch (ItemNotFoundException e) {
+      problems.add("block-index misses block " + head);
+    }
+
+    if (!problems.isEmpty()) {
+      logger.error("The stores can't be brought back to the last durable block {} after a crash:"
+          + " {}", durable, problems);
+      logger.error("Please restore a checkpoint or delete database directory({}) and restart",
+          Args.getInstance().getOutputDirectory());
+      System.exit(1);
+    }
+    logger.info("Popped {} blocks after a crash, back to the last durable block {}", undone,
+        durable);
+    durableMarker.write(head);
+  }
+
+  /**
+   * Index the transactions of the blocks applied before the transaction history store existed.
+   * It runs before the revoking store is enabled, so the entries go straight to the database, a
+   * batch of blocks at a time. The marker file holds the next block to index meanwhile, a node
+   * stopped on the way goes on from there, and a number above any block once done. Blocks the
+   * node does not hold, like the ones below the head of an imported snapshot, are skipped.
+   */
+  private void backfillTransactionHistory() {
+    DurableMarker marker = new DurableMarker(new File(Args.getInstance().getOutputDirectory()
+        + Args.getInstance().getStorage().getDirectory()), HISTORY_BACKFILL_FILE);
+    long next = marker.read();
+    if (next == Long.MAX_VALUE) {
+      return;
+    }
+    long head = getDynamicPropertiesStore().getLatestBlockHeaderNumber();
+    if (next < 0) {
+      // a store written since the first block has entries unless there were no transactions
+      next = transactionHistoryStore.getStatsSource().isEmpty() ? 1 : head + 1;
+    }
+
+    long start = System.currentTimeMillis();
+    long indexed = 0;
+    for (long from = next; from <= head; from += HISTORY_BACKFILL_BLOCKS) {
+      marker.write(from);
+      List<BlockId> ids = blockIndexStore.getRange(from,
+          Math.min(head + 1, from + HISTORY_BACKFILL_BLOCKS));
+      List<byte[]> blocks = blockStore.getRange(ids);
+      Map<byte[], byte[]> rows = new HashMap<>();
+      for (byte[] data : blocks) {
+        if (data == null) {
+          continue;
+        }
+        BlockCapsule block;
+        try {
+          block = new BlockCapsule(data);
+        } catch (BadItemException e) {
+          throw new IllegalStateException("block store holds a broken block", e);
+        }
+        List<TransactionCapsule> transactions = block.getTransactions();
+        for (int i = 0; i < transactions.size(); i++) {
+          rows.putAll(TransactionHistoryStore.entries(block.getNum(), i, transactions.get(i)));
+        }
+        indexed += transactions.size();
+      }
+      transactionHistoryStore.getDbSource().updateByBatch(rows);
+    }
+    marker.write(Long.MAX_VALUE);
+    if (indexed > 0) {
+      logger.info("Indexed the history of {} transactions from block {} in {} ms", indexed, next,
+          System.currentTimeMillis() - start);
+    }
+  }
+
+  /**
+   * Before blocks above blockNum are popped: the blocks after it are not the durable ones any
+   * more, and a sync meanwhile must not record the head being popped.
+   */
+  private void lowerDurableMarker(long blockNum) {
+    synchronized (durableMarker) {
+      committedHeadNum = Math.min(committedHeadNum, blockNum);
+      if (durableMarker.read() > blockNum) {
+        durableMarker.write(blockNum);
+      }
+    }
+  }
+
+  private void onCommit() {
+    committedHeadNum = getDynamicPropertiesStore().getLatestBlockHeaderNumber()
+        - revokingStore.overlaidSize();
+    refreshReadView();
   }
 
   /**
@@ -385,8 +623,8 @@ public class Manager {
       HighFreqException, DupTransactionException {
     logger.info("push transaction");
 
-    if (getTransactionStore().get(trx.getTransactionId().getBytes()) != null) {
-      logger.debug(getTransactionStore().get(trx.getTransactionId().getBytes()).toString());
+    if (getTransactionStore().has(trx.getTransactionId().getBytes())) {
+      logger.debug("dup trans {}", trx.getTransactionId());
       throw new DupTransactionException("dup trans");
     }
 
@@ -400,7 +638,7 @@ public class Manager {
       dialog.setValue(revokingStore.buildDialog());
     }
 
-    try (RevokingStore.Dialog tmpDialog = revokingStore.buildDialog()) {
+    try (RevokingStore.Dialog tmpDialog = revokingStore.buildSavepoint()) {
       processTransaction(trx);
       pendingTransactions.add(trx);
       tmpDialog.merge();
@@ -446,6 +684,8 @@ public class Manager {
     dialog.reset();
     BlockCapsule oldHeadBlock =
         getBlockStore().get(getDynamicPropertiesStore().getLatestBlockHeaderHash().getBytes());
+    setCurrentBlockNum(oldHeadBlock.getNum() - 1);
+    lowerDurableMarker(oldHeadBlock.getNum() - 1);
     try {
       revokingStore.pop();
     } catch (RevokingStoreIllegalStateException e) {
@@ -609,6 +849,7 @@ public class Manager {
         } catch (RevokingStoreIllegalStateException e) {
           logger.debug(e.getMessage(), e);
         }
+        archiveSolidifiedBlocks();
       }
       logger.info("save block: " + newBlock);
     }
@@ -719,7 +960,7 @@ public class Manager {
    * judge has blocks.
    */
   public boolean hasBlocks() {
-    return blockStore.dbSource.allKeys().size() > 0 || this.khaosDb.hasData();
+    return !blockStore.getStatsSource().isEmpty() || this.khaosDb.hasData();
   }
 
   /**
@@ -755,6 +996,53 @@ public class Manager {
     return getBlockById(getBlockIdByNum(num));
   }
 
+  /**
+   * Ids of the main chain blocks numbered from inclusive to to exclusive, read in one scan of the
+   * block index instead of a lookup per number.
+   */
+  public List<BlockId> getBlockIdsByRange(final long from, final long to)
+      throws ItemNotFoundException {
+    List<BlockId> ids = this.blockIndexStore.getRange(from, to);
+    if (ids.size() != to - from) {
+      throw new ItemNotFoundException(
+          "blocks " + from + " to " + (to - 1) + " are not all in the main chain");
+    }
+    return ids;
+  }
+
+  public List<BlockCapsule> getBlocksByRange(final long from, final long to)
+      throws ItemNotFoundException, BadItemException {
+    return getBlocksByRange(from, to, false);
+  }
+
+  /**
+   * Main chain blocks numbered from inclusive to to exclusive, read in number order from the block
+   * store. With parallel, the blocks are decoded in the common fork join pool.
+   */
+  public List<BlockCapsule> getBlocksByRange(final long from, final long to,
+      final boolean parallel) throws ItemNotFoundException, BadItemException {
+    List<BlockId> ids = getBlockIdsByRange(from, to);
+    List<byte[]> data = this.blockStore.getRange(ids);
+    int missing = data.indexOf(null);
+    if (missing >= 0) {
+      throw new ItemNotFoundException("block " + ids.get(missing).getString() + " is not found");
+    }
+
+    BlockCapsule[] blocks = new BlockCapsule[data.size()];
+    IntStream indexes = IntStream.range(0, blocks.length);
+    (parallel ? indexes.parallel() : indexes).forEach(i -> {
+      try {
+        blocks[i] = new BlockCapsule(data.get(i));
+      } catch (BadItemException e) {
+        logger.warn("Block {} is broken", ids.get(i).getString());
+      }
+    });
+    if (Arrays.asList(blocks).contains(null)) {
+      throw new BadItemException();
+    }
+    return Arrays.asList(blocks);
+  }
+
   /**
    * Generate a block.
    */
@@ -791,7 +1079,7 @@ public class Manager {
         continue;
       }
       // apply transaction
-      try (Dialog tmpDialog = revokingStore.buildDialog()) {
+      try (Dialog tmpDialog = revokingStore.buildSavepoint()) {
         processTransaction(trx);
         tmpDialog.merge();
         // push into block
@@ -852,18 +1140,29 @@ public class Manager {
     this.utxoStore = utxoStore;
   }
 
+  /**
+   * Record the number of the block whose writes are applied now in the statistics of the stores.
+   */
+  private void setCurrentBlockNum(long blockNum) {
+    getStores().forEach(store -> store.getStatsSource().setCurrentBlockNum(blockNum));
+  }
+
   /**
    * process block.
    */
   public void processBlock(BlockCapsule block)
       throws ValidateSignatureException, ContractValidateException, ContractExeException {
     // todo set revoking db max size.
+    setCurrentBlockNum(block.getNum());
     this.updateDynamicProperties(block);
     this.updateSignedWitness(block);
     this.updateLatestSolidifiedBlock();
 
-    for (TransactionCapsule transactionCapsule : block.getTransactions()) {
-      processTransaction(transactionCapsule);
+    List<TransactionCapsule> transactions = block.getTransactions();
+    prefetch(transactions);
+    for (int i = 0; i < transactions.size(); i++) {
+      processTransaction(transactions.get(i));
+      transactionHistoryStore.put(block.getNum(), i, transactions.get(i));
     }
 
     boolean needMaint = needMaintenance(block.getTimeStamp());
@@ -872,12 +1171,42 @@ public class Manager {
         this.dynamicPropertiesStore.updateNextMaintenanceTime(block.getTimeStamp());
       } else {
         this.processMaintenance(block);
+        compactionManager.onMaintenance();
       }
     }
     updateMaintenanceState(needMaint);
     witnessController.updateWitnessSchedule();
   }
 
+  /**
+   * Read the accounts and asset issues the transactions work on, each store in one pass, so their
+   * actuators find them in memory instead of reading them one at a time.
+   */
+  private void prefetch(List<TransactionCapsule> transactions) {
+    Set<ByteArrayWrapper> accounts = new LinkedHashSet<>();
+    Set<ByteArrayWrapper> assets = new LinkedHashSet<>();
+    for (TransactionCapsule transaction : transactions) {
+      for (Transaction.Contract contract :
+          transaction.getInstance().getRawData().getContractList()) {
+        Stream.of(TransactionCapsule.getOwner(contract), TransactionCapsule.getToAddress(contract))
+            .filter(Objects::nonNull)
+            .forEach(address -> accounts.add(new ByteArrayWrapper(address)));
+        byte[] assetName = TransactionCapsule.getAssetName(contract);
+        if (assetName != null) {
+          assets.add(new ByteArrayWrapper(assetName));
+        }
+      }
+    }
+    if (!accounts.isEmpty()) {
+      accountStore.getAll(accounts.stream().map(ByteArrayWrapper::getData)
+          .collect(Collectors.toList()));
+    }
+    if (!assets.isEmpty()) {
+      assetIssueStore.getAll(assets.stream().map(ByteArrayWrapper::getData)
+          .collect(Collectors.toList()));
+    }
+  }
+
   /**
    * update the latest solidified block.
    */
@@ -909,6 +1238,48 @@ public class Manager {
     logger.info("update solid block, num = {}", latestSolidifiedBlockNum);
   }
 
+  /**
+   * Move solidified blocks from the block store to its archive, after a block was committed and
+   * outside of its undo state. A store that was never archived catches up by a batch per pushed
+   * block. Blocks still held in overlays wait until they are written, the archive never gets
+   * ahead of the stores after a restart.
+   */
+  private void archiveSolidifiedBlocks() {
+    long written = getDynamicPropertiesStore().getLatestBlockHeaderNumber()
+        - revokingStore.overlaidSize();
+    long end = Math.min(Math.min(getDynamicPropertiesStore().getLatestSolidifiedBlockNum(),
+        written), blockStore.getArchivedCount() + ARCHIVE_BATCH - 1);
+    long start = blockStore.getArchivedCount();
+    if (start > end) {
+      return;
+    }
+    try {
+      blockStore.archive(getBlocksByRange(start, end + 1));
+    } catch (ItemNotFoundException | BadItemException e) {
+      logger.warn("Can't archive blocks {} to {}: {}", start, end, e.getMessage());
+    }
+  }
+
+  /**
+   * Cut the transactions of pruned blocks down to their ids and delete their history entries,
+   * between the blocks and transactions pushed here. The history goes first, a segment left half
+   * done is pruned again.
+   */
+  public synchronized void pruneTransactions(List<BlockCapsule> blocks) {
+    List<byte[]> ids = new ArrayList<>();
+    List<byte[]> history = new ArrayList<>();
+    for (BlockCapsule block : blocks) {
+      List<TransactionCapsule> transactions = block.getTransactions();
+      for (int i = 0; i < transactions.size(); i++) {
+        ids.add(transactions.get(i).getTransactionId().getBytes());
+        history.addAll(TransactionHistoryStore.entries(block.getNum(), i, transactions.get(i))
+            .keySet());
+      }
+    }
+    transactionHistoryStore.prune(history);
+    transactionStore.prune(ids);
+  }
+
   public long getSyncBeginNumber() {
     logger.info("headNumber:" + dynamicPropertiesStore.getLatestBlockHeaderNumber());
     logger.info(
@@ -1004,7 +1375,159 @@ public class Manager {
     this.blockIndexStore = indexStore;
   }
 
+  /**
+   * Transactions of an address in any of roles, see TransactionHistoryStore, newest first.
+   */
+  public List<TransactionCapsule> getTransactionHistory(byte[] address, int roles, long offset,
+      long limit) {
+    return transactionHistoryStore.getTransactions(address, roles, offset, limit,
+        id -> transactionStore.get(id.getBytes()));
+  }
+
+  /**
+   * Stores whose statistics are reported.
+   */
+  public List<TronStoreWithRevoking<?>> getStores() {
+    return Stream.of(accountStore, blockStore, blockIndexStore, witnessStore,
+        witnessScheduleStore, assetIssueStore, dynamicPropertiesStore, transactionStore,
+        transactionHistoryStore)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  private void refreshReadView() {
+    ReadView.replace(readView, ReadView.capture(getStores().stream()
+        .map(TronDatabase::getDbSource)
+        .collect(Collectors.toList())));
+  }
+
+  /**
+   * Pin the state of the last committed block for the store reads of this thread, until the
+   * returned handle is closed. Only for reads, writes must see the live state.
+   */
+  public ReadView.Pin pinReadView() {
+    return ReadView.pin(readView);
+  }
+
+  /**
+   * Write a checkpoint of the stores at the solidified block to an empty directory, blocks are
+   * still applied meanwhile. The stores are copied from the last committed block and the undo
+   * states of the blocks above the solidified one are applied to the copy, so a node starting from
+   * it never holds a block that a fork could still revert, it has no undo states for them.
+   *
+   * @param parent the directory to write it to, in a directory named after the block number
+   * @throws FileAlreadyExistsException when there is a checkpoint of the block already
+   */
+  public Checkpoint createCheckpoint(File parent) throws IOException, ItemNotFoundException {
+    if (readView.get() == null) {
+      throw new IllegalStateException("no committed block to checkpoint");
+    }
+    ReadView.Pin pin;
+    Map<String, Map<ByteArrayWrapper, byte[]>> undo;
+    long solidified;
+    // no commit in between, the undo states end at the pinned block
+    synchronized (revokingStore) {
+      pin = pinReadView();
+      solidified = getDynamicPropertiesStore().getLatestSolidifiedBlockNum();
+      try {
+        undo = revokingStore.getUndoWrites((int) (getHeadBlockNum() - solidified));
+      } catch (RuntimeException e) {
+        pin.close();
+        throw e;
+      }
+    }
+    try {
+      File directory = new File(parent, Long.toString(solidified));
+      if (directory.exists()) {
+        throw new FileAlreadyExistsException(directory.getPath(), null,
+            "checkpoint of block " + solidified + " exists");
+      }
+      return Checkpoint.write(directory, solidified, getBlockIdByNum(solidified).toString(),
+          solidified,
+          getStores().stream()
+              .map(TronDatabase::getDbSource)
+              .collect(Collectors.toList()),
+          Collections.singletonList(blockStore.getArchive()), undo);
+    } finally {
+      pin.close();
+    }
+  }
+
+  /**
+   * Write a state snapshot of the last committed block: the state stores, the ids of the
+   * transactions on the chain, the genesis and head blocks and their index entries. A node
+   * importing it archives the blocks from the head on. The ids are written with empty values,
+   * they are all a node needs to reject a transaction that is already on the chain.
+   *
+   * @param parent the directory to write it to, in a directory named after the block number
+   * @throws FileAlreadyExistsException when there is a snapshot of the block already
+   */
+  public StateSnapshot exportStateSnapshot(File parent)
+      throws IOException, ItemNotFoundException, BadItemException {
+    if (readView.get() == null) {
+      throw new IllegalStateException("no committed block to snapshot");
+    }
+    List<DBIterator> iterators = new ArrayList<>();
+    File directory = null;
+    try (ReadView.Pin pin = pinReadView()) {
+      Files.createDirectories(parent.toPath());
+      // fails when another export of the block created it first
+      directory = Files.createDirectory(new File(parent, Long.toString(getHeadBlockNum()))
+          .toPath()).toFile();
+      Map<String, Iterator<Entry<byte[], byte[]>>> stores = new LinkedHashMap<>();
+      for (TronDatabase<?> store : Arrays.asList(accountStore, witnessStore, assetIssueStore,
+          witnessScheduleStore, dynamicPropertiesStore)) {
+        DBIterator iterator = store.getDbSource().iterator(ScanOptions.all());
+        iterators.add(iterator);
+        stores.put(store.getDbSource().getDBName(), iterator);
+      }
+      DBIterator transactions = transactionStore.getDbSource().iterator(ScanOptions.all());
+      iterators.add(transactions);
+      stores.put(transactionStore.getDbSource().getDBName(), Iterators.transform(transactions,
+          entry -> new SimpleImmutableEntry<>(entry.getKey(), new byte[0])));
+
+      BlockCapsule head = getBlockById(getDynamicPropertiesStore().getLatestBlockHeaderHash());
+      List<Entry<byte[], byte[]>> blocks = new ArrayList<>();
+      List<Entry<byte[], byte[]>> index = new ArrayList<>();
+      for (BlockCapsule block : head.getNum() == 0
+          ? Collections.singletonList(head) : Arrays.asList(genesisBlock, head)) {
+        blocks.add(new SimpleImmutableEntry<>(block.getBlockId().getBytes(), block.getData()));
+        index.add(new SimpleImmutableEntry<>(ByteArray.fromLong(block.getNum()),
+            block.getBlockId().getBytes()));
+      }
+      stores.put(blockStore.getDbSource().getDBName(), blocks.iterator());
+      stores.put(blockIndexStore.getDbSource().getDBName(), index.iterator());
+
+      return StateSnapshot.write(directory, head.getNum(),
+          getDynamicPropertiesStore().getLatestBlockHeaderHash().toString(),
+          getDynamicPropertiesStore().getLatestSolidifiedBlockNum(), stores,
+          Collections.singletonMap(blockStore.getArchive().getDirectory().getName(),
+              head.getNum()));
+    } catch (IOException | StoreException | RuntimeException e) {
+      if (directory != null) {
+        FileUtil.deleteDir(directory);
+      }
+      throw e;
+    } finally {
+      for (DBIterator iterator : iterators) {
+        iterator.close();
+      }
+    }
+  }
+
+  public void logStoreStats() {
+    getStores().forEach(store -> logger.info("Store stats: {}", store.getStatsSource()));
+  }
+
   public void closeAllStore() {
+    if (blockPruner != null) {
+      blockPruner.shutdown();
+    }
+    compactionManager.shutdown();
+    logStoreStats();
+    revokingStore.sync();
+    revokingStore.setSyncListener(null);
+    ReadView.replace(readView, null);
     System.err.println("******** begin to close db ********");
     closeOneStore(accountStore);
     closeOneStore(blockStore);
@@ -1014,6 +1537,7 @@ public class Manager {
     closeOneStore(assetIssueStore);
     closeOneStore(dynamicPropertiesStore);
     closeOneStore(transactionStore);
+    closeOneStore(transactionHistoryStore);
     closeOneStore(utxoStore);
     System.err.println("******** end to close db ********");
   }
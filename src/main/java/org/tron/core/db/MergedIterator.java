@@ -0,0 +1,75 @@
+package org.tron.core.db;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import org.tron.common.storage.ScanOptions;
+import org.tron.core.db.common.iterator.DBIterator;
+
+/**
+ * Iterates stored entries and in-memory changes in key order, the changes win. A change whose
+ * value is the deleted marker hides the stored entry.
+ */
+class MergedIterator extends AbstractIterator<Entry<byte[], byte[]>> implements DBIterator {
+
+  static final Comparator<byte[]> COMPARATOR = ScanOptions.COMPARATOR;
+
+  private final Iterator<Entry<byte[], byte[]>> source;
+  private final PeekingIterator<Entry<byte[], byte[]>> stored;
+  private final PeekingIterator<Entry<byte[], byte[]>> changed;
+  private final byte[] deleted;
+  private final Comparator<byte[]> comparator;
+
+  MergedIterator(Iterator<Entry<byte[], byte[]>> stored,
+      Iterator<Entry<byte[], byte[]>> changed, byte[] deleted) {
+    this(stored, changed, deleted, false);
+  }
+
+  /**
+   * Both iterators must run in the same direction, reverse when they go from the last key.
+   */
+  MergedIterator(Iterator<Entry<byte[], byte[]>> stored,
+      Iterator<Entry<byte[], byte[]>> changed, byte[] deleted, boolean reverse) {
+    this.source = stored;
+    this.stored = Iterators.peekingIterator(stored);
+    this.changed = Iterators.peekingIterator(changed);
+    this.deleted = deleted;
+    this.comparator = reverse ? COMPARATOR.reversed() : COMPARATOR;
+  }
+
+  @Override
+  protected Entry<byte[], byte[]> computeNext() {
+    while (stored.hasNext() || changed.hasNext()) {
+      if (!changed.hasNext()) {
+        return stored.next();
+      }
+
+      int cmp = stored.hasNext()
+          ? comparator.compare(stored.peek().getKey(), changed.peek().getKey()) : 1;
+      if (cmp < 0) {
+        return stored.next();
+      }
+      if (cmp == 0) {
+        stored.next();
+      }
+
+      Entry<byte[], byte[]> entry = changed.next();
+      if (entry.getValue() != deleted) {
+        return entry;
+      }
+    }
+    return endOfData();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (source instanceof Closeable) {
+      ((Closeable) source).close();
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package org.tron.core.db;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import org.tron.common.storage.ScanOptions;
+import org.tron.core.db.common.iterator.DBIterator;
+
+/**
+ * Applies the offset and limit of a scan on top of a cursor that does not page itself, such as a
+ * merge of stored entries and in-memory changes.
+ */
+class PagedIterator implements DBIterator {
+
+  private final DBIterator source;
+  private long skip;
+  private long remaining;
+
+  private PagedIterator(DBIterator source, ScanOptions options) {
+    this.source = source;
+    this.skip = options.getOffset();
+    this.remaining = options.getLimit();
+  }
+
+  static DBIterator page(DBIterator source, ScanOptions options) {
+    return options.isPaged() ? new PagedIterator(source, options) : source;
+  }
+
+  @Override
+  public boolean hasNext() {
+    for (; skip > 0 && source.hasNext(); skip--) {
+      source.next();
+    }
+    return remaining > 0 && source.hasNext();
+  }
+
+  @Override
+  public Entry<byte[], byte[]> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    remaining--;
+    return source.next();
+  }
+
+  @Override
+  public void close() throws IOException {
+    source.close();
+  }
+}
@@ -7,7 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 import org.tron.common.overlay.discover.Node;
-import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.storage.DbSourceInter;
 
 @Component
 public class PeersStore extends TronDatabase<Set<Node>> {
@@ -18,7 +18,7 @@ public class PeersStore extends TronDatabase<Set<Node>> {
   }
 
   @Override
-  public LevelDbDataSourceImpl getDbSource() {
+  public DbSourceInter<byte[]> getDbSource() {
     return super.getDbSource();
   }
 
@@ -42,30 +42,33 @@ public class PeersStore extends TronDatabase<Set<Node>> {
 
   @Override
   public Set<Node> get(byte[] key) {
-    Set<Node> nodes = new HashSet<>();
     byte[] value = dbSource.getData(key);
-    if (value != null) {
-      StringTokenizer st = new StringTokenizer(new String(value), "||");
-      while (st.hasMoreElements()) {
-        String strN = st.nextToken();
-        int ps = strN.indexOf("&");
-        int rept;
-        Node n;
-        if (ps > 0) {
-          n = new Node(strN.substring(0, ps));
-          try {
-            rept = Integer.parseInt(strN.substring(ps + 1, strN.length()));
-          } catch (NumberFormatException e) {
-            rept = 0;
-          }
-        } else {
-          n = new Node(strN);
+    return value == null ? new HashSet<>() : parseItem(value);
+  }
+
+  @Override
+  protected Set<Node> parseItem(byte[] value) {
+    Set<Node> nodes = new HashSet<>();
+    StringTokenizer st = new StringTokenizer(new String(value), "||");
+    while (st.hasMoreElements()) {
+      String strN = st.nextToken();
+      int ps = strN.indexOf("&");
+      int rept;
+      Node n;
+      if (ps > 0) {
+        n = new Node(strN.substring(0, ps));
+        try {
+          rept = Integer.parseInt(strN.substring(ps + 1, strN.length()));
+        } catch (NumberFormatException e) {
           rept = 0;
         }
-
-        n.setReputation(rept);
-        nodes.add(n);
+      } else {
+        n = new Node(strN);
+        rept = 0;
       }
+
+      n.setReputation(rept);
+      nodes.add(n);
     }
     return nodes;
   }
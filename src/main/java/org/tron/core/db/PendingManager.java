@@ -27,7 +27,7 @@ public class PendingManager implements AutoCloseable {
   public void close() {
     this.tmpTransactions.stream()
         .filter(
-            trx -> dbManager.getTransactionStore().get(trx.getTransactionId().getBytes()) == null)
+            trx -> !dbManager.getTransactionStore().has(trx.getTransactionId().getBytes()))
         .forEach(trx -> {
           try {
             dbManager.pushTransactions(trx);
@@ -45,7 +45,7 @@ public class PendingManager implements AutoCloseable {
         });
     dbManager.getPoppedTransactions().stream()
         .filter(
-            trx -> dbManager.getTransactionStore().get(trx.getTransactionId().getBytes()) == null)
+            trx -> !dbManager.getTransactionStore().has(trx.getTransactionId().getBytes()))
         .forEach(trx -> {
           try {
             dbManager.pushTransactions(trx);
@@ -0,0 +1,116 @@
+package org.tron.core.db;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.common.storage.SnapshotSource;
+
+/**
+ * Snapshots of a set of stores taken together after a block was committed. A serving thread pins
+ * the latest view and its store reads see that state while the next block is applied, without
+ * waiting for the writer. A replaced view is released once its last reader is done.
+ */
+public class ReadView {
+
+  private static final ThreadLocal<ReadView> PINNED = new ThreadLocal<>();
+
+  private final Map<String, SnapshotSource> snapshots;
+  private final AtomicInteger references = new AtomicInteger(1);
+
+  private ReadView(Map<String, SnapshotSource> snapshots) {
+    this.snapshots = snapshots;
+  }
+
+  /**
+   * Take a view of the committed state of sources, null when one of them is closed.
+   */
+  public static ReadView capture(Collection<DbSourceInter<byte[]>> sources) {
+    Map<String, SnapshotSource> snapshots = new HashMap<>();
+    for (DbSourceInter<byte[]> source : sources) {
+      if (!source.isAlive()) {
+        snapshots.values().forEach(SnapshotSource::closeDB);
+        return null;
+      }
+      snapshots.put(source.getDBName(), source.getSnapshot());
+    }
+    return new ReadView(snapshots);
+  }
+
+  /**
+   * Source of the view pinned by the current thread for a store, null to read the live state.
+   */
+  public static DbSourceInter<byte[]> pinned(String dbName) {
+    ReadView view = PINNED.get();
+    return view == null ? null : view.snapshots.get(dbName);
+  }
+
+  /**
+   * Pin the view held by current for the reads of this thread until the returned handle is
+   * closed. A thread that already has a view keeps it, without a view reads see the live state.
+   */
+  public static Pin pin(AtomicReference<ReadView> current) {
+    if (PINNED.get() != null) {
+      return Pin.NONE;
+    }
+    while (true) {
+      ReadView view = current.get();
+      if (view == null) {
+        return Pin.NONE;
+      }
+      if (view.retain()) {
+        PINNED.set(view);
+        return new Pin(view);
+      }
+    }
+  }
+
+  /**
+   * Replace the view held by current, the old one is released after its last reader.
+   */
+  public static void replace(AtomicReference<ReadView> current, ReadView view) {
+    ReadView old = current.getAndSet(view);
+    if (old != null) {
+      old.release();
+    }
+  }
+
+  private boolean retain() {
+    while (true) {
+      int count = references.get();
+      if (count == 0) {
+        return false;
+      }
+      if (references.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private void release() {
+    if (references.decrementAndGet() == 0) {
+      snapshots.values().forEach(SnapshotSource::closeDB);
+    }
+  }
+
+  public static class Pin implements AutoCloseable {
+
+    private static final Pin NONE = new Pin(null);
+
+    private final ReadView view;
+
+    private Pin(ReadView view) {
+      this.view = view;
+    }
+
+    @Override
+    public void close() {
+      if (view != null) {
+        PINNED.remove();
+        view.release();
+      }
+    }
+  }
+}
@@ -1,5 +1,10 @@
 package org.tron.core.db;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.core.config.args.Durability;
 import org.tron.core.db.AbstractRevokingStore.Dialog;
 import org.tron.core.db.AbstractRevokingStore.RevokingState;
 import org.tron.core.db.AbstractRevokingStore.RevokingTuple;
@@ -11,8 +16,20 @@ public interface RevokingDatabase {
 
   Dialog buildDialog(boolean forceEnable);
 
+  /**
+   * A nested dialog that pushes no state, for the many short ones of transactions, see {@link
+   * AbstractRevokingStore#buildSavepoint}.
+   */
+  Dialog buildSavepoint();
+
   void onCreate(RevokingTuple tuple, byte[] value);
 
+  /**
+   * Whether {@link #onModify} of the tuple records its old value now, a store reads the value, and
+   * serializes a dirty cached object, only then.
+   */
+  boolean recordsModify(RevokingTuple tuple);
+
   void onModify(RevokingTuple tuple, byte[] value);
 
   void onRemove(RevokingTuple tuple, byte[] value);
@@ -25,13 +42,85 @@ public interface RevokingDatabase {
 
   void pop() throws RevokingStoreIllegalStateException;
 
+  /**
+   * Pop the newest states until size are left, see {@link AbstractRevokingStore#popTo}.
+   */
+  void popTo(int size) throws RevokingStoreIllegalStateException;
+
+  /**
+   * The writes that undo the newest committed states, see {@link
+   * AbstractRevokingStore#getUndoWrites}.
+   */
+  Map<String, Map<ByteArrayWrapper, byte[]>> getUndoWrites(int count);
+
   RevokingState head();
 
   void enable();
 
   int size();
 
+  /**
+   * Bytes of the keys and old values held in memory to revoke the states on the stack.
+   */
+  long heldBytes();
+
+  /**
+   * Bytes of the states that were spilled to disk to keep {@link #heldBytes} within the budget.
+   */
+  long spilledBytes();
+
+  /**
+   * Spill the oldest states beyond this many held bytes, see
+   * {@link AbstractRevokingStore#setMemoryBudget}.
+   */
+  void setMemoryBudget(long memoryBudget);
+
   void disable();
 
   void shutdown();
+
+  /**
+   * Whether writes of buffered stores are kept in memory until the outermost dialog ends.
+   */
+  boolean hasSession();
+
+  /**
+   * Register a store layer with held writes, to be committed when the outermost dialog ends.
+   */
+  void enlist(WriteSession session);
+
+  /**
+   * Run after the held writes of a session were committed, before another write can start. Null
+   * removes the listener.
+   */
+  void setCommitListener(Runnable listener);
+
+  /**
+   * Wait until every committed write is on the disk.
+   */
+  void sync();
+
+  /**
+   * Run after the stores were synced, null removes the listener.
+   */
+  void setSyncListener(Runnable listener);
+
+  void setDurability(Durability durability);
+
+  /**
+   * Keep the undo states in a journal file and rebuild the stack from it, see
+   * {@link AbstractRevokingStore#openJournal}.
+   */
+  void openJournal(File file, Map<String, DbSourceInter<byte[]>> databases) throws IOException;
+
+  /**
+   * Hold the changes of blocks in memory until they are trimmed from the stack, see {@link
+   * AbstractRevokingStore#setOverlay}.
+   */
+  void setOverlay(boolean overlay);
+
+  /**
+   * Number of states on the stack or waiting to be written whose changes are not on the disk.
+   */
+  int overlaidSize();
 }
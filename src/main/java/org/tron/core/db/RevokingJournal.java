@@ -0,0 +1,314 @@
+package org.tron.core.db;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.core.db.AbstractRevokingStore.RevokingState;
+import org.tron.core.db.AbstractRevokingStore.RevokingTuple;
+
+/**
+ * Append only file of the undo states of the revoking database, so the states of the blocks that
+ * are not solidified survive a restart. Every commit of the stores is preceded by a frame with the
+ * changes of the stack since the last one: the number of states dropped from the bottom, the
+ * number taken from the top and the states pushed. A commit mark follows once the stores were
+ * written. A frame without a mark may have reached some of the stores only.
+ *
+ * <p>Records are [length][CRC32][type][body]. Reading stops at the first record that is cut off or
+ * does not match its checksum, the file is truncated there. Once the file grows past a limit it is
+ * replaced by one frame holding the whole stack.
+ */
+@Slf4j
+public class RevokingJournal implements Closeable {
+
+  public static final String FILE_NAME = "revoking.journal";
+
+  private static final byte FRAME = 1;
+  private static final byte COMMIT = 2;
+  private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+  private static final long COMPACT_SIZE = 64L * 1024 * 1024;
+
+  private final File file;
+  private FileChannel channel;
+
+  public RevokingJournal(File file) {
+    this.file = file;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Changes of the undo stack written before one commit.
+   */
+  static class Frame {
+
+    final int trimmed;
+    final int popped;
+    final List<RevokingState> pushed;
+    boolean committed;
+
+    Frame(int trimmed, int popped, List<RevokingState> pushed) {
+      this.trimmed = trimmed;
+      this.popped = popped;
+      this.pushed = pushed;
+    }
+  }
+
+  /**
+   * Read the frames of the file and open it for appending. A frame followed by another record was
+   * committed, only the last one may not be.
+   *
+   * @param databases resolves the database names of the states to the sources to revoke them on
+   */
+  List<Frame> open(Function<String, DbSourceInter<byte[]>> databases) throws IOException {
+    Files.createDirectories(file.getParentFile().toPath());
+    List<Frame> frames = new ArrayList<>();
+    long end = 0;
+    if (file.isFile()) {
+      ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+      while (data.remaining() >= RECORD_HEADER_SIZE) {
+        int length = data.getInt(data.position());
+        long checksum = data.getLong(data.position() + Integer.BYTES);
+        if (length <= 0 || length > data.remaining() - RECORD_HEADER_SIZE) {
+          break;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data.array(), data.position() + RECORD_HEADER_SIZE, length);
+        if (crc.getValue() != checksum) {
+          break;
+        }
+
+        data.position(data.position() + RECORD_HEADER_SIZE);
+        ByteBuffer record = data.slice();
+        record.limit(length);
+        data.position(data.position() + length);
+        if (!frames.isEmpty()) {
+          frames.get(frames.size() - 1).committed = true;
+        }
+        if (record.get() == FRAME) {
+          frames.add(readFrame(record, databases));
+        }
+        end = data.position();
+      }
+      if (end < data.capacity()) {
+        logger.warn("Drop {} bytes of an unfinished record at the end of {}",
+            data.capacity() - end, file);
+      }
+    }
+
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE);
+    channel.truncate(end);
+    channel.position(end);
+    return frames;
+  }
+
+  /**
+   * Append the changes of the stack for the next commit.
+   */
+  void append(int trimmed, int popped, Collection<RevokingState> pushed) {
+    ByteBuffer record = allocate(1 + 3 * Integer.BYTES + pushed.stream()
+        .mapToInt(RevokingJournal::size).sum());
+    record.put(FRAME).putInt(trimmed).putInt(popped).putInt(pushed.size());
+    pushed.forEach(state -> writeState(record, state));
+    write(record);
+  }
+
+  /**
+   * Mark the last frame as committed to the stores.
+   */
+  void commit() {
+    ByteBuffer record = allocate(1);
+    record.put(COMMIT);
+    write(record);
+  }
+
+  /**
+   * Wait until the appended records are on the disk.
+   */
+  void force() {
+    try {
+      channel.force(false);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't sync " + file, e);
+    }
+  }
+
+  boolean needsCompaction() {
+    try {
+      return channel.size() > COMPACT_SIZE;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Replace the file by a committed frame holding the whole stack, the old file stays in place
+   * until the new one is on the disk.
+   */
+  void rewrite(Collection<RevokingState> stack) {
+    Path temp = new File(file.getParentFile(), FILE_NAME + ".tmp").toPath();
+    try {
+      close();
+      channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+      append(0, 0, stack);
+      commit();
+      force();
+      channel.close();
+      Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+      channel.position(channel.size());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't rewrite " + file, e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+      channel = null;
+    }
+  }
+
+  private static ByteBuffer allocate(int bodySize) {
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + bodySize);
+    record.position(RECORD_HEADER_SIZE);
+    return record;
+  }
+
+  private void write(ByteBuffer record) {
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), RECORD_HEADER_SIZE, record.capacity() - RECORD_HEADER_SIZE);
+    record.putInt(0, record.capacity() - RECORD_HEADER_SIZE)
+        .putLong(Integer.BYTES, crc.getValue());
+    record.position(0);
+    try {
+      while (record.hasRemaining()) {
+        channel.write(record);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't append to " + file, e);
+    }
+  }
+
+  private static int size(byte[] bytes) {
+    return Integer.BYTES + (bytes == null ? 0 : bytes.length);
+  }
+
+  private static int size(RevokingTuple tuple) {
+    return size(tuple.getDatabase().getDBName().getBytes()) + size(tuple.getKey());
+  }
+
+  static int size(RevokingState state) {
+    int size = 3 * Integer.BYTES;
+    for (Map<RevokingTuple, byte[]> values : Arrays.asList(state.oldValues, state.removed)) {
+      for (Entry<RevokingTuple, byte[]> entry : values.entrySet()) {
+        size += size(entry.getKey()) + size(entry.getValue());
+      }
+    }
+    for (RevokingTuple tuple : state.newIds) {
+      size += size(tuple);
+    }
+    return size;
+  }
+
+  private static void writeBytes(ByteBuffer buffer, byte[] bytes) {
+    if (bytes == null) {
+      buffer.putInt(-1);
+    } else {
+      buffer.putInt(bytes.length).put(bytes);
+    }
+  }
+
+  private static void writeTuple(ByteBuffer buffer, RevokingTuple tuple) {
+    writeBytes(buffer, tuple.getDatabase().getDBName().getBytes());
+    writeBytes(buffer, tuple.getKey());
+  }
+
+  private static void writeValues(ByteBuffer buffer, Map<RevokingTuple, byte[]> values) {
+    buffer.putInt(values.size());
+    values.forEach((tuple, value) -> {
+      writeTuple(buffer, tuple);
+      writeBytes(buffer, value);
+    });
+  }
+
+  static void writeState(ByteBuffer buffer, RevokingState state) {
+    writeValues(buffer, state.oldValues);
+    buffer.putInt(state.newIds.size());
+    state.newIds.forEach(tuple -> writeTuple(buffer, tuple));
+    writeValues(buffer, state.removed);
+  }
+
+  private static byte[] readBytes(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private static RevokingTuple readTuple(ByteBuffer buffer,
+      Function<String, DbSourceInter<byte[]>> databases) {
+    String name = new String(readBytes(buffer));
+    DbSourceInter<byte[]> database = databases.apply(name);
+    if (database == null) {
+      throw new IllegalStateException("revoking journal refers to unknown database " + name);
+    }
+    return new RevokingTuple(database, readBytes(buffer));
+  }
+
+  /**
+   * Read the changes of a state written by {@link #writeState} into an empty state.
+   */
+  static void readState(ByteBuffer buffer, RevokingState state,
+      Function<String, DbSourceInter<byte[]>> databases) {
+    for (int i = buffer.getInt(); i > 0; i--) {
+      state.putOldValue(readTuple(buffer, databases), readBytes(buffer));
+    }
+    for (int i = buffer.getInt(); i > 0; i--) {
+      state.addNewId(readTuple(buffer, databases));
+    }
+    for (int i = buffer.getInt(); i > 0; i--) {
+      state.putRemoved(readTuple(buffer, databases), readBytes(buffer));
+    }
+  }
+
+  private static Frame readFrame(ByteBuffer buffer,
+      Function<String, DbSourceInter<byte[]>> databases) {
+    int trimmed = buffer.getInt();
+    int popped = buffer.getInt();
+    int count = buffer.getInt();
+    List<RevokingState> pushed = count == 0 ? Collections.emptyList() : new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      RevokingState state = new RevokingState();
+      readState(buffer, state, databases);
+      pushed.add(state);
+    }
+    return new Frame(trimmed, popped, pushed);
+  }
+}
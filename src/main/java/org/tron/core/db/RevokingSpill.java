@@ -0,0 +1,218 @@
+package org.tron.core.db;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.core.config.args.Args;
+import org.tron.core.db.AbstractRevokingStore.RevokingState;
+import org.tron.core.db.AbstractRevokingStore.RevokingTuple;
+
+/**
+ * File in the storage directory for the oldest undo states while the stack holds more bytes than
+ * its budget. A state written here keeps only its position in memory and is read back once it is
+ * revoked or changed again. The states are encoded like in the {@link RevokingJournal}. The file
+ * is cut back when the last state in it leaves, rewritten without the gaps once they take more
+ * than half of it, and deleted on close; one left by a crash is emptied when the next state is
+ * spilled.
+ */
+@Slf4j
+class RevokingSpill implements Closeable {
+
+  static final String FILE_NAME = "revoking.spill";
+
+  private static final long MIN_COMPACT_SIZE = 1L << 20;
+
+  private final Map<String, DbSourceInter<byte[]>> databases = new HashMap<>();
+  private final Set<RevokingState> spilled = Collections.newSetFromMap(new IdentityHashMap<>());
+  private File file;
+  private FileChannel channel;
+  private long bytes = 0;
+  private long live = 0;
+
+  /**
+   * Bytes of the keys and old values of the states in the file.
+   */
+  long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Write the changes of a state to the file and drop them from memory.
+   */
+  void write(RevokingState state) {
+    ByteBuffer buffer = ByteBuffer.allocate(RevokingJournal.size(state));
+    RevokingJournal.writeState(buffer, state);
+    buffer.flip();
+    try {
+      if (channel == null) {
+        file = new File(Args.getInstance().getOutputDirectory()
+            + Args.getInstance().getStorage().getDirectory(), FILE_NAME);
+        Files.createDirectories(file.getParentFile().toPath());
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+      }
+      long position = channel.size();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, position + buffer.position());
+      }
+      register(state);
+      state.spilledAt = position;
+      state.spilledLength = buffer.limit();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't spill an undo state to " + file, e);
+    }
+    spilled.add(state);
+    live += state.spilledLength;
+    bytes += state.bytes;
+    state.oldValues = new HashMap<>();
+    state.newIds = new HashSet<>();
+    state.removed = new HashMap<>();
+  }
+
+  /**
+   * Read the changes of a spilled state back into it.
+   */
+  void read(RevokingState state) {
+    RevokingState changes = peek(state);
+    forget(state);
+    state.oldValues = changes.oldValues;
+    state.newIds = changes.newIds;
+    state.removed = changes.removed;
+    state.bytes = changes.bytes;
+  }
+
+  /**
+   * A copy of a spilled state with its changes, the state stays in the file.
+   */
+  RevokingState peek(RevokingState state) {
+    ByteBuffer buffer = readRecord(state);
+    RevokingState changes = new RevokingState();
+    changes.overlaid = state.overlaid;
+    RevokingJournal.readState(buffer, changes, databases::get);
+    return changes;
+  }
+
+  /**
+   * A spilled state left the stack without being read.
+   */
+  void forget(RevokingState state) {
+    spilled.remove(state);
+    long end = state.spilledAt + state.spilledLength;
+    live -= state.spilledLength;
+    bytes -= state.bytes;
+    state.spilledAt = -1;
+    try {
+      if (spilled.isEmpty()) {
+        clear();
+      } else if (end == channel.size()) {
+        // popped from the top, the newest states are at the end of the file
+        channel.truncate(end - state.spilledLength);
+      } else if (channel.size() > MIN_COMPACT_SIZE && channel.size() > 2 * live) {
+        compact();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't shrink " + file, e);
+    }
+  }
+
+  /**
+   * Move the states left in the file to its start, oldest first, and cut it after them.
+   */
+  private void compact() throws IOException {
+    List<RevokingState> states = new ArrayList<>(spilled);
+    states.sort(Comparator.comparingLong(state -> state.spilledAt));
+    long position = 0;
+    for (RevokingState state : states) {
+      if (state.spilledAt != position) {
+        ByteBuffer buffer = readRecord(state);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer, position + buffer.position());
+        }
+        state.spilledAt = position;
+      }
+      position += state.spilledLength;
+    }
+    logger.debug("Compacted {} from {} to {} bytes", file, channel.size(), position);
+    channel.truncate(position);
+  }
+
+  private ByteBuffer readRecord(RevokingState state) {
+    ByteBuffer buffer = ByteBuffer.allocate(state.spilledLength);
+    try {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, state.spilledAt + buffer.position()) < 0) {
+          throw new IOException("undo state cut off at " + state.spilledAt);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't read a spilled undo state from " + file, e);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Forget every state in the file.
+   */
+  void clear() {
+    spilled.forEach(state -> state.spilledAt = -1);
+    spilled.clear();
+    live = 0;
+    bytes = 0;
+    if (channel != null) {
+      try {
+        channel.truncate(0);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Can't empty " + file, e);
+      }
+    }
+  }
+
+  /**
+   * Length of the file, 0 before the first state was spilled.
+   */
+  long getFileSize() {
+    try {
+      return channel == null ? 0 : channel.size();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    clear();
+    if (channel != null) {
+      channel.close();
+      channel = null;
+      Files.deleteIfExists(file.toPath());
+    }
+  }
+
+  private void register(RevokingState state) {
+    state.newIds.forEach(this::register);
+    state.oldValues.keySet().forEach(this::register);
+    state.removed.keySet().forEach(this::register);
+  }
+
+  private void register(RevokingTuple tuple) {
+    databases.putIfAbsent(tuple.getDatabase().getDBName(), tuple.getDatabase());
+  }
+}
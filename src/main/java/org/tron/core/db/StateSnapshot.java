@@ -0,0 +1,306 @@
+package org.tron.core.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.common.storage.DbSourceFactory;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+import org.tron.common.utils.Sha256Hash;
+import org.tron.core.config.args.Args;
+import org.tron.core.config.args.Storage;
+
+/**
+ * The state stores at a committed block, from which a new node starts without replaying the
+ * chain. Unlike a {@link Checkpoint} it holds no block history, only the blocks a node needs to
+ * start from its head, and does not depend on the storage engine.
+ *
+ * <p>Every store is a sorted stream of key/value records, [key length][key][value length][value],
+ * cut into chunk files of a bounded size. The manifest, written last, holds the SHA-256 of every
+ * chunk and the state hash, the SHA-256 of all streams in manifest order. Importing checks both
+ * and loads the sorted records into new databases in batches.
+ */
+@Slf4j
+@Getter
+public class StateSnapshot {
+
+  public static final String MANIFEST = "snapshot.properties";
+  public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+  private static final String CHUNK_SUFFIX = ".chunk";
+  private static final int BATCH_SIZE = 10_000;
+
+  private final long headBlockNum;
+  private final String headBlockHash;
+  private final long solidifiedBlockNum;
+  private final String stateHash;
+  private final Map<String, Long> counts;
+  private final Map<String, List<String>> chunks;
+  private final Map<String, Long> archives;
+
+  public StateSnapshot(long headBlockNum, String headBlockHash, long solidifiedBlockNum,
+      String stateHash, Map<String, Long> counts, Map<String, List<String>> chunks,
+      Map<String, Long> archives) {
+    this.headBlockNum = headBlockNum;
+    this.headBlockHash = headBlockHash;
+    this.solidifiedBlockNum = solidifiedBlockNum;
+    this.stateHash = stateHash;
+    this.counts = counts;
+    this.chunks = chunks;
+    this.archives = archives;
+  }
+
+  private static String chunkName(int number) {
+    return String.format("%06d%s", number, CHUNK_SUFFIX);
+  }
+
+  public static StateSnapshot write(File directory, long headBlockNum, String headBlockHash,
+      long solidifiedBlockNum, Map<String, Iterator<Entry<byte[], byte[]>>> stores,
+      Map<String, Long> archives) throws IOException {
+    return write(directory, headBlockNum, headBlockHash, solidifiedBlockNum, stores, archives,
+        DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Write the records of every store, each iterated in key order, then the manifest. The stores
+   * must not change meanwhile, e.g. be read through a pinned {@link ReadView}. The archives are
+   * created empty on import, starting at the given block numbers.
+   */
+  public static StateSnapshot write(File directory, long headBlockNum, String headBlockHash,
+      long solidifiedBlockNum, Map<String, Iterator<Entry<byte[], byte[]>>> stores,
+      Map<String, Long> archives, int chunkSize) throws IOException {
+    String[] existing = directory.list();
+    if (existing != null && existing.length > 0) {
+      throw new IllegalArgumentException("snapshot directory " + directory + " is not empty");
+    }
+    Files.createDirectories(directory.toPath());
+
+    long start = System.currentTimeMillis();
+    MessageDigest state = Sha256Hash.newDigest();
+    Map<String, Long> counts = new LinkedHashMap<>();
+    Map<String, List<String>> chunks = new LinkedHashMap<>();
+    for (Entry<String, Iterator<Entry<byte[], byte[]>>> store : stores.entrySet()) {
+      File storeDirectory = new File(directory, store.getKey());
+      Files.createDirectories(storeDirectory.toPath());
+      state.update(store.getKey().getBytes());
+
+      List<String> checksums = new ArrayList<>();
+      long count = 0;
+      byte[] last = null;
+      ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+      while (store.getValue().hasNext()) {
+        Entry<byte[], byte[]> entry = store.getValue().next();
+        if (last != null && MergedIterator.COMPARATOR.compare(last, entry.getKey()) >= 0) {
+          throw new IllegalArgumentException(store.getKey() + " is not iterated in key order");
+        }
+        last = entry.getKey();
+        byte[] record = record(entry.getKey(), entry.getValue());
+        if (record.length > chunk.remaining() && chunk.position() > 0) {
+          checksums.add(writeChunk(storeDirectory, checksums.size(), chunk));
+        }
+        if (record.length > chunk.capacity()) {
+          chunk = ByteBuffer.allocate(record.length);
+        }
+        chunk.put(record);
+        state.update(record);
+        count++;
+      }
+      if (chunk.position() > 0) {
+        checksums.add(writeChunk(storeDirectory, checksums.size(), chunk));
+      }
+      counts.put(store.getKey(), count);
+      chunks.put(store.getKey(), checksums);
+    }
+
+    StateSnapshot snapshot = new StateSnapshot(headBlockNum, headBlockHash, solidifiedBlockNum,
+        ByteArray.toHexString(state.digest()), counts, chunks, archives);
+    snapshot.save(new File(directory, MANIFEST));
+    logger.info("Wrote {} to {} in {} ms", snapshot, directory,
+        System.currentTimeMillis() - start);
+    return snapshot;
+  }
+
+  private static byte[] record(byte[] key, byte[] value) {
+    return ByteBuffer.allocate(2 * Integer.BYTES + key.length + value.length)
+        .putInt(key.length).put(key)
+        .putInt(value.length).put(value)
+        .array();
+  }
+
+  /**
+   * Write the content of a chunk buffer through to the disk and clear it, returns its checksum.
+   */
+  private static String writeChunk(File storeDirectory, int number, ByteBuffer chunk)
+      throws IOException {
+    chunk.flip();
+    String checksum = ByteArray.toHexString(Sha256Hash.hash(chunk.array(), 0, chunk.limit()));
+    try (FileChannel channel = FileChannel.open(new File(storeDirectory, chunkName(number))
+        .toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      while (chunk.hasRemaining()) {
+        channel.write(chunk);
+      }
+      channel.force(false);
+    }
+    chunk.clear();
+    return checksum;
+  }
+
+  private void save(File file) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("head.num", Long.toString(headBlockNum));
+    properties.setProperty("head.hash", headBlockHash);
+    properties.setProperty("solidified.num", Long.toString(solidifiedBlockNum));
+    properties.setProperty("state.hash", stateHash);
+    properties.setProperty("stores", String.join(",", counts.keySet()));
+    counts.forEach((name, count) -> properties.setProperty("store." + name, Long.toString(count)));
+    chunks.forEach((name, checksums) ->
+        properties.setProperty("chunks." + name, String.join(",", checksums)));
+    archives.forEach((name, base) ->
+        properties.setProperty("archive." + name, Long.toString(base)));
+    try (OutputStream out = Files.newOutputStream(file.toPath())) {
+      properties.store(out, "state snapshot");
+    }
+  }
+
+  /**
+   * Read the manifest of a snapshot directory.
+   */
+  public static StateSnapshot load(File directory) throws IOException {
+    File file = new File(directory, MANIFEST);
+    if (!file.isFile()) {
+      throw new IllegalArgumentException(directory + " is not a complete state snapshot");
+    }
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file.toPath())) {
+      properties.load(in);
+    }
+    Map<String, Long> counts = new LinkedHashMap<>();
+    Map<String, List<String>> chunks = new LinkedHashMap<>();
+    for (String name : properties.getProperty("stores").split(",")) {
+      if (name.isEmpty()) {
+        continue;
+      }
+      counts.put(name, Long.parseLong(properties.getProperty("store." + name)));
+      String checksums = properties.getProperty("chunks." + name);
+      chunks.put(name, checksums.isEmpty()
+          ? new ArrayList<>() : Arrays.asList(checksums.split(",")));
+    }
+    Map<String, Long> archives = new LinkedHashMap<>();
+    properties.stringPropertyNames().stream()
+        .filter(key -> key.startsWith("archive."))
+        .sorted()
+        .forEach(key -> archives.put(key.substring("archive.".length()),
+            Long.parseLong(properties.getProperty(key))));
+    return new StateSnapshot(Long.parseLong(properties.getProperty("head.num")),
+        properties.getProperty("head.hash"),
+        Long.parseLong(properties.getProperty("solidified.num")),
+        properties.getProperty("state.hash"), counts, chunks, archives);
+  }
+
+  /**
+   * Load the stores of a snapshot into a storage directory that does not hold them yet. Every
+   * chunk is checked before its records are loaded, the state hash after all of them; the loaded
+   * databases are deleted again when a check fails.
+   */
+  public static StateSnapshot restore(File directory, File storageDirectory) throws IOException {
+    StateSnapshot snapshot = load(directory);
+    List<String> names = new ArrayList<>(snapshot.counts.keySet());
+    names.addAll(snapshot.archives.keySet());
+    for (String name : names) {
+      String[] existing = new File(storageDirectory, name).list();
+      if (existing != null && existing.length > 0) {
+        throw new IllegalStateException("database " + name + " already exists in "
+            + storageDirectory + ", a snapshot is only imported into an empty directory");
+      }
+    }
+
+    long start = System.currentTimeMillis();
+    MessageDigest state = Sha256Hash.newDigest();
+    try {
+      for (String name : snapshot.counts.keySet()) {
+        state.update(name.getBytes());
+        long count = importStore(new File(directory, name), snapshot.chunks.get(name),
+            storageDirectory.getPath(), name, state);
+        if (count != snapshot.counts.get(name)) {
+          throw new IllegalStateException(name + " has " + count + " records, expected "
+              + snapshot.counts.get(name));
+        }
+      }
+      if (!ByteArray.toHexString(state.digest()).equals(snapshot.stateHash)) {
+        throw new IllegalStateException("state hash of " + directory + " does not match");
+      }
+    } catch (IOException | RuntimeException e) {
+      names.forEach(name -> FileUtil.deleteDir(new File(storageDirectory, name)));
+      throw e;
+    }
+    for (Entry<String, Long> archive : snapshot.archives.entrySet()) {
+      BlockArchive.create(new File(storageDirectory, archive.getKey()), archive.getValue());
+    }
+    // the undo states of an earlier chain do not apply to the restored stores
+    Files.deleteIfExists(new File(storageDirectory, RevokingJournal.FILE_NAME).toPath());
+    logger.info("Imported {} from {} in {} ms", snapshot, directory,
+        System.currentTimeMillis() - start);
+    return snapshot;
+  }
+
+  private static long importStore(File storeDirectory, List<String> checksums, String parent,
+      String name, MessageDigest state) throws IOException {
+    Storage storage = Args.getInstance().getStorage();
+    DbSourceInter<byte[]> target = DbSourceFactory.create(storage.getEngine(name), parent, name,
+        storage.getProfile(name));
+    target.initDB();
+    try {
+      long count = 0;
+      Map<byte[], byte[]> batch = new HashMap<>();
+      for (int i = 0; i < checksums.size(); i++) {
+        File file = new File(storeDirectory, chunkName(i));
+        byte[] chunk = Files.readAllBytes(file.toPath());
+        if (!ByteArray.toHexString(Sha256Hash.hash(chunk)).equals(checksums.get(i))) {
+          throw new IllegalStateException("checksum of " + file + " does not match");
+        }
+        state.update(chunk);
+        ByteBuffer records = ByteBuffer.wrap(chunk);
+        while (records.hasRemaining()) {
+          byte[] key = new byte[records.getInt()];
+          records.get(key);
+          byte[] value = new byte[records.getInt()];
+          records.get(value);
+          batch.put(key, value);
+          if (batch.size() >= BATCH_SIZE) {
+            target.updateByBatch(batch);
+            count += batch.size();
+            batch.clear();
+          }
+        }
+      }
+      target.updateByBatch(batch);
+      return count + batch.size();
+    } finally {
+      target.closeDB();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "snapshot{head=" + headBlockNum + ", solidified=" + solidifiedBlockNum
+        + ", state=" + stateHash + ", stores=" + counts + "}";
+  }
+}
@@ -0,0 +1,500 @@
+package org.tron.core.db;
+
+import com.google.common.util.concurrent.Futures;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.iq80.leveldb.WriteOptions;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.common.storage.ScanOptions;
+import org.tron.common.storage.SnapshotSource;
+import org.tron.core.db.common.iterator.DBIterator;
+
+/**
+ * Keeps the entry count, the approximate size and the number of the last block that wrote to a
+ * store. The numbers are kept in memory and saved to a file in the directory of the database when
+ * it closes cleanly; the file is removed as soon as it is loaded, so after a crash, or for a
+ * database copied without it, the entries are counted again. The recount scans a snapshot taken
+ * at open on a background thread and the writes meanwhile are counted on top of it, so the store
+ * opens right away; until it finishes the statistics are stale, see {@link #isCounting}.
+ *
+ * <p>A store announces the old value of a key it is about to write with {@link #expect}, it has
+ * read it for the revoking database anyway. Only writes nobody announced, like undoing a block,
+ * read the old value below.
+ */
+@Slf4j
+public class StatsSource implements DbSourceInter<byte[]> {
+
+  public static final String FILE_NAME = "STATS";
+
+  private static final int FORMAT = 0x53540001;
+  private static final int ABSENT = -1;
+
+  private static final ExecutorService recounter = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "stats-recount");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final DbSourceInter<byte[]> below;
+  private final File file;
+  private final Map<ByteArrayWrapper, Integer> expected = new HashMap<>();
+  private long count = 0;
+  private long bytes = 0;
+  private long lastModifiedBlock = 0;
+  private long currentBlockNum = 0;
+  private volatile boolean counting = false;
+  private volatile boolean stopCounting = false;
+  private Future<?> recount;
+
+  /**
+   * Statistics that are counted on every open and never saved.
+   */
+  public StatsSource(DbSourceInter<byte[]> below) {
+    this(below, null);
+  }
+
+  public StatsSource(DbSourceInter<byte[]> below, File file) {
+    this.below = below;
+    this.file = file;
+    load();
+  }
+
+  /**
+   * The file of the statistics of a database under a storage directory.
+   */
+  public static File fileOf(String storageDirectory, String dbName) {
+    return new File(new File(storageDirectory, dbName), FILE_NAME);
+  }
+
+  /**
+   * Number of the block whose writes are applied now, recorded as last modified block.
+   */
+  public synchronized void setCurrentBlockNum(long blockNum) {
+    currentBlockNum = blockNum;
+  }
+
+  private synchronized void load() {
+    if (file != null && file.exists()) {
+      try (DataInputStream in = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(file)))) {
+        if (in.readInt() != FORMAT) {
+          throw new IOException("unknown statistics format");
+        }
+        count = in.readLong();
+        bytes = in.readLong();
+        lastModifiedBlock = in.readLong();
+        return;
+      } catch (IOException e) {
+        logger.warn("Can't load statistics of " + getDBName() + ", count them", e);
+      } finally {
+        if (!file.delete()) {
+          logger.warn("Can't delete {}", file);
+        }
+      }
+    }
+
+    // the writes from now on are counted on top of the entries of the snapshot
+    count = 0;
+    bytes = 0;
+    lastModifiedBlock = 0;
+    counting = true;
+    SnapshotSource snapshot = below.getSnapshot();
+    recount = recounter.submit(() -> recount(snapshot));
+  }
+
+  private void recount(SnapshotSource snapshot) {
+    long start = System.currentTimeMillis();
+    long scannedCount = 0;
+    long scannedBytes = 0;
+    try (DBIterator iterator = snapshot.iterator(ScanOptions.all())) {
+      while (iterator.hasNext()) {
+        if (stopCounting) {
+          return;
+        }
+        Entry<byte[], byte[]> entry = iterator.next();
+        scannedCount++;
+        scannedBytes += entry.getKey().length + entry.getValue().length;
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.error("Can't count the entries of " + getDBName() + ", statistics stay stale", e);
+      return;
+    } finally {
+      snapshot.closeDB();
+    }
+    synchronized (this) {
+      count += scannedCount;
+      bytes += scannedBytes;
+      counting = false;
+    }
+    logger.info("Count {} entries of {} in {} ms", scannedCount, getDBName(),
+        System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Whether the entries are still being counted after an open without saved statistics. Until
+   * then the count and the size are too low and the last modified block is 0.
+   */
+  public boolean isCounting() {
+    return counting;
+  }
+
+  /**
+   * Wait until the entries are counted.
+   */
+  public void awaitCount() {
+    Future<?> task;
+    synchronized (this) {
+      task = recount;
+    }
+    if (task != null) {
+      Futures.getUnchecked(task);
+    }
+  }
+
+  /**
+   * Whether the store has no entry, also while the entries are being counted.
+   */
+  public boolean isEmpty() {
+    if (!counting && ReadView.pinned(getDBName()) == null) {
+      synchronized (this) {
+        if (!counting) {
+          return count == 0;
+        }
+      }
+    }
+    try (DBIterator iterator = iterator()) {
+      return !iterator.hasNext();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Stop counting before the database closes below the snapshot, the statistics stay stale.
+   */
+  private void stopRecount() {
+    Future<?> task;
+    synchronized (this) {
+      task = recount;
+      recount = null;
+    }
+    if (task != null) {
+      stopCounting = true;
+      Futures.getUnchecked(task);
+      stopCounting = false;
+    }
+  }
+
+  /**
+   * Save the statistics, unless the source below drops writes that they count.
+   */
+  private synchronized void save() {
+    if (file == null) {
+      return;
+    }
+    if (counting) {
+      logger.info("Entries of {} are not counted yet, statistics not saved", getDBName());
+      return;
+    }
+    if (!expected.isEmpty()
+        || below instanceof BufferedSource && ((BufferedSource) below).hasChanges()) {
+      logger.info("Statistics of {} count uncommitted writes, not saved", getDBName());
+      return;
+    }
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(FORMAT);
+      out.writeLong(count);
+      out.writeLong(bytes);
+      out.writeLong(lastModifiedBlock);
+    } catch (IOException e) {
+      logger.warn("Can't save statistics of " + getDBName(), e);
+      if (file.exists() && !file.delete()) {
+        logger.warn("Can't delete {}", file);
+      }
+    }
+  }
+
+  /**
+   * Announce the value a key has below before the next write of it, null when it does not exist.
+   * Writes held above, e.g. by a {@link CachedSource}, reach this source later; the first value
+   * announced since the last write of the key is the one below.
+   */
+  public void expect(byte[] key, byte[] oldValue) {
+    expect(key, () -> oldValue);
+  }
+
+  /**
+   * Announce the old value of a key, it is only read when none is announced since the last write.
+   * It is read outside of the lock, the sources above take theirs before this one.
+   */
+  public void expect(byte[] key, Supplier<byte[]> oldValue) {
+    ByteArrayWrapper wrapper = new ByteArrayWrapper(key);
+    synchronized (this) {
+      if (expected.containsKey(wrapper)) {
+        return;
+      }
+    }
+    byte[] value = oldValue.get();
+    synchronized (this) {
+      expected.putIfAbsent(wrapper, value == null ? ABSENT : value.length);
+    }
+  }
+
+  /**
+   * Number of entries, as of the pinned read view when the thread has one.
+   */
+  public long getCount() {
+    DbSourceInter<byte[]> view = ReadView.pinned(getDBName());
+    if (view != null) {
+      return view.getTotal();
+    }
+    synchronized (this) {
+      return count;
+    }
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized long getLastModifiedBlock() {
+    return lastModifiedBlock;
+  }
+
+  private void apply(byte[] key, byte[] value) {
+    Integer oldLength = expected.remove(new ByteArrayWrapper(key));
+    if (oldLength == null) {
+      byte[] old = below.getData(key);
+      oldLength = old == null ? ABSENT : old.length;
+    }
+    if (oldLength != ABSENT) {
+      count--;
+      bytes -= key.length + oldLength;
+    }
+    if (value != null) {
+      count++;
+      bytes += key.length + value.length;
+    }
+    lastModifiedBlock = currentBlockNum;
+  }
+
+  @Override
+  public byte[] getData(byte[] key) {
+    DbSourceInter<byte[]> view = ReadView.pinned(getDBName());
+    return view != null ? view.getData(key) : below.getData(key);
+  }
+
+  @Override
+  public List<byte[]> getAll(Collection<byte[]> keys) {
+    DbSourceInter<byte[]> view = ReadView.pinned(getDBName());
+    return view != null ? view.getAll(keys) : below.getAll(keys);
+  }
+
+  @Override
+  public synchronized void putData(byte[] key, byte[] value) {
+    apply(key, value);
+    below.putData(key, value);
+  }
+
+  @Override
+  public synchronized void putData(byte[] key, byte[] value, WriteOptions options) {
+    apply(key, value);
+    below.putData(key, value, options);
+  }
+
+  @Override
+  public synchronized void deleteData(byte[] key) {
+    apply(key, null);
+    below.deleteData(key);
+  }
+
+  @Override
+  public synchronized void deleteData(byte[] key, WriteOptions options) {
+    apply(key, null);
+    below.deleteData(key, options);
+  }
+
+  @Override
+  public synchronized void updateByBatch(Map<byte[], byte[]> rows) {
+    updateByBatch(rows, new WriteOptions());
+  }
+
+  @Override
+  public synchronized void updateByBatch(Map<byte[], byte[]> rows, WriteOptions options) {
+    rows.forEach(this::apply);
+    below.updateByBatch(rows, options);
+  }
+
+  /**
+   * Write rows to the database under the write session of a {@link BufferedSource} below, for
+   * rows no block can revert. They are counted like the other writes.
+   */
+  public synchronized void updateBacking(Map<byte[], byte[]> rows) {
+    DbSourceInter<byte[]> target = below instanceof BufferedSource
+        ? ((BufferedSource) below).getBacking() : below;
+    rows.forEach(this::apply);
+    target.updateByBatch(rows);
+  }
+
+  @Override
+  public boolean flush() {
+    return below.flush();
+  }
+
+  @Override
+  public void compactRange(byte[] from, byte[] to) {
+    below.compactRange(from, to);
+  }
+
+  @Override
+  public void throttleCompactions(boolean throttled, long throttledRate) {
+    below.throttleCompactions(throttled, throttledRate);
+  }
+
+  @Override
+  public String getCompactionStats() {
+    return below.getCompactionStats();
+  }
+
+  @Override
+  public String getDBName() {
+    return below.getDBName();
+  }
+
+  @Override
+  public void setDBName(String name) {
+    below.setDBName(name);
+  }
+
+  @Override
+  public void initDB() {
+    below.initDB();
+  }
+
+  @Override
+  public boolean isAlive() {
+    return below.isAlive();
+  }
+
+  @Override
+  public void closeDB() {
+    stopRecount();
+    synchronized (this) {
+      if (below.isAlive()) {
+        save();
+      }
+      expected.clear();
+      below.closeDB();
+    }
+  }
+
+  @Override
+  public void resetDb() {
+    stopRecount();
+    synchronized (this) {
+      below.resetDb();
+      expected.clear();
+      counting = false;
+      count = 0;
+      bytes = 0;
+      lastModifiedBlock = 0;
+    }
+  }
+
+  @Override
+  public Set<byte[]> allKeys() {
+    return below.allKeys();
+  }
+
+  @Override
+  public Set<byte[]> allValues() {
+    return below.allValues();
+  }
+
+  @Override
+  public long getTotal() {
+    return getCount();
+  }
+
+  @Override
+  public DBIterator iterator() {
+    return iterator(ScanOptions.all());
+  }
+
+  @Override
+  public DBIterator iterator(ScanOptions options) {
+    DbSourceInter<byte[]> view = ReadView.pinned(getDBName());
+    return view != null ? view.iterator(options) : below.iterator(options);
+  }
+
+  /**
+   * Snapshot of the committed entries with the count taken with it, it is taken between blocks
+   * when no write is held above the database. While the entries are counted the snapshot counts
+   * its own.
+   */
+  @Override
+  public synchronized SnapshotSource getSnapshot() {
+    return counting ? below.getSnapshot() : new StatsSnapshot(below.getSnapshot(), count);
+  }
+
+  @Override
+  public String toString() {
+    return getDBName() + "{count=" + getCount() + ", bytes=" + getBytes()
+        + ", lastModifiedBlock=" + getLastModifiedBlock() + (counting ? ", counting" : "") + "}";
+  }
+
+  private static class StatsSnapshot extends SnapshotSource {
+
+    private final SnapshotSource snapshot;
+    private final long count;
+
+    StatsSnapshot(SnapshotSource snapshot, long count) {
+      super(snapshot.getDBName());
+      this.snapshot = snapshot;
+      this.count = count;
+    }
+
+    @Override
+    public boolean isAlive() {
+      return snapshot.isAlive();
+    }
+
+    @Override
+    public byte[] getData(byte[] key) {
+      return snapshot.getData(key);
+    }
+
+    @Override
+    public DBIterator iterator(ScanOptions options) {
+      return snapshot.iterator(options);
+    }
+
+    @Override
+    public long getTotal() {
+      return count;
+    }
+
+    @Override
+    protected void release() {
+      snapshot.closeDB();
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package org.tron.core.db;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.apache.commons.lang3.ArrayUtils;
+import org.tron.common.storage.ScanOptions;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.Sha256Hash;
+import org.tron.core.capsule.BytesCapsule;
+import org.tron.core.capsule.TransactionCapsule;
+import org.tron.core.db.common.iterator.DBIterator;
+import org.tron.protos.Protocol.Transaction;
+
+/**
+ * Transactions of every address, keyed by the address, the block number and the index of the
+ * transaction in the block, so the history of an address is one scan of the database, newest
+ * first when reversed. The values are the transaction id and whether the address owns the
+ * contracts of the transaction, receives from them, or both.
+ *
+ * <p>A page holds at most {@link #MAX_PAGE_SIZE} transactions.
+ */
+public class TransactionHistoryStore extends TronStoreWithRevoking<BytesCapsule> {
+
+  public static final int ROLE_OWNER = 1;
+  public static final int ROLE_TO = 2;
+  public static final int ROLE_ANY = ROLE_OWNER | ROLE_TO;
+  public static final int MAX_PAGE_SIZE = 1000;
+
+  private static TransactionHistoryStore instance;
+
+  private TransactionHistoryStore(String dbName) {
+    super(dbName);
+  }
+
+  public static void destroy() {
+    instance = null;
+  }
+
+  /**
+   * create fun.
+   *
+   * @param dbName the name of database
+   */
+  public static TransactionHistoryStore create(String dbName) {
+    if (instance == null) {
+      synchronized (TransactionHistoryStore.class) {
+        if (instance == null) {
+          instance = new TransactionHistoryStore(dbName);
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * The addresses are prefixed with their length, so no address is a prefix of the keys of
+   * another one.
+   */
+  private static byte[] prefix(byte[] address) {
+    return ByteBuffer.allocate(1 + address.length)
+        .put((byte) address.length)
+        .put(address)
+        .array();
+  }
+
+  private static byte[] key(byte[] address, long blockNum, int index) {
+    return ByteBuffer.allocate(1 + address.length + Long.BYTES + Integer.BYTES)
+        .put(prefix(address))
+        .putLong(blockNum)
+        .putInt(index)
+        .array();
+  }
+
+  /**
+   * Index the transaction at index in a block under its owner and to addresses.
+   */
+  public void put(long blockNum, int index, TransactionCapsule trx) {
+    entries(blockNum, index, trx).forEach((key, value) -> put(key, new BytesCapsule(value)));
+  }
+
+  /**
+   * The entries indexing the transaction at index in a block, to write them in a batch.
+   */
+  public static Map<byte[], byte[]> entries(long blockNum, int index, TransactionCapsule trx) {
+    Map<String, byte[]> addresses = new LinkedHashMap<>();
+    Map<String, Integer> roles = new LinkedHashMap<>();
+    for (Transaction.Contract contract : trx.getInstance().getRawData().getContractList()) {
+      addRole(addresses, roles, TransactionCapsule.getOwner(contract), ROLE_OWNER);
+      addRole(addresses, roles, TransactionCapsule.getToAddress(contract), ROLE_TO);
+    }
+    byte[] id = trx.getTransactionId().getBytes();
+    Map<byte[], byte[]> entries = new LinkedHashMap<>();
+    roles.forEach((hex, role) -> entries.put(key(addresses.get(hex), blockNum, index),
+        ArrayUtils.add(id, role.byteValue())));
+    return entries;
+  }
+
+  private static void addRole(Map<String, byte[]> addresses, Map<String, Integer> roles,
+      byte[] address, int role) {
+    if (ArrayUtils.isEmpty(address)) {
+      return;
+    }
+    String hex = ByteArray.toHexString(address);
+    addresses.put(hex, address);
+    roles.merge(hex, role, (a, b) -> a | b);
+  }
+
+  /**
+   * Ids of the transactions of an address in any of roles, newest first, skipping the first
+   * offset of them and stopping after limit.
+   */
+  public List<Sha256Hash> getTransactionIds(byte[] address, int roles, long offset, long limit) {
+    return getTransactions(address, roles, offset, limit, Function.identity());
+  }
+
+  /**
+   * Like {@link #getTransactionIds}, the ids of the page loaded afterwards. The offset and limit
+   * count index entries, only the page is loaded; an id that loads null, e.g. of a transaction
+   * pruned after the entry was read, is left out and the page comes back shorter.
+   */
+  public <T> List<T> getTransactions(byte[] address, int roles, long offset, long limit,
+      Function<Sha256Hash, T> load) {
+    if (offset < 0 || limit < 0 || limit > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException("offset(" + offset + ") must be >= 0 and limit("
+          + limit + ") between 0 and " + MAX_PAGE_SIZE);
+    }
+    List<T> transactions = new ArrayList<>();
+    if (ArrayUtils.isEmpty(address) || limit == 0) {
+      return transactions;
+    }
+    List<Sha256Hash> ids = new ArrayList<>();
+    long skipped = 0;
+    try (DBIterator iterator = dbSource.iterator(ScanOptions.prefix(prefix(address)).reverse())) {
+      while (iterator.hasNext() && ids.size() < limit) {
+        byte[] value = iterator.next().getValue();
+        if (ArrayUtils.isEmpty(value) || (value[value.length - 1] & roles) == 0) {
+          continue;
+        }
+        if (skipped < offset) {
+          skipped++;
+          continue;
+        }
+        ids.add(Sha256Hash.wrap(ArrayUtils.subarray(value, 0, value.length - 1)));
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    for (Sha256Hash id : ids) {
+      T transaction = load.apply(id);
+      if (transaction != null) {
+        transactions.add(transaction);
+      }
+    }
+    return transactions;
+  }
+
+  /**
+   * Delete the entries of the transactions of pruned blocks, straight from the database.
+   */
+  public void prune(Collection<byte[]> keys) {
+    Map<byte[], byte[]> rows = new HashMap<>(keys.size());
+    keys.forEach(key -> rows.put(key, null));
+    writeThrough(rows);
+  }
+
+  @Override
+  public BytesCapsule get(byte[] key) {
+    byte[] value = dbSource.getData(key);
+    return ArrayUtils.isEmpty(value) ? null : new BytesCapsule(value);
+  }
+
+  @Override
+  protected BytesCapsule parseItem(byte[] value) {
+    return new BytesCapsule(value);
+  }
+
+  @Override
+  public boolean has(byte[] key) {
+    return ArrayUtils.isNotEmpty(dbSource.getData(key));
+  }
+}
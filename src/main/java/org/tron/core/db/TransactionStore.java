@@ -1,35 +1,112 @@
 package org.tron.core.db;
 
+import com.google.common.collect.Iterators;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.tron.core.capsule.TransactionCapsule;
+import org.tron.core.config.args.Args;
 import org.tron.core.db.common.iterator.TransactionIterator;
+import org.tron.protos.Protocol.Transaction;
 
 @Slf4j
 @Component
 public class TransactionStore extends TronStoreWithRevoking<TransactionCapsule> {
 
+  private CachedSource<Transaction> transactionCache;
+  private KeyFilter keyFilter;
+
   @Autowired
   private TransactionStore(@Qualifier("trans") String dbName) {
     super(dbName);
+    transactionCache = new CachedSource<>(dbSource, getRevokingDatabase(),
+        TransactionStore::parse, Transaction::toByteArray, Transaction::getSerializedSize,
+        Args.getInstance().getStorage().getProfile(dbName).getObjectCacheSize());
+    dbSource = transactionCache;
+    keyFilter = new KeyFilter(new File(Args.getInstance().getOutputDirectory()
+        + Args.getInstance().getStorage().getDirectory(), dbName + ".bloom"), dbSource);
+  }
+
+  private static Transaction parse(byte[] data) {
+    try {
+      return Transaction.parseFrom(data);
+    } catch (InvalidProtocolBufferException e) {
+      logger.debug(e.getMessage());
+      return null;
+    }
   }
 
   @Override
   public TransactionCapsule get(byte[] key) {
+    if (!keyFilter.mightContain(key)) {
+      return null;
+    }
+
+    Transaction transaction = transactionCache.getObject(key);
+    if (transaction != null && transaction.getSerializedSize() != 0) {
+      return new TransactionCapsule(transaction);
+    }
+
     byte[] value = dbSource.getData(key);
     return ArrayUtils.isEmpty(value) ? null : new TransactionCapsule(value);
   }
 
+  @Override
+  protected TransactionCapsule parseItem(byte[] value) {
+    return new TransactionCapsule(value);
+  }
+
+  /**
+   * Get many transactions in one read, the ones not in memory are kept there after. A pruned
+   * transaction is null like a missing one.
+   */
+  @Override
+  public List<TransactionCapsule> getAll(Collection<byte[]> keys) {
+    return transactionCache.getObjects(keys).stream()
+        .map(transaction -> transaction == null || transaction.getSerializedSize() == 0 ? null
+            : new TransactionCapsule(transaction))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  protected void putValue(byte[] key, TransactionCapsule item) {
+    keyFilter.put(key);
+    transactionCache.putObject(key, item.getInstance());
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    keyFilter.reset();
+  }
+
+  @Override
+  public void close() {
+    keyFilter.save();
+    super.close();
+  }
+
+  public CachedSource<Transaction> getTransactionCache() {
+    return transactionCache;
+  }
+
 
+  /**
+   * Check a transaction id without parsing, most ids are new and never reach the database.
+   */
   @Override
   public boolean has(byte[] key) {
-    byte[] transaction = dbSource.getData(key);
-    logger.info("address is {}, transaction is {}", key, transaction);
-    return null != transaction;
+    return keyFilter.mightContain(key) && null != dbSource.getData(key);
   }
 
   @Override
@@ -40,11 +117,23 @@ public class TransactionStore extends TronStoreWithRevoking<TransactionCapsule>
     super.put(key, item);
   }
 
+  /**
+   * Cut the transactions of pruned blocks down to their ids, with empty values, in one batch. The
+   * ids stay, {@link #has} still rejects the transactions as duplicates. The batch is written
+   * straight to the database, a pruned block is solidified and never reverted.
+   */
+  public void prune(Collection<byte[]> ids) {
+    Map<byte[], byte[]> rows = new HashMap<>(ids.size());
+    ids.forEach(id -> rows.put(id, ArrayUtils.EMPTY_BYTE_ARRAY));
+    writeThrough(rows);
+    transactionCache.evict(ids);
+  }
+
   /**
    * get total transaction.
    */
   public long getTotalTransactions() {
-    return dbSource.getTotal();
+    return getStatsSource().getCount();
   }
 
   private static TransactionStore instance;
@@ -75,12 +164,20 @@ public class TransactionStore extends TronStoreWithRevoking<TransactionCapsule>
    * find a transaction  by it's id.
    */
   public byte[] findTransactionByHash(byte[] trxHash) {
-    return dbSource.getData(trxHash);
+    if (!keyFilter.mightContain(trxHash)) {
+      return null;
+    }
+    byte[] value = dbSource.getData(trxHash);
+    return ArrayUtils.isEmpty(value) ? null : value;
   }
 
+  /**
+   * The stored transactions, without the pruned ones.
+   */
   @Override
   public Iterator<TransactionCapsule> iterator() {
-    return new TransactionIterator(dbSource.iterator());
+    return new TransactionIterator(Iterators.filter(dbSource.iterator(),
+        entry -> ArrayUtils.isNotEmpty(entry.getValue())));
   }
   
 }
@@ -1,10 +1,15 @@
 package org.tron.core.db;
 
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ArrayUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.storage.DbSourceFactory;
+import org.tron.common.storage.DbSourceInter;
 import org.tron.common.utils.Quitable;
 import org.tron.core.config.args.Args;
 import org.tron.core.db.api.IndexHelper;
@@ -14,13 +19,13 @@ import org.tron.core.exception.ItemNotFoundException;
 @Slf4j
 public abstract class TronDatabase<T> implements Iterable<T>, Quitable {
 
-  protected LevelDbDataSourceImpl dbSource;
+  protected DbSourceInter<byte[]> dbSource;
 
   @Autowired(required = false)
   protected IndexHelper indexHelper;
 
   protected TronDatabase(String dbName) {
-    dbSource = new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectory(), dbName);
+    dbSource = DbSourceFactory.create(Args.getInstance().getOutputDirectory(), dbName);
     dbSource.initDB();
   }
 
@@ -28,7 +33,7 @@ public abstract class TronDatabase<T> implements Iterable<T>, Quitable {
     throw new IllegalStateException("This constructor is not allowed");
   }
 
-  public LevelDbDataSourceImpl getDbSource() {
+  public DbSourceInter<byte[]> getDbSource() {
     return dbSource;
   }
 
@@ -56,6 +61,22 @@ public abstract class TronDatabase<T> implements Iterable<T>, Quitable {
 
   public abstract boolean has(byte[] key);
 
+  /**
+   * The item of a value read from the database, the value is not empty.
+   */
+  protected abstract T parseItem(byte[] value);
+
+  /**
+   * Get the items of many keys in one read, in the order of the keys and null where one does not
+   * exist.
+   */
+  public List<T> getAll(Collection<byte[]> keys) {
+    List<T> items = new ArrayList<>(keys.size());
+    dbSource.getAll(keys).forEach(value ->
+        items.add(ArrayUtils.isEmpty(value) ? null : parseItem(value)));
+    return items;
+  }
+
   public String getName() {
     return this.getClass().getSimpleName();
   }
@@ -1,15 +1,20 @@
 package org.tron.core.db;
 
+import com.google.common.base.Suppliers;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
 import org.tron.core.capsule.ProtoCapsule;
+import org.tron.core.config.args.Args;
 import org.tron.core.db.AbstractRevokingStore.RevokingTuple;
 
 @Slf4j
 public abstract class TronStoreWithRevoking<T extends ProtoCapsule> extends TronDatabase<T> {
 
   private RevokingDatabase revokingDatabase;
+  private StatsSource statsSource;
 
   protected TronStoreWithRevoking(String dbName) {
     this(dbName, RevokingStore.getInstance());
@@ -19,26 +24,69 @@ public abstract class TronStoreWithRevoking<T extends ProtoCapsule> extends Tron
   protected TronStoreWithRevoking(String dbName, RevokingDatabase revokingDatabase) {
     super(dbName);
     this.revokingDatabase = revokingDatabase;
+    this.dbSource = new BufferedSource(dbSource, revokingDatabase);
+    this.statsSource = new StatsSource(dbSource, StatsSource.fileOf(
+        Args.getInstance().getOutputDirectory() + Args.getInstance().getStorage().getDirectory(),
+        dbName));
+    this.dbSource = statsSource;
   }
 
+  /**
+   * The old value is read, and a dirty cached object serialized, only when the revoking database
+   * or the statistics record it.
+   */
   @Override
   public void put(byte[] key, T item) {
     //logger.info("Address is {}, " + item.getClass().getSimpleName() + " is {}", key, item);
-    byte[] value = dbSource.getData(key);
-    if (ArrayUtils.isNotEmpty(value)) {
-      onModify(key, value);
+    Supplier<byte[]> value = Suppliers.memoize(() -> dbSource.getData(key));
+    boolean exists = dbSource instanceof CachedSource
+        ? ((CachedSource<?>) dbSource).hasValue(key) : ArrayUtils.isNotEmpty(value.get());
+    RevokingTuple tuple = new RevokingTuple(dbSource, key);
+    if (exists && revokingDatabase.recordsModify(tuple)) {
+      revokingDatabase.onModify(tuple, value.get());
     }
 
-    dbSource.putData(key, item.getData());
+    statsSource.expect(key, value);
+    putValue(key, item);
 
-    if (ArrayUtils.isEmpty(value)) {
+    if (!exists) {
       onCreate(key);
     }
   }
 
+  /**
+   * Write the item after the revoking database has recorded the old value.
+   */
+  protected void putValue(byte[] key, T item) {
+    dbSource.putData(key, item.getData());
+  }
+
+  /**
+   * Write rows straight to the database, past the write session and the revoking database, for
+   * rows no block can revert, like the ones of pruned blocks. The statistics count them.
+   */
+  protected void writeThrough(Map<byte[], byte[]> rows) {
+    if (!rows.isEmpty()) {
+      statsSource.updateBacking(rows);
+    }
+  }
+
+  protected RevokingDatabase getRevokingDatabase() {
+    return revokingDatabase;
+  }
+
+  /**
+   * Entry count, size and last modified block of this store, kept up to date with every write.
+   */
+  public StatsSource getStatsSource() {
+    return statsSource;
+  }
+
   @Override
   public void delete(byte[] key) {
-    onDelete(key);
+    byte[] value = dbSource.getData(key);
+    onDelete(key, value);
+    statsSource.expect(key, value);
     dbSource.deleteData(key);
   }
 
@@ -49,19 +97,11 @@ public abstract class TronStoreWithRevoking<T extends ProtoCapsule> extends Tron
     revokingDatabase.onCreate(new RevokingTuple(dbSource, key), null);
   }
 
-  /**
-   * This should be called just before an object is modified
-   */
-  private void onModify(byte[] key, byte[] value) {
-    revokingDatabase.onModify(new RevokingTuple(dbSource, key), value);
-  }
-
   /**
    * This should be called just before an object is removed.
    */
-  private void onDelete(byte[] key) {
-    byte[] value;
-    if (Objects.nonNull(value = dbSource.getData(key))) {
+  private void onDelete(byte[] key, byte[] value) {
+    if (Objects.nonNull(value)) {
       revokingDatabase.onRemove(new RevokingTuple(dbSource, key), value);
     }
   }
@@ -19,16 +19,20 @@ package org.tron.core.db;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.tron.common.crypto.ECKey;
+import org.tron.common.storage.ScanOptions;
 import org.tron.common.utils.ByteArray;
 import org.tron.core.SpendableOutputs;
 import org.tron.protos.Protocol.TXOutput;
@@ -36,7 +40,7 @@ import org.tron.protos.Protocol.TXOutputs;
 
 @Slf4j
 @Component
-public class UtxoStore extends TronDatabase {
+public class UtxoStore extends TronDatabase<Object> {
 
   @Autowired
   private UtxoStore(@Qualifier("utxo") String dbName) {
@@ -91,24 +95,27 @@ public class UtxoStore extends TronDatabase {
     HashMap<String, long[]> unspentOutputs = new HashMap<>();
     long accumulated = 0L;
 
-    for (byte[] key : getDbSource().allKeys()) {
-      try {
-        TXOutputs txOutputs = TXOutputs.parseFrom(getDbSource().getData(key));
-        String keyToHexString = ByteArray.toHexString(key);
-
-        for (int i = 0, len = txOutputs.getOutputsCount(); i < len; i++) {
-          TXOutput txOutput = txOutputs.getOutputs(i);
-          if (ByteArray.toHexString(ECKey.computeAddress(pubKeyHash))
-              .equals(ByteArray.toHexString(txOutput.getPubKeyHash().toByteArray()))
-              && accumulated < amount) {
-
-            accumulated += txOutput.getValue();
-            long[] v = ArrayUtils.nullToEmpty(unspentOutputs.get(keyToHexString));
-            unspentOutputs.put(keyToHexString, ArrayUtils.add(v, i));
+    try (Stream<Entry<byte[], byte[]>> entries = getDbSource().stream(ScanOptions.all())) {
+      for (Iterator<Entry<byte[], byte[]>> iterator = entries.iterator(); iterator.hasNext(); ) {
+        Entry<byte[], byte[]> entry = iterator.next();
+        try {
+          TXOutputs txOutputs = TXOutputs.parseFrom(entry.getValue());
+          String keyToHexString = ByteArray.toHexString(entry.getKey());
+
+          for (int i = 0, len = txOutputs.getOutputsCount(); i < len; i++) {
+            TXOutput txOutput = txOutputs.getOutputs(i);
+            if (ByteArray.toHexString(ECKey.computeAddress(pubKeyHash))
+                .equals(ByteArray.toHexString(txOutput.getPubKeyHash().toByteArray()))
+                && accumulated < amount) {
+
+              accumulated += txOutput.getValue();
+              long[] v = ArrayUtils.nullToEmpty(unspentOutputs.get(keyToHexString));
+              unspentOutputs.put(keyToHexString, ArrayUtils.add(v, i));
+            }
           }
+        } catch (InvalidProtocolBufferException e) {
+          logger.debug(e.getMessage(), e);
         }
-      } catch (InvalidProtocolBufferException e) {
-        logger.debug(e.getMessage(), e);
       }
     }
 
@@ -122,21 +129,23 @@ public class UtxoStore extends TronDatabase {
    * Find related UTXOs.
    */
   public ArrayList<TXOutput> findUtxo(byte[] address) {
-    return getDbSource().allKeys().stream()
-        .map(key -> {
-          try {
-            return TXOutputs.parseFrom(getDbSource().getData(key));
-          } catch (InvalidProtocolBufferException e) {
-            logger.debug(e.getMessage(), e);
-            return null;
-          }
-        })
-        .filter(Objects::nonNull)
-        .map(TXOutputs::getOutputsList)
-        .flatMap(List::stream)
-        .filter(txOutput -> ByteArray.toHexString(ECKey.computeAddress(address))
-            .equals(ByteArray.toHexString(txOutput.getPubKeyHash().toByteArray())))
-        .collect(Collectors.toCollection(ArrayList::new));
+    try (Stream<Entry<byte[], byte[]>> entries = getDbSource().stream(ScanOptions.all())) {
+      return entries
+          .map(entry -> {
+            try {
+              return TXOutputs.parseFrom(entry.getValue());
+            } catch (InvalidProtocolBufferException e) {
+              logger.debug(e.getMessage(), e);
+              return null;
+            }
+          })
+          .filter(Objects::nonNull)
+          .map(TXOutputs::getOutputsList)
+          .flatMap(List::stream)
+          .filter(txOutput -> ByteArray.toHexString(ECKey.computeAddress(address))
+              .equals(ByteArray.toHexString(txOutput.getPubKeyHash().toByteArray())))
+          .collect(Collectors.toCollection(ArrayList::new));
+    }
   }
 
   @Override
@@ -154,8 +163,13 @@ public class UtxoStore extends TronDatabase {
     return null;
   }
 
+  @Override
+  protected Object parseItem(byte[] value) {
+    return value;
+  }
+
   @Override
   public boolean has(byte[] key) {
     return false;
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -24,6 +24,11 @@ public class WitnessScheduleStore extends TronStoreWithRevoking<BytesCapsule>{
     return null;
   }
 
+  @Override
+  protected BytesCapsule parseItem(byte[] value) {
+    return new BytesCapsule(value);
+  }
+
   @Override
   public boolean has(byte[] key) {
     return false;
@@ -2,12 +2,15 @@ package org.tron.core.db;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import org.tron.common.storage.ScanOptions;
 import org.tron.common.utils.StringUtil;
 import org.tron.core.capsule.WitnessCapsule;
 import org.tron.core.db.common.iterator.WitnessIterator;
@@ -27,14 +30,23 @@ public class WitnessStore extends TronStoreWithRevoking<WitnessCapsule> {
     return ArrayUtils.isEmpty(value) ? null : new WitnessCapsule(value);
   }
 
+  @Override
+  protected WitnessCapsule parseItem(byte[] value) {
+    return new WitnessCapsule(value);
+  }
+
   @Override
   public boolean has(byte[] key) {
     byte[] account = dbSource.getData(key);
     if (account == null) {
       // For debugging
       String readableWitnessAddress = StringUtil.createReadableString(account);
-      List<String> allReadableWitnessAddress =
-          StringUtil.getAddressStringListFromByteArray(dbSource.allKeys());
+      List<String> allReadableWitnessAddress;
+      try (Stream<Entry<byte[], byte[]>> entries = dbSource.stream(ScanOptions.all())) {
+        allReadableWitnessAddress = entries
+            .map(entry -> StringUtil.createReadableString(entry.getKey()))
+            .collect(Collectors.toList());
+      }
       logger.warn(
           "address is {},witness is {},allWitness : ",
           key,
@@ -76,11 +88,11 @@ public class WitnessStore extends TronStoreWithRevoking<WitnessCapsule> {
 
   /** get all witnesses. */
   public List<WitnessCapsule> getAllWitnesses() {
-    return dbSource
-        .allValues()
-        .stream()
-        .map(bytes -> new WitnessCapsule(bytes))
-        .collect(Collectors.toList());
+    try (Stream<Entry<byte[], byte[]>> entries = dbSource.stream(ScanOptions.all())) {
+      return entries
+          .map(entry -> new WitnessCapsule(entry.getValue()))
+          .collect(Collectors.toList());
+    }
   }
 
   @Override
@@ -0,0 +1,56 @@
+package org.tron.core.db;
+
+import java.util.Collection;
+import org.iq80.leveldb.WriteOptions;
+
+/**
+ * A store layer holding changes of the current write session, committed by the revoking database
+ * when the outermost dialog ends.
+ */
+public interface WriteSession {
+
+  /**
+   * Hand the held changes down to the layer below, called on every layer before any commits.
+   */
+  default void prepare() {
+  }
+
+  void commit(WriteOptions options);
+
+  /**
+   * Wait until the committed changes are on the disk.
+   */
+  void sync();
+
+  /**
+   * Keep the held changes in memory as an overlay belonging to owner instead of writing them.
+   */
+  default void seal(Object owner) {
+    commit(new WriteOptions());
+  }
+
+  /**
+   * Forget the held changes, they only undid overlays that are dropped.
+   */
+  default void discard() {
+  }
+
+  /**
+   * Write the overlays of the owners, the oldest ones, to the database as one batch.
+   *
+   * @return false when there was nothing to write
+   */
+  default boolean flushOverlays(Collection<?> owners, WriteOptions options) {
+    return false;
+  }
+
+  /**
+   * Forget the overlays of the owners.
+   */
+  default void dropOverlays(Collection<?> owners) {
+  }
+
+  default boolean hasOverlays() {
+    return false;
+  }
+}
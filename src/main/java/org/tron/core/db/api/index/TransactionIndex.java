@@ -4,7 +4,6 @@ import static com.googlecode.cqengine.query.QueryFactory.attribute;
 
 import com.googlecode.cqengine.attribute.Attribute;
 import com.googlecode.cqengine.attribute.SimpleAttribute;
-import com.googlecode.cqengine.index.hash.HashIndex;
 import com.googlecode.cqengine.index.navigable.NavigableIndex;
 import com.googlecode.cqengine.index.suffix.SuffixTreeIndex;
 import com.googlecode.cqengine.persistence.Persistence;
@@ -53,8 +52,8 @@ public class TransactionIndex extends AbstractIndex<Transaction> {
   @PostConstruct
   public void init() {
     addIndex(SuffixTreeIndex.onAttribute(Transaction_ID));
-    addIndex(HashIndex.onAttribute(OWNERS));
-    addIndex(HashIndex.onAttribute(TOS));
+    // no hash indexes by address, the transactions of an address are read from
+    // TransactionHistoryStore
     addIndex(NavigableIndex.onAttribute(TIMESTAMP));
   }
 }
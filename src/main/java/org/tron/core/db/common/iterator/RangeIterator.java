@@ -0,0 +1,119 @@
+package org.tron.core.db.common.iterator;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import org.tron.common.storage.ScanOptions;
+
+/**
+ * Cursor over a key range of a database, forward or backward, with offset and limit. Subclasses
+ * adapt the native iterator of an engine; nothing is read before the first hasNext and the native
+ * iterator is released once the range is exhausted.
+ */
+public abstract class RangeIterator implements DBIterator {
+
+  private final ScanOptions options;
+  private boolean positioned = false;
+  private boolean closed = false;
+  private long remaining;
+
+  protected RangeIterator(ScanOptions options) {
+    this.options = options;
+    this.remaining = options.getLimit();
+  }
+
+  /**
+   * Move to the first key at or after key.
+   */
+  protected abstract void seek(byte[] key);
+
+  protected abstract void seekToFirst();
+
+  protected abstract void seekToLast();
+
+  protected abstract boolean isValid();
+
+  protected abstract byte[] key();
+
+  protected abstract byte[] value();
+
+  protected abstract void moveNext();
+
+  /**
+   * Move to the previous key, the iterator becomes invalid before the first one.
+   */
+  protected abstract void movePrev();
+
+  protected abstract void closeNative();
+
+  private void position() {
+    if (!options.isReverse()) {
+      if (options.getFrom() == null) {
+        seekToFirst();
+      } else {
+        seek(options.getFrom());
+      }
+    } else if (options.getTo() == null) {
+      seekToLast();
+    } else {
+      // seek lands on the first key >= to, the range ends just before it
+      seek(options.getTo());
+      if (isValid()) {
+        movePrev();
+      } else {
+        seekToLast();
+      }
+    }
+
+    for (long i = 0; i < options.getOffset() && inRange(); i++) {
+      move();
+    }
+  }
+
+  private boolean inRange() {
+    return isValid() && options.contains(key());
+  }
+
+  private void move() {
+    if (options.isReverse()) {
+      movePrev();
+    } else {
+      moveNext();
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (closed) {
+      return false;
+    }
+    if (!positioned) {
+      positioned = true;
+      position();
+    }
+    if (remaining > 0 && inRange()) {
+      return true;
+    }
+    close();
+    return false;
+  }
+
+  @Override
+  public Entry<byte[], byte[]> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Entry<byte[], byte[]> entry = new SimpleImmutableEntry<>(key(), value());
+    move();
+    remaining--;
+    return entry;
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      closeNative();
+    }
+  }
+}
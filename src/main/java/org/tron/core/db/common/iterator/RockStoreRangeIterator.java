@@ -0,0 +1,59 @@
+package org.tron.core.db.common.iterator;
+
+import org.rocksdb.RocksIterator;
+import org.tron.common.storage.ScanOptions;
+
+public final class RockStoreRangeIterator extends RangeIterator {
+
+  private final RocksIterator dbIterator;
+
+  public RockStoreRangeIterator(RocksIterator dbIterator, ScanOptions options) {
+    super(options);
+    this.dbIterator = dbIterator;
+  }
+
+  @Override
+  protected void seek(byte[] key) {
+    dbIterator.seek(key);
+  }
+
+  @Override
+  protected void seekToFirst() {
+    dbIterator.seekToFirst();
+  }
+
+  @Override
+  protected void seekToLast() {
+    dbIterator.seekToLast();
+  }
+
+  @Override
+  protected boolean isValid() {
+    return dbIterator.isValid();
+  }
+
+  @Override
+  protected byte[] key() {
+    return dbIterator.key();
+  }
+
+  @Override
+  protected byte[] value() {
+    return dbIterator.value();
+  }
+
+  @Override
+  protected void moveNext() {
+    dbIterator.next();
+  }
+
+  @Override
+  protected void movePrev() {
+    dbIterator.prev();
+  }
+
+  @Override
+  protected void closeNative() {
+    dbIterator.close();
+  }
+}
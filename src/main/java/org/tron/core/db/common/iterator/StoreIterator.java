@@ -11,6 +11,7 @@ public final class StoreIterator implements org.tron.core.db.common.iterator.DBI
 
   private DBIterator dbIterator;
   private boolean first = true;
+  private boolean close = false;
 
   public StoreIterator(DBIterator dbIterator) {
     this.dbIterator = dbIterator;
@@ -18,11 +19,18 @@ public final class StoreIterator implements org.tron.core.db.common.iterator.DBI
 
   @Override
   public void close() throws IOException {
-    dbIterator.close();
+    if (!close) {
+      close = true;
+      dbIterator.close();
+    }
   }
 
   @Override
   public boolean hasNext() {
+    if (close) {
+      return false;
+    }
+
     boolean hasNext = false;
     // true is first item
     try {
@@ -32,12 +40,12 @@ public final class StoreIterator implements org.tron.core.db.common.iterator.DBI
       }
 
       if (!(hasNext = dbIterator.hasNext())) { // false is last item
-        dbIterator.close();
+        close();
       }
     } catch (Exception e) {
       logger.debug(e.getMessage(), e);
       try {
-        dbIterator.close();
+        close();
       } catch (IOException e1) {
         logger.debug(e1.getMessage(), e1);
       }
@@ -58,6 +66,8 @@ public final class StoreIterator implements org.tron.core.db.common.iterator.DBI
 
   @Override
   public void forEachRemaining(Consumer<? super Entry<byte[], byte[]>> action) {
-    dbIterator.forEachRemaining(action);
+    while (hasNext()) {
+      action.accept(next());
+    }
   }
 }
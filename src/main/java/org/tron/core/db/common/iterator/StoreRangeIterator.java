@@ -0,0 +1,87 @@
+package org.tron.core.db.common.iterator;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import lombok.extern.slf4j.Slf4j;
+import org.iq80.leveldb.DBIterator;
+import org.tron.common.storage.ScanOptions;
+
+@Slf4j
+public final class StoreRangeIterator extends RangeIterator {
+
+  private final DBIterator dbIterator;
+  private Entry<byte[], byte[]> current;
+
+  public StoreRangeIterator(DBIterator dbIterator, ScanOptions options) {
+    super(options);
+    this.dbIterator = dbIterator;
+  }
+
+  private void refresh() {
+    current = dbIterator.hasNext() ? dbIterator.peekNext() : null;
+  }
+
+  @Override
+  protected void seek(byte[] key) {
+    try {
+      dbIterator.seek(key);
+      refresh();
+    } catch (NoSuchElementException e) {
+      current = null;
+    }
+  }
+
+  @Override
+  protected void seekToFirst() {
+    dbIterator.seekToFirst();
+    refresh();
+  }
+
+  @Override
+  protected void seekToLast() {
+    dbIterator.seekToLast();
+    refresh();
+  }
+
+  @Override
+  protected boolean isValid() {
+    return current != null;
+  }
+
+  @Override
+  protected byte[] key() {
+    return current.getKey();
+  }
+
+  @Override
+  protected byte[] value() {
+    return current.getValue();
+  }
+
+  @Override
+  protected void moveNext() {
+    dbIterator.next();
+    refresh();
+  }
+
+  @Override
+  protected void movePrev() {
+    if (dbIterator.hasPrev()) {
+      dbIterator.prev();
+      refresh();
+    } else {
+      current = null;
+    }
+  }
+
+  @Override
+  protected void closeNative() {
+    current = null;
+    try {
+      dbIterator.close();
+    } catch (IOException e) {
+      logger.debug(e.getMessage(), e);
+    }
+  }
+}
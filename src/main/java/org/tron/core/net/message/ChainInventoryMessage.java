@@ -20,6 +20,13 @@ public class ChainInventoryMessage extends TronMessage {
   protected ChainInventory chainInventory;
 
   public ChainInventoryMessage(List<BlockId> blockIds, Long remainNum) {
+    this(blockIds, remainNum, 0);
+  }
+
+  /**
+   * Create the inventory of a node whose blocks below prunedNum have no transactions.
+   */
+  public ChainInventoryMessage(List<BlockId> blockIds, Long remainNum, long prunedNum) {
     ChainInventory.Builder invBuilder = ChainInventory.newBuilder();
     blockIds.forEach(blockId -> {
       ChainInventory.BlockId.Builder b = ChainInventory.BlockId.newBuilder();
@@ -29,6 +36,7 @@ public class ChainInventoryMessage extends TronMessage {
     });
 
     invBuilder.setRemainNum(remainNum);
+    invBuilder.setPrunedNum(prunedNum);
     chainInventory = invBuilder.build();
     unpacked = true;
     this.type = MessageTypes.BLOCK_CHAIN_INVENTORY.asByte();
@@ -77,6 +85,10 @@ public class ChainInventoryMessage extends TronMessage {
     return getChainInventory().getRemainNum();
   }
 
+  public long getPrunedNum() {
+    return getChainInventory().getPrunedNum();
+  }
+
   private synchronized void unPack() {
     if (unpacked) {
       return;
@@ -47,4 +47,6 @@ public interface NodeDelegate {
 
   boolean canChainRevoke(long num);
 
+  long getPrunedBlockNum();
+
 }
@@ -15,6 +15,7 @@ import org.tron.core.capsule.BlockCapsule.BlockId;
 import org.tron.core.capsule.TransactionCapsule;
 import org.tron.core.config.Parameter.NodeConstant;
 import org.tron.core.db.Manager;
+import org.tron.core.db.ReadView;
 import org.tron.core.exception.BadBlockException;
 import org.tron.core.exception.BadItemException;
 import org.tron.core.exception.BadTransactionException;
@@ -129,15 +130,14 @@ public class NodeDelegateImpl implements NodeDelegate {
 
     //todo: limit the count of block to send peer by one time.
     long unForkedBlockIdNum = unForkedBlockId.getNum();
+    // a node started from a state snapshot holds no blocks between genesis and its first one
+    if (unForkedBlockIdNum < dbManager.getBlockStore().getArchive().getBase()) {
+      return new LinkedList<>();
+    }
     long len = Longs
         .min(dbManager.getHeadBlockNum(), unForkedBlockIdNum + NodeConstant.SYNC_FETCH_BATCH_NUM);
 
-    LinkedList<BlockId> blockIds = new LinkedList<>();
-    for (long i = unForkedBlockIdNum; i <= len; i++) {
-      BlockId id = dbManager.getBlockIdByNum(i);
-      blockIds.add(id);
-    }
-    return blockIds;
+    return new LinkedList<>(dbManager.getBlockIdsByRange(unForkedBlockIdNum, len + 1));
   }
 
   @Override
@@ -195,9 +195,14 @@ public class NodeDelegateImpl implements NodeDelegate {
     }
 
     long realHighBlkNum = highBlkNum + blockIds.size();
+    // the main chain part starts at the sync begin number, read its ids at once
+    long mainChainBegin = lowBlkNum;
+    List<BlockId> mainChain = lowBlkNum <= highNoForkBlkNum
+        ? dbManager.getBlockIdsByRange(lowBlkNum, highNoForkBlkNum + 1)
+        : Collections.emptyList();
     do {
       if (lowBlkNum <= highNoForkBlkNum) {
-        retSummary.offer(dbManager.getBlockIdByNum(lowBlkNum));
+        retSummary.offer(mainChain.get((int) (lowBlkNum - mainChainBegin)));
       } else if (lowBlkNum <= highBlkNum) {
         retSummary.offer(forkList.get((int) (lowBlkNum - highNoForkBlkNum - 1)));
       } else {
@@ -211,21 +216,27 @@ public class NodeDelegateImpl implements NodeDelegate {
 
   @Override
   public Message getData(Sha256Hash hash, MessageTypes type) {
-    switch (type) {
-      case BLOCK:
-        try {
-          return new BlockMessage(dbManager.getBlockById(hash));
-        } catch (BadItemException e) {
-          logger.debug(e.getMessage());
-        } catch (ItemNotFoundException e) {
-          logger.debug(e.getMessage());
-        }
-      case TRX:
-        return new TransactionMessage(
-            dbManager.getTransactionStore().get(hash.getBytes()).getData());
-      default:
-        logger.info("message type not block or trx.");
-        return null;
+    // serve peers from the last committed block without waiting for the one being applied
+    try (ReadView.Pin pin = dbManager.pinReadView()) {
+      switch (type) {
+        case BLOCK:
+          try {
+            BlockCapsule block = dbManager.getBlockById(hash);
+            // a pruned block has lost its transactions
+            return dbManager.getBlockStore().isPruned(block.getNum())
+                ? null : new BlockMessage(block);
+          } catch (BadItemException e) {
+            logger.debug(e.getMessage());
+          } catch (ItemNotFoundException e) {
+            logger.debug(e.getMessage());
+          }
+        case TRX:
+          TransactionCapsule transaction = dbManager.getTransactionStore().get(hash.getBytes());
+          return transaction == null ? null : new TransactionMessage(transaction.getData());
+        default:
+          logger.info("message type not block or trx.");
+          return null;
+      }
     }
   }
 
@@ -301,4 +312,9 @@ public class NodeDelegateImpl implements NodeDelegate {
   public boolean canChainRevoke(long num) {
     return num >= dbManager.getSyncBeginNumber();
   }
+
+  @Override
+  public long getPrunedBlockNum() {
+    return dbManager.getBlockStore().getPrunedCount();
+  }
 }
@@ -770,7 +770,7 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
       startSyncWithPeer(peer);
     }
 
-    peer.sendMessage(new ChainInventoryMessage(blockIds, remainNum));
+    peer.sendMessage(new ChainInventoryMessage(blockIds, remainNum, del.getPrunedBlockNum()));
   }
 
   private void onHandleFetchDataMessage(PeerConnection peer, FetchInvDataMessage fetchInvDataMsg) {
@@ -859,6 +859,7 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
 
         //here this peer's answer is legal
         peer.setSyncChainRequested(null);
+        peer.setPrunedBlockNum(msg.getPrunedNum());
         if (msg.getRemainNum() == 0
             && (blockIdWeGet.isEmpty()
             || (blockIdWeGet.size() == 1
@@ -981,7 +982,9 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
           }
           for (BlockId blockId :
               peer.getSyncBlockToFetch()) {
-            if (!request.contains(blockId) //TODO: clean processing block
+            // a pruned peer can't send the blocks it only has the header of
+            if (blockId.getNum() >= peer.getPrunedBlockNum()
+                && !request.contains(blockId) //TODO: clean processing block
                 && !syncBlockIdWeRequested.containsKey(blockId)
                 && blockWaitToProc.stream()
                 .noneMatch(blockMessage -> blockMessage.getBlockId().equals(blockId))
@@ -1023,9 +1026,7 @@ public class NodeImpl extends PeerConnectionDelegate implements Node {
   private void updateBlockWeBothHave(PeerConnection peer, BlockId blockId) {
     logger.info("update peer {} block both we have, {}", peer.getNode().getHost(), blockId.getString());
     peer.setHeadBlockWeBothHave(blockId);
-    long time = ((BlockMessage) del.getData(blockId, MessageTypes.BLOCK)).getBlockCapsule()
-        .getTimeStamp();
-    peer.setHeadBlockTimeWeBothHave(time);
+    peer.setHeadBlockTimeWeBothHave(del.getBlockTime(blockId));
   }
 
   private void onHandleBlockInventoryMessage(PeerConnection peer, BlockInventoryMessage msg) {
@@ -110,6 +110,19 @@ public class PeerConnection extends Channel {
 
   private long unfetchSyncNum = 0L;
 
+  /**
+   * The peer keeps the blocks below this number as headers only, as it told in its inventory.
+   */
+  private long prunedBlockNum = 0L;
+
+  public long getPrunedBlockNum() {
+    return prunedBlockNum;
+  }
+
+  public void setPrunedBlockNum(long prunedBlockNum) {
+    this.prunedBlockNum = prunedBlockNum;
+  }
+
   private boolean needSyncFromPeer;
 
   private boolean needSyncFromUs;
@@ -0,0 +1,66 @@
+package org.tron.core.services;
+
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Slf4jReporter;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.common.application.Service;
+import org.tron.common.storage.StoreMetrics;
+import org.tron.core.config.args.Args;
+
+/**
+ * Reports the store metrics through JMX, under the domain org.tron, and periodically to the log.
+ */
+@Slf4j
+public class MetricsService implements Service {
+
+  private static final String JMX_DOMAIN = "org.tron";
+
+  private boolean jmxEnable;
+  private int logInterval;
+  private JmxReporter jmxReporter;
+  private Slf4jReporter logReporter;
+
+  @Override
+  public void init() {
+    init(Args.getInstance());
+  }
+
+  @Override
+  public void init(Args args) {
+    jmxEnable = args.isMetricsJmxEnable();
+    logInterval = args.getMetricsLogInterval();
+  }
+
+  @Override
+  public void start() {
+    MetricRegistry registry = StoreMetrics.getRegistry();
+    if (jmxEnable) {
+      jmxReporter = JmxReporter.forRegistry(registry)
+          .inDomain(JMX_DOMAIN)
+          .convertDurationsTo(TimeUnit.MILLISECONDS)
+          .build();
+      jmxReporter.start();
+    }
+    if (logInterval > 0) {
+      logReporter = Slf4jReporter.forRegistry(registry)
+          .outputTo(logger)
+          .convertDurationsTo(TimeUnit.MILLISECONDS)
+          .build();
+      logReporter.start(logInterval, TimeUnit.SECONDS);
+    }
+    logger.info("Metrics reported through jmx: {}, to the log every {} s", jmxEnable,
+        logInterval);
+  }
+
+  @Override
+  public void stop() {
+    if (jmxReporter != null) {
+      jmxReporter.stop();
+    }
+    if (logReporter != null) {
+      logReporter.stop();
+    }
+  }
+}
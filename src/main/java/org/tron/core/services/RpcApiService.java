@@ -2,31 +2,54 @@ package org.tron.core.services;
 
 import com.google.common.base.Preconditions;
 import com.google.protobuf.ByteString;
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerCall;
+import io.grpc.ServerCall.Listener;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.tron.api.DatabaseGrpc;
 import org.tron.api.DatabaseGrpc.DatabaseImplBase;
 import org.tron.api.GrpcAPI;
 import org.tron.api.GrpcAPI.AccountList;
+import org.tron.api.GrpcAPI.AccountPaginated;
 import org.tron.api.GrpcAPI.Address;
 import org.tron.api.GrpcAPI.AssetIssueList;
 import org.tron.api.GrpcAPI.BlockReference;
 import org.tron.api.GrpcAPI.BytesMessage;
+import org.tron.api.GrpcAPI.CheckpointInfo;
+import org.tron.api.GrpcAPI.CompactRequest;
 import org.tron.api.GrpcAPI.EmptyMessage;
+import org.tron.api.GrpcAPI.MetricList;
 import org.tron.api.GrpcAPI.Node;
 import org.tron.api.GrpcAPI.NodeList;
 import org.tron.api.GrpcAPI.NumberMessage;
+import org.tron.api.GrpcAPI.StateSnapshotInfo;
+import org.tron.api.GrpcAPI.StoreStats;
+import org.tron.api.GrpcAPI.StoreStatsList;
 import org.tron.api.GrpcAPI.TimeMessage;
 import org.tron.api.GrpcAPI.TransactionList;
 import org.tron.api.GrpcAPI.WitnessList;
+import org.tron.api.WalletGrpc;
 import org.tron.api.WalletGrpc.WalletImplBase;
+import org.tron.api.WalletSolidityGrpc;
 import org.tron.api.WalletSolidityGrpc.WalletSolidityImplBase;
 import org.tron.common.application.Service;
 import org.tron.common.overlay.discover.NodeHandler;
@@ -42,6 +65,8 @@ import org.tron.core.capsule.TransactionCapsule;
 import org.tron.core.capsule.WitnessCapsule;
 import org.tron.core.config.args.Args;
 import org.tron.core.db.Manager;
+import org.tron.core.db.ReadView;
+import org.tron.core.db.TransactionHistoryStore;
 import org.tron.core.exception.ContractValidateException;
 import org.tron.core.exception.StoreException;
 import org.tron.protos.Contract;
@@ -85,12 +110,47 @@ public class RpcApiService implements Service {
   @Override
   public void start() {
     try {
+      ReadViewInterceptor readView = new ReadViewInterceptor(
+          DatabaseGrpc.METHOD_GET_BLOCK_REFERENCE,
+          DatabaseGrpc.METHOD_GET_DYNAMIC_PROPERTIES,
+          DatabaseGrpc.METHOD_GET_NOW_BLOCK,
+          DatabaseGrpc.METHOD_GET_BLOCK_BY_NUM,
+          WalletGrpc.METHOD_GET_ACCOUNT,
+          WalletGrpc.METHOD_LIST_ACCOUNTS,
+          WalletGrpc.METHOD_LIST_WITNESSES,
+          WalletGrpc.METHOD_GET_ASSET_ISSUE_LIST,
+          WalletGrpc.METHOD_GET_ASSET_ISSUE_BY_ACCOUNT,
+          WalletGrpc.METHOD_GET_ASSET_ISSUE_BY_NAME,
+          WalletGrpc.METHOD_GET_NOW_BLOCK,
+          WalletGrpc.METHOD_GET_BLOCK_BY_NUM,
+          WalletGrpc.METHOD_TOTAL_TRANSACTION,
+          WalletGrpc.METHOD_GET_STORE_STATS,
+          WalletGrpc.METHOD_GET_TRANSACTIONS_FROM_THIS,
+          WalletGrpc.METHOD_GET_TRANSACTIONS_TO_THIS,
+          WalletSolidityGrpc.METHOD_GET_ACCOUNT,
+          WalletSolidityGrpc.METHOD_LIST_ACCOUNTS,
+          WalletSolidityGrpc.METHOD_LIST_WITNESSES,
+          WalletSolidityGrpc.METHOD_GET_ASSET_ISSUE_LIST,
+          WalletSolidityGrpc.METHOD_GET_ASSET_ISSUE_LIST_BY_TIMESTAMP,
+          WalletSolidityGrpc.METHOD_GET_ASSET_ISSUE_BY_ACCOUNT,
+          WalletSolidityGrpc.METHOD_GET_ASSET_ISSUE_BY_NAME,
+          WalletSolidityGrpc.METHOD_GET_NOW_BLOCK,
+          WalletSolidityGrpc.METHOD_GET_BLOCK_BY_NUM,
+          WalletSolidityGrpc.METHOD_TOTAL_TRANSACTION,
+          WalletSolidityGrpc.METHOD_GET_TRANSACTION_BY_ID,
+          WalletSolidityGrpc.METHOD_GET_TRANSACTIONS_BY_TIMESTAMP,
+          WalletSolidityGrpc.METHOD_GET_TRANSACTIONS_FROM_THIS,
+          WalletSolidityGrpc.METHOD_GET_TRANSACTIONS_TO_THIS,
+          WalletSolidityGrpc.METHOD_GET_TRANSACTIONS_FROM_THIS_PAGINATED,
+          WalletSolidityGrpc.METHOD_GET_TRANSACTIONS_TO_THIS_PAGINATED);
       ServerBuilder serverBuilder = ServerBuilder.forPort(port)
-          .addService(new DatabaseApi());
+          .addService(ServerInterceptors.intercept(new DatabaseApi(), readView));
       if (Args.getInstance().isSolidityNode()) {
-        serverBuilder = serverBuilder.addService(new WalletSolidityApi());
+        serverBuilder = serverBuilder
+            .addService(ServerInterceptors.intercept(new WalletSolidityApi(), readView));
       } else {
-        serverBuilder = serverBuilder.addService(new WalletApi());
+        serverBuilder = serverBuilder
+            .addService(ServerInterceptors.intercept(new WalletApi(), readView));
       }
       apiServer = serverBuilder.build().start();
     } catch (IOException e) {
@@ -107,6 +167,41 @@ public class RpcApiService implements Service {
   }
 
 
+  /**
+   * Runs the handlers of the listed read only calls with the state of the last committed block
+   * pinned, so they never wait for block processing and see one consistent block. Every other call,
+   * e.g. one that builds or broadcasts a transaction or a maintenance call, reads the live state
+   * and holds no snapshot.
+   */
+  private class ReadViewInterceptor implements ServerInterceptor {
+
+    private final Set<String> readMethods = new HashSet<>();
+
+    ReadViewInterceptor(MethodDescriptor<?, ?>... readMethods) {
+      for (MethodDescriptor<?, ?> method : readMethods) {
+        this.readMethods.add(method.getFullMethodName());
+      }
+    }
+
+    @Override
+    public <ReqT, RespT> Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+        Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+      Listener<ReqT> listener = next.startCall(call, headers);
+      if (!readMethods.contains(call.getMethodDescriptor().getFullMethodName())) {
+        return listener;
+      }
+      return new SimpleForwardingServerCallListener<ReqT>(listener) {
+        // unary handlers run when the request is complete
+        @Override
+        public void onHalfClose() {
+          try (ReadView.Pin pin = dbManager.pinReadView()) {
+            super.onHalfClose();
+          }
+        }
+      };
+    }
+  }
+
   /**
    * DatabaseApi.
    */
@@ -319,6 +414,30 @@ public class RpcApiService implements Service {
         responseObserver.onCompleted();
       }
     }
+
+    @Override
+    public void getTransactionsFromThisPaginated(AccountPaginated request,
+        StreamObserver<TransactionList> responseObserver) {
+      getTransactionHistory(request, TransactionHistoryStore.ROLE_OWNER, responseObserver);
+    }
+
+    @Override
+    public void getTransactionsToThisPaginated(AccountPaginated request,
+        StreamObserver<TransactionList> responseObserver) {
+      getTransactionHistory(request, TransactionHistoryStore.ROLE_TO, responseObserver);
+    }
+
+    private void getTransactionHistory(AccountPaginated request, int roles,
+        StreamObserver<TransactionList> responseObserver) {
+      try {
+        responseObserver.onNext(walletSolidity.getTransactionHistory(
+            request.getAccount().getAddress(), roles, request.getOffset(), request.getLimit()));
+        responseObserver.onCompleted();
+      } catch (IllegalArgumentException e) {
+        responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage())
+            .asRuntimeException());
+      }
+    }
   }
 
   /**
@@ -592,6 +711,128 @@ public class RpcApiService implements Service {
       responseObserver.onCompleted();
     }
 
+    @Override
+    public void getStoreStats(EmptyMessage request,
+        StreamObserver<StoreStatsList> responseObserver) {
+      responseObserver.onNext(wallet.getStoreStats());
+      responseObserver.onCompleted();
+    }
+
+    /**
+     * False after answering the call when maintenance calls are not served.
+     */
+    private boolean checkAdmin(String method, StreamObserver<?> responseObserver) {
+      if (Args.getInstance().isRpcAdminEnable()) {
+        return true;
+      }
+      responseObserver.onError(Status.PERMISSION_DENIED
+          .withDescription(method + " needs node.rpc.admin = true").asRuntimeException());
+      return false;
+    }
+
+    @Override
+    public void createCheckpoint(EmptyMessage request,
+        StreamObserver<CheckpointInfo> responseObserver) {
+      if (!checkAdmin("CreateCheckpoint", responseObserver)) {
+        return;
+      }
+      try {
+        responseObserver.onNext(wallet.createCheckpoint());
+        responseObserver.onCompleted();
+      } catch (FileAlreadyExistsException e) {
+        responseObserver.onError(Status.ALREADY_EXISTS.withDescription(e.getReason())
+            .asRuntimeException());
+      } catch (IllegalStateException e) {
+        responseObserver.onError(Status.FAILED_PRECONDITION.withDescription(e.getMessage())
+            .asRuntimeException());
+      } catch (IOException | StoreException | RuntimeException e) {
+        logger.error("Checkpoint failed", e);
+        responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage())
+            .asRuntimeException());
+      }
+    }
+
+    @Override
+    public void exportStateSnapshot(EmptyMessage request,
+        StreamObserver<StateSnapshotInfo> responseObserver) {
+      if (!checkAdmin("ExportStateSnapshot", responseObserver)) {
+        return;
+      }
+      try {
+        responseObserver.onNext(wallet.exportStateSnapshot());
+        responseObserver.onCompleted();
+      } catch (FileAlreadyExistsException e) {
+        responseObserver.onError(Status.ALREADY_EXISTS
+            .withDescription("snapshot " + e.getFile() + " exists").asRuntimeException());
+      } catch (IOException | StoreException | RuntimeException e) {
+        logger.error("State snapshot failed", e);
+        responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage())
+            .asRuntimeException());
+      }
+    }
+
+    @Override
+    public void getTransactionsFromThis(AccountPaginated request,
+        StreamObserver<TransactionList> responseObserver) {
+      getTransactionHistory(request, TransactionHistoryStore.ROLE_OWNER, responseObserver);
+    }
+
+    @Override
+    public void getTransactionsToThis(AccountPaginated request,
+        StreamObserver<TransactionList> responseObserver) {
+      getTransactionHistory(request, TransactionHistoryStore.ROLE_TO, responseObserver);
+    }
+
+    private void getTransactionHistory(AccountPaginated request, int roles,
+        StreamObserver<TransactionList> responseObserver) {
+      try {
+        responseObserver.onNext(wallet.getTransactionHistory(request.getAccount().getAddress(),
+            roles, request.getOffset(), request.getLimit()));
+        responseObserver.onCompleted();
+      } catch (IllegalArgumentException e) {
+        responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage())
+            .asRuntimeException());
+      }
+    }
+
+    @Override
+    public void getMetrics(EmptyMessage request, StreamObserver<MetricList> responseObserver) {
+      responseObserver.onNext(wallet.getMetrics());
+      responseObserver.onCompleted();
+    }
+
+    @Override
+    public void compactStore(CompactRequest request,
+        StreamObserver<StoreStats> responseObserver) {
+      if (!checkAdmin("CompactStore", responseObserver)) {
+        return;
+      }
+      try {
+        // answered from the compaction thread, no call thread waits for it
+        wallet.compactStore(request).whenComplete((stats, e) -> {
+          if (e == null) {
+            responseObserver.onNext(stats);
+            responseObserver.onCompleted();
+          } else {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            logger.error("Compaction failed", cause);
+            responseObserver.onError(Status.INTERNAL.withDescription(cause.getMessage())
+                .asRuntimeException());
+          }
+        });
+      } catch (IllegalArgumentException e) {
+        responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage())
+            .asRuntimeException());
+      } catch (IllegalStateException e) {
+        responseObserver.onError(Status.FAILED_PRECONDITION.withDescription(e.getMessage())
+            .asRuntimeException());
+      } catch (RuntimeException e) {
+        logger.error("Compaction failed", e);
+        responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage())
+            .asRuntimeException());
+      }
+    }
+
   }
 
   @Override
@@ -77,6 +77,7 @@ public class WitnessService implements Service {
               Thread.sleep(timeToNextSecond);
             }
             this.blockProductionLoop();
+            this.updateCompactionThrottle();
           } catch (InterruptedException ex) {
             logger.info("ProductionLoop interrupted");
           } catch (Exception ex) {
@@ -85,6 +86,18 @@ public class WitnessService implements Service {
         }
       };
 
+  /**
+   * Hold back the background compaction of the stores while the next slot is one of the local
+   * witnesses, so that producing its block does not compete with it for the disk.
+   */
+  private void updateCompactionThrottle() {
+    long slot = controller.getSlotAtTime(
+        DateTime.now().getMillis() + ChainConstant.BLOCK_PRODUCED_INTERVAL);
+    boolean nextIsLocal = slot > 0
+        && this.localWitnessStateMap.containsKey(controller.getScheduledWitness(slot));
+    tronApp.getDbManager().getCompactionManager().setThrottled(nextIsLocal);
+  }
+
   /**
    * Loop to generate blocks
    */
@@ -0,0 +1,97 @@
+package org.tron.program;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.common.storage.DbSourceFactory;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.common.utils.ByteArray;
+import org.tron.core.config.args.DbProfile;
+import org.tron.core.db.BlockArchive;
+import org.tron.core.db.DynamicPropertiesStore;
+import org.tron.core.db.StatsSource;
+
+/**
+ * Move the solidified blocks of a stopped node from the block database to the block archive, e.g.
+ * <pre>
+ *   ArchiveBlocks output-directory/database
+ * </pre>
+ * A running node moves them by itself, a batch per applied block, this does it at once. It can be
+ * stopped and run again, it goes on after the last archived block.
+ */
+@Slf4j
+public class ArchiveBlocks {
+
+  private static final int BATCH_SIZE = 1000;
+
+  private ArchiveBlocks() {
+  }
+
+  /**
+   * Archive the blocks of a storage directory.
+   */
+  public static void main(String[] args) {
+    if (args.length != 1) {
+      logger.error("Usage: ArchiveBlocks <storage dir>");
+      return;
+    }
+    archive(args[0]);
+  }
+
+  /**
+   * Move every solidified block not archived yet, returns the number of moved blocks.
+   */
+  public static long archive(String storageDirectory) {
+    DbSourceInter<byte[]> properties = open(storageDirectory, "properties");
+    DbSourceInter<byte[]> index = open(storageDirectory, "block-index");
+    DbSourceInter<byte[]> blocks = open(storageDirectory, "block");
+    BlockArchive archive = new BlockArchive(BlockArchive.directoryOf(storageDirectory, "block"),
+        BlockArchive.DEFAULT_SEGMENT_SIZE);
+    // deletes go through the statistics so the block count stays right, counted before they
+    // are saved on close
+    StatsSource stats = new StatsSource(blocks, StatsSource.fileOf(storageDirectory, "block"));
+    stats.awaitCount();
+    try {
+      byte[] solidified = properties.getData(DynamicPropertiesStore.LATEST_SOLIDIFIED_BLOCK_NUM);
+      long end = solidified == null ? -1 : ByteArray.toLong(solidified);
+      long start = archive.getCount();
+
+      Map<byte[], byte[]> moved = new HashMap<>();
+      for (long num = start; num <= end; num++) {
+        byte[] id = index.getData(ByteArray.fromLong(num));
+        byte[] data = id == null ? null : stats.getData(id);
+        if (data == null) {
+          throw new IllegalStateException("Block " + num + " is missing in " + storageDirectory);
+        }
+        archive.append(num, id, data);
+        moved.put(id, null);
+        if (moved.size() >= BATCH_SIZE) {
+          drop(archive, stats, moved);
+        }
+      }
+      drop(archive, stats, moved);
+      logger.info("Archived blocks {} to {} of {}", start, end, storageDirectory);
+      return Math.max(end - start + 1, 0);
+    } finally {
+      archive.close();
+      properties.closeDB();
+      index.closeDB();
+      stats.closeDB();
+    }
+  }
+
+  private static DbSourceInter<byte[]> open(String storageDirectory, String name) {
+    DbSourceInter<byte[]> source = DbSourceFactory.create(
+        DbConvert.detectEngine(new File(storageDirectory, name)), storageDirectory, name,
+        DbProfile.defaultProfile(name));
+    source.initDB();
+    return source;
+  }
+
+  private static void drop(BlockArchive archive, StatsSource stats, Map<byte[], byte[]> moved) {
+    archive.flush();
+    stats.updateByBatch(moved);
+    moved.clear();
+  }
+}
@@ -0,0 +1,92 @@
+package org.tron.program;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.common.storage.DbSourceFactory;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.core.config.args.DbProfile;
+import org.tron.core.config.args.Storage;
+
+/**
+ * Copy every database of a storage directory into another directory with the given engine, e.g.
+ * <pre>
+ *   DbConvert output-directory/database converted/database ROCKSDB
+ * </pre>
+ * The engine of each source database is detected from its files, so a half converted or mixed
+ * directory can be converted again. Databases are copied through the storage interface only.
+ */
+@Slf4j
+public class DbConvert {
+
+  private static final int BATCH_SIZE = 10_000;
+
+  private DbConvert() {
+  }
+
+  /**
+   * Convert a storage directory.
+   */
+  public static void main(String[] args) {
+    if (args.length != 3) {
+      logger.error("Usage: DbConvert <source storage dir> <target storage dir> <LEVELDB|ROCKSDB>");
+      return;
+    }
+    File[] databases = new File(args[0]).listFiles(File::isDirectory);
+    if (databases == null) {
+      logger.error("Storage directory {} does not exist", args[0]);
+      return;
+    }
+    String engine = Storage.checkEngine(args[2]);
+    for (File database : databases) {
+      convert(database.getParent(), args[1], database.getName(), engine);
+    }
+  }
+
+  /**
+   * Copy one database, returns the number of copied entries.
+   */
+  public static long convert(String srcParent, String dstParent, String name, String dstEngine) {
+    DbProfile profile = DbProfile.defaultProfile(name);
+    String srcEngine = detectEngine(new File(srcParent, name));
+    DbSourceInter<byte[]> src = DbSourceFactory.create(srcEngine, srcParent, name, profile);
+    DbSourceInter<byte[]> dst = DbSourceFactory.create(dstEngine, dstParent, name, profile);
+    src.initDB();
+    dst.initDB();
+    try {
+      long count = 0;
+      Map<byte[], byte[]> batch = new HashMap<>();
+      for (Entry<byte[], byte[]> entry : src) {
+        batch.put(entry.getKey(), entry.getValue());
+        if (batch.size() >= BATCH_SIZE) {
+          dst.updateByBatch(batch);
+          count += batch.size();
+          batch.clear();
+        }
+      }
+      dst.updateByBatch(batch);
+      count += batch.size();
+
+      long total = dst.getTotal();
+      if (total != count) {
+        throw new IllegalStateException(
+            "Database " + name + " has " + total + " entries after copying " + count);
+      }
+      logger.info("Converted {} from {} to {}, {} entries", name, srcEngine, dstEngine, count);
+      return count;
+    } finally {
+      src.closeDB();
+      dst.closeDB();
+    }
+  }
+
+  /**
+   * RocksDB keeps an OPTIONS file next to its tables, LevelDB never writes one.
+   */
+  public static String detectEngine(File database) {
+    String[] options = database.list((dir, fileName) -> fileName.startsWith("OPTIONS-"));
+    return options != null && options.length > 0 ? Storage.ROCKSDB : Storage.LEVELDB;
+  }
+}
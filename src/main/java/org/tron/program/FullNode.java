@@ -1,6 +1,9 @@
 package org.tron.program;
 
+import java.io.File;
+import java.io.IOException;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.tron.common.application.Application;
@@ -8,6 +11,9 @@ import org.tron.common.application.ApplicationFactory;
 import org.tron.core.Constant;
 import org.tron.core.config.DefaultConfig;
 import org.tron.core.config.args.Args;
+import org.tron.core.db.Checkpoint;
+import org.tron.core.db.StateSnapshot;
+import org.tron.core.services.MetricsService;
 import org.tron.core.services.RpcApiService;
 import org.tron.core.services.WitnessService;
 
@@ -21,6 +27,11 @@ public class FullNode {
     logger.info("Full node running.");
     Args.setParam(args, Constant.TESTNET_CONF);
     Args cfgArgs = Args.getInstance();
+    if (StringUtils.isNotEmpty(cfgArgs.getCheckpoint())) {
+      restoreCheckpoint(cfgArgs);
+    } else if (StringUtils.isNotEmpty(cfgArgs.getSnapshot())) {
+      importSnapshot(cfgArgs);
+    }
 
     ApplicationContext context = new AnnotationConfigApplicationContext(DefaultConfig.class);
 
@@ -33,6 +44,7 @@ public class FullNode {
     //appT.init(cfgArgs);
     RpcApiService rpcApiService = context.getBean(RpcApiService.class);
     appT.addService(rpcApiService);
+    appT.addService(new MetricsService());
     if (cfgArgs.isWitness()) {
       appT.addService(new WitnessService(appT));
     }
@@ -42,6 +54,53 @@ public class FullNode {
     rpcApiService.blockUntilShutdown();
   }
 
+  /**
+   * Start from the state of a checkpoint instead of syncing from genesis, the node syncs the
+   * blocks after it from its peers. A node that has a database already keeps it.
+   */
+  private static void restoreCheckpoint(Args cfgArgs) {
+    File storageDirectory = new File(cfgArgs.getOutputDirectory()
+        + cfgArgs.getStorage().getDirectory());
+    String[] blocks = new File(storageDirectory, "block").list();
+    if (blocks != null && blocks.length > 0) {
+      logger.warn("Database in {} exists, checkpoint {} ignored", storageDirectory,
+          cfgArgs.getCheckpoint());
+      return;
+    }
+    try {
+      Checkpoint checkpoint = Checkpoint.restore(new File(cfgArgs.getCheckpoint()),
+          storageDirectory);
+      logger.info("Start from block {} of {}", checkpoint.getHeadBlockNum(),
+          cfgArgs.getCheckpoint());
+    } catch (IOException e) {
+      throw new RuntimeException("Can't restore checkpoint " + cfgArgs.getCheckpoint(), e);
+    }
+  }
+
+  /**
+   * Start from the state of a snapshot without replaying the chain, the node syncs the blocks
+   * after its head from its peers and never holds the blocks before. A node that has a database
+   * already keeps it.
+   */
+  private static void importSnapshot(Args cfgArgs) {
+    File storageDirectory = new File(cfgArgs.getOutputDirectory()
+        + cfgArgs.getStorage().getDirectory());
+    String[] blocks = new File(storageDirectory, "block").list();
+    if (blocks != null && blocks.length > 0) {
+      logger.warn("Database in {} exists, snapshot {} ignored", storageDirectory,
+          cfgArgs.getSnapshot());
+      return;
+    }
+    try {
+      StateSnapshot snapshot = StateSnapshot.restore(new File(cfgArgs.getSnapshot()),
+          storageDirectory);
+      logger.info("Start from block {} of {}", snapshot.getHeadBlockNum(),
+          cfgArgs.getSnapshot());
+    } catch (IOException e) {
+      throw new RuntimeException("Can't import snapshot " + cfgArgs.getSnapshot(), e);
+    }
+  }
+
   private static void shutdown(final Application app) {
     logger.info("******** application shutdown ********");
     Runtime.getRuntime().addShutdownHook(new Thread(app::shutdown));
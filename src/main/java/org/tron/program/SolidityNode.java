@@ -18,6 +18,7 @@ import org.tron.core.exception.ContractValidateException;
 import org.tron.core.exception.UnLinkedBlockException;
 import org.tron.core.exception.ValidateScheduleException;
 import org.tron.core.exception.ValidateSignatureException;
+import org.tron.core.services.MetricsService;
 import org.tron.core.services.RpcApiService;
 import org.tron.protos.Protocol.Block;
 import org.tron.protos.Protocol.DynamicProperties;
@@ -114,6 +115,7 @@ public class SolidityNode {
     //appT.init(cfgArgs);
     RpcApiService rpcApiService = context.getBean(RpcApiService.class);
     appT.addService(rpcApiService);
+    appT.addService(new MetricsService());
 
     appT.initServices(cfgArgs);
     appT.startServices();
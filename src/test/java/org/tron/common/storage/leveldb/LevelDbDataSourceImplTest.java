@@ -22,17 +22,27 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import com.codahale.metrics.MetricRegistry;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.Test;
+import org.tron.common.storage.ScanOptions;
+import org.tron.common.storage.StoreMetrics;
 import org.tron.common.utils.ByteArray;
 import org.tron.common.utils.FileUtil;
 import org.tron.core.config.args.Args;
+import org.tron.core.config.args.DbProfile;
 
 @Slf4j
 public class LevelDbDataSourceImplTest {
@@ -145,6 +155,7 @@ public class LevelDbDataSourceImplTest {
 
     dataSource.putData(key2, value2);
     assertEquals(2, dataSource.allKeys().size());
+    assertTrue(dataSource.allKeys().contains(key1.getBytes()));
     dataSource.resetDb();
   }
 
@@ -160,4 +171,146 @@ public class LevelDbDataSourceImplTest {
 
     assertFalse("Database is still alive after closing.", dataSourceTest.isAlive());
   }
+
+  private List<String> scan(ScanOptions options) {
+    List<String> keys = new ArrayList<>();
+    dataSourceTest.iterator(options).forEachRemaining(entry -> keys.add(ByteArray.toStr(entry.getKey())));
+    return keys;
+  }
+
+  @Test
+  public void testRangeScan() {
+    dataSourceTest.initDB();
+    dataSourceTest.resetDb();
+    for (String key : new String[]{"c", "a2", "b1", "a1", "b2", "a3"}) {
+      dataSourceTest.putData(key.getBytes(), key.getBytes());
+    }
+
+    assertEquals(Arrays.asList("a1", "a2", "a3"), scan(ScanOptions.prefix("a".getBytes())));
+    assertEquals(Arrays.asList("a3", "a2", "a1"),
+        scan(ScanOptions.prefix("a".getBytes()).reverse()));
+    assertEquals(Arrays.asList("a2", "a3", "b1"),
+        scan(ScanOptions.range("a2".getBytes(), "b2".getBytes())));
+    assertEquals(Arrays.asList("b1", "a3", "a2"),
+        scan(ScanOptions.range("a2".getBytes(), "b2".getBytes()).reverse()));
+    assertEquals(Arrays.asList("b2", "b1"),
+        scan(ScanOptions.all().reverse().offset(1).limit(2)));
+    assertEquals(Arrays.asList("c"), scan(ScanOptions.prefix("c".getBytes()).reverse()));
+    assertTrue(scan(ScanOptions.range(null, "a1".getBytes()).reverse()).isEmpty());
+    assertEquals(6, dataSourceTest.stream(ScanOptions.all()).parallel().count());
+    dataSourceTest.closeDB();
+  }
+
+  @Test(timeout = 10000)
+  public void testCompaction() {
+    dataSourceTest.initDB();
+    dataSourceTest.resetDb();
+    for (int i = 0; i < 100; i++) {
+      dataSourceTest.putData(ByteArray.fromInt(i), ByteArray.fromInt(i));
+    }
+    for (int i = 0; i < 50; i++) {
+      dataSourceTest.deleteData(ByteArray.fromInt(i));
+    }
+    dataSourceTest.compactRange(ByteArray.fromInt(0), ByteArray.fromInt(50));
+    dataSourceTest.compactRange(null, null);
+
+    dataSourceTest.throttleCompactions(true, 1024);
+    dataSourceTest.putData(ByteArray.fromInt(100), ByteArray.fromInt(100));
+    dataSourceTest.throttleCompactions(false, 1024);
+    assertEquals(51, dataSourceTest.allKeys().size());
+    assertFalse(dataSourceTest.getCompactionStats().isEmpty());
+
+    // closing releases a throttle that was not lifted
+    dataSourceTest.throttleCompactions(true, 1024);
+    dataSourceTest.closeDB();
+    assertEquals("", dataSourceTest.getCompactionStats());
+  }
+
+  @Test(timeout = 30000)
+  public void testWritesProceedWhileThrottled() throws InterruptedException {
+    DbProfile profile = new DbProfile("test_throttle");
+    profile.setWriteBufferSize(64 * 1024);
+    LevelDbDataSourceImpl dataSource = new LevelDbDataSourceImpl(dbPath + File.separator,
+        "test_throttle", profile);
+    dataSource.initDB();
+    try {
+      dataSource.throttleCompactions(true, 1024);
+      assertTrue(dataSource.isCompactionsSuspended());
+      // 64 times the write buffer, every full memtable needs a flush by the background thread
+      byte[] value = new byte[1024];
+      for (int i = 0; i < 4096; i++) {
+        dataSource.putData(ByteArray.fromInt(i), value);
+      }
+      assertFalse(dataSource.isCompactionsSuspended());
+      assertEquals(4096, dataSource.allKeys().size());
+
+      // a suspension nobody lifts ends by itself
+      dataSource.throttleCompactions(false, 1024);
+      dataSource.compactRange(null, null);
+      dataSource.throttleCompactions(true, 1024);
+      assertTrue(dataSource.isCompactionsSuspended());
+      Thread.sleep(2000);
+      assertFalse(dataSource.isCompactionsSuspended());
+    } finally {
+      dataSource.closeDB();
+    }
+  }
+
+  @Test
+  public void testGetAll() {
+    LevelDbDataSourceImpl dataSource = new LevelDbDataSourceImpl(
+        Args.getInstance().getOutputDirectory(), "test_getAll");
+    dataSource.initDB();
+    Map<byte[], byte[]> rows = new HashMap<>();
+    for (int i = 0; i < 100; i += 2) {
+      rows.put(ByteArray.fromInt(i), ByteArray.fromLong(i));
+    }
+    dataSource.updateByBatch(rows);
+
+    List<byte[]> keys = new ArrayList<>();
+    for (int i = 99; i >= 0; i--) {
+      keys.add(ByteArray.fromInt(i));
+    }
+    List<byte[]> values = dataSource.getAll(keys);
+    assertEquals(100, values.size());
+    for (int i = 0; i < 100; i++) {
+      int key = 99 - i;
+      if (key % 2 == 0) {
+        assertEquals(key, ByteArray.toLong(values.get(i)));
+      } else {
+        assertNull(values.get(i));
+      }
+    }
+    assertEquals(Collections.singletonList(null),
+        dataSource.getAll(Collections.singletonList(ByteArray.fromInt(1))));
+    dataSource.closeDB();
+  }
+
+  @Test
+  public void testMetrics() throws IOException {
+    LevelDbDataSourceImpl dataSource = new LevelDbDataSourceImpl(
+        Args.getInstance().getOutputDirectory(), "test_metrics");
+    dataSource.initDB();
+    MetricRegistry registry = StoreMetrics.getRegistry();
+    long gets = registry.timer(StoreMetrics.name("test_metrics", "get")).getCount();
+
+    dataSource.putData("a".getBytes(), "12345".getBytes());
+    dataSource.getData("a".getBytes());
+    dataSource.getData("b".getBytes());
+    dataSource.updateByBatch(Collections.singletonMap("c".getBytes(), "1".getBytes()));
+    dataSource.deleteData("c".getBytes());
+    try (org.tron.core.db.common.iterator.DBIterator iterator = dataSource.iterator()) {
+      iterator.forEachRemaining(entry -> {
+      });
+    }
+
+    assertEquals(gets + 2, registry.timer(StoreMetrics.name("test_metrics", "get")).getCount());
+    assertTrue(registry.timer(StoreMetrics.name("test_metrics", "put")).getCount() > 0);
+    assertTrue(registry.timer(StoreMetrics.name("test_metrics", "delete")).getCount() > 0);
+    assertTrue(registry.timer(StoreMetrics.name("test_metrics", "batch")).getCount() > 0);
+    assertTrue(registry.timer(StoreMetrics.name("test_metrics", "iterate")).getCount() > 0);
+    assertTrue(registry.meter(StoreMetrics.name("test_metrics", "bytesRead")).getCount() >= 11);
+    assertTrue(registry.meter(StoreMetrics.name("test_metrics", "bytesWritten")).getCount() >= 9);
+    dataSource.closeDB();
+  }
 }
\ No newline at end of file
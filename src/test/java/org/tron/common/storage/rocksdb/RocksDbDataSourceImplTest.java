@@ -0,0 +1,201 @@
+package org.tron.common.storage.rocksdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.storage.ScanOptions;
+import org.tron.common.storage.SnapshotSource;
+import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+import org.tron.core.config.args.Args;
+import org.tron.core.config.args.DbProfile;
+import org.tron.core.config.args.Storage;
+import org.tron.program.DbConvert;
+
+@Slf4j
+public class RocksDbDataSourceImplTest {
+
+  private static final String dbPath = "output-rocksDb-test";
+  private RocksDbDataSourceImpl dataSourceTest;
+
+  @Before
+  public void initDb() {
+    Args.setParam(new String[]{"--output-directory", dbPath},
+        "config-junit.conf");
+    dataSourceTest = new RocksDbDataSourceImpl(dbPath + File.separator, "test_rocksDb");
+  }
+
+  /**
+   * Release resources.
+   */
+  @AfterClass
+  public static void destroy() {
+    Args.clearParam();
+    if (FileUtil.deleteDir(new File(dbPath))) {
+      logger.info("Release resources successful.");
+    } else {
+      logger.info("Release resources failure.");
+    }
+  }
+
+  @Test
+  public void testPutGetDelete() {
+    dataSourceTest.initDB();
+    dataSourceTest.resetDb();
+    byte[] key = "key1".getBytes();
+
+    dataSourceTest.putData(key, "50000".getBytes());
+    assertEquals("50000", ByteArray.toStr(dataSourceTest.getData(key)));
+    assertEquals(1, dataSourceTest.getTotal());
+
+    dataSourceTest.deleteData(key);
+    assertNull(dataSourceTest.getData(key));
+    assertEquals(0, dataSourceTest.allKeys().size());
+    dataSourceTest.closeDB();
+  }
+
+  @Test
+  public void testUpdateByBatchAndMultiGet() {
+    dataSourceTest.initDB();
+    dataSourceTest.resetDb();
+    byte[] key1 = "key1".getBytes();
+    byte[] key2 = "key2".getBytes();
+    byte[] key3 = "key3".getBytes();
+    dataSourceTest.putData(key3, "30000".getBytes());
+
+    Map<byte[], byte[]> rows = new HashMap<>();
+    rows.put(key1, "10000".getBytes());
+    rows.put(key2, "20000".getBytes());
+    rows.put(key3, null);
+    dataSourceTest.updateByBatch(rows);
+
+    List<byte[]> keys = Arrays.asList(key1, key2, key3);
+    Map<byte[], byte[]> values = dataSourceTest.multiGet(keys);
+    assertEquals(2, values.size());
+    assertEquals("10000", ByteArray.toStr(values.get(key1)));
+    assertEquals("20000", ByteArray.toStr(values.get(key2)));
+    assertFalse(values.containsKey(key3));
+    dataSourceTest.closeDB();
+  }
+
+  @Test
+  public void testConvertFromLevelDb() {
+    String parent = dbPath + File.separator + "convert";
+    DbProfile profile = DbProfile.defaultProfile("account");
+    LevelDbDataSourceImpl levelDb = new LevelDbDataSourceImpl(parent + File.separator + "level",
+        "account", profile);
+    levelDb.initDB();
+    for (int i = 0; i < 100; i++) {
+      levelDb.putData(ByteArray.fromInt(i), ByteArray.fromLong(i));
+    }
+    levelDb.closeDB();
+
+    String rocksParent = parent + File.separator + "rocks";
+    assertEquals(100, DbConvert.convert(parent + File.separator + "level", rocksParent,
+        "account", Storage.ROCKSDB));
+    assertEquals(Storage.ROCKSDB, DbConvert.detectEngine(new File(rocksParent, "account")));
+
+    RocksDbDataSourceImpl rocksDb = new RocksDbDataSourceImpl(rocksParent, "account", profile);
+    rocksDb.initDB();
+    assertEquals(100, rocksDb.getTotal());
+    assertArrayEquals(ByteArray.fromLong(42), rocksDb.getData(ByteArray.fromInt(42)));
+    rocksDb.closeDB();
+  }
+
+  @Test(timeout = 1000)
+  public void testLockReleased() {
+    dataSourceTest.initDB();
+    dataSourceTest.closeDB();
+    dataSourceTest.closeDB();
+
+    assertFalse("Database is still alive after closing.", dataSourceTest.isAlive());
+  }
+
+  private List<String> scan(ScanOptions options) {
+    List<String> keys = new ArrayList<>();
+    dataSourceTest.iterator(options).forEachRemaining(entry -> keys.add(ByteArray.toStr(entry.getKey())));
+    return keys;
+  }
+
+  @Test
+  public void testRangeScan() {
+    dataSourceTest.initDB();
+    dataSourceTest.resetDb();
+    for (String key : new String[]{"c", "a2", "b1", "a1", "b2", "a3"}) {
+      dataSourceTest.putData(key.getBytes(), key.getBytes());
+    }
+
+    assertEquals(Arrays.asList("a1", "a2", "a3"), scan(ScanOptions.prefix("a".getBytes())));
+    assertEquals(Arrays.asList("a3", "a2", "a1"),
+        scan(ScanOptions.prefix("a".getBytes()).reverse()));
+    assertEquals(Arrays.asList("a2", "a3", "b1"),
+        scan(ScanOptions.range("a2".getBytes(), "b2".getBytes())));
+    assertEquals(Arrays.asList("b1", "a3", "a2"),
+        scan(ScanOptions.range("a2".getBytes(), "b2".getBytes()).reverse()));
+    assertEquals(Arrays.asList("b2", "b1"),
+        scan(ScanOptions.all().reverse().offset(1).limit(2)));
+    assertEquals(Arrays.asList("c"), scan(ScanOptions.prefix("c".getBytes()).reverse()));
+    assertTrue(scan(ScanOptions.range(null, "a1".getBytes()).reverse()).isEmpty());
+    assertEquals(6, dataSourceTest.stream(ScanOptions.all()).parallel().count());
+    dataSourceTest.closeDB();
+  }
+
+  @Test
+  public void testSnapshot() {
+    dataSourceTest.initDB();
+    dataSourceTest.resetDb();
+    dataSourceTest.putData("a".getBytes(), "1".getBytes());
+    SnapshotSource snapshot = dataSourceTest.getSnapshot();
+    dataSourceTest.putData("a".getBytes(), "2".getBytes());
+    dataSourceTest.putData("b".getBytes(), "2".getBytes());
+
+    assertArrayEquals("1".getBytes(), snapshot.getData("a".getBytes()));
+    assertNull(snapshot.getData("b".getBytes()));
+    assertEquals(1, snapshot.getTotal());
+    assertEquals(2, dataSourceTest.getTotal());
+
+    dataSourceTest.closeDB();
+    assertFalse(snapshot.isAlive());
+    assertNull(snapshot.getData("a".getBytes()));
+    snapshot.closeDB();
+  }
+
+  @Test(timeout = 10000)
+  public void testCompaction() {
+    dataSourceTest.initDB();
+    dataSourceTest.resetDb();
+    for (int i = 0; i < 100; i++) {
+      dataSourceTest.putData(ByteArray.fromInt(i), ByteArray.fromInt(i));
+    }
+    for (int i = 0; i < 50; i++) {
+      dataSourceTest.deleteData(ByteArray.fromInt(i));
+    }
+    dataSourceTest.compactRange(ByteArray.fromInt(0), ByteArray.fromInt(50));
+    dataSourceTest.compactRange(null, null);
+
+    dataSourceTest.throttleCompactions(true, 1024);
+    dataSourceTest.putData(ByteArray.fromInt(100), ByteArray.fromInt(100));
+    dataSourceTest.throttleCompactions(false, 1024);
+    assertEquals(51, dataSourceTest.allKeys().size());
+    assertFalse(dataSourceTest.getCompactionStats().isEmpty());
+
+    // closing releases a throttle that was not lifted
+    dataSourceTest.throttleCompactions(true, 1024);
+    dataSourceTest.closeDB();
+    assertEquals("", dataSourceTest.getCompactionStats());
+  }
+}
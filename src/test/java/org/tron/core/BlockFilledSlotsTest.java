@@ -1,6 +1,7 @@
 package org.tron.core;
 
 
+import java.util.stream.IntStream;
 import org.junit.Assert;
 import org.junit.Test;
 import org.tron.core.db.BlockFilledSlots;
@@ -26,4 +27,33 @@ public class BlockFilledSlotsTest {
     blockFilledSlots.applyBlock(true);
     Assert.assertEquals(1, blockFilledSlots.getBlockFilledSlots()[0]);
   }
+
+  @Test
+  public void testRunningCount() {
+    BlockFilledSlots blockFilledSlots = new BlockFilledSlots();
+    Assert.assertEquals(BlockFilledSlots.SLOT_NUMBER,
+        blockFilledSlots.calculateFilledSlotsCount());
+    for (int i = 0; i < BlockFilledSlots.SLOT_NUMBER * 2; i++) {
+      blockFilledSlots.applyBlock(i % 4 != 0);
+      Assert.assertEquals(IntStream.of(blockFilledSlots.getBlockFilledSlots()).sum(),
+          blockFilledSlots.calculateFilledSlotsCount());
+    }
+    Assert.assertEquals(BlockFilledSlots.SLOT_NUMBER * 3 / 4,
+        blockFilledSlots.calculateFilledSlotsCount());
+  }
+
+  @Test
+  public void testEncode() {
+    BlockFilledSlots blockFilledSlots = new BlockFilledSlots();
+    blockFilledSlots.applyBlock(false);
+    blockFilledSlots.applyBlock(true);
+    blockFilledSlots.applyBlock(false);
+
+    BlockFilledSlots decoded = BlockFilledSlots.fromByteArray(blockFilledSlots.toByteArray());
+    Assert.assertEquals(blockFilledSlots, decoded);
+    Assert.assertEquals(3, decoded.getIndex());
+    Assert.assertEquals(BlockFilledSlots.SLOT_NUMBER - 2, decoded.calculateFilledSlotsCount());
+    Assert.assertEquals(blockFilledSlots,
+        BlockFilledSlots.of(blockFilledSlots.getBlockFilledSlots(), 3));
+  }
 }
@@ -15,9 +15,14 @@
 
 package org.tron.core.config.args;
 
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.time.LocalDate;
+import java.util.Collections;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.tron.core.config.args.Compaction.Window;
 
 public class StorageTest {
 
@@ -42,4 +47,143 @@ public class StorageTest {
   public void getStorage() {
     Assert.assertEquals("java-tron", storage.getDirectory());
   }
+
+  @Test
+  public void getDefaultProfile() {
+    DbProfile account = storage.getProfile("account");
+    Assert.assertEquals("account", account.getName());
+    Assert.assertEquals(64 * 1024 * 1024, account.getCacheSize());
+    Assert.assertTrue(account.isCompression());
+
+    DbProfile block = storage.getProfile("block");
+    Assert.assertEquals(64 * 1024, block.getBlockSize());
+  }
+
+  @Test
+  public void getConfiguredProfile() {
+    Config config = ConfigFactory.parseString(
+        "storage.properties = [{name = \"account\", cacheSize = 1024, compression = false}]");
+    storage.setProfilesFromConfig(config);
+
+    DbProfile account = storage.getProfile("account");
+    Assert.assertEquals(1024, account.getCacheSize());
+    Assert.assertFalse(account.isCompression());
+    Assert.assertEquals(4 * 1024, account.getBlockSize());
+    Assert.assertEquals(DbProfile.defaultProfile("trans").getBlockSize(),
+        storage.getProfile("trans").getBlockSize());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void whenSetNegativeCacheSize() {
+    new DbProfile("account").setCacheSize(-1);
+  }
+
+  @Test
+  public void getConfiguredEngine() {
+    Config config = ConfigFactory.parseString("storage.engine = \"rocksdb\"\n"
+        + "storage.properties = [{name = \"block\", engine = \"LEVELDB\"}]");
+    storage.setEngineFromConfig(config);
+    storage.setProfilesFromConfig(config);
+
+    Assert.assertEquals(Storage.ROCKSDB, storage.getEngine());
+    Assert.assertEquals(Storage.ROCKSDB, storage.getEngine("account"));
+    Assert.assertEquals(Storage.LEVELDB, storage.getEngine("block"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void whenSetUnknownEngine() {
+    storage.setEngine("bdb");
+  }
+
+  @Test
+  public void getConfiguredDurability() {
+    Assert.assertEquals(Durability.Mode.SYNC, storage.getDurability().getMode());
+
+    Config config = ConfigFactory.parseString(
+        "storage.durability = {mode = \"group\", groupBlocks = 4}");
+    storage.setDurabilityFromConfig(config);
+    Durability durability = storage.getDurability();
+    Assert.assertEquals(Durability.Mode.GROUP, durability.getMode());
+    Assert.assertEquals(4, durability.getGroupBlocks());
+    Assert.assertFalse(durability.isDue(3, 0));
+    Assert.assertTrue(durability.isDue(4, 0));
+    Assert.assertTrue(durability.isDue(1, durability.getGroupMillis()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void whenSetUnknownDurability() {
+    new Durability().setMode("never");
+  }
+
+  @Test
+  public void getConfiguredCompaction() {
+    Assert.assertTrue(storage.getCompaction().isAfterMaintenance());
+    Assert.assertTrue(storage.getCompaction().getIdleWindows().isEmpty());
+
+    Config config = ConfigFactory.parseString("storage.compaction = {afterMaintenance = false,"
+        + " idleWindows = [\"23:30-01:00\"], stores = [\"account\"], throttleRate = 1024}");
+    storage.setCompactionFromConfig(config);
+    Compaction compaction = storage.getCompaction();
+    Assert.assertFalse(compaction.isAfterMaintenance());
+    Assert.assertEquals(Collections.singletonList("account"), compaction.getStores());
+    Assert.assertTrue(compaction.isThrottle());
+    Assert.assertEquals(1024, compaction.getThrottleRate());
+
+    Window window = compaction.getIdleWindows().get(0);
+    LocalDate day = LocalDate.of(2018, 4, 1);
+    Assert.assertEquals(day, window.occurrence(day.atTime(23, 45)));
+    Assert.assertEquals(day, window.occurrence(day.plusDays(1).atTime(0, 30)));
+    Assert.assertNull(window.occurrence(day.atTime(1, 0)));
+    Assert.assertNull(window.occurrence(day.atTime(12, 0)));
+    Assert.assertEquals(day, Window.parse("02:00-04:00").occurrence(day.atTime(2, 0)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void whenParseBadIdleWindow() {
+    Window.parse("2am-4am");
+  }
+
+  @Test
+  public void getConfiguredPruning() {
+    Assert.assertFalse(storage.getPruning().isEnable());
+
+    Config config = ConfigFactory.parseString("storage.pruning = {enable = true,"
+        + " retainBlocks = 100, retainTime = \"1d\", batchInterval = \"1s\"}");
+    storage.setPruningFromConfig(config);
+    Pruning pruning = storage.getPruning();
+    Assert.assertTrue(pruning.isEnable());
+    Assert.assertEquals(100, pruning.getRetainBlocks());
+    Assert.assertEquals(86_400_000, pruning.getRetainMillis());
+    Assert.assertEquals(1000, pruning.getBatchBlocks());
+    Assert.assertEquals(1000, pruning.getBatchIntervalMillis());
+
+    long now = 200_000_000;
+    Assert.assertTrue(pruning.canPrune(100, 0, 200, now));
+    Assert.assertFalse(pruning.canPrune(101, 0, 200, now));
+    Assert.assertFalse(pruning.canPrune(100, now - 1000, 200, now));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void whenSetZeroPruningBatch() {
+    new Pruning().setBatchBlocks(0);
+  }
+
+  @Test
+  public void getConfiguredOverlay() {
+    Assert.assertFalse(storage.isOverlay());
+    storage.setOverlayFromConfig(ConfigFactory.parseString("storage.overlay = true"));
+    Assert.assertTrue(storage.isOverlay());
+    storage.setOverlayFromConfig(ConfigFactory.empty());
+    Assert.assertFalse(storage.isOverlay());
+  }
+
+  @Test
+  public void getConfiguredRevokingMemory() {
+    Assert.assertEquals(0, storage.getRevokingMemory());
+    storage.setRevokingMemoryFromConfig(
+        ConfigFactory.parseString("storage.revokingMemory = 268435456"));
+    Assert.assertEquals(268435456, storage.getRevokingMemory());
+    storage.setRevokingMemoryFromConfig(ConfigFactory.empty());
+    Assert.assertEquals(0, storage.getRevokingMemory());
+  }
 }
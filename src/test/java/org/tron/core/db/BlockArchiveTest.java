@@ -0,0 +1,215 @@
+package org.tron.core.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+
+public class BlockArchiveTest {
+
+  private static final String dbPath = "output_blockArchive_test";
+
+  private File directory = new File(dbPath, "block-archive");
+  private BlockArchive archive;
+
+  @Before
+  public void init() {
+    archive = new BlockArchive(directory, 1024);
+  }
+
+  @After
+  public void destroy() {
+    archive.close();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  private static byte[] id(long num) {
+    byte[] id = new byte[32];
+    System.arraycopy(ByteArray.fromLong(num), 0, id, 0, 8);
+    id[31] = 1;
+    return id;
+  }
+
+  private static byte[] data(long num) {
+    byte[] data = new byte[100 + (int) num];
+    Arrays.fill(data, (byte) num);
+    return data;
+  }
+
+  private void append(long from, long to) {
+    for (long num = from; num < to; num++) {
+      archive.append(num, id(num), data(num));
+    }
+    archive.flush();
+  }
+
+  @Test
+  public void testAppendAndGet() {
+    append(0, 50);
+    Assert.assertEquals(50, archive.getCount());
+    // records of more than 100 bytes in segments of 1024 bytes
+    Assert.assertTrue(directory.list().length > 5);
+    for (long num = 0; num < 50; num++) {
+      Assert.assertArrayEquals(data(num), archive.get(num, id(num)));
+    }
+    Assert.assertNull(archive.get(50));
+    Assert.assertNull(archive.get(3, id(4)));
+
+    Iterator<Entry<byte[], byte[]>> iterator = archive.iterator(45);
+    for (long num = 45; num < 50; num++) {
+      Entry<byte[], byte[]> entry = iterator.next();
+      Assert.assertArrayEquals(id(num), entry.getKey());
+      Assert.assertArrayEquals(data(num), entry.getValue());
+    }
+    Assert.assertFalse(iterator.hasNext());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAppendOutOfOrder() {
+    append(0, 2);
+    archive.append(3, id(3), data(3));
+  }
+
+  @Test
+  public void testReopen() {
+    append(0, 20);
+    archive.close();
+    archive = new BlockArchive(directory, 1024);
+    Assert.assertEquals(20, archive.getCount());
+    Assert.assertArrayEquals(data(7), archive.get(7, id(7)));
+    append(20, 30);
+    Assert.assertArrayEquals(data(29), archive.get(29, id(29)));
+  }
+
+  @Test
+  public void testDropIncompleteBlock() throws IOException {
+    append(0, 20);
+    archive.close();
+
+    // the last record lost its tail, as after a crash before the segment was written out
+    File[] segments = directory.listFiles((dir, name) -> name.startsWith("segment-"));
+    Arrays.sort(segments);
+    File last = segments[segments.length - 1];
+    try (RandomAccessFile file = new RandomAccessFile(last, "rw")) {
+      file.setLength(file.length() - 10);
+    }
+
+    archive = new BlockArchive(directory, 1024);
+    Assert.assertEquals(19, archive.getCount());
+    Assert.assertNull(archive.get(19));
+    append(19, 21);
+    Assert.assertArrayEquals(data(19), archive.get(19, id(19)));
+    Assert.assertArrayEquals(data(20), archive.get(20, id(20)));
+  }
+
+  @Test
+  public void testCheckpointAndRestore() throws IOException {
+    append(0, 30);
+    File checkpoint = new File(dbPath, "checkpoint");
+    Assert.assertEquals(30, archive.checkpoint(checkpoint));
+    append(30, 40);
+
+    File restored = new File(dbPath, "restored");
+    BlockArchive.restore(checkpoint, restored);
+    BlockArchive copy = new BlockArchive(restored, 1024);
+    try {
+      Assert.assertEquals(30, copy.getCount());
+      Assert.assertArrayEquals(data(29), copy.get(29, id(29)));
+      copy.append(30, id(30), data(30));
+      Assert.assertArrayEquals(data(30), copy.get(30, id(30)));
+    } finally {
+      copy.close();
+    }
+    Assert.assertArrayEquals(data(39), archive.get(39, id(39)));
+  }
+
+  private static byte[] pruned(byte[] data) {
+    return Arrays.copyOf(data, 10);
+  }
+
+  @Test
+  public void testPrune() {
+    append(0, 30);
+    Assert.assertEquals(0, archive.getPrunedCount());
+    long end = archive.getSegmentEnd(0);
+    Assert.assertTrue(end > 1 && end < 30);
+    // the last segment is not sealed
+    Assert.assertEquals(-1, archive.getSegmentEnd(29));
+
+    archive.prune(end, BlockArchiveTest::pruned);
+    Assert.assertEquals(end, archive.getPrunedCount());
+    for (long num = 0; num < end; num++) {
+      Assert.assertArrayEquals(pruned(data(num)), archive.get(num, id(num)));
+    }
+    Assert.assertArrayEquals(data(end), archive.get(end, id(end)));
+
+    archive.close();
+    archive = new BlockArchive(directory, 1024);
+    Assert.assertEquals(end, archive.getPrunedCount());
+    Assert.assertArrayEquals(pruned(data(0)), archive.get(0, id(0)));
+    archive.prune(archive.getSegmentEnd(end), BlockArchiveTest::pruned);
+    Assert.assertArrayEquals(pruned(data(end)), archive.get(end, id(end)));
+    Assert.assertArrayEquals(data(29), archive.get(29, id(29)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPruneOutOfOrder() {
+    append(0, 30);
+    long end = archive.getSegmentEnd(0);
+    archive.prune(archive.getSegmentEnd(end), BlockArchiveTest::pruned);
+  }
+
+  @Test
+  public void testDropUnfinishedPruning() throws IOException {
+    append(0, 30);
+    archive.close();
+
+    // a rewritten segment that did not replace the old one yet, as after a crash
+    File journal = new File(directory, "pruning.journal");
+    try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+      file.writeInt(0);
+      file.writeLong(0);
+      file.writeLong(1);
+      file.writeLong(0);
+    }
+    File rewritten = new File(directory, "segment-000000.blk.pruning");
+    Assert.assertTrue(rewritten.createNewFile());
+
+    archive = new BlockArchive(directory, 1024);
+    Assert.assertEquals(0, archive.getPrunedCount());
+    Assert.assertFalse(journal.exists());
+    Assert.assertFalse(rewritten.exists());
+    Assert.assertArrayEquals(data(0), archive.get(0, id(0)));
+  }
+
+  @Test
+  public void testStartAtBase() throws IOException {
+    archive.close();
+    File based = new File(dbPath, "based-archive");
+    BlockArchive.create(based, 100);
+    archive = new BlockArchive(based, 1024);
+    Assert.assertEquals(100, archive.getCount());
+    Assert.assertEquals(100, archive.getPrunedCount());
+    Assert.assertNull(archive.get(0));
+    for (long num = 100; num < 120; num++) {
+      archive.append(num, id(num), data(num));
+    }
+    archive.flush();
+    archive.close();
+
+    archive = new BlockArchive(based, 1024);
+    Assert.assertEquals(120, archive.getCount());
+    Assert.assertNull(archive.get(99));
+    Assert.assertArrayEquals(data(100), archive.get(100, id(100)));
+    Assert.assertArrayEquals(data(119), archive.get(119, id(119)));
+    Assert.assertArrayEquals(id(100), archive.iterator(0).next().getKey());
+  }
+}
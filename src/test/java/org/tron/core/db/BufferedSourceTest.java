@@ -0,0 +1,206 @@
+package org.tron.core.db;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.storage.ScanOptions;
+import org.tron.common.storage.SnapshotSource;
+import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+import org.tron.core.Constant;
+import org.tron.core.config.args.Args;
+import org.tron.core.db.AbstractRevokingStore.Dialog;
+import org.tron.core.db.AbstractRevokingStore.RevokingTuple;
+import org.tron.core.exception.RevokingStoreIllegalStateException;
+
+public class BufferedSourceTest {
+
+  private static final String dbPath = "output_bufferedSource_test";
+
+  private AbstractRevokingStore revokingDatabase;
+  private LevelDbDataSourceImpl backing;
+  private BufferedSource source;
+
+  /**
+   * Open a buffered source over an empty database.
+   */
+  @Before
+  public void init() {
+    Args.setParam(new String[]{"-d", dbPath}, Constant.TEST_CONF);
+    revokingDatabase = new AbstractRevokingStore() {
+    };
+    revokingDatabase.enable();
+    backing = new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectory(), "buffered");
+    backing.initDB();
+    source = new BufferedSource(backing, revokingDatabase);
+  }
+
+  @After
+  public void destroy() {
+    source.closeDB();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  private void put(int key, long value) {
+    byte[] oldValue = source.getData(ByteArray.fromInt(key));
+    RevokingTuple tuple = new RevokingTuple(source, ByteArray.fromInt(key));
+    if (oldValue == null) {
+      revokingDatabase.onCreate(tuple, null);
+    } else {
+      revokingDatabase.onModify(tuple, oldValue);
+    }
+    source.putData(ByteArray.fromInt(key), ByteArray.fromLong(value));
+  }
+
+  @Test
+  public void testWriteThroughWithoutDialog() {
+    source.putData(ByteArray.fromInt(1), ByteArray.fromLong(1));
+    Assert.assertArrayEquals(ByteArray.fromLong(1), backing.getData(ByteArray.fromInt(1)));
+    Assert.assertEquals(0, source.getBufferedSize());
+  }
+
+  @Test
+  public void testGetAllMergesBuffer() throws RevokingStoreIllegalStateException {
+    backing.putData(ByteArray.fromInt(1), ByteArray.fromLong(1));
+    backing.putData(ByteArray.fromInt(2), ByteArray.fromLong(2));
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      put(2, 20);
+      put(3, 30);
+      source.deleteData(ByteArray.fromInt(1));
+
+      List<byte[]> values = source.getAll(Arrays.asList(ByteArray.fromInt(1),
+          ByteArray.fromInt(2), ByteArray.fromInt(3), ByteArray.fromInt(4)));
+      Assert.assertNull(values.get(0));
+      Assert.assertArrayEquals(ByteArray.fromLong(20), values.get(1));
+      Assert.assertArrayEquals(ByteArray.fromLong(30), values.get(2));
+      Assert.assertNull(values.get(3));
+      dialog.commit();
+    }
+  }
+
+  @Test
+  public void testCommitWritesOnce() throws RevokingStoreIllegalStateException {
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      for (int i = 0; i < 100; i++) {
+        try (Dialog tmpDialog = revokingDatabase.buildDialog()) {
+          put(i, i);
+          tmpDialog.merge();
+        }
+      }
+      source.deleteData(ByteArray.fromInt(7));
+
+      Assert.assertNull(backing.getData(ByteArray.fromInt(1)));
+      Assert.assertArrayEquals(ByteArray.fromLong(1), source.getData(ByteArray.fromInt(1)));
+      Assert.assertNull(source.getData(ByteArray.fromInt(7)));
+      Assert.assertEquals(99, source.getTotal());
+      dialog.commit();
+    }
+
+    Assert.assertEquals(0, source.getBufferedSize());
+    Assert.assertEquals(99, backing.getTotal());
+    Assert.assertArrayEquals(ByteArray.fromLong(1), backing.getData(ByteArray.fromInt(1)));
+  }
+
+  @Test
+  public void testRevokeLeavesDatabaseUntouched() throws RevokingStoreIllegalStateException {
+    source.putData(ByteArray.fromInt(1), ByteArray.fromLong(1));
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      put(1, 10);
+      put(2, 20);
+      Assert.assertArrayEquals(ByteArray.fromLong(10), source.getData(ByteArray.fromInt(1)));
+    }
+
+    Assert.assertEquals(1, backing.getTotal());
+    Assert.assertArrayEquals(ByteArray.fromLong(1), source.getData(ByteArray.fromInt(1)));
+    Assert.assertNull(source.getData(ByteArray.fromInt(2)));
+  }
+
+  @Test
+  public void testMergedIteration() throws RevokingStoreIllegalStateException {
+    source.putData(ByteArray.fromInt(1), ByteArray.fromLong(1));
+    source.putData(ByteArray.fromInt(3), ByteArray.fromLong(3));
+    source.putData(ByteArray.fromInt(5), ByteArray.fromLong(5));
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      put(2, 2);
+      put(3, 30);
+      source.deleteData(ByteArray.fromInt(5));
+
+      List<Long> values = new ArrayList<>();
+      for (Entry<byte[], byte[]> entry : source) {
+        values.add(ByteArray.toLong(entry.getValue()));
+      }
+      Assert.assertEquals(3, values.size());
+      Assert.assertEquals(Long.valueOf(1), values.get(0));
+      Assert.assertEquals(Long.valueOf(2), values.get(1));
+      Assert.assertEquals(Long.valueOf(30), values.get(2));
+      dialog.commit();
+    }
+  }
+
+  @Test
+  public void testMergedRangeScan() throws RevokingStoreIllegalStateException {
+    for (int i = 0; i < 10; i += 2) {
+      source.putData(ByteArray.fromInt(i), ByteArray.fromLong(i));
+    }
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      put(3, 3);
+      put(11, 11);
+      source.deleteData(ByteArray.fromInt(6));
+
+      List<Long> values = new ArrayList<>();
+      source.iterator(ScanOptions.range(ByteArray.fromInt(2), ByteArray.fromInt(9)).reverse()
+          .offset(1).limit(2))
+          .forEachRemaining(entry -> values.add(ByteArray.toLong(entry.getValue())));
+      Assert.assertEquals(Arrays.asList(4L, 3L), values);
+      dialog.commit();
+    }
+  }
+
+  private void commitBlock(int key, long value) throws RevokingStoreIllegalStateException {
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      put(key, value);
+      dialog.commit();
+    }
+  }
+
+  @Test
+  public void testOverlaysWrittenOnceTrimmed() throws RevokingStoreIllegalStateException {
+    revokingDatabase.setOverlay(true);
+    revokingDatabase.setMaxSize(1);
+    commitBlock(1, 1);
+    commitBlock(1, 2);
+    Assert.assertNull(backing.getData(ByteArray.fromInt(1)));
+    Assert.assertEquals(2, source.getOverlayCount());
+
+    // the third block trims the first one from the stack, only its overlay is written
+    commitBlock(1, 3);
+    Assert.assertArrayEquals(ByteArray.fromLong(1), backing.getData(ByteArray.fromInt(1)));
+    Assert.assertEquals(2, source.getOverlayCount());
+    Assert.assertEquals(2, revokingDatabase.overlaidSize());
+    Assert.assertArrayEquals(ByteArray.fromLong(3), source.getData(ByteArray.fromInt(1)));
+    Assert.assertEquals(1, source.getTotal());
+
+    SnapshotSource snapshot = source.getSnapshot();
+    revokingDatabase.pop();
+    Assert.assertEquals(1, source.getOverlayCount());
+    Assert.assertEquals(0, source.getBufferedSize());
+    Assert.assertArrayEquals(ByteArray.fromLong(2), source.getData(ByteArray.fromInt(1)));
+    Assert.assertArrayEquals(ByteArray.fromLong(1), backing.getData(ByteArray.fromInt(1)));
+    Assert.assertArrayEquals(ByteArray.fromLong(3), snapshot.getData(ByteArray.fromInt(1)));
+    snapshot.closeDB();
+
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      put(2, 20);
+    }
+    Assert.assertNull(source.getData(ByteArray.fromInt(2)));
+    Assert.assertEquals(1, source.getOverlayCount());
+  }
+}
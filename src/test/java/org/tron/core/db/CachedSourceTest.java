@@ -0,0 +1,168 @@
+package org.tron.core.db;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+import org.tron.core.Constant;
+import org.tron.core.config.args.Args;
+import org.tron.core.db.AbstractRevokingStore.Dialog;
+import org.tron.core.db.AbstractRevokingStore.RevokingTuple;
+import org.tron.core.exception.RevokingStoreIllegalStateException;
+
+public class CachedSourceTest {
+
+  private static final String dbPath = "output_cachedSource_test";
+
+  private AbstractRevokingStore revokingDatabase;
+  private LevelDbDataSourceImpl backing;
+  private BufferedSource buffered;
+  private CachedSource<Long> cache;
+  private int parsed;
+
+  /**
+   * Open a cache of longs over an empty database.
+   */
+  @Before
+  public void init() {
+    Args.setParam(new String[]{"-d", dbPath}, Constant.TEST_CONF);
+    revokingDatabase = new AbstractRevokingStore() {
+    };
+    revokingDatabase.enable();
+    backing = new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectory(), "cached");
+    backing.initDB();
+    buffered = new BufferedSource(backing, revokingDatabase);
+    cache = new CachedSource<>(buffered, revokingDatabase, bytes -> {
+      parsed++;
+      return ByteArray.toLong(bytes);
+    }, ByteArray::fromLong, value -> 8, 8 * 4);
+  }
+
+  @After
+  public void destroy() {
+    cache.closeDB();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  private void put(int key, long value) {
+    byte[] oldValue = cache.getData(ByteArray.fromInt(key));
+    RevokingTuple tuple = new RevokingTuple(cache, ByteArray.fromInt(key));
+    if (oldValue == null) {
+      revokingDatabase.onCreate(tuple, null);
+    } else {
+      revokingDatabase.onModify(tuple, oldValue);
+    }
+    cache.putObject(ByteArray.fromInt(key), value);
+  }
+
+  @Test
+  public void testParseOnce() {
+    backing.putData(ByteArray.fromInt(1), ByteArray.fromLong(1));
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(Long.valueOf(1), cache.getObject(ByteArray.fromInt(1)));
+    }
+    Assert.assertEquals(1, parsed);
+  }
+
+  @Test
+  public void testGetObjectsLoadsMissesOnce() {
+    for (int i = 0; i < 3; i++) {
+      backing.putData(ByteArray.fromInt(i), ByteArray.fromLong(i * 10));
+    }
+    Assert.assertEquals(Long.valueOf(10), cache.getObject(ByteArray.fromInt(1)));
+
+    List<Long> objects = cache.getObjects(Arrays.asList(ByteArray.fromInt(0),
+        ByteArray.fromInt(1), ByteArray.fromInt(2), ByteArray.fromInt(3)));
+    Assert.assertEquals(Arrays.asList(0L, 10L, 20L, null), objects);
+    Assert.assertEquals(3, parsed);
+    Assert.assertEquals(4, cache.getMissCount());
+
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(Long.valueOf(i * 10), cache.getObject(ByteArray.fromInt(i)));
+    }
+    Assert.assertEquals(3, parsed);
+  }
+
+  @Test
+  public void testDirtyUntilCommit() throws RevokingStoreIllegalStateException {
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      for (int i = 0; i < 10; i++) {
+        try (Dialog tmpDialog = revokingDatabase.buildDialog()) {
+          put(1, i);
+          tmpDialog.merge();
+        }
+      }
+      Assert.assertEquals(1, cache.getDirtyCount());
+      Assert.assertEquals(0, buffered.getBufferedSize());
+      Assert.assertEquals(1, cache.getTotal());
+      dialog.commit();
+    }
+
+    Assert.assertEquals(0, cache.getDirtyCount());
+    Assert.assertArrayEquals(ByteArray.fromLong(9), backing.getData(ByteArray.fromInt(1)));
+  }
+
+  @Test
+  public void testRevokeRestoresCache() throws RevokingStoreIllegalStateException {
+    cache.putObject(ByteArray.fromInt(1), 1L);
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      put(1, 10);
+      put(2, 20);
+      Assert.assertEquals(Long.valueOf(10), cache.getObject(ByteArray.fromInt(1)));
+    }
+
+    Assert.assertEquals(Long.valueOf(1), cache.getObject(ByteArray.fromInt(1)));
+    Assert.assertNull(cache.getObject(ByteArray.fromInt(2)));
+    Assert.assertEquals(1, backing.getTotal());
+  }
+
+  @Test
+  public void testEvictCleanOnly() throws RevokingStoreIllegalStateException {
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      for (int i = 0; i < 8; i++) {
+        put(i, i);
+      }
+      Assert.assertEquals(8, cache.size());
+      dialog.commit();
+    }
+
+    Assert.assertEquals(4, cache.size());
+    Assert.assertEquals(8, backing.getTotal());
+  }
+
+  @Test
+  public void testMetrics() {
+    backing.putData(ByteArray.fromInt(1), ByteArray.fromLong(1));
+    cache.getObject(ByteArray.fromInt(1));
+    cache.getObject(ByteArray.fromInt(1));
+    cache.getObject(ByteArray.fromInt(2));
+    Assert.assertEquals(1, cache.getHitCount());
+    Assert.assertEquals(2, cache.getMissCount());
+
+    for (int i = 0; i < 8; i++) {
+      cache.putObject(ByteArray.fromInt(i), (long) i);
+    }
+    Assert.assertEquals(4, cache.size());
+    Assert.assertEquals(4, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testPopRestoresCache() throws RevokingStoreIllegalStateException {
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      put(1, 10);
+      dialog.commit();
+    }
+    Assert.assertEquals(Long.valueOf(10), cache.getObject(ByteArray.fromInt(1)));
+
+    revokingDatabase.pop();
+    Assert.assertNull(cache.getObject(ByteArray.fromInt(1)));
+    Assert.assertNull(backing.getData(ByteArray.fromInt(1)));
+  }
+}
@@ -0,0 +1,111 @@
+package org.tron.core.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+import org.tron.core.Constant;
+import org.tron.core.config.args.Args;
+
+public class CheckpointTest {
+
+  private static final String dbPath = "output_checkpoint_test";
+
+  private LevelDbDataSourceImpl source;
+  private File directory = new File(dbPath, "checkpoint");
+  private File restored = new File(dbPath, "restored");
+
+  /**
+   * Open a database holding 1000 entries.
+   */
+  @Before
+  public void init() {
+    Args.setParam(new String[]{"-d", dbPath}, Constant.TEST_CONF);
+    source = new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectory(), "account");
+    source.initDB();
+    for (int i = 0; i < 1000; i++) {
+      source.putData(ByteArray.fromInt(i), ByteArray.fromLong(i));
+    }
+  }
+
+  @After
+  public void destroy() {
+    source.closeDB();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  @Test
+  public void testWriteAndRestore() throws IOException {
+    Checkpoint.write(directory, 12, "ab", 10,
+        Collections.singletonList(source.getSnapshot()), Collections.emptyList());
+
+    Checkpoint loaded = Checkpoint.load(directory);
+    Assert.assertEquals(12, loaded.getHeadBlockNum());
+    Assert.assertEquals("ab", loaded.getHeadBlockHash());
+    Assert.assertEquals(10, loaded.getSolidifiedBlockNum());
+    Assert.assertEquals(Long.valueOf(1000), loaded.getCounts().get("account"));
+
+    Checkpoint.restore(directory, restored);
+    LevelDbDataSourceImpl copy = new LevelDbDataSourceImpl(restored.getPath(), "account",
+        Args.getInstance().getStorage().getProfile("account"));
+    copy.initDB();
+    try {
+      Assert.assertEquals(1000, copy.getTotal());
+      Assert.assertArrayEquals(ByteArray.fromLong(999), copy.getData(ByteArray.fromInt(999)));
+    } finally {
+      copy.closeDB();
+    }
+  }
+
+  @Test
+  public void testApplyUndoWrites() throws IOException {
+    Map<ByteArrayWrapper, byte[]> undo = new HashMap<>();
+    undo.put(new ByteArrayWrapper(ByteArray.fromInt(1)), ByteArray.fromLong(-1));
+    undo.put(new ByteArrayWrapper(ByteArray.fromInt(2)), null);
+    undo.put(new ByteArrayWrapper(ByteArray.fromInt(1000)), ByteArray.fromLong(1000));
+    Checkpoint.write(directory, 10, "ab", 10, Collections.singletonList(source.getSnapshot()),
+        Collections.emptyList(), Collections.singletonMap("account", undo));
+
+    Assert.assertEquals(Long.valueOf(1000), Checkpoint.load(directory).getCounts().get("account"));
+    Checkpoint.restore(directory, restored);
+    LevelDbDataSourceImpl copy = new LevelDbDataSourceImpl(restored.getPath(), "account",
+        Args.getInstance().getStorage().getProfile("account"));
+    copy.initDB();
+    try {
+      Assert.assertArrayEquals(ByteArray.fromLong(-1), copy.getData(ByteArray.fromInt(1)));
+      Assert.assertNull(copy.getData(ByteArray.fromInt(2)));
+      Assert.assertArrayEquals(ByteArray.fromLong(1000), copy.getData(ByteArray.fromInt(1000)));
+      Assert.assertArrayEquals(ByteArray.fromLong(3), copy.getData(ByteArray.fromInt(3)));
+    } finally {
+      copy.closeDB();
+    }
+  }
+
+  @Test
+  public void testRefuseExistingDatabase() throws IOException {
+    Checkpoint.write(directory, 1, "ab", 0, Collections.singletonList(source.getSnapshot()),
+        Collections.emptyList());
+    Checkpoint.restore(directory, restored);
+    try {
+      Checkpoint.restore(directory, restored);
+      Assert.fail("restored over an existing database");
+    } catch (IllegalStateException e) {
+      Assert.assertTrue(e.getMessage().contains("account"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIncompleteCheckpoint() throws IOException {
+    Assert.assertTrue(new File(directory, "account").mkdirs());
+    Checkpoint.restore(directory, restored);
+  }
+}
@@ -0,0 +1,73 @@
+package org.tron.core.db;
+
+import java.io.File;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.storage.DbSourceFactory;
+import org.tron.common.storage.DbSourceInter;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+import org.tron.core.Constant;
+import org.tron.core.config.args.Args;
+
+public class DynamicPropertiesStoreTest {
+
+  private static final String dbPath = "output_dynamicPropertiesStore_test";
+  private static final String dbName = "properties-migration";
+  private static final byte[] BLOCK_FILLED_SLOTS = "BLOCK_FILLED_SLOTS".getBytes();
+  private static final byte[] BLOCK_FILLED_SLOTS_INDEX = "BLOCK_FILLED_SLOTS_INDEX".getBytes();
+
+  private DynamicPropertiesStore store;
+
+  @Before
+  public void init() {
+    Args.setParam(new String[]{"-d", dbPath}, Constant.TEST_CONF);
+  }
+
+  @After
+  public void destroy() {
+    if (store != null) {
+      store.close();
+    }
+    DynamicPropertiesStore.destroy();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  /**
+   * A database of a version that stored the ring as 128 decimal digits and its index apart.
+   */
+  @Test
+  public void testMigrateFilledSlots() {
+    int[] slots = new int[BlockFilledSlots.SLOT_NUMBER];
+    for (int i = 0; i < slots.length; i++) {
+      slots[i] = i % 3 == 0 ? 0 : 1;
+    }
+    StringBuilder digits = new StringBuilder();
+    Arrays.stream(slots).forEach(digits::append);
+
+    DbSourceInter<byte[]> legacy = DbSourceFactory.create(Args.getInstance().getOutputDirectory(),
+        dbName);
+    legacy.initDB();
+    legacy.putData(BLOCK_FILLED_SLOTS, digits.toString().getBytes());
+    legacy.putData(BLOCK_FILLED_SLOTS_INDEX, ByteArray.fromInt(37));
+    legacy.closeDB();
+
+    store = DynamicPropertiesStore.create(dbName);
+
+    Assert.assertEquals(37, store.getBlockFilledSlotsIndex());
+    Assert.assertArrayEquals(slots, store.getBlockFilledSlots());
+    long filled = Arrays.stream(slots).filter(slot -> slot == 1).count();
+    Assert.assertEquals(100 * filled / BlockFilledSlots.SLOT_NUMBER,
+        store.calculateFilledSlotsCount());
+    Assert.assertNull(store.getDbSource().getData(BLOCK_FILLED_SLOTS_INDEX));
+    Assert.assertNotEquals(BlockFilledSlots.SLOT_NUMBER,
+        store.getDbSource().getData(BLOCK_FILLED_SLOTS).length);
+
+    store.applyBlock(true);
+    Assert.assertEquals(38, store.getBlockFilledSlotsIndex());
+  }
+}
@@ -0,0 +1,104 @@
+package org.tron.core.db;
+
+import java.io.File;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+import org.tron.core.Constant;
+import org.tron.core.config.args.Args;
+
+public class KeyFilterTest {
+
+  private static final String dbPath = "output_keyFilter_test";
+
+  private LevelDbDataSourceImpl source;
+  private File file;
+
+  /**
+   * Open a database holding keys 0 to 99.
+   */
+  @Before
+  public void init() {
+    Args.setParam(new String[]{"-d", dbPath}, Constant.TEST_CONF);
+    source = new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectory(), "filtered");
+    source.initDB();
+    for (int i = 0; i < 100; i++) {
+      source.putData(ByteArray.fromInt(i), ByteArray.fromInt(i));
+    }
+    file = new File(dbPath, "filtered.bloom");
+  }
+
+  @After
+  public void destroy() {
+    source.closeDB();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  private int countContained(KeyFilter filter, int from, int to) {
+    int count = 0;
+    for (int i = from; i < to; i++) {
+      count += filter.mightContain(ByteArray.fromInt(i)) ? 1 : 0;
+    }
+    return count;
+  }
+
+  @Test
+  public void testRebuildFromSource() {
+    KeyFilter filter = new KeyFilter(file, source);
+    filter.awaitRebuild();
+    for (int i = 0; i < 100; i++) {
+      Assert.assertTrue(filter.mightContain(ByteArray.fromInt(i)));
+    }
+    Assert.assertTrue(countContained(filter, 100, 10100) < 200);
+
+    filter.put(ByteArray.fromInt(100));
+    Assert.assertTrue(filter.mightContain(ByteArray.fromInt(100)));
+  }
+
+  @Test
+  public void testSaveAndLoad() {
+    KeyFilter filter = new KeyFilter(file, source);
+    filter.awaitRebuild();
+    filter.put(ByteArray.fromInt(1000));
+    filter.save();
+    Assert.assertTrue(file.exists());
+
+    // a saved filter is trusted once, keys only put in memory prove it was not rebuilt
+    KeyFilter loaded = new KeyFilter(file, source);
+    Assert.assertFalse(file.exists());
+    Assert.assertTrue(loaded.mightContain(ByteArray.fromInt(1000)));
+    Assert.assertTrue(loaded.mightContain(ByteArray.fromInt(1)));
+  }
+
+  @Test
+  public void testGrowPastCapacity() {
+    KeyFilter filter = new KeyFilter(file, source, 1000);
+    filter.awaitRebuild();
+    for (int i = 100; i < 10100; i++) {
+      filter.put(ByteArray.fromInt(i));
+    }
+
+    Assert.assertTrue(filter.getStageCount() > 1);
+    Assert.assertEquals(10100, countContained(filter, 0, 10100));
+    // a single filter sized for 1000 keys would answer most absent keys as contained
+    Assert.assertTrue(countContained(filter, 10100, 20100) < 500);
+    Assert.assertTrue(filter.expectedFpp() < 0.025);
+
+    filter.save();
+    KeyFilter loaded = new KeyFilter(file, source, 1000);
+    Assert.assertEquals(filter.getStageCount(), loaded.getStageCount());
+    Assert.assertTrue(loaded.mightContain(ByteArray.fromInt(10099)));
+  }
+
+  @Test
+  public void testReset() {
+    KeyFilter filter = new KeyFilter(file, source);
+    filter.reset();
+    Assert.assertTrue(countContained(filter, 0, 100) < 5);
+  }
+}
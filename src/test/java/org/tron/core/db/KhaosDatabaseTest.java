@@ -10,6 +10,7 @@ import org.junit.Test;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.tron.common.utils.ByteArray;
 import org.tron.common.utils.FileUtil;
+import org.tron.common.utils.Sha256Hash;
 import org.tron.core.Constant;
 import org.tron.core.capsule.BlockCapsule;
 import org.tron.core.config.DefaultConfig;
@@ -84,5 +85,32 @@ public class KhaosDatabaseTest {
     Assert.assertNull("removeBlk is error", khaosDatabase.getBlock(blockCapsule2.getBlockId()));
   }
 
+  @Test
+  public void testLinkOrphans() {
+    BlockCapsule block0 = new BlockCapsule(100, Sha256Hash.ZERO_HASH, 0, ByteString.EMPTY);
+    BlockCapsule block1 = new BlockCapsule(101, block0.getBlockId(), 1, ByteString.EMPTY);
+    BlockCapsule block2 = new BlockCapsule(102, block1.getBlockId(), 2, ByteString.EMPTY);
+    BlockCapsule block3 = new BlockCapsule(103, block2.getBlockId(), 3, ByteString.EMPTY);
+    khaosDatabase.start(block0);
+
+    for (BlockCapsule orphan : new BlockCapsule[]{block3, block2}) {
+      try {
+        khaosDatabase.push(orphan);
+        Assert.fail("the parent is unknown");
+      } catch (UnLinkedBlockException e) {
+        Assert.assertTrue(khaosDatabase.containBlock(orphan.getBlockId()));
+      }
+    }
+
+    try {
+      Assert.assertEquals(block3, khaosDatabase.push(block1));
+    } catch (UnLinkedBlockException e) {
+      Assert.fail("the parent is the head");
+    }
+    Assert.assertEquals(0, khaosDatabase.getMiniUnlinkedStore().size());
+    Assert.assertEquals(3, khaosDatabase.getBranch(block3.getBlockId(), block0.getBlockId())
+        .getKey().size());
+  }
+
 
 }
\ No newline at end of file
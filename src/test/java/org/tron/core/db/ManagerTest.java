@@ -3,6 +3,8 @@ package org.tron.core.db;
 import com.google.common.collect.Maps;
 import com.google.protobuf.ByteString;
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -20,6 +22,7 @@ import org.tron.common.utils.Utils;
 import org.tron.core.Constant;
 import org.tron.core.capsule.AccountCapsule;
 import org.tron.core.capsule.BlockCapsule;
+import org.tron.core.capsule.BlockCapsule.BlockId;
 import org.tron.core.capsule.TransactionCapsule;
 import org.tron.core.capsule.WitnessCapsule;
 import org.tron.core.config.DefaultConfig;
@@ -225,7 +228,9 @@ public class ManagerTest {
           UnLinkedBlockException, ValidateScheduleException, BadItemException,
           ItemNotFoundException, HeaderNotFound {
     Args.setParam(new String[] {"--witness"}, Constant.TEST_CONF);
-    long size = dbManager.getBlockStore().dbSource.allKeys().size();
+    // solidified blocks move from the database to the archive
+    long size = dbManager.getBlockStore().dbSource.allKeys().size()
+        + dbManager.getBlockStore().getArchivedCount();
     System.out.print("block store size:" + size + "\n");
     String key = "f31db24bfbd1a2ef19beddca0a0fa37632eded9ac666a05d3bd925f01dde1f62";
     byte[] privateKey = ByteArray.fromHexString(key);
@@ -273,13 +278,28 @@ public class ManagerTest {
         dbManager.getBlockStore().get(blockCapsule2.getBlockId().getBytes()).getParentHash(),
         blockCapsule1.getBlockId());
 
-    Assert.assertEquals(dbManager.getBlockStore().dbSource.allKeys().size(), size + 3);
+    Assert.assertEquals(dbManager.getBlockStore().dbSource.allKeys().size()
+        + dbManager.getBlockStore().getArchivedCount(), size + 3);
 
     Assert.assertEquals(
         dbManager.getBlockIdByNum(dbManager.getHead().getNum() - 1), blockCapsule1.getBlockId());
     Assert.assertEquals(
         dbManager.getBlockIdByNum(dbManager.getHead().getNum() - 2), blockCapsule1.getParentHash());
 
+    // blockCapsule0 has the number of blockCapsule1 but is on the other fork
+    List<BlockId> ids = dbManager.getBlockIdsByRange(num, num + 3);
+    Assert.assertEquals(Arrays.asList(dbManager.getBlockIdByNum(num), blockCapsule1.getBlockId(),
+        blockCapsule2.getBlockId()), ids);
+    List<BlockCapsule> blocks = dbManager.getBlocksByRange(num + 1, num + 3, true);
+    Assert.assertEquals(blockCapsule1.getBlockId(), blocks.get(0).getBlockId());
+    Assert.assertEquals(blockCapsule2.getBlockId(), blocks.get(1).getBlockId());
+    try {
+      dbManager.getBlocksByRange(num + 1, num + 4);
+      Assert.fail("read a block above the head");
+    } catch (ItemNotFoundException e) {
+      // expected
+    }
+
     Assert.assertEquals(
         blockCapsule2.getBlockId(),
         dbManager.getDynamicPropertiesStore().getLatestBlockHeaderHash());
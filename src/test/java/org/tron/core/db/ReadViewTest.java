@@ -0,0 +1,134 @@
+package org.tron.core.db;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.storage.SnapshotSource;
+import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+import org.tron.core.Constant;
+import org.tron.core.config.args.Args;
+import org.tron.core.db.AbstractRevokingStore.Dialog;
+import org.tron.core.db.AbstractRevokingStore.RevokingTuple;
+import org.tron.core.exception.RevokingStoreIllegalStateException;
+
+public class ReadViewTest {
+
+  private static final String dbPath = "output_readView_test";
+
+  private AbstractRevokingStore revokingDatabase;
+  private LevelDbDataSourceImpl backing;
+  private CachedSource<Long> cache;
+  private AtomicReference<ReadView> current = new AtomicReference<>();
+
+  /**
+   * Open a cached store holding 1 = 1, with a view refreshed at every commit.
+   */
+  @Before
+  public void init() throws RevokingStoreIllegalStateException {
+    Args.setParam(new String[]{"-d", dbPath}, Constant.TEST_CONF);
+    revokingDatabase = new AbstractRevokingStore() {
+    };
+    revokingDatabase.enable();
+    backing = new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectory(), "viewed");
+    backing.initDB();
+    cache = new CachedSource<>(new StatsSource(new BufferedSource(backing, revokingDatabase)),
+        revokingDatabase, ByteArray::toLong, ByteArray::fromLong, value -> 8, 8 * 4);
+    revokingDatabase.setCommitListener(() -> ReadView.replace(current,
+        ReadView.capture(Collections.singletonList(cache))));
+
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      put(1, 1);
+      dialog.commit();
+    }
+  }
+
+  @After
+  public void destroy() {
+    ReadView.replace(current, null);
+    cache.closeDB();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  private void put(int key, long value) {
+    byte[] oldValue = cache.getData(ByteArray.fromInt(key));
+    RevokingTuple tuple = new RevokingTuple(cache, ByteArray.fromInt(key));
+    if (oldValue == null) {
+      revokingDatabase.onCreate(tuple, null);
+    } else {
+      revokingDatabase.onModify(tuple, oldValue);
+    }
+    cache.putObject(ByteArray.fromInt(key), value);
+  }
+
+  private void commitInOtherThread(int key, long value) throws InterruptedException {
+    Thread writer = new Thread(() -> {
+      try (Dialog dialog = revokingDatabase.buildDialog()) {
+        put(key, value);
+        dialog.commit();
+      } catch (RevokingStoreIllegalStateException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    writer.start();
+    writer.join();
+  }
+
+  @Test
+  public void testPinnedReadsCommittedState() throws RevokingStoreIllegalStateException {
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      put(1, 10);
+      put(2, 2);
+
+      try (ReadView.Pin pin = ReadView.pin(current)) {
+        Assert.assertEquals(Long.valueOf(1), cache.getObject(ByteArray.fromInt(1)));
+        Assert.assertNull(cache.getData(ByteArray.fromInt(2)));
+        Assert.assertEquals(1, cache.getTotal());
+        Assert.assertEquals(1, cache.allKeys().size());
+      }
+      Assert.assertEquals(Long.valueOf(10), cache.getObject(ByteArray.fromInt(1)));
+      Assert.assertEquals(2, cache.getTotal());
+    }
+  }
+
+  @Test
+  public void testViewOutlivesCommit() throws InterruptedException {
+    try (ReadView.Pin pin = ReadView.pin(current)) {
+      commitInOtherThread(1, 100);
+      commitInOtherThread(3, 3);
+      Assert.assertEquals(Long.valueOf(1), cache.getObject(ByteArray.fromInt(1)));
+      Assert.assertNull(cache.getObject(ByteArray.fromInt(3)));
+
+      // a nested pin keeps the view of the outer one
+      try (ReadView.Pin nested = ReadView.pin(current)) {
+        Assert.assertNull(cache.getObject(ByteArray.fromInt(3)));
+      }
+      Assert.assertNull(cache.getObject(ByteArray.fromInt(3)));
+    }
+
+    try (ReadView.Pin pin = ReadView.pin(current)) {
+      Assert.assertEquals(Long.valueOf(100), cache.getObject(ByteArray.fromInt(1)));
+      Assert.assertEquals(Long.valueOf(3), cache.getObject(ByteArray.fromInt(3)));
+      Assert.assertEquals(2, cache.getTotal());
+    }
+  }
+
+  @Test
+  public void testSnapshotOfClosedDatabase() {
+    SnapshotSource snapshot = backing.getSnapshot();
+    Assert.assertNotNull(snapshot.getData(ByteArray.fromInt(1)));
+
+    ReadView.replace(current, null);
+    backing.closeDB();
+    Assert.assertFalse(snapshot.isAlive());
+    Assert.assertNull(snapshot.getData(ByteArray.fromInt(1)));
+    Assert.assertFalse(snapshot.iterator().hasNext());
+    snapshot.closeDB();
+  }
+}
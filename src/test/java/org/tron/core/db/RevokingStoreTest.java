@@ -3,21 +3,30 @@ package org.tron.core.db;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.iq80.leveldb.WriteOptions;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.tron.common.storage.DbSourceInter;
 import org.tron.common.utils.DialogOptional;
 import org.tron.common.utils.FileUtil;
 import org.tron.core.Constant;
 import org.tron.core.capsule.ProtoCapsule;
 import org.tron.core.config.args.Args;
+import org.tron.core.config.args.Durability;
 import org.tron.core.db.AbstractRevokingStore.Dialog;
+import org.tron.core.db.AbstractRevokingStore.RevokingState;
+import org.tron.core.db.AbstractRevokingStore.RevokingTuple;
 import org.tron.core.exception.RevokingStoreIllegalStateException;
 
 @Slf4j
@@ -67,6 +76,68 @@ public class RevokingStoreTest {
     tronDatabase.close();
   }
 
+  @Test
+  public synchronized void testSavepoint() throws RevokingStoreIllegalStateException {
+    revokingDatabase.getStack().clear();
+    TestRevokingTronStore tronDatabase = new TestRevokingTronStore(
+        "testrevokingtronstore-testSavepoint", revokingDatabase);
+    TestProtoCapsule kept = new TestProtoCapsule("kept".getBytes());
+    TestProtoCapsule revoked = new TestProtoCapsule("revoked".getBytes());
+
+    DialogOptional dialog = DialogOptional.instance().setValue(revokingDatabase.buildDialog());
+    tronDatabase.put(revoked.getData(), kept);
+    try (Dialog tmpDialog = revokingDatabase.buildSavepoint()) {
+      tronDatabase.put(kept.getData(), kept);
+      Assert.assertEquals(revokingDatabase.getStack().size(), 1);
+      tmpDialog.merge();
+    }
+    try (Dialog tmpDialog = revokingDatabase.buildSavepoint()) {
+      tronDatabase.put(revoked.getData(), revoked);
+      tronDatabase.delete(kept.getData());
+      Assert.assertNull(tronDatabase.getDbSource().getData(kept.getData()));
+    }
+
+    Assert.assertArrayEquals(kept.getData(), tronDatabase.getDbSource().getData(kept.getData()));
+    Assert.assertArrayEquals(kept.getData(),
+        tronDatabase.getDbSource().getData(revoked.getData()));
+    Assert.assertEquals(revokingDatabase.getActiveDialog(), 1);
+    Assert.assertTrue(revokingDatabase.getChanges().isEmpty());
+
+    dialog.reset();
+
+    Assert.assertTrue(revokingDatabase.getStack().isEmpty());
+    Assert.assertTrue(tronDatabase.getDbSource().allKeys().isEmpty());
+    tronDatabase.close();
+  }
+
+  @Test
+  public synchronized void testSavepointRecordsFirstModify()
+      throws RevokingStoreIllegalStateException {
+    revokingDatabase.getStack().clear();
+    TestRevokingTronStore tronDatabase = new TestRevokingTronStore(
+        "testrevokingtronstore-testSavepointRecordsFirstModify", revokingDatabase);
+    byte[] key = "key".getBytes();
+
+    DialogOptional dialog = DialogOptional.instance().setValue(revokingDatabase.buildDialog());
+    tronDatabase.put(key, new TestProtoCapsule("first".getBytes()));
+    try (Dialog tmpDialog = revokingDatabase.buildSavepoint()) {
+      tronDatabase.put(key, new TestProtoCapsule("second".getBytes()));
+      tronDatabase.put(key, new TestProtoCapsule("third".getBytes()));
+      tronDatabase.put(key, new TestProtoCapsule("fourth".getBytes()));
+      // only the first write in the savepoint needs the old value
+      Assert.assertEquals(1, revokingDatabase.getChanges().size());
+    }
+
+    Assert.assertArrayEquals("first".getBytes(), tronDatabase.getDbSource().getData(key));
+    Assert.assertFalse(revokingDatabase.recordsModify(
+        new RevokingTuple(tronDatabase.getDbSource(), key)));
+
+    dialog.reset();
+
+    Assert.assertTrue(tronDatabase.getDbSource().allKeys().isEmpty());
+    tronDatabase.close();
+  }
+
   @Test
   public synchronized void testPop() throws RevokingStoreIllegalStateException {
     revokingDatabase.getStack().clear();
@@ -95,6 +166,96 @@ public class RevokingStoreTest {
     Assert.assertEquals(revokingDatabase.getStack().size(), 0);
   }
 
+  @Test
+  public synchronized void testHeldBytes() throws RevokingStoreIllegalStateException {
+    revokingDatabase.getStack().clear();
+    TestRevokingTronStore tronDatabase = new TestRevokingTronStore(
+        "testrevokingtronstore-testHeldBytes", revokingDatabase);
+    byte[] key = "held".getBytes();
+
+    try (Dialog tmpDialog = revokingDatabase.buildDialog()) {
+      tronDatabase.put(key, new TestProtoCapsule(key));
+      tmpDialog.commit();
+    }
+    // a new key is revoked by deleting it
+    Assert.assertEquals(4, revokingDatabase.heldBytes());
+
+    try (Dialog tmpDialog = revokingDatabase.buildDialog()) {
+      tronDatabase.put(key, new TestProtoCapsule("other".getBytes()));
+      tmpDialog.commit();
+    }
+    // a modified key is revoked by writing back the old value
+    Assert.assertEquals(12, revokingDatabase.heldBytes());
+
+    revokingDatabase.pop();
+    revokingDatabase.pop();
+    Assert.assertEquals(0, revokingDatabase.heldBytes());
+    tronDatabase.close();
+  }
+
+  @Test
+  public synchronized void testSpill() throws RevokingStoreIllegalStateException {
+    revokingDatabase.getStack().clear();
+    revokingDatabase.setMemoryBudget(1);
+    TestRevokingTronStore tronDatabase = new TestRevokingTronStore(
+        "testrevokingtronstore-testSpill", revokingDatabase);
+    byte[] key = "spill".getBytes();
+
+    for (int i = 0; i < 3; i++) {
+      try (Dialog tmpDialog = revokingDatabase.buildDialog()) {
+        tronDatabase.put(key, new TestProtoCapsule(("spill" + i).getBytes()));
+        tmpDialog.commit();
+      }
+    }
+    // the first state was spilled when the third one was pushed, the one below it is kept
+    Assert.assertEquals(11 + 11, revokingDatabase.heldBytes());
+    Assert.assertEquals(5, revokingDatabase.spilledBytes());
+
+    revokingDatabase.pop();
+    Assert.assertArrayEquals("spill1".getBytes(), tronDatabase.getDbSource().getData(key));
+    revokingDatabase.pop();
+    Assert.assertArrayEquals("spill0".getBytes(), tronDatabase.getDbSource().getData(key));
+    Assert.assertEquals(0, revokingDatabase.heldBytes());
+    revokingDatabase.pop();
+    Assert.assertNull(tronDatabase.getDbSource().getData(key));
+    Assert.assertEquals(0, revokingDatabase.spilledBytes());
+    tronDatabase.close();
+  }
+
+  @Test
+  public synchronized void testSpillFileShrinks() throws RevokingStoreIllegalStateException {
+    revokingDatabase.getStack().clear();
+    revokingDatabase.setMemoryBudget(1);
+    TestRevokingTronStore tronDatabase = new TestRevokingTronStore(
+        "testrevokingtronstore-testSpillFile", revokingDatabase);
+    byte[] key = "spill".getBytes();
+
+    for (int i = 0; i < 4; i++) {
+      try (Dialog tmpDialog = revokingDatabase.buildDialog()) {
+        tronDatabase.put(key, new TestProtoCapsule(("spill" + i).getBytes()));
+        tmpDialog.commit();
+      }
+    }
+    // the two oldest states are spilled to the storage directory
+    File file = new File(Args.getInstance().getOutputDirectory()
+        + Args.getInstance().getStorage().getDirectory(), RevokingSpill.FILE_NAME);
+    Assert.assertTrue(file.exists());
+    long size = revokingDatabase.getSpill().getFileSize();
+
+    revokingDatabase.pop();
+    revokingDatabase.pop();
+    Assert.assertEquals(size, revokingDatabase.getSpill().getFileSize());
+    revokingDatabase.pop();
+    Assert.assertTrue(revokingDatabase.getSpill().getFileSize() < size);
+    Assert.assertTrue(revokingDatabase.getSpill().getFileSize() > 0);
+    revokingDatabase.pop();
+    Assert.assertEquals(0, revokingDatabase.getSpill().getFileSize());
+
+    revokingDatabase.shutdown();
+    Assert.assertFalse(file.exists());
+    tronDatabase.close();
+  }
+
   @Test
   public void shutdown() throws RevokingStoreIllegalStateException {
     revokingDatabase.getStack().clear();
@@ -130,6 +291,178 @@ public class RevokingStoreTest {
 
   }
 
+  private WriteSession recordingSession(String name, List<String> events) {
+    return new WriteSession() {
+      @Override
+      public void commit(WriteOptions options) {
+        events.add(name + (options.sync() ? ":commit-sync" : ":commit"));
+      }
+
+      @Override
+      public void sync() {
+        events.add(name + ":sync");
+      }
+    };
+  }
+
+  @Test
+  public synchronized void testGroupCommit() throws RevokingStoreIllegalStateException {
+    Durability durability = new Durability();
+    durability.setMode("group");
+    durability.setGroupBlocks(3);
+    durability.setGroupMillis(60_000);
+    revokingDatabase.setDurability(durability);
+    List<String> events = new ArrayList<>();
+    revokingDatabase.setSyncListener(() -> events.add("durable"));
+
+    WriteSession first = recordingSession("first", events);
+    WriteSession second = recordingSession("second", events);
+    for (WriteSession session : Arrays.asList(first, first, second, second)) {
+      try (Dialog dialog = revokingDatabase.buildDialog()) {
+        revokingDatabase.enlist(session);
+        dialog.commit();
+      }
+    }
+
+    // the third commit waits for the disk and syncs the store written before
+    Assert.assertEquals(Arrays.asList("first:commit", "first:commit", "second:commit-sync",
+        "first:sync", "durable", "second:commit"), events);
+    revokingDatabase.sync();
+    Assert.assertEquals(Arrays.asList("second:sync", "durable"),
+        events.subList(events.size() - 2, events.size()));
+    revokingDatabase.setDurability(Durability.sync());
+  }
+
+  @Test
+  public synchronized void testAsyncCommit() throws Exception {
+    Durability durability = new Durability();
+    durability.setMode("async");
+    durability.setGroupMillis(50);
+    revokingDatabase.setDurability(durability);
+    List<String> events = new CopyOnWriteArrayList<>();
+
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      revokingDatabase.enlist(recordingSession("store", events));
+      dialog.commit();
+    }
+    Assert.assertEquals(Collections.singletonList("store:commit"), events);
+
+    // written out in the background
+    for (int i = 0; i < 100 && events.size() < 2; i++) {
+      Thread.sleep(20);
+    }
+    Assert.assertEquals(Arrays.asList("store:commit", "store:sync"), events);
+    revokingDatabase.setDurability(Durability.sync());
+  }
+
+  @Test
+  public synchronized void testJournalReplay() throws Exception {
+    File file = new File("output_revokingStore_test", RevokingJournal.FILE_NAME);
+    String name = "testrevokingtronstore-testJournalReplay";
+    TestRevokingTronStore tronDatabase = new TestRevokingTronStore(name, revokingDatabase);
+    revokingDatabase.openJournal(file, databases(tronDatabase));
+    for (int i = 0; i < 3; i++) {
+      try (Dialog dialog = revokingDatabase.buildDialog()) {
+        tronDatabase.put(("journal" + i).getBytes(),
+            new TestProtoCapsule(("journal" + i).getBytes()));
+        dialog.commit();
+      }
+    }
+    revokingDatabase.shutdown();
+    tronDatabase.close();
+
+    // a restart rebuilds the stack, the last block can still be popped
+    AbstractRevokingStore restarted = new TestRevokingTronDatabase();
+    restarted.enable();
+    tronDatabase = new TestRevokingTronStore(name, restarted);
+    restarted.openJournal(file, databases(tronDatabase));
+    Assert.assertEquals(3, restarted.size());
+    restarted.pop();
+    Assert.assertFalse(tronDatabase.has("journal2".getBytes()));
+    Assert.assertTrue(tronDatabase.has("journal1".getBytes()));
+    restarted.shutdown();
+    tronDatabase.close();
+  }
+
+  @Test
+  public synchronized void testJournalRollsBackUnfinishedCommit() throws Exception {
+    File file = new File("output_revokingStore_test", RevokingJournal.FILE_NAME);
+    String name = "testrevokingtronstore-testJournalRollBack";
+    TestRevokingTronStore tronDatabase = new TestRevokingTronStore(name, revokingDatabase);
+    revokingDatabase.openJournal(file, databases(tronDatabase));
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      tronDatabase.put("committed".getBytes(), new TestProtoCapsule("committed".getBytes()));
+      dialog.commit();
+    }
+    revokingDatabase.shutdown();
+
+    // a crash after the frame of the next commit and its write, before the commit mark
+    RevokingJournal journal = new RevokingJournal(file);
+    journal.open(databases(tronDatabase)::get);
+    RevokingState state = new RevokingState();
+    state.newIds.add(new RevokingTuple(tronDatabase.getDbSource(), "torn".getBytes()));
+    journal.append(0, 0, Collections.singletonList(state));
+    journal.close();
+    tronDatabase.getDbSource().putData("torn".getBytes(), "torn".getBytes());
+
+    AbstractRevokingStore restarted = new TestRevokingTronDatabase();
+    restarted.enable();
+    restarted.openJournal(file, databases(tronDatabase));
+    Assert.assertEquals(1, restarted.size());
+    Assert.assertFalse(tronDatabase.has("torn".getBytes()));
+    Assert.assertTrue(tronDatabase.has("committed".getBytes()));
+    restarted.shutdown();
+    tronDatabase.close();
+  }
+
+  @Test
+  public synchronized void testPopToWithStoreBehind() throws Exception {
+    File file = new File("output_revokingStore_test", RevokingJournal.FILE_NAME);
+    TestRevokingTronStore ahead = new TestRevokingTronStore(
+        "testrevokingtronstore-testPopToAhead", revokingDatabase);
+    TestRevokingTronStore behind = new TestRevokingTronStore(
+        "testrevokingtronstore-testPopToBehind", revokingDatabase);
+    Map<String, DbSourceInter<byte[]>> databases = new HashMap<>(databases(ahead));
+    databases.putAll(databases(behind));
+    revokingDatabase.openJournal(file, databases);
+    for (int i = 0; i < 3; i++) {
+      try (Dialog dialog = revokingDatabase.buildDialog()) {
+        TestProtoCapsule value = new TestProtoCapsule(("block" + i).getBytes());
+        ahead.put("shared".getBytes(), value);
+        ahead.put(value.getData(), value);
+        behind.put("shared".getBytes(), value);
+        behind.put(value.getData(), value);
+        dialog.commit();
+      }
+    }
+    revokingDatabase.shutdown();
+
+    // the last block reached one store only before a crash
+    behind.getDbSource().putData("shared".getBytes(), "block1".getBytes());
+    behind.getDbSource().deleteData("block2".getBytes());
+
+    AbstractRevokingStore restarted = new TestRevokingTronDatabase();
+    restarted.enable();
+    restarted.openJournal(file, databases);
+    Assert.assertEquals(3, restarted.size());
+    restarted.popTo(1);
+    Assert.assertEquals(1, restarted.size());
+    for (TestRevokingTronStore store : Arrays.asList(ahead, behind)) {
+      Assert.assertArrayEquals("block0".getBytes(),
+          store.getDbSource().getData("shared".getBytes()));
+      Assert.assertTrue(store.has("block0".getBytes()));
+      Assert.assertFalse(store.has("block1".getBytes()));
+      Assert.assertFalse(store.has("block2".getBytes()));
+    }
+    restarted.shutdown();
+    ahead.close();
+    behind.close();
+  }
+
+  private static Map<String, DbSourceInter<byte[]>> databases(TronDatabase<?> store) {
+    return Collections.singletonMap(store.getDbSource().getDBName(), store.getDbSource());
+  }
+
   @NoArgsConstructor
   @AllArgsConstructor
   @EqualsAndHashCode
@@ -167,6 +500,11 @@ public class RevokingStoreTest {
       return new TestProtoCapsule(dbSource.getData(key));
     }
 
+    @Override
+    protected TestProtoCapsule parseItem(byte[] value) {
+      return new TestProtoCapsule(value);
+    }
+
     @Override
     public boolean has(byte[] key) {
       return dbSource.getData(key) != null;
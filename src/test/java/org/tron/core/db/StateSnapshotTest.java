@@ -0,0 +1,155 @@
+package org.tron.core.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+import org.tron.common.utils.Sha256Hash;
+import org.tron.core.Constant;
+import org.tron.core.config.args.Args;
+
+public class StateSnapshotTest {
+
+  private static final String dbPath = "output_state_snapshot_test";
+
+  private File directory = new File(dbPath, "snapshot");
+  private File restored = new File(dbPath, "restored");
+
+  @Before
+  public void init() {
+    Args.setParam(new String[]{"-d", dbPath}, Constant.TEST_CONF);
+  }
+
+  @After
+  public void destroy() {
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  private static Iterator<Entry<byte[], byte[]>> entries(int count) {
+    List<Entry<byte[], byte[]>> entries = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      entries.add(new SimpleImmutableEntry<>(ByteArray.fromInt(i), ByteArray.fromLong(i)));
+    }
+    return entries.iterator();
+  }
+
+  private StateSnapshot write() throws IOException {
+    Map<String, Iterator<Entry<byte[], byte[]>>> stores = new LinkedHashMap<>();
+    stores.put("account", entries(1000));
+    stores.put("witness", entries(0));
+    // records of 20 bytes in chunks of 1024 bytes
+    return StateSnapshot.write(directory, 12, "ab", 10, stores,
+        Collections.singletonMap("block-archive", 12L), 1024);
+  }
+
+  @Test
+  public void testWriteAndRestore() throws IOException {
+    StateSnapshot written = write();
+    Assert.assertEquals(20, written.getChunks().get("account").size());
+
+    StateSnapshot loaded = StateSnapshot.load(directory);
+    Assert.assertEquals(12, loaded.getHeadBlockNum());
+    Assert.assertEquals("ab", loaded.getHeadBlockHash());
+    Assert.assertEquals(10, loaded.getSolidifiedBlockNum());
+    Assert.assertEquals(written.getStateHash(), loaded.getStateHash());
+    Assert.assertEquals(Long.valueOf(1000), loaded.getCounts().get("account"));
+    Assert.assertEquals(Long.valueOf(0), loaded.getCounts().get("witness"));
+
+    StateSnapshot.restore(directory, restored);
+    LevelDbDataSourceImpl copy = new LevelDbDataSourceImpl(restored.getPath(), "account",
+        Args.getInstance().getStorage().getProfile("account"));
+    copy.initDB();
+    try {
+      Assert.assertEquals(1000, copy.getTotal());
+      Assert.assertArrayEquals(ByteArray.fromLong(999), copy.getData(ByteArray.fromInt(999)));
+    } finally {
+      copy.closeDB();
+    }
+    BlockArchive archive = new BlockArchive(new File(restored, "block-archive"), 1024);
+    try {
+      Assert.assertEquals(12, archive.getBase());
+      Assert.assertEquals(12, archive.getCount());
+    } finally {
+      archive.close();
+    }
+  }
+
+  @Test
+  public void testTransactionIdsInStateHash() throws IOException {
+    List<Entry<byte[], byte[]>> ids = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      ids.add(new SimpleImmutableEntry<>(Sha256Hash.hash(ByteArray.fromInt(i)), new byte[0]));
+    }
+    ids.sort((a, b) -> MergedIterator.COMPARATOR.compare(a.getKey(), b.getKey()));
+    Map<String, Iterator<Entry<byte[], byte[]>>> stores = new LinkedHashMap<>();
+    stores.put("account", entries(10));
+    stores.put("trans", ids.iterator());
+    StateSnapshot written = StateSnapshot.write(directory, 12, "ab", 10, stores,
+        Collections.emptyMap());
+
+    stores.put("account", entries(10));
+    stores.put("trans", ids.subList(1, ids.size()).iterator());
+    StateSnapshot withoutOne = StateSnapshot.write(new File(dbPath, "other"), 12, "ab", 10,
+        stores, Collections.emptyMap());
+    Assert.assertNotEquals(written.getStateHash(), withoutOne.getStateHash());
+
+    StateSnapshot.restore(directory, restored);
+    LevelDbDataSourceImpl copy = new LevelDbDataSourceImpl(restored.getPath(), "trans",
+        Args.getInstance().getStorage().getProfile("trans"));
+    copy.initDB();
+    try {
+      Assert.assertEquals(10, copy.getTotal());
+      // an empty value still marks the transaction as known
+      Assert.assertArrayEquals(new byte[0], copy.getData(ids.get(0).getKey()));
+    } finally {
+      copy.closeDB();
+    }
+  }
+
+  @Test
+  public void testRefuseCorruptChunk() throws IOException {
+    write();
+    try (RandomAccessFile file = new RandomAccessFile(
+        new File(directory, "account/000003.chunk"), "rw")) {
+      file.seek(100);
+      file.write(0xff);
+    }
+    try {
+      StateSnapshot.restore(directory, restored);
+      Assert.fail("restored a corrupt chunk");
+    } catch (IllegalStateException e) {
+      Assert.assertTrue(e.getMessage().contains("000003.chunk"));
+    }
+    Assert.assertFalse(new File(restored, "account").exists());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRefuseUnsortedStore() throws IOException {
+    List<Entry<byte[], byte[]>> entries = new ArrayList<>();
+    entries.add(new SimpleImmutableEntry<>(ByteArray.fromInt(2), new byte[1]));
+    entries.add(new SimpleImmutableEntry<>(ByteArray.fromInt(1), new byte[1]));
+    StateSnapshot.write(directory, 1, "ab", 0,
+        Collections.singletonMap("account", entries.iterator()), Collections.emptyMap());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIncompleteSnapshot() throws IOException {
+    Assert.assertTrue(new File(directory, "account").mkdirs());
+    StateSnapshot.restore(directory, restored);
+  }
+}
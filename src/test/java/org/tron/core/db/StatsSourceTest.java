@@ -0,0 +1,185 @@
+package org.tron.core.db;
+
+import java.io.File;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.storage.leveldb.LevelDbDataSourceImpl;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+import org.tron.core.Constant;
+import org.tron.core.config.args.Args;
+import org.tron.core.db.AbstractRevokingStore.Dialog;
+import org.tron.core.db.AbstractRevokingStore.RevokingTuple;
+import org.tron.core.exception.RevokingStoreIllegalStateException;
+
+public class StatsSourceTest {
+
+  private static final String dbPath = "output_statsSource_test";
+
+  private AbstractRevokingStore revokingDatabase;
+  private LevelDbDataSourceImpl backing;
+  private File file;
+  private StatsSource stats;
+
+  /**
+   * Open a database holding two entries written before statistics existed.
+   */
+  @Before
+  public void init() {
+    Args.setParam(new String[]{"-d", dbPath}, Constant.TEST_CONF);
+    revokingDatabase = new AbstractRevokingStore() {
+    };
+    revokingDatabase.enable();
+    backing = new LevelDbDataSourceImpl(Args.getInstance().getOutputDirectory(), "stats");
+    backing.initDB();
+    backing.putData(ByteArray.fromInt(100), ByteArray.fromLong(100));
+    backing.putData(ByteArray.fromInt(101), ByteArray.fromLong(101));
+    file = StatsSource.fileOf(Args.getInstance().getOutputDirectory()
+        + Args.getInstance().getStorage().getDirectory(), "stats");
+    stats = new StatsSource(new BufferedSource(backing, revokingDatabase), file);
+    stats.awaitCount();
+  }
+
+  @After
+  public void destroy() {
+    stats.closeDB();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  private void put(int key, long value) {
+    byte[] oldValue = stats.getData(ByteArray.fromInt(key));
+    RevokingTuple tuple = new RevokingTuple(stats, ByteArray.fromInt(key));
+    if (oldValue == null) {
+      revokingDatabase.onCreate(tuple, null);
+    } else {
+      revokingDatabase.onModify(tuple, oldValue);
+    }
+    stats.expect(ByteArray.fromInt(key), oldValue);
+    stats.putData(ByteArray.fromInt(key), ByteArray.fromLong(value));
+  }
+
+  @Test
+  public void testCountExisting() {
+    Assert.assertEquals(2, stats.getCount());
+    Assert.assertEquals(2 * (4 + 8), stats.getBytes());
+    Assert.assertEquals(2, stats.allKeys().size());
+    Assert.assertEquals(2, backing.getTotal());
+  }
+
+  @Test
+  public void testCommitAndReload() throws RevokingStoreIllegalStateException {
+    stats.setCurrentBlockNum(7);
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      put(1, 1);
+      put(100, 1000);
+      stats.deleteData(ByteArray.fromInt(101));
+      Assert.assertEquals(2, stats.getCount());
+      dialog.commit();
+    }
+    stats.closeDB();
+    Assert.assertTrue(file.exists());
+
+    backing.initDB();
+    stats = new StatsSource(backing, file);
+    Assert.assertFalse(file.exists());
+    Assert.assertFalse(stats.isCounting());
+    Assert.assertEquals(2, stats.getCount());
+    Assert.assertEquals(2 * (4 + 8), stats.getBytes());
+    Assert.assertEquals(7, stats.getLastModifiedBlock());
+  }
+
+  @Test
+  public void testCountAfterCrash() {
+    stats.setCurrentBlockNum(7);
+    put(1, 1);
+    Assert.assertFalse(file.exists());
+
+    StatsSource reopened = new StatsSource(backing, file);
+    reopened.awaitCount();
+    Assert.assertEquals(3, reopened.getCount());
+    Assert.assertEquals(0, reopened.getLastModifiedBlock());
+  }
+
+  @Test
+  public void testStatsStayOutOfTheKeys() {
+    put(1, 1);
+    stats.closeDB();
+
+    backing.initDB();
+    Assert.assertEquals(3, backing.getTotal());
+    Assert.assertEquals(3, backing.allKeys().size());
+    stats = new StatsSource(backing, file);
+  }
+
+  @Test
+  public void testExpectedWriteIsNotRead() {
+    // announced as new although it exists, the count trusts the announcement
+    stats.expect(ByteArray.fromInt(100), null);
+    stats.putData(ByteArray.fromInt(100), ByteArray.fromLong(100));
+    Assert.assertEquals(3, stats.getCount());
+
+    // nothing announced, the old value is read below
+    stats.putData(ByteArray.fromInt(101), ByteArray.fromLong(101));
+    Assert.assertEquals(3, stats.getCount());
+  }
+
+  @Test
+  public void testUncommittedWritesAreNotSaved() {
+    revokingDatabase.buildDialog();
+    put(1, 1);
+    stats.closeDB();
+    Assert.assertFalse(file.exists());
+
+    backing.initDB();
+    stats = new StatsSource(backing, file);
+    stats.awaitCount();
+    Assert.assertEquals(2, stats.getCount());
+  }
+
+  @Test
+  public void testWritesWhileCounting() {
+    stats.closeDB();
+    backing.initDB();
+    stats = new StatsSource(backing, file);
+    Assert.assertFalse(stats.isEmpty());
+    put(1, 1);
+    stats.deleteData(ByteArray.fromInt(100));
+    stats.awaitCount();
+
+    Assert.assertFalse(stats.isCounting());
+    Assert.assertEquals(2, stats.getCount());
+    Assert.assertEquals(2 * (4 + 8), stats.getBytes());
+  }
+
+  @Test
+  public void testStopCountingOnClose() {
+    stats.closeDB();
+    backing.initDB();
+    // closed while counting or right after, the next open has the right count either way
+    stats = new StatsSource(backing, file);
+    stats.closeDB();
+
+    backing.initDB();
+    stats = new StatsSource(backing, file);
+    stats.awaitCount();
+    Assert.assertEquals(2, stats.getCount());
+  }
+
+  @Test
+  public void testRevokeRestoresStats() throws RevokingStoreIllegalStateException {
+    try (Dialog dialog = revokingDatabase.buildDialog()) {
+      put(1, 1);
+      put(2, 2);
+      Assert.assertEquals(4, stats.getCount());
+    }
+
+    Assert.assertEquals(2, stats.getCount());
+    StatsSource recounted = new StatsSource(backing);
+    recounted.awaitCount();
+    Assert.assertEquals(2, recounted.getCount());
+    Assert.assertEquals(2, stats.getBytes() / (4 + 8));
+  }
+}
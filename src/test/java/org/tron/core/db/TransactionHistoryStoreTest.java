@@ -0,0 +1,162 @@
+package org.tron.core.db;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tron.common.utils.ByteArray;
+import org.tron.common.utils.FileUtil;
+import org.tron.common.utils.Sha256Hash;
+import org.tron.core.Constant;
+import org.tron.core.capsule.TransactionCapsule;
+import org.tron.core.config.args.Args;
+import org.tron.protos.Contract.TransferContract;
+import org.tron.protos.Protocol.Transaction;
+import org.tron.protos.Protocol.Transaction.Contract.ContractType;
+
+public class TransactionHistoryStoreTest {
+
+  private static final String dbPath = "output_transactionHistoryStore_test";
+  private static final byte[] A = ByteArray.fromHexString("a0aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+  private static final byte[] B = ByteArray.fromHexString("a0bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb");
+  private static final byte[] C = ByteArray.fromHexString("a0cccccccccccccccccccccccccccccccccccccccc");
+
+  private TransactionHistoryStore store;
+
+  @Before
+  public void init() {
+    Args.setParam(new String[]{"-d", dbPath}, Constant.TEST_CONF);
+    store = TransactionHistoryStore.create("transaction-history");
+  }
+
+  @After
+  public void destroy() {
+    store.close();
+    TransactionHistoryStore.destroy();
+    Args.clearParam();
+    FileUtil.deleteDir(new File(dbPath));
+  }
+
+  private static TransactionCapsule transfer(byte[] owner, byte[] to, long amount) {
+    TransferContract contract = TransferContract.newBuilder()
+        .setOwnerAddress(ByteString.copyFrom(owner))
+        .setToAddress(ByteString.copyFrom(to))
+        .setAmount(amount)
+        .build();
+    return new TransactionCapsule(Transaction.newBuilder().setRawData(Transaction.raw.newBuilder()
+        .addContract(Transaction.Contract.newBuilder()
+            .setType(ContractType.TransferContract)
+            .setParameter(Any.pack(contract)))).build());
+  }
+
+  private static List<Sha256Hash> ids(TransactionCapsule... transactions) {
+    return Arrays.stream(transactions)
+        .map(TransactionCapsule::getTransactionId)
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testHistoryNewestFirst() {
+    TransactionCapsule first = transfer(A, B, 1);
+    TransactionCapsule second = transfer(A, C, 2);
+    TransactionCapsule third = transfer(B, A, 3);
+    TransactionCapsule fourth = transfer(A, A, 4);
+    store.put(1, 0, first);
+    store.put(1, 1, second);
+    store.put(2, 0, third);
+    store.put(3, 0, fourth);
+
+    Assert.assertEquals(ids(fourth, third, second, first),
+        store.getTransactionIds(A, TransactionHistoryStore.ROLE_ANY, 0, 10));
+    Assert.assertEquals(ids(fourth, second, first),
+        store.getTransactionIds(A, TransactionHistoryStore.ROLE_OWNER, 0, 10));
+    Assert.assertEquals(ids(fourth, third),
+        store.getTransactionIds(A, TransactionHistoryStore.ROLE_TO, 0, 10));
+    Assert.assertEquals(ids(third, first),
+        store.getTransactionIds(B, TransactionHistoryStore.ROLE_ANY, 0, 10));
+    Assert.assertTrue(store.getTransactionIds(C, TransactionHistoryStore.ROLE_OWNER, 0, 10)
+        .isEmpty());
+  }
+
+  @Test
+  public void testPagination() {
+    TransactionCapsule[] transactions = new TransactionCapsule[5];
+    for (int i = 0; i < transactions.length; i++) {
+      transactions[i] = transfer(A, B, i);
+      store.put(i, 0, transactions[i]);
+    }
+
+    Assert.assertEquals(ids(transactions[4], transactions[3]),
+        store.getTransactionIds(A, TransactionHistoryStore.ROLE_OWNER, 0, 2));
+    Assert.assertEquals(ids(transactions[2], transactions[1]),
+        store.getTransactionIds(A, TransactionHistoryStore.ROLE_OWNER, 2, 2));
+    Assert.assertEquals(ids(transactions[0]),
+        store.getTransactionIds(A, TransactionHistoryStore.ROLE_OWNER, 4, 2));
+    Assert.assertTrue(store.getTransactionIds(A, TransactionHistoryStore.ROLE_OWNER, 5, 2)
+        .isEmpty());
+  }
+
+  @Test
+  public void testLoadsOnlyThePage() {
+    TransactionCapsule[] transactions = new TransactionCapsule[5];
+    for (int i = 0; i < transactions.length; i++) {
+      transactions[i] = transfer(A, B, i);
+      store.put(i, 0, transactions[i]);
+    }
+
+    List<Sha256Hash> loaded = new ArrayList<>();
+    List<Sha256Hash> page = store.getTransactions(A, TransactionHistoryStore.ROLE_OWNER, 3, 2,
+        id -> {
+          loaded.add(id);
+          // a transaction pruned after its entry was read
+          return id.equals(transactions[0].getTransactionId()) ? null : id;
+        });
+    Assert.assertEquals(ids(transactions[1]), page);
+    Assert.assertEquals(ids(transactions[1], transactions[0]), loaded);
+  }
+
+  @Test
+  public void testAddressPrefix() {
+    byte[] longer = Arrays.copyOf(A, A.length + 1);
+    store.put(1, 0, transfer(longer, B, 1));
+    Assert.assertTrue(store.getTransactionIds(A, TransactionHistoryStore.ROLE_ANY, 0, 10)
+        .isEmpty());
+    Assert.assertEquals(1,
+        store.getTransactionIds(longer, TransactionHistoryStore.ROLE_ANY, 0, 10).size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeOffset() {
+    store.getTransactionIds(A, TransactionHistoryStore.ROLE_ANY, -1, 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPageTooLarge() {
+    store.getTransactionIds(A, TransactionHistoryStore.ROLE_ANY, 0,
+        TransactionHistoryStore.MAX_PAGE_SIZE + 1);
+  }
+
+  @Test
+  public void testBackfilledEntries() {
+    TransactionCapsule first = transfer(A, B, 1);
+    TransactionCapsule second = transfer(B, C, 2);
+    store.put(1, 0, first);
+    // written in a batch like the backfill of blocks from before the store
+    store.getDbSource().updateByBatch(TransactionHistoryStore.entries(2, 0, second));
+
+    Assert.assertEquals(ids(second, first),
+        store.getTransactionIds(B, TransactionHistoryStore.ROLE_ANY, 0, 10));
+    Map<byte[], byte[]> entries = TransactionHistoryStore.entries(1, 0, first);
+    Assert.assertEquals(2, entries.size());
+    entries.keySet().forEach(key -> Assert.assertTrue(store.has(key)));
+    Assert.assertFalse(store.has(ByteArray.fromHexString("00")));
+  }
+}
@@ -2,6 +2,7 @@ package org.tron.core.db;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.io.File;
+import java.util.Collections;
 import java.util.Random;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -13,6 +14,7 @@ import org.tron.core.Constant;
 import org.tron.core.capsule.TransactionCapsule;
 import org.tron.core.config.DefaultConfig;
 import org.tron.core.config.args.Args;
+import org.tron.core.exception.DupTransactionException;
 import org.tron.protos.Contract.TransferContract;
 
 public class TransactionStoreTest {
@@ -76,6 +78,19 @@ public class TransactionStoreTest {
     }
   }
 
+  @Test(expected = DupTransactionException.class)
+  public void testPrunedStillDuplicate() throws Exception {
+    TransactionCapsule transaction = new TransactionCapsule(randomBytes(21), 222L);
+    byte[] id = transaction.getTransactionId().getBytes();
+    transactionStore.put(id, transaction);
+    transactionStore.prune(Collections.singletonList(id));
+
+    Assert.assertTrue(transactionStore.has(id));
+    Assert.assertNull(transactionStore.get(id));
+    Assert.assertNull(transactionStore.findTransactionByHash(id));
+    context.getBean(Manager.class).pushTransactions(transaction);
+  }
+
   /*@Test
   public void findTransactionByHash() {
     //test findTransactionByHash method
@@ -2,6 +2,8 @@ package org.tron.core.db;
 
 import com.google.protobuf.ByteString;
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -64,5 +66,18 @@ public class WitnessStoreTest {
     Assert.assertEquals(100L, witnessSource.getVoteCount());
   }
 
+  @Test
+  public void getAllWitnesses() {
+    WitnessCapsule witnessCapsule = new WitnessCapsule(ByteString.copyFromUtf8("200000000x"), 200L,
+        "");
+    byte[] address = witnessCapsule.getAddress().toByteArray();
+    this.witnessStore.put(address, witnessCapsule);
 
+    List<WitnessCapsule> witnesses = this.witnessStore
+        .getAll(Arrays.asList(address, ByteString.copyFromUtf8("300000000x").toByteArray()));
+    Assert.assertEquals(2, witnesses.size());
+    Assert.assertEquals(witnessCapsule.getAddress(), witnesses.get(0).getAddress());
+    Assert.assertEquals(200L, witnesses.get(0).getVoteCount());
+    Assert.assertNull(witnesses.get(1));
+  }
 }
\ No newline at end of file